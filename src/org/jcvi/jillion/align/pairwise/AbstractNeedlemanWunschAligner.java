@@ -20,8 +20,6 @@
  ******************************************************************************/
 package org.jcvi.jillion.align.pairwise;
 
-import java.util.Arrays;
-
 import org.jcvi.jillion.align.SequenceAlignment;
 import org.jcvi.jillion.align.SubstitutionMatrix;
 import org.jcvi.jillion.core.residue.Residue;
@@ -46,6 +44,14 @@ abstract class AbstractNeedlemanWunschAligner <R extends Residue, S extends Resi
 			float extendGapPenalty,ResiduePairwiseStrategy<R,S,B,A,P> pairwiseStrategy) {
 		super(query, subject, matrix, openGapPenalty, extendGapPenalty, pairwiseStrategy);
 	}
+	
+	protected AbstractNeedlemanWunschAligner(S query,
+			S subject, SubstitutionMatrix<R> matrix, float openGapPenalty,
+			float extendGapPenalty,ResiduePairwiseStrategy<R,S,B,A,P> pairwiseStrategy,
+			Integer bandWidth, boolean adaptiveBand) {
+		super(query, subject, matrix, openGapPenalty, extendGapPenalty, pairwiseStrategy,
+				null, bandWidth, adaptiveBand);
+	}
 	/**
 	 * The initial gap scores of NeedlemanWunsch are the values
 	 * returned by the affine gap penalty.
@@ -98,10 +104,8 @@ abstract class AbstractNeedlemanWunschAligner <R extends Residue, S extends Resi
 	protected WalkBack computeBestWalkBack(float alignmentScore,
 			float horrizontalGapPenalty, float verticalGapPenalty){
 				
-			double[] array = new double[]{alignmentScore, horrizontalGapPenalty, verticalGapPenalty};
-			
-			float bestScore = (float)Arrays.stream(array)
-										.max().getAsDouble();
+			//this is called for every cell so don't create any temp arrays
+			float bestScore = Math.max(alignmentScore, Math.max(horrizontalGapPenalty, verticalGapPenalty));
 			final TracebackDirection dir;
 			//can't switch on float... so ugly if/else block below
 			if (bestScore == alignmentScore){
@@ -113,6 +117,27 @@ abstract class AbstractNeedlemanWunschAligner <R extends Residue, S extends Resi
 			}
 			return new WalkBack(bestScore, dir);
 	}
+	/**
+	 * Any global alignment that leaves the band has to have at
+	 * least {@code bandWidth +1} gaps in the query so it can have
+	 * at most {@code min(queryLength, subjectLength) - (bandWidth +1)}
+	 * aligned residues.
+	 * <p/>
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected float getBestPossibleScoreOutsideOfBand(int queryLength, int subjectLength,
+			int bandWidth, float maxSubstitutionScore, float openGapPenalty,
+			float extendGapPenalty) {
+		float bestGapScore = Math.max(openGapPenalty, extendGapPenalty);
+		if(bestGapScore > 0){
+			//gaps help so we can't bound anything
+			return Float.POSITIVE_INFINITY;
+		}
+		long minGaps = bandWidth + 1L;
+		long maxAligned = Math.max(0, Math.min(queryLength, subjectLength) - minGaps);
+		return Math.max(0, maxSubstitutionScore) * maxAligned + bestGapScore * minGaps;
+	}
 	/**
 	 * Always update the CurrentStartPointer to the given values.
 	 * <p/>
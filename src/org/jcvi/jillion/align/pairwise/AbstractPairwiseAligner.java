@@ -51,7 +51,7 @@ abstract class AbstractPairwiseAligner <R extends Residue, S extends ResidueSequ
 	 * The matrix which stores all of our traceback
 	 * values. 
 	 */
-	private final TraceBackMatrix traceback;
+	private Traceback traceback;
 	/**
 	 * The match scores of the current row computed so far
 	 * and the full previous row.
@@ -98,6 +98,33 @@ abstract class AbstractPairwiseAligner <R extends Residue, S extends ResidueSequ
                 SubstitutionMatrix<R> matrix, float openGapPenalty, float extendGapPenalty,
                 ResiduePairwiseStrategy<R,S,B,A,P> pairwiseStrategy,
                 Integer subjectShiftAmount){
+	    this(query, subject, matrix, openGapPenalty, extendGapPenalty, pairwiseStrategy, subjectShiftAmount, null, false);
+	}
+	/**
+	 * Align the given sequences, only computing the cells
+	 * of the dynamic programming matrix that are inside a band
+	 * around the diagonals connecting the start of both sequences
+	 * to the end of both sequences.
+	 * 
+	 * @param bandWidth the number of extra diagonals on either side
+	 * of the band to compute; if {@code null} then the whole
+	 * matrix is computed.
+	 * @param adaptiveBand if {@code true} then the band width
+	 * is doubled and the alignment recomputed until no alignment outside
+	 * of the band can score better (see {@link #getBestPossibleScoreOutsideOfBand(int, int, int, float, float, float)})
+	 * or, if that can not be computed, until the best path
+	 * no longer touches the edge of the band and doubling
+	 * the band no longer improves the score; otherwise the band is fixed and the
+	 * best path inside the band is returned.
+	 * 
+	 * @throws IllegalArgumentException if bandWidth is negative.
+	 * 
+	 * @since 5.3
+	 */
+	protected AbstractPairwiseAligner(S query, S subject,
+                SubstitutionMatrix<R> matrix, float openGapPenalty, float extendGapPenalty,
+                ResiduePairwiseStrategy<R,S,B,A,P> pairwiseStrategy,
+                Integer subjectShiftAmount, Integer bandWidth, boolean adaptiveBand){
 	    
 		checkNotNull(query,subject,matrix);
 		this.pairwiseStrategy = pairwiseStrategy;
@@ -114,19 +141,49 @@ abstract class AbstractPairwiseAligner <R extends Residue, S extends ResidueSequ
 		int ungappedSubjectLength = (int)subject.getUngappedLength();
 		int ungappedQueryLength = (int)query.getUngappedLength();
 		
-		traceback = new TraceBackMatrix(ungappedQueryLength+1,ungappedSubjectLength+1, initialRowDirection, initialColDirection);
+		Band band = Band.create(ungappedQueryLength, ungappedSubjectLength, bandWidth);
 		
 		scoreCache = new float[2][ungappedSubjectLength+1];
 		inAVerticalGapCache = new BitSet[2];
-		initializeFields(openGapPenalty, extendGapPenalty);
+		
 		byte[] seq1Bytes = convertToUngappedByteArray(query);
 		byte[] seq2Bytes = convertToUngappedByteArray(subject);
 		
-		
-		
-		
-		StartPoint currentStartPoint = populateTraceback(matrix,
-				openGapPenalty, extendGapPenalty, seq1Bytes, seq2Bytes);
+		StartPoint currentStartPoint;
+		StartPoint previousStartPoint = null;
+		while(true){
+			if(band.isFull()){
+				traceback = new TraceBackMatrix(ungappedQueryLength+1,ungappedSubjectLength+1, initialRowDirection, initialColDirection);
+			}else{
+				traceback = new BandedTraceBackMatrix(band, initialRowDirection, initialColDirection);
+			}
+			initializeFields(openGapPenalty, extendGapPenalty, band);
+			
+			currentStartPoint = populateTraceback(matrix,
+					openGapPenalty, extendGapPenalty, seq1Bytes, seq2Bytes, band);
+			if(!adaptiveBand || band.isFull()){
+				break;
+			}
+			//if the best path runs along the edge of the band
+			//or widening the band found a better path
+			//then an even better path might be outside of the band
+			float bestScoreOutsideOfBand = getBestPossibleScoreOutsideOfBand(ungappedQueryLength, ungappedSubjectLength,
+											band.getWidth(), getMaxSubstitutionScore(matrix, seq1Bytes, seq2Bytes),
+											openGapPenalty, extendGapPenalty);
+			if(bestScoreOutsideOfBand != Float.POSITIVE_INFINITY){
+				//nothing outside the band can beat what we have
+				if(currentStartPoint.getScore() >= bestScoreOutsideOfBand){
+					break;
+				}
+			}else{
+				boolean improved = previousStartPoint ==null || currentStartPoint.getScore() > previousStartPoint.getScore();
+				if(!improved && !pathTouchesEdgeOfBand(currentStartPoint, band)){
+					break;
+				}
+			}
+			previousStartPoint = currentStartPoint;
+			band = band.widen();
+		}
 		//now do trace back
 		alignment = traceBack(seq1Bytes, seq2Bytes, currentStartPoint);
 		
@@ -146,55 +203,46 @@ abstract class AbstractPairwiseAligner <R extends Residue, S extends ResidueSequ
 	}
 	private StartPoint populateTraceback(SubstitutionMatrix<R> matrix,
 			float openGapPenalty, float extendGapPenalty, byte[] seq1Bytes,
-			byte[] seq2Bytes) {
+			byte[] seq2Bytes, Band band) {
 		int lengthOfSeq1 = seq1Bytes.length;
 		int lengthOfSeq2 = seq2Bytes.length;
 		
-		
-		
-		//only need to keep array of vertical accumulated gap
-		//penalties since we are populating horizontally  we can just
-		//keep a float for current horizontal penalty 
-		float[] verticalGapPenaltiesSoFar = new float[lengthOfSeq2+1];		
-		Arrays.fill(verticalGapPenaltiesSoFar, Float.NEGATIVE_INFINITY);
 		List<R> residuesByOrdinal = pairwiseStrategy.getResidueList();
 		StartPoint currentStartPoint = new StartPoint();
 		for(int i=1; i<=lengthOfSeq1; i++){
-
-			
-			float cumulativeHorizontalGapPenalty=Float.NEGATIVE_INFINITY;
-			BitSet inAHorizontalGap = new BitSet(lengthOfSeq2+1);
-			for(int j=1; j<= lengthOfSeq2; j++){
+			int firstColumn = band.getFirstColumn(i);
+			int lastColumn = band.getLastColumn(i);
+			//the cell to the left of the band is either the
+			//initial column or outside of the band
+			//and can never be part of the alignment
+			scoreCache[CURRENT_ROW][firstColumn-1] = band.contains(i, firstColumn-1) ? 0 : Float.NEGATIVE_INFINITY;
+			//we only ever need to know if the cell to our left
+			//is in a horizontal gap so we don't need to keep
+			//the whole row
+			boolean previousCellInAHorizontalGap = false;
+			R queryResidue = residuesByOrdinal.get(seq1Bytes[i-1]);
+			for(int j=firstColumn; j<= lastColumn; j++){
 				float diagnol = scoreCache[PREVIOUS_ROW][j-1];
 				float verticalGapExtensionScore = inAVerticalGapCache[PREVIOUS_ROW].get(j) 
 							? scoreCache[PREVIOUS_ROW][j] + extendGapPenalty 
 							: Float.NEGATIVE_INFINITY	;
 				float verticalOpenGapScore = scoreCache[PREVIOUS_ROW][j] + openGapPenalty;
-				if(verticalGapExtensionScore > verticalOpenGapScore){
-					verticalGapPenaltiesSoFar[j] = verticalGapExtensionScore;
-				}else{
-					verticalGapPenaltiesSoFar[j] = verticalOpenGapScore;
-				}
+				float verticalGapPenalty = Math.max(verticalGapExtensionScore, verticalOpenGapScore);
 				
-				float horizontalGapExtensionScore =  inAHorizontalGap.get(j-1) 
+				float horizontalGapExtensionScore =  previousCellInAHorizontalGap 
 						? scoreCache[CURRENT_ROW][j-1]+ extendGapPenalty
 						: Float.NEGATIVE_INFINITY;
 				float horizontalGapOpenScore = scoreCache[CURRENT_ROW][j-1] + openGapPenalty;
-				if(horizontalGapExtensionScore >= horizontalGapOpenScore){
-					cumulativeHorizontalGapPenalty = horizontalGapExtensionScore;
-					
-				}else{
-					cumulativeHorizontalGapPenalty = horizontalGapOpenScore;
-				}
+				float cumulativeHorizontalGapPenalty = Math.max(horizontalGapExtensionScore, horizontalGapOpenScore);
 				
 				//need to do -1s because 0 offset in matrix is filled with stops
 				//and actual values start at offset 1
 				float alignmentScore = diagnol + matrix.getValue(
-						residuesByOrdinal.get(seq1Bytes[i-1]),
+						queryResidue,
 						residuesByOrdinal.get(seq2Bytes[j-1]));
 				
 				
-				WalkBack bestWalkBack = computeBestWalkBack(alignmentScore, cumulativeHorizontalGapPenalty, verticalGapPenaltiesSoFar[j]);
+				WalkBack bestWalkBack = computeBestWalkBack(alignmentScore, cumulativeHorizontalGapPenalty, verticalGapPenalty);
 				scoreCache[CURRENT_ROW][j] = bestWalkBack.getBestScore();
 				//some implementations might
 				//need to update the currentStartPoint even if it's not
@@ -204,27 +252,103 @@ abstract class AbstractPairwiseAligner <R extends Residue, S extends ResidueSequ
 				if(currentStartPoint ==null){
 					throw new NullPointerException("current start point can not be set to null");
 				}
-				switch(bestWalkBack.getTracebackDirection()){
-					case HORIZONTAL: inAHorizontalGap.set(j,true);
-									break;
+				TracebackDirection direction = bestWalkBack.getTracebackDirection();
+				previousCellInAHorizontalGap = direction == TracebackDirection.HORIZONTAL;
+				switch(direction){
 					case VERTICAL : inAVerticalGapCache[CURRENT_ROW].set(j,true);
 									break;
-					case DIAGNOL: 	inAHorizontalGap.set(j,false);
-									inAVerticalGapCache[CURRENT_ROW].set(j,false);
+					case DIAGNOL: 	inAVerticalGapCache[CURRENT_ROW].set(j,false);
 									break;
 					default:
+								//still in the same vertical gap state as the cell above
+								inAVerticalGapCache[CURRENT_ROW].set(j, inAVerticalGapCache[PREVIOUS_ROW].get(j));
 								break;
 						
 				}
-				traceback.set(i,j,bestWalkBack.getTracebackDirection());
-				diagnol = traceback.get(i-1,j).ordinal();
+				traceback.set(i,j,direction);
 				
 				//printTraceBack();
 			}
+			if(lastColumn < lengthOfSeq2){
+				//the next row can look straight up at this cell
+				//which is outside of the band
+				scoreCache[CURRENT_ROW][lastColumn+1] = Float.NEGATIVE_INFINITY;
+			}
 			updateCaches();
 		}
 		return currentStartPoint;
 	}
+	/**
+	 * Get the best score that any alignment that goes outside
+	 * of a band could possibly have.  This is used to decide when an adaptive
+	 * band is wide enough.
+	 * @param queryLength the ungapped length of the query.
+	 * @param subjectLength the ungapped length of the subject.
+	 * @param bandWidth the number of extra diagonals on either side of the band.
+	 * @param maxSubstitutionScore the best score of aligning
+	 * any residue in the query to any residue in the subject.
+	 * @param openGapPenalty the penalty value for opening a gap.
+	 * @param extendGapPenalty the penalty for extending an already open gap.
+	 * @return the upper bound of the score; or {@link Float#POSITIVE_INFINITY}
+	 * if there is no upper bound.  This implementation always returns
+	 * {@link Float#POSITIVE_INFINITY}.
+	 * 
+	 * @since 5.3
+	 */
+	protected float getBestPossibleScoreOutsideOfBand(int queryLength, int subjectLength, int bandWidth, 
+			float maxSubstitutionScore, float openGapPenalty, float extendGapPenalty){
+		return Float.POSITIVE_INFINITY;
+	}
+	
+	private float getMaxSubstitutionScore(SubstitutionMatrix<R> matrix, byte[] seq1Bytes, byte[] seq2Bytes){
+		List<R> residuesByOrdinal = pairwiseStrategy.getResidueList();
+		BitSet seq1Residues = getResiduesUsed(seq1Bytes);
+		BitSet seq2Residues = getResiduesUsed(seq2Bytes);
+		float max = Float.NEGATIVE_INFINITY;
+		for(int i = seq1Residues.nextSetBit(0); i>=0; i = seq1Residues.nextSetBit(i+1)){
+			for(int j = seq2Residues.nextSetBit(0); j>=0; j = seq2Residues.nextSetBit(j+1)){
+				max = Math.max(max, matrix.getValue(residuesByOrdinal.get(i), residuesByOrdinal.get(j)));
+			}
+		}
+		return max;
+	}
+	
+	private static BitSet getResiduesUsed(byte[] ordinals){
+		BitSet used = new BitSet();
+		for(byte b : ordinals){
+			used.set(b);
+		}
+		return used;
+	}
+	/**
+	 * Walk the traceback from the given start point
+	 * and check to see if the path ever
+	 * goes along the edge of the band.
+	 * @param startPoint the start of the traceback.
+	 * @param band the {@link Band} used to compute the traceback.
+	 * @return {@code true} if the path touches an edge of the band
+	 * that is not also an edge of the matrix.
+	 */
+	private boolean pathTouchesEdgeOfBand(StartPoint startPoint, Band band){
+		int x=startPoint.getX();
+		int y = startPoint.getY();
+		while(true){
+			if(band.isOnEdge(x, y)){
+				return true;
+			}
+			switch(traceback.get(x,y)){
+				case VERTICAL :		x--;
+									break;
+				case HORIZONTAL :	y--;
+									break;
+				case DIAGNOL:		x--;
+									y--;
+									break;
+				default:
+									return false;
+			}
+		}
+	}
 	/**
 	 * Initialize the values of the initial scorecache and inVerticalGapCache.
 	 * Some of these values are populated using returned values from
@@ -235,19 +359,27 @@ abstract class AbstractPairwiseAligner <R extends Residue, S extends ResidueSequ
 	 * method calls returns null.
 	 * @throws Illegal
 	 */
-	private void initializeFields(float openGapPenalty, float extendGapPenalty) {
+	private void initializeFields(float openGapPenalty, float extendGapPenalty, Band band) {
 
 		initializeVerticalGapCache();		
-		initializeScoreCache(openGapPenalty, extendGapPenalty);
+		initializeScoreCache(openGapPenalty, extendGapPenalty, band);
 	}
 	private void initializeScoreCache(float openGapPenalty,
-			float extendGapPenalty) {
-		scoreCache[PREVIOUS_ROW] = getInitialGapScores(traceback.getYLength(), openGapPenalty, extendGapPenalty );
-		scoreCache[CURRENT_ROW][1] = scoreCache[PREVIOUS_ROW][1];
+			float extendGapPenalty, Band band) {
+		int rowLength = scoreCache[CURRENT_ROW].length;
+		float[] initialScores = getInitialGapScores(rowLength, openGapPenalty, extendGapPenalty );
+		//anything in the first row past the band can never be reached
+		for(int j=band.getLastColumn(0)+1; j< rowLength; j++){
+			initialScores[j] = Float.NEGATIVE_INFINITY;
+		}
+		scoreCache[PREVIOUS_ROW] = initialScores;
+		scoreCache[CURRENT_ROW] = new float[rowLength];
+		Arrays.fill(scoreCache[CURRENT_ROW], Float.NEGATIVE_INFINITY);
 	}
 	private void initializeVerticalGapCache() {
-		inAVerticalGapCache[0] = new BitSet(traceback.getYLength());
-		inAVerticalGapCache[1] = new BitSet(traceback.getYLength());
+		int rowLength = scoreCache[CURRENT_ROW].length;
+		inAVerticalGapCache[0] = new BitSet(rowLength);
+		inAVerticalGapCache[1] = new BitSet(rowLength);
 	}
 	
 	/**
@@ -276,18 +408,20 @@ abstract class AbstractPairwiseAligner <R extends Residue, S extends ResidueSequ
 	protected abstract float[] getInitialGapScores(int length, float openGapPenalty,
 			float extendGapPenalty);
 	/**
-	 * Replace the contents of the previous row
-	 * with the contents of the  current row.  Since 
+	 * Make the current row the previous row
+	 * and reuse the old previous row as the new current row.  Since 
 	 * we only care about the previous 1 rows
 	 * we can safely forget about anything older than that.
 	 * (and save memory)
 	 */
 	private void updateCaches() {
-		for(int j=0; j< scoreCache[CURRENT_ROW].length; j++){
-			scoreCache[PREVIOUS_ROW][j] = scoreCache[CURRENT_ROW][j];
-			
-			inAVerticalGapCache[PREVIOUS_ROW].set(j,inAVerticalGapCache[CURRENT_ROW].get(j));
-		}
+		float[] tmpScores = scoreCache[PREVIOUS_ROW];
+		scoreCache[PREVIOUS_ROW] = scoreCache[CURRENT_ROW];
+		scoreCache[CURRENT_ROW] = tmpScores;
+		
+		BitSet tmpGaps = inAVerticalGapCache[PREVIOUS_ROW];
+		inAVerticalGapCache[PREVIOUS_ROW] = inAVerticalGapCache[CURRENT_ROW];
+		inAVerticalGapCache[CURRENT_ROW] = tmpGaps;
 		
 	}
 /*
@@ -387,7 +521,7 @@ abstract class AbstractPairwiseAligner <R extends Residue, S extends ResidueSequ
 		return alignment;
 	}
 	
-	private byte[] convertToUngappedByteArray(S sequence) {
+	static <R extends Residue> byte[] convertToUngappedByteArray(ResidueSequence<R, ?, ?> sequence) {
 		
 		ByteBuffer buf = ByteBuffer.allocate((int)sequence.getUngappedLength());
 		for(R residue : sequence){
@@ -549,7 +683,17 @@ abstract class AbstractPairwiseAligner <R extends Residue, S extends ResidueSequ
 		DIAGNOL;
 	}
 	
-	private static final class TraceBackMatrix{
+	/**
+	 * Storage for the {@link TracebackDirection}s
+	 * of each cell in the matrix.
+	 */
+	private interface Traceback{
+		TracebackDirection get(int x, int y);
+		
+		void set(int x, int y, TracebackDirection value);
+	}
+	
+	private static final class TraceBackMatrix implements Traceback{
 		private final byte[][] matrix;
 		private final int xLength;
 		private final int yLength;
@@ -587,6 +731,7 @@ abstract class AbstractPairwiseAligner <R extends Residue, S extends ResidueSequ
 			matrix[0][0]= origin;
 		}
 
+		@Override
 		public TracebackDirection get(int x, int y){
 			byte matrixValue = matrix[x/2][y/2];
 			if((x & 0x01)==0){
@@ -604,6 +749,7 @@ abstract class AbstractPairwiseAligner <R extends Residue, S extends ResidueSequ
 			}
 		}
 		
+		@Override
 		public void set(int x, int y, TracebackDirection value){
 			int matrixValue = matrix[x/2][y/2];
 			if((x & 0x01)==0){
@@ -629,4 +775,127 @@ abstract class AbstractPairwiseAligner <R extends Residue, S extends ResidueSequ
 			return yLength;
 		}
 	}
+	/**
+	 * A {@link Traceback} that only stores the cells
+	 * inside of a {@link Band}.  Each row only stores the
+	 * band width number of cells packed 4 cells per byte
+	 * so memory usage is linear in the length of the query.
+	 */
+	private static final class BandedTraceBackMatrix implements Traceback{
+		private static final TracebackDirection[] ORDINALS = TracebackDirection.values();
+		
+		private final byte[][] rows;
+		private final Band band;
+		
+		BandedTraceBackMatrix(Band band, TracebackDirection initialRowDirection, TracebackDirection initialColDirection){
+			this.band = band;
+			int bytesPerRow = (band.getNumberOfDiagonals() +3)/4;
+			rows = new byte[band.getQueryLength()+1][bytesPerRow];
+			
+			for(int j=1; j<= band.getLastColumn(0); j++){
+				set(0, j, initialRowDirection);
+			}
+			for(int i=1; i<= band.getQueryLength() && band.contains(i, 0); i++){
+				set(i, 0, initialColDirection);
+			}
+			set(0,0, TracebackDirection.TERMINAL);
+		}
+		
+		@Override
+		public TracebackDirection get(int x, int y) {
+			int offset = band.getOffsetInRow(x, y);
+			int shift = (offset & 0x03)<<1;
+			return ORDINALS[(rows[x][offset>>2] >> shift) & 0x03];
+		}
+		
+		@Override
+		public void set(int x, int y, TracebackDirection value) {
+			int offset = band.getOffsetInRow(x, y);
+			int shift = (offset & 0x03)<<1;
+			byte[] row = rows[x];
+			row[offset>>2] = (byte)((row[offset>>2] & ~(0x03 << shift)) | (value.ordinal() << shift));
+		}
+	}
+	
+	/**
+	 * The range of diagonals of the matrix that are computed.
+	 * Diagonal {@code d} is made up of all the cells where
+	 * {@code y - x == d}.  The band always includes the diagonals
+	 * that go through the first and last cells of the matrix
+	 * so a global alignment is always possible.
+	 */
+	private static final class Band{
+		private final int queryLength, subjectLength;
+		private final int width;
+		private final int minDiagonal, maxDiagonal;
+		
+		static Band create(int queryLength, int subjectLength, Integer bandWidth){
+			if(bandWidth ==null){
+				//wide enough to include everything
+				return new Band(queryLength, subjectLength, Math.max(queryLength, subjectLength));
+			}
+			if(bandWidth.intValue() <0){
+				throw new IllegalArgumentException("band width can not be negative : "+ bandWidth);
+			}
+			return new Band(queryLength, subjectLength, bandWidth.intValue());
+		}
+		
+		private Band(int queryLength, int subjectLength, int width){
+			this.queryLength = queryLength;
+			this.subjectLength = subjectLength;
+			this.width = width;
+			//use longs to avoid overflow with very wide bands
+			this.minDiagonal = (int) Math.max(-queryLength, Math.min(0, subjectLength - queryLength) - (long)width);
+			this.maxDiagonal = (int) Math.min(subjectLength, Math.max(0, subjectLength - queryLength) + (long)width);
+		}
+		
+		Band widen(){
+			return new Band(queryLength, subjectLength, width==0? 1 : (int)Math.min(Integer.MAX_VALUE, 2L*width));
+		}
+		
+		boolean isFull(){
+			return minDiagonal == -queryLength && maxDiagonal == subjectLength;
+		}
+		
+		int getQueryLength(){
+			return queryLength;
+		}
+		
+		int getWidth(){
+			return width;
+		}
+		
+		int getNumberOfDiagonals(){
+			return maxDiagonal - minDiagonal +1;
+		}
+		/**
+		 * Get the first column (ignoring the initial column 0)
+		 * inside the band for the given row.
+		 */
+		int getFirstColumn(int row){
+			return Math.max(1, row + minDiagonal);
+		}
+		
+		int getLastColumn(int row){
+			return Math.min(subjectLength, row + maxDiagonal);
+		}
+		
+		boolean contains(int row, int column){
+			int diagonal = column - row;
+			return diagonal >= minDiagonal && diagonal <= maxDiagonal;
+		}
+		
+		int getOffsetInRow(int row, int column){
+			return column - row - minDiagonal;
+		}
+		/**
+		 * Is the given cell on an edge of the band
+		 * that could be made wider.
+		 */
+		boolean isOnEdge(int row, int column){
+			int diagonal = column - row;
+			return (diagonal == minDiagonal && minDiagonal > -queryLength)
+					|| (diagonal == maxDiagonal && maxDiagonal < subjectLength);
+		}
+	}
 }
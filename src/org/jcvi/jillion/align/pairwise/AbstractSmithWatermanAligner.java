@@ -21,8 +21,6 @@
 package org.jcvi.jillion.align.pairwise;
 
 
-import java.util.Arrays;
-
 import org.jcvi.jillion.align.SequenceAlignment;
 import org.jcvi.jillion.align.SubstitutionMatrix;
 import org.jcvi.jillion.core.residue.Residue;
@@ -57,6 +55,15 @@ abstract class AbstractSmithWatermanAligner<R extends Residue, S extends Residue
         super(query, subject, matrix, openGapPenalty, extendGapPenalty,
                 pairwiseStrategy, subjectShiftAmount);
     }
+	
+	protected AbstractSmithWatermanAligner(S query, S subject,
+            SubstitutionMatrix<R> matrix, float openGapPenalty,
+            float extendGapPenalty,
+            ResiduePairwiseStrategy<R, S, B, A, P> pairwiseStrategy,
+            Integer subjectShiftAmount, Integer bandWidth, boolean adaptiveBand) {
+        super(query, subject, matrix, openGapPenalty, extendGapPenalty,
+                pairwiseStrategy, subjectShiftAmount, bandWidth, adaptiveBand);
+    }
 
 
     /**
@@ -106,9 +113,8 @@ abstract class AbstractSmithWatermanAligner<R extends Residue, S extends Residue
 	protected WalkBack computeBestWalkBack(float alignmentScore,
 			float horrizontalGapPenalty, float verticalGapPenalty){
 		
-		double[] array = new double[] {0D, alignmentScore,	horrizontalGapPenalty, verticalGapPenalty};
-
-		float bestScore = (float) Arrays.stream(array).max().getAsDouble();
+		//this is called for every cell so don't create any temp arrays
+		float bestScore = Math.max(Math.max(0F, alignmentScore), Math.max(horrizontalGapPenalty, verticalGapPenalty));
 		final TracebackDirection dir;
 		// can't switch on float... so ugly if/else block below
 		if (bestScore == 0) {
@@ -0,0 +1,524 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.align.pairwise;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import org.jcvi.jillion.align.AminoAcidSubstitutionMatrix;
+import org.jcvi.jillion.align.NucleotideSubstitutionMatrix;
+import org.jcvi.jillion.align.SubstitutionMatrix;
+import org.jcvi.jillion.core.Range;
+import org.jcvi.jillion.core.datastore.DataStore;
+import org.jcvi.jillion.core.datastore.DataStoreEntry;
+import org.jcvi.jillion.core.datastore.DataStoreException;
+import org.jcvi.jillion.core.residue.Residue;
+import org.jcvi.jillion.core.residue.ResidueSequence;
+import org.jcvi.jillion.core.residue.aa.AminoAcid;
+import org.jcvi.jillion.core.residue.aa.ProteinSequence;
+import org.jcvi.jillion.core.residue.nt.Nucleotide;
+import org.jcvi.jillion.core.residue.nt.NucleotideSequence;
+/**
+ * {@code BatchPairwiseAligner} aligns many query sequences
+ * against the same subject sequence.
+ * <p>
+ * Everything about the subject that doesn't depend on the query
+ * is computed only once when the {@link BatchPairwiseAligner} is built:
+ * the ungapped subject, the substitution scores and, for local alignments
+ * whose substitution scores and gap penalties are all whole numbers,
+ * a striped profile of the subject that is used to quickly find
+ * the best score and where the alignment ends
+ * (see {@link PairwiseAlignmentBuilder#useStripedScoring(boolean)}).
+ * The work arrays used to compute those scores are reused by each thread
+ * so aligning each query only has to allocate memory
+ * for the small region that actually aligns.
+ * </p>
+ * <p>
+ * The alignments produced are the same as aligning
+ * each query against the subject using a {@link PairwiseAlignmentBuilder}
+ * with the same settings.  Local alignments that can use the striped profile
+ * are computed like {@link PairwiseAlignmentBuilder#useStripedScoring(boolean)} 
+ * so if there are several different local alignments with the best score, 
+ * a different one of those alignments may be returned; and if affine gap
+ * penalties keep the alignment around the best score from reaching that score,
+ * the whole subject is aligned instead.
+ * </p>
+ * <p>
+ * Instances are thread safe; the alignAll methods align the queries
+ * concurrently on a {@link ForkJoinPool}.
+ * </p>
+ * 
+ * @author dkatzel
+ *
+ * @param <R> the type of {@link Residue} (either {@link Nucleotide} or {@link AminoAcid} ). 
+ * @param <S> the type of {@link org.jcvi.jillion.core.Sequence} (either {@link NucleotideSequence} or {@link ProteinSequence} ).
+ * @param <A> the type of {@link PairwiseSequenceAlignment} to build.
+ * 
+ * @since 5.3
+ */
+public final class BatchPairwiseAligner<R extends Residue, S extends ResidueSequence<R, S, ?>, A extends PairwiseSequenceAlignment<R,S>> {
+
+	private final Aligners<R,S,A> aligners;
+	private final S subject;
+	private final SubstitutionMatrix<R> matrix;
+	private final float gapOpen, gapExtension;
+	private final boolean local;
+	private final Integer bandWidth;
+	private final boolean adaptiveBand;
+	private final ForkJoinPool pool;
+	/**
+	 * The striped profile of the subject, will be null
+	 * if we can't use it for these settings.
+	 */
+	private final StripedSmithWatermanScorer scorer;
+	
+	private final ThreadLocal<StripedSmithWatermanScorer.Scratch> scratch;
+	
+	/**
+	 * Create a new {@link Builder} to align
+	 * many {@link NucleotideSequence}s against the given subject.
+	 * @param subject the subject sequence, any gaps
+	 * in the sequence will be ignored by the alignment; may not be null.
+	 * @param matrix the {@link SubstitutionMatrix}; can not be null.
+	 * @return a new {@link Builder} instance;
+	 * will never be null.
+	 * @throws NullPointerException if any parameters are null.
+	 */
+	public static Builder<Nucleotide, NucleotideSequence, NucleotidePairwiseSequenceAlignment> createNucleotideBatchAlignerBuilder(NucleotideSequence subject, NucleotideSubstitutionMatrix matrix){
+		return new Builder<>(NucleotideAligners.INSTANCE, subject, matrix);
+	}
+	/**
+	 * Create a new {@link Builder} to align
+	 * many {@link ProteinSequence}s against the given subject.
+	 * @param subject the subject sequence, any gaps
+	 * in the sequence will be ignored by the alignment; may not be null.
+	 * @param matrix the {@link SubstitutionMatrix}; can not be null.
+	 * @return a new {@link Builder} instance;
+	 * will never be null.
+	 * @throws NullPointerException if any parameters are null.
+	 */
+	public static Builder<AminoAcid, ProteinSequence, ProteinPairwiseSequenceAlignment> createProteinBatchAlignerBuilder(ProteinSequence subject, AminoAcidSubstitutionMatrix matrix){
+		return new Builder<>(ProteinAligners.INSTANCE, subject, matrix);
+	}
+	
+	private BatchPairwiseAligner(Builder<R,S,A> builder){
+		this.aligners = builder.aligners;
+		this.subject = builder.subject.toBuilder().ungap().build();
+		this.matrix = builder.matrix;
+		this.gapOpen = builder.gapOpen;
+		this.gapExtension = builder.gapExtension;
+		this.local = builder.local;
+		this.bandWidth = builder.bandWidth;
+		this.adaptiveBand = builder.adaptiveBand;
+		this.pool = builder.pool;
+		
+		StripedSmithWatermanScorer profile = null;
+		if(local && subject.getLength() >0){
+			int[][] scores = StripedSmithWatermanScorer.computeScores(matrix, aligners.getStrategy().getResidueList());
+			if(scores !=null){
+				//the subject is the scorer's query
+				//so the scores need to be indexed by subject residue first
+				profile = StripedSmithWatermanScorer.create(
+									AbstractPairwiseAligner.convertToUngappedByteArray(subject),
+									transpose(scores), gapOpen, gapExtension);
+			}
+		}
+		this.scorer = profile;
+		this.scratch = profile ==null ? null : ThreadLocal.withInitial(profile::createScratch);
+	}
+	
+	private static int[][] transpose(int[][] scores){
+		int[][] transposed = new int[scores.length][scores.length];
+		for(int i=0; i< scores.length; i++){
+			for(int j=0; j< scores.length; j++){
+				transposed[j][i] = scores[i][j];
+			}
+		}
+		return transposed;
+	}
+	/**
+	 * Get the ungapped subject sequence that all the queries
+	 * are aligned against.
+	 * @return the subject; will never be null.
+	 */
+	public S getSubject(){
+		return subject;
+	}
+	/**
+	 * Align the given query against the subject
+	 * on the calling thread.
+	 * @param query the query sequence, any gaps
+	 * in the sequence will be ignored by the alignment; may not be null.
+	 * @return a new {@link PairwiseSequenceAlignment}
+	 * instance, will never be null.
+	 * @throws NullPointerException if query is null.
+	 */
+	public A align(S query){
+		if(query ==null){
+			throw new NullPointerException("query can not be null");
+		}
+		if(scorer !=null && query.getUngappedLength() >0){
+			A alignment = alignUsingProfile(query);
+			if(alignment !=null){
+				return alignment;
+			}
+		}
+		PairwiseAlignmentBuilder<R,S,A> builder = aligners.createBuilder(query, subject, matrix)
+															.gapPenalty(gapOpen, gapExtension)
+															.useLocalAlignment(local);
+		if(bandWidth !=null){
+			if(adaptiveBand){
+				builder.adaptiveBandWidth(bandWidth);
+			}else{
+				builder.bandWidth(bandWidth);
+			}
+		}
+		return builder.build();
+	}
+	/**
+	 * Find the best local score using the subject profile
+	 * and only align the region around where it ends.
+	 * @return the alignment or {@code null} if the alignment
+	 * in that region doesn't have the best score so the whole
+	 * subject must be aligned instead.
+	 */
+	private A alignUsingProfile(S query){
+		S ungappedQuery = query.toBuilder().ungap().build();
+		StripedSmithWatermanScorer.LocalScore score = scorer.score(
+														AbstractPairwiseAligner.convertToUngappedByteArray(ungappedQuery), 
+														scratch.get());
+		//if nothing aligns, the best score is in the first cell
+		//which is the same as aligning just the first residues
+		Range queryRegion = Range.of(0, Math.max(0, score.getSubjectEnd()));
+		Range subjectRegion = Range.of(scorer.getMinimumQueryStart(score), Math.max(0, score.getQueryEnd()));
+		
+		A alignment = aligners.alignLocal(ungappedQuery.toBuilder().trim(queryRegion).build(),
+									subject.toBuilder().trim(subjectRegion).build(),
+									matrix, gapOpen, gapExtension, 
+									(int) subjectRegion.getBegin(), bandWidth, adaptiveBand);
+		if(!PairwiseAlignmentBuilder.isStripedWindowOptimal(alignment.getScore(), score)){
+			return null;
+		}
+		return alignment;
+	}
+	/**
+	 * Align all the given queries against the subject
+	 * concurrently and pass the alignments to the given consumer
+	 * in the same order as the queries.
+	 * The consumer is only called by one thread at a time.
+	 * This method blocks until all the queries have been aligned.
+	 * 
+	 * @param queries the query sequences to align; can not be null
+	 * or contain null elements.
+	 * @param consumer the {@link Consumer} to pass each alignment to; can not be null.
+	 * @throws NullPointerException if any parameters are null.
+	 */
+	public void alignAll(Stream<? extends S> queries, Consumer<? super A> consumer){
+		checkNotNull(queries, consumer);
+		invoke(()-> queries.parallel()
+							.map(this::align)
+							.forEachOrdered(consumer));
+	}
+	/**
+	 * Align all the given queries against the subject
+	 * concurrently and pass the alignments to the given consumer
+	 * in the order the alignments finish, which may not be the same
+	 * order as the queries.  The consumer may be called by different threads
+	 * but only one thread at a time.
+	 * This method blocks until all the queries have been aligned.
+	 * 
+	 * @param queries the query sequences to align; can not be null
+	 * or contain null elements.
+	 * @param consumer the {@link Consumer} to pass each alignment to; can not be null.
+	 * @throws NullPointerException if any parameters are null.
+	 */
+	public void alignAllUnordered(Stream<? extends S> queries, Consumer<? super A> consumer){
+		checkNotNull(queries, consumer);
+		Object lock = new Object();
+		invoke(()-> queries.parallel()
+							.unordered()
+							.map(this::align)
+							.forEach(a ->{
+								synchronized(lock){
+									consumer.accept(a);
+								}
+							}));
+	}
+	/**
+	 * Align all the sequences in the given {@link DataStore} against the subject
+	 * concurrently and pass the id of each query and its alignment to the given consumer
+	 * in the same order as the {@link DataStore} iterates over them.
+	 * The consumer is only called by one thread at a time.
+	 * This method blocks until all the queries have been aligned.
+	 * 
+	 * @param queries the {@link DataStore} of query sequences to align; can not be null.
+	 * @param consumer the {@link BiConsumer} to pass each query id and alignment to; can not be null.
+	 * @throws NullPointerException if any parameters are null.
+	 * @throws DataStoreException if there is a problem iterating over the DataStore.
+	 */
+	public void alignAll(DataStore<? extends S> queries, BiConsumer<String, ? super A> consumer) throws DataStoreException{
+		checkNotNull(queries, consumer);
+		try(Stream<? extends DataStoreEntry<? extends S>> entries = queries.entries()){
+			invoke(()-> entries.parallel()
+								.map(this::alignEntry)
+								.forEachOrdered(e -> consumer.accept(e.getKey(), e.getValue())));
+		}
+	}
+	/**
+	 * Align all the sequences in the given {@link DataStore} against the subject
+	 * concurrently and pass the id of each query and its alignment to the given consumer
+	 * in the order the alignments finish.  The consumer may be called by different threads
+	 * but only one thread at a time.
+	 * This method blocks until all the queries have been aligned.
+	 * 
+	 * @param queries the {@link DataStore} of query sequences to align; can not be null.
+	 * @param consumer the {@link BiConsumer} to pass each query id and alignment to; can not be null.
+	 * @throws NullPointerException if any parameters are null.
+	 * @throws DataStoreException if there is a problem iterating over the DataStore.
+	 */
+	public void alignAllUnordered(DataStore<? extends S> queries, BiConsumer<String, ? super A> consumer) throws DataStoreException{
+		checkNotNull(queries, consumer);
+		Object lock = new Object();
+		try(Stream<? extends DataStoreEntry<? extends S>> entries = queries.entries()){
+			invoke(()-> entries.parallel()
+								.unordered()
+								.map(this::alignEntry)
+								.forEach(e ->{
+									synchronized(lock){
+										consumer.accept(e.getKey(), e.getValue());
+									}
+								}));
+		}
+	}
+	
+	private DataStoreEntry<A> alignEntry(DataStoreEntry<? extends S> entry){
+		return new DataStoreEntry<>(entry.getKey(), align(entry.getValue()));
+	}
+	
+	private static void checkNotNull(Object queries, Object consumer){
+		if(queries ==null){
+			throw new NullPointerException("queries can not be null");
+		}
+		if(consumer ==null){
+			throw new NullPointerException("consumer can not be null");
+		}
+	}
+	/**
+	 * Run the given stream pipeline inside our pool
+	 * so the parallel stream tasks are forked onto the pool's threads
+	 * instead of the common pool.
+	 */
+	private void invoke(Runnable pipeline){
+		pool.invoke(ForkJoinTask.adapt(pipeline));
+	}
+	
+	/**
+	 * Builder to configure and create a {@link BatchPairwiseAligner}.
+	 *
+	 * @param <R> the type of {@link Residue} (either {@link Nucleotide} or {@link AminoAcid} ). 
+	 * @param <S> the type of {@link org.jcvi.jillion.core.Sequence} (either {@link NucleotideSequence} or {@link ProteinSequence} ).
+	 * @param <A> the type of {@link PairwiseSequenceAlignment} to build.
+	 * 
+	 * @since 5.3
+	 */
+	public static final class Builder<R extends Residue, S extends ResidueSequence<R, S, ?>, A extends PairwiseSequenceAlignment<R,S>>{
+		private final Aligners<R,S,A> aligners;
+		private final S subject;
+		private final SubstitutionMatrix<R> matrix;
+		private float gapOpen=0;
+		private float gapExtension =0;
+		
+		private boolean local=true;
+		
+		private Integer bandWidth;
+		private boolean adaptiveBand;
+		
+		private ForkJoinPool pool = ForkJoinPool.commonPool();
+		
+		private Builder(Aligners<R,S,A> aligners, S subject, SubstitutionMatrix<R> matrix){
+			if(subject==null){
+				throw new NullPointerException("subject can not be null");
+			}
+			if(matrix==null){
+				throw new NullPointerException("matrix can not be null");
+			}
+			this.aligners = aligners;
+			this.subject = subject;
+			this.matrix = matrix;
+		}
+		/**
+		 * Set the gap penalty without an extension penalty,
+		 * this is the same as calling {@link #gapPenalty(float, float) gapPenalty(open, 0)}.
+		 * @param open the penalty score for creating a new gap; usually a negative number.
+		 * @return this
+		 * @see #gapPenalty(float, float)
+		 */
+		public Builder<R,S,A> gapPenalty(float open){
+			return gapPenalty(open, 0);
+		}
+		/**
+		 * Set the gap open and extension penalties.
+		 * @param open the penalty score for creating a new gap; usually a negative number.
+		 * @param extension the penalty score for extending an already open gap; usually a negative number.
+		 * @return this
+		 */
+		public Builder<R,S,A> gapPenalty(float open, float extension){
+			this.gapOpen = open;
+			this.gapExtension = extension;
+			return this;
+		}
+		/**
+		 * Perform global alignments (Needleman-Wunsch)
+		 * of each query against the subject.
+		 * @return this
+		 */
+		public Builder<R,S,A> useGlobalAlignment(){
+			local = false;
+			return this;
+		}
+		/**
+		 * Perform local alignments (Smith-Waterman)
+		 * of each query against the subject.
+		 * This is the default.
+		 * @return this
+		 */
+		public Builder<R,S,A> useLocalAlignment(){
+			local = true;
+			return this;
+		}
+		/**
+		 * Only compute the alignment matrix cells
+		 * within the given number of diagonals,
+		 * see {@link PairwiseAlignmentBuilder#bandWidth(int)}.
+		 * @param bandWidth the band width; must be &ge; 0.
+		 * @return this
+		 * @throws IllegalArgumentException if bandWidth is negative.
+		 */
+		public Builder<R,S,A> bandWidth(int bandWidth){
+			if(bandWidth <0){
+				throw new IllegalArgumentException("band width can not be negative");
+			}
+			this.bandWidth = bandWidth;
+			this.adaptiveBand = false;
+			return this;
+		}
+		/**
+		 * Start with the given band width and keep widening it
+		 * until the alignment can't get any better,
+		 * see {@link PairwiseAlignmentBuilder#adaptiveBandWidth(int)}.
+		 * @param initialBandWidth the initial band width; must be &ge; 0.
+		 * @return this
+		 * @throws IllegalArgumentException if initialBandWidth is negative.
+		 */
+		public Builder<R,S,A> adaptiveBandWidth(int initialBandWidth){
+			bandWidth(initialBandWidth);
+			this.adaptiveBand = true;
+			return this;
+		}
+		/**
+		 * Use the given {@link ForkJoinPool} to align
+		 * the queries concurrently.  If not set,
+		 * then {@link ForkJoinPool#commonPool()} is used.
+		 * @param pool the {@link ForkJoinPool} to use; can not be null.
+		 * @return this
+		 * @throws NullPointerException if pool is null.
+		 */
+		public Builder<R,S,A> pool(ForkJoinPool pool){
+			if(pool ==null){
+				throw new NullPointerException("pool can not be null");
+			}
+			this.pool = pool;
+			return this;
+		}
+		/**
+		 * Create a new {@link BatchPairwiseAligner}
+		 * using the current settings. 
+		 * This method may be computationally expensive
+		 * if the subject is long.
+		 * @return a new {@link BatchPairwiseAligner}; will never be null.
+		 */
+		public BatchPairwiseAligner<R,S,A> build(){
+			return new BatchPairwiseAligner<>(this);
+		}
+	}
+	/**
+	 * The parts that have to know which kind of sequence
+	 * is being aligned.
+	 */
+	private interface Aligners<R extends Residue, S extends ResidueSequence<R, S, ?>, A extends PairwiseSequenceAlignment<R,S>>{
+		
+		ResiduePairwiseStrategy<R, ?, ?, ?, ?> getStrategy();
+		
+		PairwiseAlignmentBuilder<R,S,A> createBuilder(S query, S subject, SubstitutionMatrix<R> matrix);
+		
+		A alignLocal(S query, S subject, SubstitutionMatrix<R> matrix, float gapOpen, float gapExtension,
+				int subjectShift, Integer bandWidth, boolean adaptiveBand);
+	}
+	
+	private enum NucleotideAligners implements Aligners<Nucleotide, NucleotideSequence, NucleotidePairwiseSequenceAlignment>{
+		INSTANCE;
+
+		@Override
+		public ResiduePairwiseStrategy<Nucleotide, ?, ?, ?, ?> getStrategy() {
+			return ResiduePairwiseStrategy.getNucleotideStrategy();
+		}
+
+		@Override
+		public PairwiseAlignmentBuilder<Nucleotide, NucleotideSequence, NucleotidePairwiseSequenceAlignment> createBuilder(
+				NucleotideSequence query, NucleotideSequence subject, SubstitutionMatrix<Nucleotide> matrix) {
+			return PairwiseAlignmentBuilder.createNucleotideAlignmentBuilder(query, subject, (NucleotideSubstitutionMatrix) matrix);
+		}
+
+		@Override
+		public NucleotidePairwiseSequenceAlignment alignLocal(NucleotideSequence query, NucleotideSequence subject,
+				SubstitutionMatrix<Nucleotide> matrix, float gapOpen, float gapExtension, int subjectShift,
+				Integer bandWidth, boolean adaptiveBand) {
+			return NucleotideSmithWatermanAligner.align(query, subject, (NucleotideSubstitutionMatrix) matrix, 
+					gapOpen, gapExtension, subjectShift, bandWidth, adaptiveBand);
+		}
+	}
+	
+	private enum ProteinAligners implements Aligners<AminoAcid, ProteinSequence, ProteinPairwiseSequenceAlignment>{
+		INSTANCE;
+
+		@Override
+		public ResiduePairwiseStrategy<AminoAcid, ?, ?, ?, ?> getStrategy() {
+			return ResiduePairwiseStrategy.getAminoAcidStrategy();
+		}
+
+		@Override
+		public PairwiseAlignmentBuilder<AminoAcid, ProteinSequence, ProteinPairwiseSequenceAlignment> createBuilder(
+				ProteinSequence query, ProteinSequence subject, SubstitutionMatrix<AminoAcid> matrix) {
+			return PairwiseAlignmentBuilder.createProtienAlignmentBuilder(query, subject, (AminoAcidSubstitutionMatrix) matrix);
+		}
+
+		@Override
+		public ProteinPairwiseSequenceAlignment alignLocal(ProteinSequence query, ProteinSequence subject,
+				SubstitutionMatrix<AminoAcid> matrix, float gapOpen, float gapExtension, int subjectShift,
+				Integer bandWidth, boolean adaptiveBand) {
+			return ProteinSmithWatermanAligner.align(query, subject, (AminoAcidSubstitutionMatrix) matrix, 
+					gapOpen, gapExtension, subjectShift, bandWidth, adaptiveBand);
+		}
+	}
+}
@@ -0,0 +1,348 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.align.pairwise;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.jcvi.jillion.align.SequenceAlignment;
+import org.jcvi.jillion.align.SubstitutionMatrix;
+import org.jcvi.jillion.core.residue.Residue;
+import org.jcvi.jillion.core.residue.ResidueSequence;
+import org.jcvi.jillion.core.residue.ResidueSequenceBuilder;
+import org.jcvi.jillion.internal.align.SequenceAlignmentBuilder;
+/**
+ * {@code LinearSpaceGlobalAligner} computes an optimal
+ * global alignment with affine gap penalties using memory linear
+ * in the length of the subject sequence.  Instead of keeping
+ * a traceback matrix, the query is recursively split in half
+ * and the subject position where the optimal alignment crosses the split
+ * is found by computing the scores of the top half forwards
+ * and the bottom half backwards.  This takes about twice as long
+ * as computing the full matrix but can align sequences that are
+ * much too long to fit a full traceback matrix in memory.
+ * <p>
+ * Unlike {@link AbstractNeedlemanWunschAligner}, leading and trailing
+ * gaps in either sequence are always penalized.
+ * </p>
+ * @author dkatzel
+ *
+ * @param <R> the type of {@link Residue} used in this aligner.
+ * @param <S> the {@link org.jcvi.jillion.core.Sequence} type input into this aligner.
+ * @param <A> the {@link SequenceAlignment} type returned by this aligner.
+ * @param <P> the {@link PairwiseSequenceAlignment} type returned by this aligner.
+ * 
+ * @see <a href="http://dx.doi.org/10.1093/bioinformatics/4.1.11">
+ Myers, E.W. and Miller, W. 1988. Optimal alignments in linear space.
+ Computer Applications in the Biosciences 4:11-17.</a>
+ * 
+ * @since 5.3
+ */
+final class LinearSpaceGlobalAligner<R extends Residue, S extends ResidueSequence<R, S, B>, B extends ResidueSequenceBuilder<R, S>, A extends SequenceAlignment<R, S>, P extends PairwiseSequenceAlignment<R, S>> {
+
+	private static final byte DIAGNOL = 0;
+	/**
+	 * Gap in the subject.
+	 */
+	private static final byte VERTICAL = 1;
+	/**
+	 * Gap in the query.
+	 */
+	private static final byte HORIZONTAL = 2;
+	
+	private final byte[] query, subject;
+	private final float[][] scores;
+	/**
+	 * Extra penalty for opening a gap on top of
+	 * the extension penalty that every gapped residue gets.
+	 */
+	private final float gapOpen;
+	private final float gapExtend;
+	/**
+	 * Forward and reverse score rows, reused
+	 * by every level of recursion.
+	 */
+	private final float[] forwardScores, forwardDeletions, reverseScores, reverseDeletions;
+	
+	private byte[] operations;
+	private int numberOfOperations;
+	
+	/**
+	 * Align the given two sequences using the given
+	 * {@link SubstitutionMatrix} using a global alignment
+	 * that only uses linear memory.
+	 * @param query the query sequence to align, gaps are ignored;
+	 * can not be null.
+	 * @param subject the subject sequence to align, gaps are ignored;
+	 * can not be null.
+	 * @param matrix the {@link SubstitutionMatrix} to use; can not be null.
+	 * @param openGapPenalty the penalty value for opening a gap.
+	 * @param extendGapPenalty the penalty for extending an already open gap.
+	 * @param pairwiseStrategy the {@link ResiduePairwiseStrategy} for the sequence type.
+	 * @return a new {@link PairwiseSequenceAlignment}; will never be null.
+	 * @throws NullPointerException if query, subject or matrix are null.
+	 */
+	static <R extends Residue, S extends ResidueSequence<R, S, B>, B extends ResidueSequenceBuilder<R, S>, A extends SequenceAlignment<R, S>, P extends PairwiseSequenceAlignment<R, S>> P align(
+			S query, S subject, SubstitutionMatrix<R> matrix, 
+			float openGapPenalty, float extendGapPenalty,
+			ResiduePairwiseStrategy<R,S,B,A,P> pairwiseStrategy){
+		if(query ==null){
+			throw new NullPointerException("query sequence can not be null");
+		}
+		if(subject ==null){
+			throw new NullPointerException("subject sequence can not be null");
+		}
+		if(matrix ==null){
+			throw new NullPointerException("scoring matrix can not be null");
+		}
+		LinearSpaceGlobalAligner<R,S,B,A,P> aligner = new LinearSpaceGlobalAligner<>(
+				AbstractPairwiseAligner.convertToUngappedByteArray(query),
+				AbstractPairwiseAligner.convertToUngappedByteArray(subject),
+				matrix, openGapPenalty, extendGapPenalty, pairwiseStrategy.getResidueList());
+		
+		return aligner.buildAlignment(pairwiseStrategy, matrix, openGapPenalty, extendGapPenalty);
+	}
+	
+	private LinearSpaceGlobalAligner(byte[] query, byte[] subject, SubstitutionMatrix<R> matrix,
+			float openGapPenalty, float extendGapPenalty, List<R> residuesByOrdinal){
+		this.query = query;
+		this.subject = subject;
+		this.gapOpen = openGapPenalty - extendGapPenalty;
+		this.gapExtend = extendGapPenalty;
+		
+		int numberOfResidues = residuesByOrdinal.size();
+		scores = new float[numberOfResidues][numberOfResidues];
+		for(int i=0; i< numberOfResidues; i++){
+			for(int j=0; j< numberOfResidues; j++){
+				scores[i][j] = matrix.getValue(residuesByOrdinal.get(i), residuesByOrdinal.get(j));
+			}
+		}
+		int rowLength = subject.length+1;
+		forwardScores = new float[rowLength];
+		forwardDeletions = new float[rowLength];
+		reverseScores = new float[rowLength];
+		reverseDeletions = new float[rowLength];
+		
+		operations = new byte[Math.max(16, query.length + subject.length)];
+		
+		align(0, query.length, 0, subject.length, gapOpen, gapOpen);
+	}
+	
+	private float gapScore(int length){
+		return length==0? 0 : gapOpen + length * gapExtend;
+	}
+	
+	private float score(int queryOffset, int subjectOffset){
+		return scores[query[queryOffset]][subject[subjectOffset]];
+	}
+	/**
+	 * Align the given portions of the query and subject.
+	 * @param gapOpenAtBeginning the gap open score of a subject gap 
+	 * at the beginning of this portion; will be 0 if the gap
+	 * continues a gap that has already been opened.
+	 * @param gapOpenAtEnd the gap open score of a subject gap 
+	 * at the end of this portion; will be 0 if the gap
+	 * continues on past this portion.
+	 */
+	private void align(int queryStart, int queryEnd, int subjectStart, int subjectEnd,
+			float gapOpenAtBeginning, float gapOpenAtEnd){
+		int queryLength = queryEnd - queryStart;
+		int subjectLength = subjectEnd - subjectStart;
+		if(subjectLength ==0){
+			add(VERTICAL, queryLength);
+			return;
+		}
+		if(queryLength ==0){
+			add(HORIZONTAL, subjectLength);
+			return;
+		}
+		if(queryLength ==1){
+			alignSingleQueryResidue(queryStart, subjectStart, subjectLength, gapOpenAtBeginning, gapOpenAtEnd);
+			return;
+		}
+		int queryMid = queryStart + queryLength/2;
+		computeScores(queryStart, queryMid, subjectStart, subjectEnd, gapOpenAtBeginning, false,
+				forwardScores, forwardDeletions);
+		computeScores(queryMid, queryEnd, subjectStart, subjectEnd, gapOpenAtEnd, true,
+				reverseScores, reverseDeletions);
+		
+		int bestSplit=0;
+		boolean bestSplitsGap=false;
+		float bestScore = Float.NEGATIVE_INFINITY;
+		for(int j=0; j<= subjectLength; j++){
+			float score = forwardScores[j] + reverseScores[subjectLength -j];
+			if(score > bestScore){
+				bestScore = score;
+				bestSplit = j;
+				bestSplitsGap = false;
+			}
+			//a subject gap that crosses the split only gets opened once
+			float gapScore = forwardDeletions[j] + reverseDeletions[subjectLength -j] - gapOpen;
+			if(gapScore > bestScore){
+				bestScore = gapScore;
+				bestSplit = j;
+				bestSplitsGap = true;
+			}
+		}
+		int subjectMid = subjectStart + bestSplit;
+		if(bestSplitsGap){
+			align(queryStart, queryMid-1, subjectStart, subjectMid, gapOpenAtBeginning, 0);
+			add(VERTICAL, 2);
+			align(queryMid+1, queryEnd, subjectMid, subjectEnd, 0, gapOpenAtEnd);
+		}else{
+			align(queryStart, queryMid, subjectStart, subjectMid, gapOpenAtBeginning, gapOpen);
+			align(queryMid, queryEnd, subjectMid, subjectEnd, gapOpen, gapOpenAtEnd);
+		}
+	}
+	
+	private void alignSingleQueryResidue(int queryOffset, int subjectStart, int subjectLength,
+			float gapOpenAtBeginning, float gapOpenAtEnd){
+		//either gap the query residue and the entire subject
+		float bestScore = Math.max(gapOpenAtBeginning, gapOpenAtEnd) + gapExtend + gapScore(subjectLength);
+		int bestMatch = -1;
+		//or align the query residue to one of the subject residues
+		for(int j=0; j< subjectLength; j++){
+			float score = gapScore(j) + score(queryOffset, subjectStart +j) + gapScore(subjectLength -j -1);
+			if(score > bestScore){
+				bestScore = score;
+				bestMatch = j;
+			}
+		}
+		if(bestMatch <0){
+			//put the subject gap on the side where it continues an existing gap
+			if(gapOpenAtBeginning >= gapOpenAtEnd){
+				add(VERTICAL, 1);
+				add(HORIZONTAL, subjectLength);
+			}else{
+				add(HORIZONTAL, subjectLength);
+				add(VERTICAL, 1);
+			}
+		}else{
+			add(HORIZONTAL, bestMatch);
+			add(DIAGNOL, 1);
+			add(HORIZONTAL, subjectLength - bestMatch -1);
+		}
+	}
+	/**
+	 * Compute the last row of the Gotoh score matrix
+	 * for the given portions of the query and subject.
+	 * @param reverse if {@code true} then align the sequences
+	 * from the end backwards; so {@code alignmentScores[j]} is the score of
+	 * aligning the query to the last {@code j} residues of the subject portion.
+	 * @param alignmentScores the best score of each cell in the last row.
+	 * @param deletionScores the best score of each cell in the last row
+	 * that ends in a subject gap.
+	 */
+	private void computeScores(int queryStart, int queryEnd, int subjectStart, int subjectEnd,
+			float gapOpenAtBeginning, boolean reverse,
+			float[] alignmentScores, float[] deletionScores){
+		int queryLength = queryEnd - queryStart;
+		int subjectLength = subjectEnd - subjectStart;
+		
+		alignmentScores[0] = 0;
+		float t = gapOpen;
+		for(int j=1; j<= subjectLength; j++){
+			t += gapExtend;
+			alignmentScores[j] = t;
+		}
+		Arrays.fill(deletionScores, 0, subjectLength+1, Float.NEGATIVE_INFINITY);
+		
+		t = gapOpenAtBeginning;
+		for(int i=1; i<= queryLength; i++){
+			float[] queryScores = scores[query[reverse ? queryEnd - i : queryStart + i -1]];
+			float diagnol = alignmentScores[0];
+			t += gapExtend;
+			float current = t;
+			alignmentScores[0] = current;
+			float insertion = Float.NEGATIVE_INFINITY;
+			int subjectOffset = reverse ? subjectEnd -1 : subjectStart;
+			int subjectStep = reverse ? -1 : 1;
+			for(int j=1; j<= subjectLength; j++, subjectOffset+=subjectStep){
+				//plain comparisons instead of Math.max since we
+				//don't care about NaN or negative zero and this is the hot loop
+				float openInsertion = current + gapOpen;
+				insertion = (insertion > openInsertion ? insertion : openInsertion) + gapExtend;
+				float previousRowScore = alignmentScores[j];
+				float openDeletion = previousRowScore + gapOpen;
+				float deletion = deletionScores[j];
+				deletion = (deletion > openDeletion ? deletion : openDeletion) + gapExtend;
+				deletionScores[j] = deletion;
+				current = diagnol + queryScores[subject[subjectOffset]];
+				if(deletion > current){
+					current = deletion;
+				}
+				if(insertion > current){
+					current = insertion;
+				}
+				diagnol = previousRowScore;
+				alignmentScores[j] = current;
+			}
+		}
+		//the first column is all one subject gap
+		deletionScores[0] = alignmentScores[0];
+	}
+	
+	private void add(byte operation, int count){
+		if(numberOfOperations + count > operations.length){
+			operations = Arrays.copyOf(operations, Math.max(numberOfOperations + count, operations.length*2));
+		}
+		Arrays.fill(operations, numberOfOperations, numberOfOperations+count, operation);
+		numberOfOperations +=count;
+	}
+	
+	private P buildAlignment(ResiduePairwiseStrategy<R,S,B,A,P> pairwiseStrategy, SubstitutionMatrix<R> matrix,
+			float openGapPenalty, float extendGapPenalty){
+		SequenceAlignmentBuilder<R,S,B,A> alignmentBuilder = pairwiseStrategy.createSequenceAlignmentBuilder(false, null);
+		R gap =  pairwiseStrategy.getGap();
+		List<R> residuesByOrdinal = pairwiseStrategy.getResidueList();
+		int x=0, y=0;
+		float score=0;
+		byte previousOperation = DIAGNOL;
+		for(int i=0; i< numberOfOperations; i++){
+			byte operation = operations[i];
+			switch(operation){
+				case VERTICAL :
+					alignmentBuilder.addGap(residuesByOrdinal.get(query[x]), gap);
+					score += previousOperation == VERTICAL ? extendGapPenalty : openGapPenalty;
+					x++;
+					break;
+				case HORIZONTAL :
+					alignmentBuilder.addGap(gap,residuesByOrdinal.get(subject[y]));
+					score += previousOperation == HORIZONTAL ? extendGapPenalty : openGapPenalty;
+					y++;
+					break;
+				default:
+					R queryResidue = residuesByOrdinal.get(query[x]);
+					if(query[x] == subject[y]){
+						alignmentBuilder.addMatch(queryResidue);
+					}else{
+						alignmentBuilder.addMismatch(queryResidue, residuesByOrdinal.get(subject[y]));
+					}
+					score += matrix.getValue(queryResidue, residuesByOrdinal.get(subject[y]));
+					x++;
+					y++;
+					break;
+			}
+			previousOperation = operation;
+		}
+		return pairwiseStrategy.wrapPairwiseAlignment(PairwiseSequenceAlignmentWrapper.wrap(alignmentBuilder.build(), score));
+	}
+}
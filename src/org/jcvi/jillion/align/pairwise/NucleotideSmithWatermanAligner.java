@@ -66,20 +66,53 @@ final class NucleotideSmithWatermanAligner extends AbstractSmithWatermanAligner<
 	public static NucleotidePairwiseSequenceAlignment align(NucleotideSequence query,
 			NucleotideSequence subject, SubstitutionMatrix<Nucleotide> matrix,
 			float openGapPenalty, float extendGapPenalty, Integer subjectShiftAmount){
-		NucleotideSmithWatermanAligner aligner = new NucleotideSmithWatermanAligner(query, subject, matrix, openGapPenalty, extendGapPenalty, subjectShiftAmount);
-		return aligner.getPairwiseSequenceAlignment();
+		return align(query, subject, matrix, openGapPenalty, extendGapPenalty, subjectShiftAmount, null, false);
 				
 		}
 	
-	
+	/**
+	 * Align the given two {@link NucleotideSequence}s
+	 * using the given {@link SubstitutionMatrix} by the Smith-Waterman
+	 * local alignment algorithm but only computing the cells
+	 * of the matrix within the given band of diagonals.
+	 * @param query the query {@link NucleotideSequence} to align;
+	 * can not be null.
+	 * @param subject the subject {@link NucleotideSequence} to align;
+	 * can not be null.
+	 * @param matrix the {@link SubstitutionMatrix} to use; can not be null.
+	 * @param openGapPenalty the penalty value for opening a gap.
+	 * @param extendGapPenalty the penalty for extending an already open gap.
+	 * @param subjectShiftAmount the number of bases to shift the subject
+	 * coordinates in the returned alignment; may be null.
+	 * @param bandWidth the number of diagonals on either side of the diagonals
+	 * connecting the start and end of both sequences to compute;
+	 * if {@code null} then the whole matrix is computed.
+	 * @param adaptiveBand if {@code true} then keep doubling the band width
+	 * until the alignment no longer touches the edge of the band
+	 * and stops improving.
+	 * @return a new {@link NucleotidePairwiseSequenceAlignment} instance;
+	 * representing the local alignment, will never be null.
+	 * @throws NullPointerException if query, subject or matrix are null.
+	 * @throws IllegalArgumentException if bandWidth is negative.
+	 * 
+	 * @since 5.3
+	 */
+	public static NucleotidePairwiseSequenceAlignment align(NucleotideSequence query,
+			NucleotideSequence subject, SubstitutionMatrix<Nucleotide> matrix,
+			float openGapPenalty, float extendGapPenalty, Integer subjectShiftAmount,
+			Integer bandWidth, boolean adaptiveBand){
+		NucleotideSmithWatermanAligner aligner = new NucleotideSmithWatermanAligner(query, subject, matrix, openGapPenalty, extendGapPenalty, subjectShiftAmount, bandWidth, adaptiveBand);
+		return aligner.getPairwiseSequenceAlignment();
+	}
 
 
 
     private NucleotideSmithWatermanAligner(NucleotideSequence seq1,
 			NucleotideSequence seq2, SubstitutionMatrix<Nucleotide> matrix,
-			float openGapPenalty, float extendGapPenalty, Integer subjectShiftAmount) {
+			float openGapPenalty, float extendGapPenalty, Integer subjectShiftAmount,
+			Integer bandWidth, boolean adaptiveBand) {
 		super(seq1, seq2, matrix, openGapPenalty, extendGapPenalty,
-				ResiduePairwiseStrategy.getNucleotideStrategy(), subjectShiftAmount);
+				ResiduePairwiseStrategy.getNucleotideStrategy(), subjectShiftAmount, bandWidth, adaptiveBand);
 	}
 	
 
@@ -55,6 +55,11 @@ public final class PairwiseAlignmentBuilder<R extends Residue, S extends Residue
 	private float gapExtension =0;
 	
 	private boolean local=true;
+	
+	private Integer bandWidth;
+	private boolean adaptiveBand;
+	private boolean linearMemory;
+	private boolean stripedScoring;
 	/**
 	 * Create a new PairwiseAlignmentBuilder to align
 	 * 2 {@link NucleotideSequence}s.
@@ -146,12 +151,117 @@ public final class PairwiseAlignmentBuilder<R extends Residue, S extends Residue
 		local=true;
 		return this;
 	}
+	/**
+	 * Only compute the cells of the alignment matrix
+	 * that are within the given number of diagonals of the diagonals
+	 * connecting the beginnings and ends of both sequences.
+	 * This uses time and memory proportional to
+	 * the length of the query times the band width instead of the
+	 * query length times the subject length.
+	 * If the sequences are very similar, a narrow
+	 * band will produce the same alignment as computing the full matrix;
+	 * but if the best alignment needs to go outside the band,
+	 * only the best alignment inside the band is found.
+	 * 
+	 * @param bandWidth the number of diagonals on either side to compute;
+	 * can not be negative.
+	 * @return this.
+	 * @throws IllegalArgumentException if bandWidth is negative.
+	 * 
+	 * @see #adaptiveBandWidth(int)
+	 * @since 5.3
+	 */
+	public PairwiseAlignmentBuilder<R,S,A> bandWidth(int bandWidth){
+		checkBandWidth(bandWidth);
+		this.bandWidth = bandWidth;
+		this.adaptiveBand = false;
+		return this;
+	}
+	/**
+	 * Only compute the cells of the alignment matrix
+	 * that are within a band of diagonals like {@link #bandWidth(int)}
+	 * but keep doubling the band width and recomputing the alignment
+	 * while the best alignment touches the edge of the band
+	 * or the wider band finds a better alignment.
+	 * This will find the same alignment as computing the full matrix
+	 * unless a better alignment exists that is far
+	 * outside of the band where the search stopped.
+	 * 
+	 * @param initialBandWidth the number of diagonals on either side
+	 * to compute in the first attempt; can not be negative.
+	 * @return this.
+	 * @throws IllegalArgumentException if initialBandWidth is negative.
+	 * 
+	 * @see #bandWidth(int)
+	 * @since 5.3
+	 */
+	public PairwiseAlignmentBuilder<R,S,A> adaptiveBandWidth(int initialBandWidth){
+		checkBandWidth(initialBandWidth);
+		this.bandWidth = initialBandWidth;
+		this.adaptiveBand = true;
+		return this;
+	}
+	
+	private static void checkBandWidth(int bandWidth){
+		if(bandWidth <0){
+			throw new IllegalArgumentException("band width can not be negative : " + bandWidth);
+		}
+	}
+	/**
+	 * Compute global alignments using memory proportional
+	 * to the length of the subject instead of keeping the entire
+	 * traceback matrix in memory.  This takes about twice as long
+	 * but allows very long sequences to be aligned.
+	 * The alignment found is the optimal alignment 
+	 * using affine gap penalties, where
+	 * leading and trailing gaps in both sequences are penalized.
+	 * This option has no effect on local alignments
+	 * and can not be combined with a band width.
+	 * 
+	 * @param linearMemory {@code true} if global alignments should
+	 * use linear memory; {@code false} otherwise.  The default is {@code false}.
+	 * @return this.
+	 * 
+	 * @since 5.3
+	 */
+	public PairwiseAlignmentBuilder<R,S,A> useLinearMemory(boolean linearMemory){
+		this.linearMemory = linearMemory;
+		return this;
+	}
+	/**
+	 * Compute local alignments by first finding only the best
+	 * score and where the alignment ends using a fast
+	 * striped score-only algorithm that doesn't keep a traceback,
+	 * and then computing the actual alignment over only the part
+	 * of the subject that could be in the best alignment.
+	 * This is much faster when aligning short queries
+	 * against long subjects, but will only be used
+	 * if the substitution matrix scores and gap penalties are
+	 * all whole numbers; otherwise the normal algorithm is used.
+	 * If affine gap penalties keep the alignment over that part of the subject
+	 * from reaching the best score, then the whole subject is aligned
+	 * with the normal algorithm instead, so this option never produces a
+	 * lower scoring alignment.
+	 * This option has no effect on global alignments.
+	 * 
+	 * @param stripedScoring {@code true} if local alignments should
+	 * use striped scoring; {@code false} otherwise.  The default is {@code false}.
+	 * @return this.
+	 * 
+	 * @since 5.3
+	 */
+	public PairwiseAlignmentBuilder<R,S,A> useStripedScoring(boolean stripedScoring){
+		this.stripedScoring = stripedScoring;
+		return this;
+	}
 	/**
 	 * Compute the actual pairwise alignment.
 	 * This method may be computationally expensive
 	 * if the sequences are long.
 	 * @return a new {@link PairwiseSequenceAlignment}
 	 * instance, will never be null.
+	 * @throws IllegalStateException if a global alignment
+	 * is set to use both linear memory and a band width.
 	 */
 	@SuppressWarnings("unchecked")
 	public A build(){
@@ -159,19 +269,92 @@ public final class PairwiseAlignmentBuilder<R extends Residue, S extends Residue
 		//or a NucleotideSequence so these casts should all be safe.
 		//The casts are so the user's interface is clean
 		//all ugliness is hidden here
-		
+		if(!local && linearMemory){
+			if(bandWidth !=null){
+				throw new IllegalStateException("linear memory global alignments can not be banded");
+			}
+			if(query instanceof NucleotideSequence){
+				return (A) LinearSpaceGlobalAligner.align((NucleotideSequence)query, (NucleotideSequence)subject, (NucleotideSubstitutionMatrix)matrix, gapOpen, gapExtension,
+											ResiduePairwiseStrategy.getNucleotideStrategy());
+			}
+			return (A) LinearSpaceGlobalAligner.align((ProteinSequence)query, (ProteinSequence)subject, (AminoAcidSubstitutionMatrix)matrix, gapOpen, gapExtension,
+											ResiduePairwiseStrategy.getAminoAcidStrategy());
+		}
+		if(local && stripedScoring){
+			A alignment = buildUsingStripedScoring();
+			if(alignment !=null){
+				return alignment;
+			}
+		}
 		if(query instanceof NucleotideSequence){
 			if(local){
-				 return (A)NucleotideSmithWatermanAligner.align((NucleotideSequence)query, (NucleotideSequence)subject, (NucleotideSubstitutionMatrix)matrix, gapOpen, gapExtension);
+				 return (A)NucleotideSmithWatermanAligner.align((NucleotideSequence)query, (NucleotideSequence)subject, (NucleotideSubstitutionMatrix)matrix, gapOpen, gapExtension, null, bandWidth, adaptiveBand);
 			}
-			return (A) NucleotideNeedlemanWunschAligner.align((NucleotideSequence)query, (NucleotideSequence)subject, (NucleotideSubstitutionMatrix)matrix, gapOpen, gapExtension);
+			return (A) NucleotideNeedlemanWunschAligner.align((NucleotideSequence)query, (NucleotideSequence)subject, (NucleotideSubstitutionMatrix)matrix, gapOpen, gapExtension, bandWidth, adaptiveBand);
 		}
 		if(local){
-			 return (A) ProteinSmithWatermanAligner.align((ProteinSequence)query, (ProteinSequence)subject, (AminoAcidSubstitutionMatrix)matrix, gapOpen, gapExtension);
+			 return (A) ProteinSmithWatermanAligner.align((ProteinSequence)query, (ProteinSequence)subject, (AminoAcidSubstitutionMatrix)matrix, gapOpen, gapExtension, null, bandWidth, adaptiveBand);
 		}
-		return (A) ProteinNeedlemanWunschAligner.align((ProteinSequence)query, (ProteinSequence)subject, (AminoAcidSubstitutionMatrix)matrix, gapOpen, gapExtension);
+		return (A) ProteinNeedlemanWunschAligner.align((ProteinSequence)query, (ProteinSequence)subject, (AminoAcidSubstitutionMatrix)matrix, gapOpen, gapExtension, bandWidth, adaptiveBand);
 
 	}
+	/**
+	 * Find the best local score and only align the
+	 * region around where it ends.
+	 * @return the alignment or {@code null} if striped scoring
+	 * can not be used or nothing aligned.
+	 */
+	@SuppressWarnings("unchecked")
+	private A buildUsingStripedScoring(){
+		ResiduePairwiseStrategy<R, ?, ?, ?, ?> strategy = (ResiduePairwiseStrategy<R, ?, ?, ?, ?>)(query instanceof NucleotideSequence 
+																? ResiduePairwiseStrategy.getNucleotideStrategy()
+																: ResiduePairwiseStrategy.getAminoAcidStrategy());
+		StripedSmithWatermanScorer scorer = StripedSmithWatermanScorer.create(
+												AbstractPairwiseAligner.convertToUngappedByteArray(query), 
+												matrix, strategy.getResidueList(), gapOpen, gapExtension);
+		if(scorer ==null){
+			return null;
+		}
+		StripedSmithWatermanScorer.LocalScore score = scorer.score(AbstractPairwiseAligner.convertToUngappedByteArray(subject));
+		if(score.getScore() ==0){
+			//let the normal aligner decide what an empty alignment looks like
+			return null;
+		}
+		Range queryRegion = Range.of(0, score.getQueryEnd());
+		Range subjectRegion = Range.of(scorer.getMinimumSubjectStart(score), score.getSubjectEnd());
+		int subjectShift = (int) subjectRegion.getBegin();
+		A alignment;
+		if(query instanceof NucleotideSequence){
+			alignment = (A) NucleotideSmithWatermanAligner.align(
+					((NucleotideSequence)query).toBuilder().ungap().trim(queryRegion).build(), 
+					((NucleotideSequence)subject).toBuilder().ungap().trim(subjectRegion).build(), 
+					(NucleotideSubstitutionMatrix)matrix, gapOpen, gapExtension, subjectShift, bandWidth, adaptiveBand);
+		}else{
+			alignment = (A) ProteinSmithWatermanAligner.align(
+				((ProteinSequence)query).toBuilder().ungap().trim(queryRegion).build(), 
+				((ProteinSequence)subject).toBuilder().ungap().trim(subjectRegion).build(), 
+				(AminoAcidSubstitutionMatrix)matrix, gapOpen, gapExtension, subjectShift, bandWidth, adaptiveBand);
+		}
+		if(!isStripedWindowOptimal(alignment.getScore(), score)){
+			return null;
+		}
+		return alignment;
+	}
+	/**
+	 * The full matrix aligners only approximate affine gaps
+	 * so with affine gaps the best alignment in the window
+	 * may not be the one the full matrix would find over the whole subject.
+	 * The window can only be trusted if the alignment in it has
+	 * the optimal score found by the striped scorer.
+	 * 
+	 * @param windowScore the score of the alignment over the window.
+	 * @param score the striped score over the whole subject.
+	 * @return {@code true} if the window's alignment can be used; {@code false}
+	 * if the whole subject must be aligned instead.
+	 */
+	static boolean isStripedWindowOptimal(float windowScore, StripedSmithWatermanScorer.LocalScore score){
+		return windowScore == score.getScore();
+	}
 	/**
          * Find several alignments.  If this Builder is configured to
          * use local alignments then this method will try to find several alignments by
@@ -204,7 +387,7 @@ public final class PairwiseAlignmentBuilder<R extends Residue, S extends Residue
 	        return;
 	    }
 	    @SuppressWarnings("unchecked")
-            A alignment = (A) NucleotideSmithWatermanAligner.align((NucleotideSequence)query, currentSubject, (NucleotideSubstitutionMatrix)matrix, gapOpen, gapExtension, currentShift);
+            A alignment = (A) NucleotideSmithWatermanAligner.align((NucleotideSequence)query, currentSubject, (NucleotideSubstitutionMatrix)matrix, gapOpen, gapExtension, currentShift, bandWidth, adaptiveBand);
 	   
 	    consumer.accept(alignment);
 	    long endOfAlignment = alignment.getSubjectRange().getEnd()+1 - currentShift;
@@ -228,7 +411,7 @@ public final class PairwiseAlignmentBuilder<R extends Residue, S extends Residue
                 return;
             }
             @SuppressWarnings("unchecked")
-            A alignment = (A) ProteinSmithWatermanAligner.align((ProteinSequence)query, currentSubject, (AminoAcidSubstitutionMatrix)matrix, gapOpen, gapExtension, currentShift);
+            A alignment = (A) ProteinSmithWatermanAligner.align((ProteinSequence)query, currentSubject, (AminoAcidSubstitutionMatrix)matrix, gapOpen, gapExtension, currentShift, bandWidth, adaptiveBand);
            
             consumer.accept(alignment);
             long endOfAlignment = alignment.getSubjectRange().getEnd()+1 - currentShift;
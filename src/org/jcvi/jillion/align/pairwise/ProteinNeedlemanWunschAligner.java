@@ -62,15 +62,47 @@ final class ProteinNeedlemanWunschAligner extends AbstractNeedlemanWunschAligner
 	public static ProteinPairwiseSequenceAlignment align(ProteinSequence query,
 			ProteinSequence subject, SubstitutionMatrix<AminoAcid> matrix,
 			float openGapPenalty, float extendGapPenalty){
-		ProteinNeedlemanWunschAligner aligner = new ProteinNeedlemanWunschAligner(query, subject, matrix, openGapPenalty, extendGapPenalty);
+		return align(query, subject, matrix, openGapPenalty, extendGapPenalty, null, false);
+	}
+	/**
+	 * Align the given two {@link ProteinSequence}s
+	 * using the given {@link SubstitutionMatrix} by the Needleman-Wunsch
+	 * global alignment algorithm but only computing the cells
+	 * of the matrix within the given band of diagonals.
+	 * @param query the query {@link ProteinSequence} to align;
+	 * can not be null.
+	 * @param subject the subject {@link ProteinSequence} to align;
+	 * can not be null.
+	 * @param matrix the {@link SubstitutionMatrix} to use; can not be null.
+	 * @param openGapPenalty the penalty value for opening a gap.
+	 * @param extendGapPenalty the penalty for extending an already open gap.
+	 * @param bandWidth the number of diagonals on either side of the diagonals
+	 * connecting the start and end of both sequences to compute;
+	 * if {@code null} then the whole matrix is computed.
+	 * @param adaptiveBand if {@code true} then keep doubling the band width
+	 * until the alignment no longer touches the edge of the band
+	 * and stops improving.
+	 * @return a new {@link ProteinPairwiseSequenceAlignment} instance;
+	 * representing the global alignment, will never be null.
+	 * @throws NullPointerException if query, subject or matrix are null.
+	 * @throws IllegalArgumentException if bandWidth is negative.
+	 * 
+	 * @since 5.3
+	 */
+	public static ProteinPairwiseSequenceAlignment align(ProteinSequence query,
+			ProteinSequence subject, SubstitutionMatrix<AminoAcid> matrix,
+			float openGapPenalty, float extendGapPenalty,
+			Integer bandWidth, boolean adaptiveBand){
+		ProteinNeedlemanWunschAligner aligner = new ProteinNeedlemanWunschAligner(query, subject, matrix, openGapPenalty, extendGapPenalty, bandWidth, adaptiveBand);
 		return aligner.getPairwiseSequenceAlignment();
 	}
 	
 	private ProteinNeedlemanWunschAligner(ProteinSequence query,
 	        ProteinSequence subject, SubstitutionMatrix<AminoAcid> matrix,
-			float openGapPenalty, float extendGapPenalty) {
+			float openGapPenalty, float extendGapPenalty,
+			Integer bandWidth, boolean adaptiveBand) {
 		super(query, subject, matrix, openGapPenalty, extendGapPenalty,
-				ResiduePairwiseStrategy.getAminoAcidStrategy());
+				ResiduePairwiseStrategy.getAminoAcidStrategy(), bandWidth, adaptiveBand);
 	}
 	
 
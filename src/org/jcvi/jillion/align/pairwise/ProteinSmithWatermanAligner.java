@@ -67,14 +67,48 @@ final class ProteinSmithWatermanAligner  extends AbstractSmithWatermanAligner<Am
 	public static ProteinPairwiseSequenceAlignment align(ProteinSequence query,
 			ProteinSequence subject, SubstitutionMatrix<AminoAcid> matrix,
 			float openGapPenalty, float extendGapPenalty , Integer subjectShiftAmount){
-		ProteinSmithWatermanAligner aligner = new ProteinSmithWatermanAligner(query, subject, matrix, openGapPenalty, extendGapPenalty,subjectShiftAmount);
+		return align(query, subject, matrix, openGapPenalty, extendGapPenalty, subjectShiftAmount, null, false);
+	}
+	/**
+	 * Align the given two {@link ProteinSequence}s
+	 * using the given {@link SubstitutionMatrix} by the Smith-Waterman
+	 * local alignment algorithm but only computing the cells
+	 * of the matrix within the given band of diagonals.
+	 * @param query the query {@link ProteinSequence} to align;
+	 * can not be null.
+	 * @param subject the subject {@link ProteinSequence} to align;
+	 * can not be null.
+	 * @param matrix the {@link SubstitutionMatrix} to use; can not be null.
+	 * @param openGapPenalty the penalty value for opening a gap.
+	 * @param extendGapPenalty the penalty for extending an already open gap.
+	 * @param subjectShiftAmount the number of residues to shift the subject
+	 * coordinates in the returned alignment; may be null.
+	 * @param bandWidth the number of diagonals on either side of the diagonals
+	 * connecting the start and end of both sequences to compute;
+	 * if {@code null} then the whole matrix is computed.
+	 * @param adaptiveBand if {@code true} then keep doubling the band width
+	 * until the alignment no longer touches the edge of the band
+	 * and stops improving.
+	 * @return a new {@link ProteinPairwiseSequenceAlignment} instance;
+	 * representing the local alignment, will never be null.
+	 * @throws NullPointerException if query, subject or matrix are null.
+	 * @throws IllegalArgumentException if bandWidth is negative.
+	 * 
+	 * @since 5.3
+	 */
+	public static ProteinPairwiseSequenceAlignment align(ProteinSequence query,
+			ProteinSequence subject, SubstitutionMatrix<AminoAcid> matrix,
+			float openGapPenalty, float extendGapPenalty , Integer subjectShiftAmount,
+			Integer bandWidth, boolean adaptiveBand){
+		ProteinSmithWatermanAligner aligner = new ProteinSmithWatermanAligner(query, subject, matrix, openGapPenalty, extendGapPenalty,subjectShiftAmount, bandWidth, adaptiveBand);
 		return aligner.getPairwiseSequenceAlignment();
 	}
 	private ProteinSmithWatermanAligner(ProteinSequence query,
 			ProteinSequence subject, SubstitutionMatrix<AminoAcid> matrix,
-			float openGapPenalty, float extendGapPenalty, Integer subjectShiftAmount) {
+			float openGapPenalty, float extendGapPenalty, Integer subjectShiftAmount,
+			Integer bandWidth, boolean adaptiveBand) {
 		super(query, subject, matrix, openGapPenalty, extendGapPenalty,
-				ResiduePairwiseStrategy.getAminoAcidStrategy(), subjectShiftAmount);
+				ResiduePairwiseStrategy.getAminoAcidStrategy(), subjectShiftAmount, bandWidth, adaptiveBand);
 	}
 
 }
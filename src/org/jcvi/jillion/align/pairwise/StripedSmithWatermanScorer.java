@@ -0,0 +1,448 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.align.pairwise;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.jcvi.jillion.align.SubstitutionMatrix;
+import org.jcvi.jillion.core.residue.Residue;
+/**
+ * {@code StripedSmithWatermanScorer} computes only the best
+ * Smith-Waterman local alignment score (with affine gaps)
+ * of a query against subjects
+ * and where that alignment ends, without keeping any traceback.
+ * <p>
+ * The query is split into {@value #LANES} interleaved lanes
+ * using the striped layout described by Farrar, so the inner loops
+ * work on consecutive array elements that do not depend on each other
+ * and scores of each residue in the query are precomputed into a query profile.
+ * All the math is done using {@code int}s so only substitution matrices
+ * and gap penalties that are whole numbers are supported.
+ * </p>
+ * <p>
+ * Once the best score and end coordinates are known,
+ * the actual alignment only needs to be computed over
+ * the part of the subject that could be in the alignment,
+ * see {@link #getMinimumSubjectStart(LocalScore)}.
+ * </p>
+ * 
+ * @author dkatzel
+ * 
+ * @see <a href="http://dx.doi.org/10.1093/bioinformatics/btl582">
+ Farrar, M. 2007. Striped Smith-Waterman speeds database searches six times over other SIMD implementations.
+ Bioinformatics 23:156-161.</a>
+ * 
+ * @since 5.3
+ */
+final class StripedSmithWatermanScorer {
+	/**
+	 * The number of query residues computed together.
+	 */
+	static final int LANES = 8;
+	/**
+	 * Score given to the padding at the end of the query
+	 * so it never ends up in the alignment.
+	 * Small enough to never win but large enough to never underflow.
+	 */
+	private static final int PADDING_SCORE = Integer.MIN_VALUE/4;
+	/**
+	 * Largest absolute value of a score
+	 * we support so we can't overflow.
+	 */
+	private static final int MAX_ABSOLUTE_SCORE = 1<<16;
+	
+	private final int queryLength;
+	private final int segmentLength;
+	/**
+	 * The query profile: the striped scores
+	 * of each residue in the query against each possible subject residue
+	 * indexed by subject residue ordinal.
+	 */
+	private final int[][] profile;
+	/**
+	 * Penalty (as a positive number) of the first residue in a gap.
+	 */
+	private final int gapOpen;
+	/**
+	 * Penalty (as a positive number) of every other residue in a gap.
+	 */
+	private final int gapExtend;
+	/**
+	 * The best possible score for aligning any query residue.
+	 */
+	private final int maxSubstitutionScore;
+	
+	/**
+	 * Create a new scorer for the given query.
+	 * @param query the ungapped query residue ordinals.
+	 * @param matrix the {@link SubstitutionMatrix} to use.
+	 * @param residuesByOrdinal the list of all the possible residues in ordinal order.
+	 * @param openGapPenalty the penalty value for opening a gap.
+	 * @param extendGapPenalty the penalty for extending an already open gap.
+	 * @return a new {@link StripedSmithWatermanScorer}; or {@code null}
+	 * if the scores or penalties are not whole numbers, are too big
+	 * to be computed as {@code int}s or if the gap penalties are positive.
+	 */
+	static <R extends Residue> StripedSmithWatermanScorer create(byte[] query, SubstitutionMatrix<R> matrix,
+			List<R> residuesByOrdinal, float openGapPenalty, float extendGapPenalty){
+		int[][] scores = computeScores(matrix, residuesByOrdinal);
+		if(scores ==null){
+			return null;
+		}
+		return create(query, scores, openGapPenalty, extendGapPenalty);
+	}
+	/**
+	 * Create a new scorer for the given query using
+	 * substitution scores that have already been computed
+	 * by {@link #computeScores(SubstitutionMatrix, List)}.
+	 * @param query the ungapped query residue ordinals.
+	 * @param scores the substitution scores indexed by query residue ordinal
+	 * then subject residue ordinal.
+	 * @param openGapPenalty the penalty value for opening a gap.
+	 * @param extendGapPenalty the penalty for extending an already open gap.
+	 * @return a new {@link StripedSmithWatermanScorer}; or {@code null}
+	 * if the penalties are not whole numbers, are too big
+	 * to be computed as {@code int}s or are positive.
+	 */
+	static StripedSmithWatermanScorer create(byte[] query, int[][] scores, float openGapPenalty, float extendGapPenalty){
+		if(!isSupportedScore(openGapPenalty) || !isSupportedScore(extendGapPenalty)
+				|| openGapPenalty > 0 || extendGapPenalty > 0){
+			return null;
+		}
+		return new StripedSmithWatermanScorer(query, scores, -(int)openGapPenalty, -(int)extendGapPenalty);
+	}
+	/**
+	 * Convert the given {@link SubstitutionMatrix} into 
+	 * a lookup table of {@code int} scores.
+	 * @param matrix the {@link SubstitutionMatrix} to use.
+	 * @param residuesByOrdinal the list of all the possible residues in ordinal order.
+	 * @return the scores indexed by the ordinals of both residues; or {@code null}
+	 * if any of the scores are not whole numbers or are too big to be computed as {@code int}s.
+	 */
+	static <R extends Residue> int[][] computeScores(SubstitutionMatrix<R> matrix, List<R> residuesByOrdinal){
+		int numberOfResidues = residuesByOrdinal.size();
+		int[][] scores = new int[numberOfResidues][numberOfResidues];
+		for(int i=0; i< numberOfResidues; i++){
+			for(int j=0; j< numberOfResidues; j++){
+				float value = matrix.getValue(residuesByOrdinal.get(i), residuesByOrdinal.get(j));
+				if(!isSupportedScore(value)){
+					return null;
+				}
+				scores[i][j] = (int) value;
+			}
+		}
+		return scores;
+	}
+	
+	private static boolean isSupportedScore(float value){
+		return value == Math.rint(value) && Math.abs(value) <= MAX_ABSOLUTE_SCORE;
+	}
+	
+	private StripedSmithWatermanScorer(byte[] query, int[][] scores, int gapOpen, int gapExtend){
+		this.queryLength = query.length;
+		this.segmentLength = Math.max(1, (queryLength + LANES -1)/LANES);
+		this.gapOpen = gapOpen;
+		this.gapExtend = gapExtend;
+		
+		int numberOfResidues = scores.length;
+		profile = new int[numberOfResidues][segmentLength * LANES];
+		int max = 0;
+		for(int r=0; r< numberOfResidues; r++){
+			int[] residueProfile = profile[r];
+			for(int segment=0; segment < segmentLength; segment++){
+				for(int lane=0; lane< LANES; lane++){
+					int queryOffset = lane * segmentLength + segment;
+					int score = queryOffset < queryLength ? scores[query[queryOffset]][r] : PADDING_SCORE;
+					residueProfile[segment*LANES + lane] = score;
+					max = Math.max(max, score);
+				}
+			}
+		}
+		maxSubstitutionScore = max;
+	}
+	/**
+	 * Create new work arrays that can be reused
+	 * for computing scores with this scorer
+	 * by {@link #score(byte[], Scratch)}.
+	 * @return a new {@link Scratch}; will never be null.
+	 */
+	Scratch createScratch(){
+		return new Scratch(segmentLength * LANES);
+	}
+	/**
+	 * Compute the best local alignment score of the query
+	 * against the given subject.
+	 * @param subject the ungapped subject residue ordinals.
+	 * @return a new {@link LocalScore}; will never be null.
+	 */
+	LocalScore score(byte[] subject){
+		return score(subject, createScratch());
+	}
+	/**
+	 * Compute the best local alignment score of the query
+	 * against the given subject reusing the given work arrays
+	 * instead of allocating new ones.
+	 * @param subject the ungapped subject residue ordinals.
+	 * @param scratch the {@link Scratch} to use which must have been created
+	 * by this scorer's {@link #createScratch()} and not be in use by
+	 * any other thread.
+	 * @return a new {@link LocalScore}; will never be null.
+	 */
+	LocalScore score(byte[] subject, Scratch scratch){
+		int stripeLength = segmentLength * LANES;
+		int[] hStore = scratch.hStore;
+		int[] hLoad = scratch.hLoad;
+		int[] e = scratch.e;
+		Arrays.fill(hStore, 0);
+		Arrays.fill(hLoad, 0);
+		Arrays.fill(e, PADDING_SCORE);
+		int[] h = scratch.h;
+		int[] f = scratch.f;
+		int[] columnMax = scratch.columnMax;
+		//offset into the stripe of the first cell in each lane with the column max
+		int[] columnMaxOffset = scratch.columnMaxOffset;
+		
+		int bestScore = 0;
+		int bestQueryEnd = -1;
+		int bestSubjectEnd = -1;
+		
+		int lastSegmentOffset = (segmentLength -1)*LANES;
+		for(int j=0; j< subject.length; j++){
+			int[] residueProfile = profile[subject[j]];
+			//the diagonal of the first segment is the last segment
+			//of the previous column shifted over by one lane
+			h[0] = 0;
+			for(int lane=1; lane< LANES; lane++){
+				h[lane] = hStore[lastSegmentOffset + lane -1];
+			}
+			int[] tmp = hLoad;
+			hLoad = hStore;
+			hStore = tmp;
+			
+			Arrays.fill(f, PADDING_SCORE);
+			Arrays.fill(columnMax, 0);
+			Arrays.fill(columnMaxOffset, -1);
+			
+			for(int offset=0; offset < stripeLength; offset+=LANES){
+				for(int lane=0; lane< LANES; lane++){
+					int i = offset + lane;
+					int score = h[lane] + residueProfile[i];
+					int gapInQuery = e[i];
+					if(gapInQuery > score){
+						score = gapInQuery;
+					}
+					if(f[lane] > score){
+						score = f[lane];
+					}
+					if(score <0){
+						score = 0;
+					}
+					hStore[i] = score;
+					if(score > columnMax[lane]){
+						columnMax[lane] = score;
+						columnMaxOffset[lane] = i;
+					}
+					int opened = score - gapOpen;
+					int extended = gapInQuery - gapExtend;
+					e[i] = extended > opened ? extended : opened;
+					extended = f[lane] - gapExtend;
+					f[lane] = extended > opened ? extended : opened;
+					h[lane] = hLoad[i];
+				}
+			}
+			lazyF(hStore, e, f, columnMax, columnMaxOffset);
+			
+			//lanes are in query order so the first lane
+			//with the max has the smallest query offset
+			int max =0;
+			int maxOffset = -1;
+			for(int lane=0; lane< LANES; lane++){
+				if(columnMax[lane] > max){
+					max = columnMax[lane];
+					maxOffset = columnMaxOffset[lane];
+				}
+			}
+			if(max ==0){
+				continue;
+			}
+			int queryEnd = (maxOffset % LANES) * segmentLength + maxOffset / LANES;
+			//break ties the same way as the full matrix
+			//which prefers the smallest query offset
+			if(max > bestScore || (max == bestScore && queryEnd < bestQueryEnd)){
+				bestScore = max;
+				bestSubjectEnd = j;
+				bestQueryEnd = queryEnd;
+			}
+		}
+		return new LocalScore(bestScore, bestQueryEnd, bestSubjectEnd);
+	}
+	/**
+	 * The first pass assumes gaps in the subject
+	 * never cross from one segment to the next; 
+	 * keep carrying the vertical gap scores
+	 * over into the following segments until they 
+	 * can no longer change anything.
+	 */
+	private void lazyF(int[] hStore, int[] e, int[] f, int[] columnMax, int[] columnMaxOffset){
+		shiftLanes(f);
+		int offset=0;
+		while(true){
+			boolean changed = false;
+			for(int lane=0; lane< LANES; lane++){
+				if(f[lane] > hStore[offset + lane] - gapOpen){
+					changed = true;
+					break;
+				}
+			}
+			if(!changed){
+				return;
+			}
+			for(int lane=0; lane< LANES; lane++){
+				int i = offset + lane;
+				int score = hStore[i];
+				if(f[lane] > score){
+					score = f[lane];
+					hStore[i] = score;
+					if(score > columnMax[lane] 
+							|| (score == columnMax[lane] && i < columnMaxOffset[lane])){
+						columnMax[lane] = score;
+						columnMaxOffset[lane] = i;
+					}
+				}
+				int opened = score - gapOpen;
+				if(opened > e[i]){
+					e[i] = opened;
+				}
+				f[lane] -= gapExtend;
+			}
+			offset += LANES;
+			if(offset == hStore.length){
+				offset = 0;
+				shiftLanes(f);
+			}
+		}
+	}
+	
+	private static void shiftLanes(int[] lanes){
+		for(int lane=LANES-1; lane>0; lane--){
+			lanes[lane] = lanes[lane-1];
+		}
+		lanes[0] = PADDING_SCORE;
+	}
+	
+	/**
+	 * Get the smallest subject offset that an alignment
+	 * with the given score and end coordinates could start at.
+	 * The alignment can't have more aligned residues than
+	 * the query so there can only be so many gaps in the query
+	 * before the score would drop below the best score.
+	 * @param score the {@link LocalScore} computed by this scorer.
+	 * @return the subject offset (inclusive); will always be &ge; 0.
+	 */
+	int getMinimumSubjectStart(LocalScore score){
+		if(score.getScore() ==0){
+			return 0;
+		}
+		int maxAligned = score.getQueryEnd()+1;
+		if(gapExtend ==0){
+			//gaps don't cost anything
+			return 0;
+		}
+		long maxGapScore = (long)maxSubstitutionScore * maxAligned - gapOpen - score.getScore();
+		long maxGaps = maxGapScore <0 ? 0 : 1 + maxGapScore/gapExtend;
+		return (int) Math.max(0, score.getSubjectEnd() +1 - maxAligned - maxGaps);
+	}
+	/**
+	 * Get the smallest query offset that an alignment
+	 * with the given score and end coordinates could start at.
+	 * This is the same as {@link #getMinimumSubjectStart(LocalScore)}
+	 * but with the roles of the query and subject swapped.
+	 * @param score the {@link LocalScore} computed by this scorer.
+	 * @return the query offset (inclusive); will always be &ge; 0.
+	 */
+	int getMinimumQueryStart(LocalScore score){
+		if(score.getScore() ==0 || gapExtend ==0){
+			return 0;
+		}
+		int maxAligned = score.getSubjectEnd()+1;
+		long maxGapScore = (long)maxSubstitutionScore * maxAligned - gapOpen - score.getScore();
+		long maxGaps = maxGapScore <0 ? 0 : 1 + maxGapScore/gapExtend;
+		return (int) Math.max(0, score.getQueryEnd() +1 - maxAligned - maxGaps);
+	}
+	/**
+	 * Work arrays used while computing a score
+	 * so they can be reused from one subject to the next.
+	 */
+	static final class Scratch{
+		private final int[] hStore, hLoad, e;
+		private final int[] h = new int[LANES];
+		private final int[] f = new int[LANES];
+		private final int[] columnMax = new int[LANES];
+		private final int[] columnMaxOffset = new int[LANES];
+		
+		private Scratch(int stripeLength){
+			hStore = new int[stripeLength];
+			hLoad = new int[stripeLength];
+			e = new int[stripeLength];
+		}
+	}
+	/**
+	 * The best local alignment score
+	 * and the coordinates of where the alignment ends.
+	 */
+	static final class LocalScore{
+		private final int score;
+		private final int queryEnd, subjectEnd;
+		
+		LocalScore(int score, int queryEnd, int subjectEnd) {
+			this.score = score;
+			this.queryEnd = queryEnd;
+			this.subjectEnd = subjectEnd;
+		}
+		/**
+		 * The best score.
+		 * @return the score; will be 0 if nothing aligned.
+		 */
+		int getScore() {
+			return score;
+		}
+		/**
+		 * The last ungapped query offset in the alignment.
+		 * @return the offset or -1 if nothing aligned.
+		 */
+		int getQueryEnd() {
+			return queryEnd;
+		}
+		/**
+		 * The last ungapped subject offset in the alignment.
+		 * @return the offset or -1 if nothing aligned.
+		 */
+		int getSubjectEnd() {
+			return subjectEnd;
+		}
+		@Override
+		public String toString() {
+			return "LocalScore [score=" + score + ", queryEnd=" + queryEnd
+					+ ", subjectEnd=" + subjectEnd + "]";
+		}
+	}
+}
@@ -23,22 +23,24 @@ package org.jcvi.jillion.assembly.consed.phd;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
 import org.jcvi.jillion.assembly.consed.phd.PhdBallVisitorCallback.PhdBallVisitorMemento;
 import org.jcvi.jillion.core.datastore.DataStoreClosedException;
 import org.jcvi.jillion.core.datastore.DataStoreEntry;
 import org.jcvi.jillion.core.datastore.DataStoreException;
 import org.jcvi.jillion.core.datastore.DataStoreFilter;
+import org.jcvi.jillion.core.datastore.DataStoreFilters;
 import org.jcvi.jillion.core.pos.PositionSequence;
 import org.jcvi.jillion.core.qual.QualitySequence;
 import org.jcvi.jillion.core.residue.nt.NucleotideSequence;
-import org.jcvi.jillion.core.util.MapUtil;
 import org.jcvi.jillion.core.util.iter.IteratorUtil;
 import org.jcvi.jillion.core.util.iter.StreamingIterator;
+import org.jcvi.jillion.internal.core.datastore.CompactIdIndex;
 import org.jcvi.jillion.internal.core.datastore.DataStoreStreamingIterator;
+import org.jcvi.jillion.internal.core.datastore.PersistentIdIndex;
 
 final class IndexedPhdDataStore implements PhdDataStore{
 
@@ -51,6 +53,52 @@ final class IndexedPhdDataStore implements PhdDataStore{
 	private final DataStoreFilter filter;
 	private final PhdBallParser parser;
 	
+	private static final String INDEX_FORMAT = "phdball";
+	
+	private static final PersistentIdIndex.ValueCodec<PhdBallVisitorMemento> MEMENTO_CODEC = new PersistentIdIndex.ValueCodec<PhdBallVisitorMemento>() {
+
+		@Override
+		public int getNumberOfValues() {
+			return 1;
+		}
+
+		@Override
+		public void encode(PhdBallVisitorMemento value, long[] out) {
+			out[0] = PhdBallFileParser.getMementoOffset(value);
+		}
+
+		@Override
+		public PhdBallVisitorMemento decode(long[] values) {
+			return PhdBallFileParser.createMemento(values[0]);
+		}
+	};
+	/**
+	 * Create a new datastore of all the phds in the given phdball
+	 * which reads its index from the given index file if it exists
+	 * and is still valid for the phdball; otherwise, the phdball
+	 * is parsed and the index is written to the index file.
+	 * 
+	 * @param phdBall the phdball file.
+	 * @param indexFile the index file to read or write.
+	 * @return a new PhdDataStore.
+	 * @throws IOException if there is a problem parsing the phdball
+	 * or reading or writing the index.
+	 * 
+	 * @since 5.3
+	 */
+	public static PhdDataStore create(File phdBall, File indexFile) throws IOException{
+		DataStoreFilter filter = DataStoreFilters.alwaysAccept();
+		PhdBallParser parser = PhdBallFileParser.create(phdBall);
+		Optional<Map<String, PhdBallVisitorMemento>> index = PersistentIdIndex.read(indexFile, phdBall, INDEX_FORMAT, MEMENTO_CODEC);
+		if(index.isPresent()){
+			return new IndexedPhdDataStore(parser, phdBall, index.get(), filter);
+		}
+		BuilderVisitor visitor = new BuilderVisitor(parser, phdBall, filter);
+		parser.accept(visitor);
+		PersistentIdIndex.write(indexFile, phdBall, INDEX_FORMAT, MEMENTO_CODEC, visitor.mementos);
+		return visitor.build();
+	}
+	
 	public static PhdDataStore create(File phdBall, DataStoreFilter filter) throws FileNotFoundException, IOException{
 		
 		PhdBallParser parser = PhdBallFileParser.create(phdBall);
@@ -160,9 +208,8 @@ final class IndexedPhdDataStore implements PhdDataStore{
 	
 	
 	private static final class BuilderVisitor implements PhdBallVisitor{
-		private static final int INITIAL_MAP_SIZE = MapUtil.computeMinHashMapSizeWithoutRehashing(8192);
 		
-		private final Map<String, PhdBallVisitorMemento> mementos = new LinkedHashMap<String, PhdBallVisitorCallback.PhdBallVisitorMemento>(INITIAL_MAP_SIZE);
+		private final Map<String, PhdBallVisitorMemento> mementos = new CompactIdIndex<>(MEMENTO_CODEC);
 		
 		private final DataStoreFilter filter;
 		
@@ -467,6 +467,34 @@ public abstract class PhdBallFileParser implements PhdBallParser{
 		}
 
 	}
+	/**
+	 * Get the file offset of the given memento
+	 * so it can be recreated later by {@link #createMemento(long)}
+	 * (for example to persist an index).
+	 * @param memento a memento created by a file based parser.
+	 * @return the file offset.
+	 * @throws IllegalArgumentException if the memento was not created by
+	 * a file based parser.
+	 * 
+	 * @since 5.3
+	 */
+	static long getMementoOffset(PhdBallVisitorMemento memento){
+		if(!(memento instanceof PhdBallVisitorMementoImpl)){
+	    	throw new IllegalArgumentException("unknown memento type " + memento);
+	    }
+		return ((PhdBallVisitorMementoImpl)memento).getOffset();
+	}
+	/**
+	 * Recreate a memento from the offset returned by
+	 * {@link #getMementoOffset(PhdBallVisitorMemento)}.
+	 * @param offset the file offset.
+	 * @return a new memento.
+	 * 
+	 * @since 5.3
+	 */
+	static PhdBallVisitorMemento createMemento(long offset){
+		return new PhdBallVisitorMementoImpl(offset);
+	}
 	
 	private static final class FileBasedPhdBallParser extends PhdBallFileParser{
 		private final File phdBall;
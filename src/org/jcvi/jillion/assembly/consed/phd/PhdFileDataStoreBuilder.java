@@ -38,6 +38,8 @@ public final class PhdFileDataStoreBuilder implements Builder<PhdDataStore>{
 	
 	private DataStoreProviderHint hint = DataStoreProviderHint.RANDOM_ACCESS_OPTIMIZE_SPEED;
 	
+	private File persistentIndexFile;
+	
 	
 	public PhdFileDataStoreBuilder(File phdFile) {
 		if(phdFile==null){
@@ -74,9 +76,32 @@ public final class PhdFileDataStoreBuilder implements Builder<PhdDataStore>{
 		return this;
 	}
 
+	/**
+	 * Store the index of phd offsets that is built for a
+	 * {@link DataStoreProviderHint#RANDOM_ACCESS_OPTIMIZE_MEMORY} datastore
+	 * in the given sidecar file so later datastores for the same phdball
+	 * don't have to parse it again.  The index is rebuilt if the phdball changes.
+	 * Can not be combined with a filter.
+	 * 
+	 * @param indexFile the index file to read or write; can not be null.
+	 * @return this.
+	 * @throws NullPointerException if indexFile is null.
+	 * 
+	 * @since 5.3
+	 */
+	public PhdFileDataStoreBuilder persistentIndex(File indexFile){
+		if(indexFile==null){
+			throw new NullPointerException("index file can not be null");
+		}
+		this.persistentIndexFile = indexFile;
+		return this;
+	}
+
 	@Override
 	public PhdDataStore build() {
-		
+		if(persistentIndexFile !=null && filter != DataStoreFilters.alwaysAccept()){
+			throw new IllegalStateException("can not use a persistent index with a filter");
+		}
 		try{
 			if(inputStream!=null){
 				//need to store everything in memory?
@@ -87,7 +112,8 @@ public final class PhdFileDataStoreBuilder implements Builder<PhdDataStore>{
 				case RANDOM_ACCESS_OPTIMIZE_SPEED : 
 					return DefaultPhdDataStore.create(phdFile, filter);
 				case RANDOM_ACCESS_OPTIMIZE_MEMORY:
-					return IndexedPhdDataStore.create(phdFile, filter);
+					return persistentIndexFile ==null? IndexedPhdDataStore.create(phdFile, filter)
+													: IndexedPhdDataStore.create(phdFile, persistentIndexFile);
 				case ITERATION_ONLY:
 					return new LargePhdballDataStore(phdFile, filter);
 				default: throw new IllegalStateException("unknown hint "+ hint);
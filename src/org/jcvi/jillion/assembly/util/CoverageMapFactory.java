@@ -209,9 +209,11 @@ final class CoverageMapFactory {
 	    /**
 	     * Statistics of this coverage map
 	     * lazily computed since it is an
-	     * expensive operation.
+	     * expensive operation.  CoverageMapStats
+	     * is immutable so racing threads at worst
+	     * compute the same stats twice.
 	     */
-	    private CoverageMapStats stats=null;
+	    private volatile CoverageMapStats stats=null;
 	    
 	    /**
 	     *
@@ -231,67 +233,34 @@ final class CoverageMapFactory {
 	        return regions[i];
 	    }
 	    @Override
-	    public synchronized CoverageMapStats getStats(){
-	    	if(stats ==null){
-	    		computeStats();
+	    public CoverageMapStats getStats(){
+	    	CoverageMapStats currentStats = stats;
+	    	if(currentStats ==null){
+	    		currentStats = computeStats();
+	    		stats = currentStats;
 	    	}
-	    	return stats;
+	    	return currentStats;
 	    }
 	    @Override
-	    public synchronized double getAverageCoverage(){
-	        if(stats ==null){
-		    	computeStats();
-	        }
-	        return stats.getAvgCoverage();
+	    public double getAverageCoverage(){
+	        return getStats().getAvgCoverage();
 	    }
-		public synchronized void computeStats() {
-			
+		private CoverageMapStats computeStats() {
 			if(isEmpty()){
-				stats = new CoverageMapStats(0, 0, 0);
-				return;
-			}
-			/*
-			long totalLength = 0L;
-			long totalCoverage =0L;
-			
-			int minCoverage = Integer.MAX_VALUE;
-			int maxCoverage = Integer.MIN_VALUE;
-			/*
-			for(CoverageRegion<?> region : this){
-				long regionLength = region.asRange().getLength();
-				totalLength +=regionLength;
-				int coverageDepth = region.getCoverageDepth();
-				totalCoverage += coverageDepth * regionLength;
-				if(coverageDepth < minCoverage){
-					minCoverage = coverageDepth;
-				}
-				if(coverageDepth > maxCoverage){
-					maxCoverage = coverageDepth;
-				}
+				return new CoverageMapStats(0, 0, 0);
 			}
-			*/
-			//use java 8 streams for faster performance?
-			stats = Arrays.stream(regions)
-											.parallel()
-											.collect(CoverageMapCollectors.computeStats());
-			
+			return Arrays.stream(regions)
+							.parallel()
+							.collect(CoverageMapCollectors.computeStats());
 		}
-	  
-	    
 	    
 	    @Override
-		public synchronized int getMinCoverage() {
-	    	if(stats ==null){
-		    	computeStats();
-	        }
-			return stats.getMinCoverage();
+		public int getMinCoverage() {
+			return getStats().getMinCoverage();
 		}
 		@Override
-		public synchronized int getMaxCoverage() {
-	    	if(stats ==null){
-		    	computeStats();
-	        }
-			return stats.getMaxCoverage();
+		public int getMaxCoverage() {
+			return getStats().getMaxCoverage();
 		}
 		@Override
 	    public boolean equals(Object obj) {
@@ -20,8 +20,12 @@
  ******************************************************************************/
 package org.jcvi.jillion.assembly.util;
 
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.function.Predicate;
+import java.util.stream.Stream;
 
 import org.jcvi.jillion.assembly.AssembledRead;
 import org.jcvi.jillion.assembly.Contig;
@@ -30,8 +34,11 @@ import org.jcvi.jillion.core.io.IOUtil;
 import org.jcvi.jillion.core.qual.PhredQuality;
 import org.jcvi.jillion.core.qual.QualitySequenceDataStore;
 import org.jcvi.jillion.core.util.Builder;
+import org.jcvi.jillion.core.util.iter.IteratorUtil;
 import org.jcvi.jillion.core.util.iter.StreamingIterator;
+import org.jcvi.jillion.core.util.streams.ThrowingIndexedConsumer;
 import org.jcvi.jillion.internal.assembly.util.CompactedSliceMap;
+import org.jcvi.jillion.internal.assembly.util.StreamingSliceIterator;
 
 public final class SliceMapBuilder<R extends AssembledRead> implements Builder<SliceMap>{
 
@@ -43,6 +50,8 @@ public final class SliceMapBuilder<R extends AssembledRead> implements Builder<S
 	
 	private Predicate<? super R> filter=null;
 	
+	private boolean readsSorted=false;
+	
 	public SliceMapBuilder(Contig<R> contig, PhredQuality defaultQuality){
 		if(contig ==null){
 			throw new NullPointerException("contig can not be null");
@@ -93,6 +102,91 @@ public final class SliceMapBuilder<R extends AssembledRead> implements Builder<S
 		return this;
 	}
 	
+	/**
+	 * Declare that the contig's read iterator returns the reads
+	 * sorted by gapped start offset so {@link #stream()} and
+	 * {@link #forEach(ThrowingIndexedConsumer)} don't have to sort them first.
+	 * If this is set, and the reads turn out not to be sorted, then
+	 * an {@link IllegalStateException} will be thrown while streaming.
+	 * Defaults to {@code false}.
+	 * 
+	 * @param readsSorted {@code true} if the reads are already sorted;
+	 * {@code false} otherwise.
+	 * 
+	 * @return this
+	 * 
+	 * @since 5.3
+	 */
+	public SliceMapBuilder<R> readsSortedByStartOffset(boolean readsSorted){
+		this.readsSorted = readsSorted;
+		return this;
+	}
+	/**
+	 * Create a {@link Stream} of all the {@link Slice}s of the contig 
+	 * in consensus order without building a whole {@link SliceMap}.
+	 * Only the slices that still have reads being added to them
+	 * are kept in memory, so this can be used on
+	 * long or very deep contigs that won't fit in a {@link SliceMap}.
+	 * <p>
+	 * Unless {@link #readsSortedByStartOffset(boolean)} is set,
+	 * the (filtered) reads are sorted by gapped start offset first
+	 * which will keep all the read objects in memory (but not their slices).
+	 * </p>
+	 * The returned Stream
+	 * must be closed when finished so it is recommended
+	 * that it is enclosed in a try-with-resource block.
+	 * 
+	 * @return a new Stream of Slices; will never be null.
+	 * 
+	 * @since 5.3
+	 */
+	public Stream<Slice> stream(){
+		return createSliceIterator().toStream();
+	}
+	/**
+	 * Call the given consumer on each {@link Slice} of the contig
+	 * in consensus order without building a whole {@link SliceMap}.
+	 * This has the same memory usage as {@link #stream()}.
+	 * 
+	 * @param consumer the consumer to call with each slice and its
+	 * consensus offset; can not be null.
+	 * 
+	 * @param <E> the Throwable type the consumer can throw.
+	 * 
+	 * @throws E if the consumer throws an exception.
+	 * @throws NullPointerException if consumer is null.
+	 * 
+	 * @since 5.3
+	 */
+	public <E extends Throwable> void forEach(ThrowingIndexedConsumer<Slice, E> consumer) throws E{
+		if(consumer==null){
+			throw new NullPointerException("consumer can not be null");
+		}
+		try(StreamingIterator<Slice> iter = createSliceIterator()){
+			long offset=0;
+			while(iter.hasNext()){
+				consumer.accept(offset++, iter.next());
+			}
+		}
+	}
+	
+	private StreamingIterator<Slice> createSliceIterator(){
+		StreamingIterator<R> iter = filter ==null ? contig.getReadIterator() : new FilteredIterator(contig.getReadIterator());
+		if(!readsSorted){
+			List<R> reads = new ArrayList<>();
+			try{
+				while(iter.hasNext()){
+					reads.add(iter.next());
+				}
+			}finally{
+				IOUtil.closeAndIgnoreErrors(iter);
+			}
+			reads.sort(Comparator.comparingLong(R::getGappedStartOffset));
+			iter = IteratorUtil.createStreamingIterator(reads.iterator());
+		}
+		return new StreamingSliceIterator<>(iter, contig.getConsensusSequence(), qualities, defaultQuality, qualityValueStrategy);
+	}
+	
 	@Override
 	public SliceMap build() {
 		StreamingIterator<R> iter=null;
@@ -0,0 +1,445 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.assembly.util;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+import org.jcvi.jillion.core.Range;
+import org.jcvi.jillion.core.Rangeable;
+/**
+ * {@code StreamingCoverageCalculator} computes the coverage depth
+ * of elements that are given to it sorted by begin coordinate
+ * in a single pass.  Unlike a {@link CoverageMap}, no references
+ * to the elements are kept: only the end coordinates of the elements
+ * that cover the current position are stored so the memory used
+ * is proportional to the max depth of coverage, not the number of elements
+ * or the length of the reference.
+ * <p>
+ * As the coverage depth at each position becomes known, it is
+ * emitted as run-length encoded regions of the same depth
+ * and/or fixed size windows of primitive depth values and is also
+ * used to update the min, max, average and histogram statistics.
+ * </p>
+ * <p>
+ * Just like {@link CoverageMap}s, positions between elements
+ * are reported as 0x coverage; but positions before the first element
+ * and after the last element are only reported if a {@link Builder#range(Range)}
+ * is given.
+ * </p>
+ * <p>
+ * This class is not thread safe.
+ * </p>
+ * <pre>
+ * StreamingCoverageCalculator calculator = new StreamingCoverageCalculator.Builder()
+ * 						.range(Range.ofLength(referenceLength))
+ * 						.regionConsumer((begin, end, depth) -&gt; ...)
+ * 						.build();
+ * sortedReads.forEach(calculator);
+ * calculator.finish();
+ * CoverageMapStats stats = calculator.getStats();
+ * </pre>
+ * @author dkatzel
+ *
+ * @since 5.3
+ */
+public final class StreamingCoverageCalculator implements Consumer<Rangeable>{
+	/**
+	 * Callback for each run of positions with the same coverage depth.
+	 * 
+	 * @author dkatzel
+	 *
+	 */
+	@FunctionalInterface
+	public interface DepthRegionConsumer{
+		/**
+		 * Consume the next region.  Adjacent regions
+		 * will always have different depths.
+		 * @param begin the 0-based begin coordinate of the region (inclusive).
+		 * @param end the 0-based end coordinate of the region (inclusive).
+		 * @param depth the coverage depth of every position in the region.
+		 */
+		void accept(long begin, long end, int depth);
+	}
+	/**
+	 * Callback for each window of coverage depths.
+	 * 
+	 * @author dkatzel
+	 *
+	 */
+	@FunctionalInterface
+	public interface DepthWindowConsumer{
+		/**
+		 * Consume the next window.
+		 * @param windowBegin the 0-based begin coordinate of the window.
+		 * @param depths the coverage depths of each position in the window;
+		 * this array is reused for every window so implementations must copy
+		 * any values they want to keep.
+		 * @param length the number of depths in this window
+		 * which will be the window size for every window except perhaps the last one.
+		 */
+		void accept(long windowBegin, int[] depths, int length);
+	}
+	
+	private final Range range;
+	private final DepthRegionConsumer regionConsumer;
+	private final DepthWindowConsumer windowConsumer;
+	
+	private final int[] window;
+	private long windowBegin;
+	private int windowLength;
+	
+	private final long[] histogram;
+	private int minDepth = Integer.MAX_VALUE;
+	private int maxDepth = Integer.MIN_VALUE;
+	private long totalLength;
+	private long totalDepth;
+	
+	/**
+	 * Min heap of the end coordinates of the elements
+	 * covering the current position.
+	 */
+	private long[] activeEnds = new long[16];
+	private int numberOfActive;
+	
+	private boolean started, finished;
+	private long previousBegin = Long.MIN_VALUE;
+	/**
+	 * Next position whose depth hasn't been computed yet.
+	 */
+	private long currentPosition;
+	
+	private boolean hasPendingRegion;
+	private long pendingBegin, pendingEnd;
+	private int pendingDepth;
+	
+	private StreamingCoverageCalculator(Builder builder){
+		this.range = builder.range;
+		this.regionConsumer = builder.regionConsumer;
+		this.windowConsumer = builder.windowConsumer;
+		this.window = builder.windowConsumer ==null ? null : new int[builder.windowSize];
+		this.histogram = new long[builder.maxHistogramDepth +1];
+		if(range !=null){
+			start(range.getBegin());
+		}
+	}
+	
+	private void start(long position){
+		started = true;
+		currentPosition = position;
+		windowBegin = position;
+	}
+	/**
+	 * Add the next element.
+	 * 
+	 * @param element the element to add; can not be null.
+	 * 
+	 * @throws NullPointerException if element is null.
+	 * @throws IllegalStateException if the element begins before a previously
+	 * added element or if {@link #finish()} has already been called.
+	 */
+	@Override
+	public void accept(Rangeable element) {
+		Range r = element.asRange();
+		add(r.getBegin(), r.getEnd());
+	}
+	/**
+	 * Add the next element with the given coordinates.
+	 * If the end is before the begin, then the element is empty
+	 * and doesn't provide any coverage.
+	 * 
+	 * @param begin the 0-based begin coordinate of the element (inclusive).
+	 * @param end the 0-based end coordinate of the element (inclusive).
+	 * 
+	 * @throws IllegalStateException if the element begins before a previously
+	 * added element or if {@link #finish()} has already been called.
+	 */
+	public void add(long begin, long end){
+		if(finished){
+			throw new IllegalStateException("already finished");
+		}
+		if(begin < previousBegin){
+			throw new IllegalStateException("elements must be sorted by begin coordinate: " + begin + " is before " + previousBegin);
+		}
+		previousBegin = begin;
+		if(range !=null){
+			begin = Math.max(begin, range.getBegin());
+			end = Math.min(end, range.getEnd());
+		}
+		if(end < begin){
+			return;
+		}
+		if(!started){
+			start(begin);
+		}
+		advanceTo(begin);
+		push(end);
+	}
+	/**
+	 * Compute the depths of all the remaining positions.
+	 * No more elements may be added after this method is called.
+	 * Calling this method more than once has no effect.
+	 */
+	public void finish(){
+		if(finished){
+			return;
+		}
+		finished = true;
+		if(!started){
+			return;
+		}
+		advanceTo(Long.MAX_VALUE);
+		if(range !=null && currentPosition <= range.getEnd()){
+			emit(currentPosition, range.getEnd(), 0);
+		}
+		flushPendingRegion();
+		if(windowLength >0){
+			windowConsumer.accept(windowBegin, window, windowLength);
+			windowLength=0;
+		}
+	}
+	/**
+	 * Emit the depths of all the positions before the given position.
+	 */
+	private void advanceTo(long position){
+		while(numberOfActive >0 && activeEnds[0] < position){
+			long end = activeEnds[0];
+			if(currentPosition <= end){
+				emit(currentPosition, end, numberOfActive);
+				currentPosition = end+1;
+			}
+			while(numberOfActive >0 && activeEnds[0] == end){
+				pop();
+			}
+		}
+		if(position != Long.MAX_VALUE && currentPosition < position){
+			emit(currentPosition, position -1, numberOfActive);
+			currentPosition = position;
+		}
+	}
+	
+	private void emit(long begin, long end, int depth){
+		if(hasPendingRegion && pendingDepth == depth){
+			pendingEnd = end;
+			return;
+		}
+		flushPendingRegion();
+		hasPendingRegion = true;
+		pendingBegin = begin;
+		pendingEnd = end;
+		pendingDepth = depth;
+	}
+	
+	private void flushPendingRegion(){
+		if(!hasPendingRegion){
+			return;
+		}
+		hasPendingRegion = false;
+		long length = pendingEnd - pendingBegin +1;
+		totalLength += length;
+		totalDepth += length * pendingDepth;
+		minDepth = Math.min(minDepth, pendingDepth);
+		maxDepth = Math.max(maxDepth, pendingDepth);
+		histogram[Math.min(pendingDepth, histogram.length -1)] += length;
+		
+		if(regionConsumer !=null){
+			regionConsumer.accept(pendingBegin, pendingEnd, pendingDepth);
+		}
+		if(windowConsumer !=null){
+			fillWindows(length, pendingDepth);
+		}
+	}
+	
+	private void fillWindows(long length, int depth){
+		long remaining = length;
+		while(remaining >0){
+			int n = (int) Math.min(remaining, window.length - windowLength);
+			Arrays.fill(window, windowLength, windowLength + n, depth);
+			windowLength +=n;
+			remaining -=n;
+			if(windowLength == window.length){
+				windowConsumer.accept(windowBegin, window, windowLength);
+				windowBegin += windowLength;
+				windowLength=0;
+			}
+		}
+	}
+	
+	private void push(long end){
+		if(numberOfActive == activeEnds.length){
+			activeEnds = Arrays.copyOf(activeEnds, numberOfActive *2);
+		}
+		int i = numberOfActive++;
+		while(i >0){
+			int parent = (i-1)>>>1;
+			if(activeEnds[parent] <= end){
+				break;
+			}
+			activeEnds[i] = activeEnds[parent];
+			i = parent;
+		}
+		activeEnds[i] = end;
+	}
+	
+	private void pop(){
+		long last = activeEnds[--numberOfActive];
+		int i=0;
+		int half = numberOfActive>>>1;
+		while(i < half){
+			int child = 2*i +1;
+			if(child +1 < numberOfActive && activeEnds[child+1] < activeEnds[child]){
+				child++;
+			}
+			if(last <= activeEnds[child]){
+				break;
+			}
+			activeEnds[i] = activeEnds[child];
+			i = child;
+		}
+		activeEnds[i] = last;
+	}
+	/**
+	 * Get the statistics of all the positions whose depth has
+	 * been computed so far.  Once {@link #finish()} has been called
+	 * this will include every position.
+	 * 
+	 * @return a new {@link CoverageMapStats}; will never be null.
+	 */
+	public CoverageMapStats getStats(){
+		if(totalLength ==0){
+			return new CoverageMapStats(0, 0, 0D);
+		}
+		return new CoverageMapStats(minDepth, maxDepth, totalDepth/(double) totalLength);
+	}
+	/**
+	 * Get the number of positions at each coverage depth
+	 * for all the positions whose depth has been computed so far.
+	 * 
+	 * @return a new array where the ith element is the number of positions
+	 * that have a depth of i; except the last element which is the number
+	 * of positions with a depth &ge; the max histogram depth.
+	 * 
+	 * @see Builder#maxHistogramDepth(int)
+	 */
+	public long[] getDepthHistogram(){
+		return Arrays.copyOf(histogram, histogram.length);
+	}
+	/**
+	 * Get the number of positions whose depth has been computed so far.
+	 * @return the number of positions; will always be &ge; 0.
+	 */
+	public long getLength(){
+		return totalLength;
+	}
+	
+	/**
+	 * Builder to configure a new {@link StreamingCoverageCalculator}.
+	 * 
+	 * @author dkatzel
+	 *
+	 */
+	public static final class Builder{
+		private static final int DEFAULT_MAX_HISTOGRAM_DEPTH = 1000;
+		
+		private Range range;
+		private DepthRegionConsumer regionConsumer;
+		private DepthWindowConsumer windowConsumer;
+		private int windowSize;
+		private int maxHistogramDepth = DEFAULT_MAX_HISTOGRAM_DEPTH;
+		/**
+		 * Only compute the coverage inside the given Range;
+		 * elements are trimmed to this Range and positions in this
+		 * Range before the first element and after the last element
+		 * are reported as 0x coverage.  Usually this is the full
+		 * length of the reference.
+		 * 
+		 * @param range the Range to compute; can not be null or empty.
+		 * @return this.
+		 * @throws NullPointerException if range is null.
+		 * @throws IllegalArgumentException if range is empty.
+		 */
+		public Builder range(Range range){
+			Objects.requireNonNull(range);
+			if(range.isEmpty()){
+				throw new IllegalArgumentException("range can not be empty");
+			}
+			this.range = range;
+			return this;
+		}
+		/**
+		 * Call the given consumer for each run of positions
+		 * with the same depth.
+		 * 
+		 * @param consumer the consumer to call; if null, then
+		 * no regions are reported.
+		 * @return this.
+		 */
+		public Builder regionConsumer(DepthRegionConsumer consumer){
+			this.regionConsumer = consumer;
+			return this;
+		}
+		/**
+		 * Call the given consumer with the depths of every position
+		 * in consecutive windows of the given size.  The first window begins
+		 * at the begin of the {@link #range(Range)} if given or the begin
+		 * of the first element.
+		 * 
+		 * @param windowSize the number of positions in each window; must be &gt; 0.
+		 * @param consumer the consumer to call; if null, then
+		 * no windows are reported.
+		 * @return this.
+		 * @throws IllegalArgumentException if windowSize &lt; 1.
+		 */
+		public Builder windowConsumer(int windowSize, DepthWindowConsumer consumer){
+			if(windowSize < 1){
+				throw new IllegalArgumentException("window size must be >=1");
+			}
+			this.windowSize = windowSize;
+			this.windowConsumer = consumer;
+			return this;
+		}
+		/**
+		 * Set the max depth to track individually in the 
+		 * depth histogram; positions with higher depths are counted
+		 * together.  Defaults to 1000.
+		 * 
+		 * @param maxDepth the max depth; must be &ge; 0.
+		 * @return this.
+		 * @throws IllegalArgumentException if maxDepth &lt; 0.
+		 */
+		public Builder maxHistogramDepth(int maxDepth){
+			if(maxDepth < 0){
+				throw new IllegalArgumentException("max depth must be >=0");
+			}
+			this.maxHistogramDepth = maxDepth;
+			return this;
+		}
+		/**
+		 * Create a new {@link StreamingCoverageCalculator}
+		 * using the current configuration.
+		 * @return a new StreamingCoverageCalculator; will never be null.
+		 */
+		public StreamingCoverageCalculator build(){
+			return new StreamingCoverageCalculator(this);
+		}
+	}
+}
@@ -27,21 +27,15 @@ package org.jcvi.jillion.assembly.util.consensus;
 
 import static org.jcvi.jillion.assembly.util.consensus.ConsensusUtil.BASES_TO_CONSIDER;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.EnumMap;
 import java.util.EnumSet;
-import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Set;
 
 import org.jcvi.jillion.assembly.util.Slice;
 import org.jcvi.jillion.assembly.util.SliceElement;
 import org.jcvi.jillion.core.qual.PhredQuality;
 import org.jcvi.jillion.core.residue.nt.Nucleotide;
-import org.jcvi.jillion.core.util.SingleThreadAdder;
 /**
  * Calculate Consensus for a slice using Bayes formula and the procedure from
  * <pre>
@@ -101,106 +95,49 @@ abstract class AbstractChurchillWatermanConsensusCaller implements ConsensusCall
             //by definition, an empty slice is a Gap
             return new DefaultConsensusResult(Nucleotide.Gap,0);
         }
-        Map<Nucleotide, Integer> qualityValueSumMap = generateQualityValueSumMap(slice);
-        ConsensusProbabilities normalizedErrorProbabilityStruct = generateNormalizedProbabilityStruct(qualityValueSumMap);
+        int[] cumulativeQualityValues = new int[ConsensusProbabilities.NUMBER_OF_BASES];
+        int sumOfAllQualities = 0;
+        for(SliceElement sliceElement : slice){
+            int quality = sliceElement.getQuality().getQualityScore();
+            sumOfAllQualities += quality;
+            int index = ConsensusProbabilities.indexOf(sliceElement.getBase());
+            //ignore not ACGT-?
+            if(index >=0){
+                cumulativeQualityValues[index] += quality;
+            }
+        }
+        ConsensusProbabilities normalizedErrorProbabilityStruct = ConsensusProbabilities.fromCumulativeQualityValues(cumulativeQualityValues)
+                                                                            .normalize();
         Nucleotide consensus=  getConsensus(normalizedErrorProbabilityStruct,slice);
         return new DefaultConsensusResult(consensus,
-                
-                getErrorProbability(normalizedErrorProbabilityStruct,
-                        slice));
+                getErrorProbability(normalizedErrorProbabilityStruct, sumOfAllQualities));
     }
     
     protected final Map<Nucleotide, Integer> generateQualityValueSumMap(Slice slice) {
-        Map<Nucleotide, SingleThreadAdder> qualityValueSumMap = initalizeNucleotideMap();
+        int[] cumulativeQualityValues = new int[ConsensusProbabilities.NUMBER_OF_BASES];
         for(SliceElement sliceElement : slice){
-            Nucleotide basecall =sliceElement.getBase();
-            final SingleThreadAdder previousSum = qualityValueSumMap.get(basecall);
+            int index = ConsensusProbabilities.indexOf(sliceElement.getBase());
             //ignore not ACGT-?
-            if(previousSum!=null){
-               previousSum.add(sliceElement.getQuality().getQualityScore());
+            if(index >=0){
+                cumulativeQualityValues[index] += sliceElement.getQuality().getQualityScore();
             }
-            
         }
         Map<Nucleotide, Integer> map = new EnumMap<>(Nucleotide.class);
-        for(Entry<Nucleotide, SingleThreadAdder> entry :qualityValueSumMap.entrySet()){
-        	map.put(entry.getKey(), entry.getValue().intValue());
-        }
-        return map;
-    }
-
-    private Map<Nucleotide, SingleThreadAdder> initalizeNucleotideMap() {
-        Map<Nucleotide, SingleThreadAdder> map = new EnumMap<Nucleotide, SingleThreadAdder>(Nucleotide.class);
-        for(Nucleotide glyph : ConsensusUtil.BASES_TO_CONSIDER){
-            map.put(glyph, new SingleThreadAdder(0));
+        for(int i=0; i< cumulativeQualityValues.length; i++){
+            map.put(BASES_TO_CONSIDER.get(i), cumulativeQualityValues[i]);
         }
         return map;
     }
 
-
     private int getErrorProbability(
             ConsensusProbabilities normalizedErrorProbabilityStruct,
-            Slice slice) {
-        double normalizedProbability= getProbabilityFor(normalizedErrorProbabilityStruct);
+            int sumOfAllQualities) {
+        double normalizedProbability= normalizedErrorProbabilityStruct.getLowestProbability();
         if(normalizedProbability == 0.0D){
             //special case if we only have matches, then sum slice qualities
-            int sum =0;
-            for(SliceElement element : slice){
-                sum += element.getQuality().getQualityScore();
-            }
-            return sum;
-        }
-            return PhredQuality.computeQualityScore(normalizedProbability);
-    }
-
-   
-    
-    private double getProbabilityFor(ConsensusProbabilities normalizedErrorProbabilityStruct){
-        //find lowest
-        Double lowest = Double.MAX_VALUE;
-        for(Entry<Nucleotide, Double> entry: normalizedErrorProbabilityStruct.entrySet()){
-            Double currentValue = entry.getValue();
-            if(currentValue.compareTo(lowest) <0){
-                lowest = currentValue;
-            }
+            return sumOfAllQualities;
         }
-        if(lowest.equals(Double.MAX_VALUE)){
-            //no probabilities
-            return 0D;
-        }
-        return lowest;
-    }
-    private ConsensusProbabilities generateNormalizedProbabilityStruct(
-            Map<Nucleotide, Integer> qualityValueSumMap) {
-        List<ConsensusProbabilities> probabilityStructs = createProbabilityStructsForEachBase(qualityValueSumMap);
-        ConsensusProbabilities rawErrorProbabilityStruct = createRawErrorProbabilityStruct(probabilityStructs);
-        return rawErrorProbabilityStruct.normalize();
-    }
-    private ConsensusProbabilities createRawErrorProbabilityStruct(
-            List<ConsensusProbabilities> probabilityStructs) {
-        Map<Nucleotide, Double> rawErrorProbabilityMap = new EnumMap<Nucleotide, Double>(Nucleotide.class);
-        for(Nucleotide base : ConsensusUtil.BASES_TO_CONSIDER){
-            rawErrorProbabilityMap.put(base, calculateRawErrorProbabilityFor(base, probabilityStructs));
-        }        
-        return new ConsensusProbabilities(rawErrorProbabilityMap);
-    }
-
-    private List<ConsensusProbabilities> createProbabilityStructsForEachBase(
-            Map<Nucleotide, Integer> qualityValueSumMap) {
-        List<ConsensusProbabilities> probabilityStructs= new ArrayList<ConsensusProbabilities>();
-        for(Nucleotide base : ConsensusUtil.BASES_TO_CONSIDER){
-            probabilityStructs.add(new ConsensusProbabilities(base, qualityValueSumMap.get(base)));
-        }
-               
-        return probabilityStructs;
-    }
-
-    private double calculateRawErrorProbabilityFor(Nucleotide base,
-            List<ConsensusProbabilities> probabilityStructs) {
-        double result = 1D;
-        for(ConsensusProbabilities struct : probabilityStructs){
-            result *=struct.getProbabilityFor(base);
-        }
-        return result;
+        return PhredQuality.computeQualityScore(normalizedProbability);
     }
    
     protected final Set<Nucleotide> getBasesUsedTowardsAmbiguity(
@@ -208,14 +145,20 @@ abstract class AbstractChurchillWatermanConsensusCaller implements ConsensusCall
         double errorProbabilityOfAmbiguity;
         double sumOfProbabilitySuccess=0D;
         Set<Nucleotide> basesUsed = EnumSet.noneOf(Nucleotide.class);
-        List<Nucleotide> basesToConsider = new ArrayList<Nucleotide>(BASES_TO_CONSIDER);
-        Collections.sort(basesToConsider, new LowestProbabilityComparator(normalizedErrorProbabilityStruct));
+        boolean[] used = new boolean[ConsensusProbabilities.NUMBER_OF_BASES];
         do
         {
-            Nucleotide baseWithLowestErrorProbability = basesToConsider.remove(0);
-            sumOfProbabilitySuccess += (1 - normalizedErrorProbabilityStruct.getProbabilityFor(
-                    baseWithLowestErrorProbability));
-            basesUsed.add(baseWithLowestErrorProbability);
+            //same order as a stable sort by lowest probability
+            int lowestIndex=-1;
+            for(int i=0; i< used.length; i++){
+                if(!used[i] && (lowestIndex <0 || 
+                        Double.compare(normalizedErrorProbabilityStruct.get(i), normalizedErrorProbabilityStruct.get(lowestIndex)) <0)){
+                    lowestIndex = i;
+                }
+            }
+            used[lowestIndex] = true;
+            sumOfProbabilitySuccess += (1 - normalizedErrorProbabilityStruct.get(lowestIndex));
+            basesUsed.add(BASES_TO_CONSIDER.get(lowestIndex));
             errorProbabilityOfAmbiguity = 1-sumOfProbabilitySuccess;
         }while( sumOfProbabilitySuccess <1D && underThreshold(errorProbabilityOfAmbiguity)
                 && basesUsed.size()< baseCount );
@@ -226,22 +169,4 @@ abstract class AbstractChurchillWatermanConsensusCaller implements ConsensusCall
     private boolean underThreshold(double errorProbability){
         return PhredQuality.computeQualityScore(errorProbability) < getHighQualityThreshold().getQualityScore();
      }
-    /**
-     * Sorts {@link ConsensusProbabilities} by comparing the 
-     * probability of the given {@link Nucleotide}.
-     * @author dkatzel
-     *
-     *
-     */
-    private static class LowestProbabilityComparator implements Comparator<Nucleotide>{
-        private final ConsensusProbabilities probabilityStruct;
-        LowestProbabilityComparator(ConsensusProbabilities probabilityStruct){
-            this.probabilityStruct = probabilityStruct;
-        }
-        @Override
-        public int compare(Nucleotide o1, Nucleotide o2) {
-            return probabilityStruct.getProbabilityFor(o1).compareTo(probabilityStruct.getProbabilityFor(o2));
-        }
-        
-    }
 }
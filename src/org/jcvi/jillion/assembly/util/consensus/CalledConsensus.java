@@ -0,0 +1,88 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.assembly.util.consensus;
+
+import org.jcvi.jillion.core.qual.QualitySequence;
+import org.jcvi.jillion.core.residue.nt.NucleotideSequence;
+/**
+ * {@code CalledConsensus} is the consensus sequence
+ * and the consensus qualities of every slice of a contig
+ * computed by a {@link ParallelConsensusCaller}.
+ * 
+ * @author dkatzel
+ *
+ * @since 5.3
+ */
+public final class CalledConsensus {
+
+	private final NucleotideSequence consensus;
+	private final QualitySequence qualities;
+	
+	CalledConsensus(NucleotideSequence consensus, QualitySequence qualities) {
+		this.consensus = consensus;
+		this.qualities = qualities;
+	}
+	/**
+	 * Get the gapped consensus sequence.
+	 * 
+	 * @return the {@link NucleotideSequence}; will never be null.
+	 */
+	public NucleotideSequence getConsensusSequence() {
+		return consensus;
+	}
+	/**
+	 * Get the consensus quality of each slice.
+	 * Quality values higher than {@link org.jcvi.jillion.core.qual.PhredQuality#MAX_VALUE}
+	 * are capped at that value.
+	 * 
+	 * @return the {@link QualitySequence} which is the same length as the
+	 * consensus sequence; will never be null.
+	 */
+	public QualitySequence getConsensusQualities() {
+		return qualities;
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + consensus.hashCode();
+		result = prime * result + qualities.hashCode();
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof CalledConsensus)) {
+			return false;
+		}
+		CalledConsensus other = (CalledConsensus) obj;
+		return consensus.equals(other.consensus) && qualities.equals(other.qualities);
+	}
+
+	@Override
+	public String toString() {
+		return "CalledConsensus [consensus=" + consensus + ", qualities=" + qualities + "]";
+	}
+}
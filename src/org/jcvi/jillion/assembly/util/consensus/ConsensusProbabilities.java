@@ -25,18 +25,14 @@
  */
 package org.jcvi.jillion.assembly.util.consensus;
 
-import static org.jcvi.jillion.assembly.util.consensus.ConsensusUtil.BASES_TO_CONSIDER;
-
-import java.util.Collections;
-import java.util.EnumMap;
-import java.util.Map;
-import java.util.Map.Entry;
-import java.util.Set;
+import java.util.Arrays;
 
 import org.jcvi.jillion.core.residue.nt.Nucleotide;
 /**
  * {@code ConsensusProbabilities} contains the probabilities
  * that each non-ambiguous base is the consensus.
+ * The probabilities are stored in a primitive array
+ * in the same order as {@link ConsensusUtil#BASES_TO_CONSIDER}.
  * @author dkatzel
  *
  *
@@ -47,26 +43,50 @@ final class ConsensusProbabilities{
 
     private static final double ONE_QUARTER = 0.25D;
     
-    private final Map<Nucleotide, Double> probabilityMap;
+    static final int NUMBER_OF_BASES = ConsensusUtil.BASES_TO_CONSIDER.size();
     
-    ConsensusProbabilities(Map<Nucleotide, Double> probabilityMap){
-        this.probabilityMap = Collections.unmodifiableMap(new EnumMap<Nucleotide, Double>(probabilityMap));
-    }
+    private final double[] probabilities;
     
-    @SuppressWarnings("PMD.CompareObjectsWithEquals")
-    ConsensusProbabilities(Nucleotide consensus,int cumulativeQualityValue){
-        double probability = Math.pow(ONE_TENTH, cumulativeQualityValue*ONE_TENTH);
-        probabilityMap = new EnumMap<Nucleotide, Double>(Nucleotide.class);
-        for(Nucleotide currentBase : BASES_TO_CONSIDER){
-            if(currentBase == consensus){
-                probabilityMap.put(currentBase, Double.valueOf(1 - probability));
-            }
-            else{
-                //evenly distribute probability around
-                //to the rest of the basecalls.
-                probabilityMap.put(currentBase, probability* ONE_QUARTER);
+    private ConsensusProbabilities(double[] probabilities){
+        this.probabilities = probabilities;
+    }
+    /**
+     * Get the index of the given base in {@link ConsensusUtil#BASES_TO_CONSIDER}.
+     * @param base the base to get the index of.
+     * @return the index or -1 if the base isn't considered
+     * towards the consensus.
+     */
+    static int indexOf(Nucleotide base){
+        switch(base){
+            case Adenine : return 0;
+            case Cytosine : return 1;
+            case Guanine : return 2;
+            case Thymine : return 3;
+            case Gap : return 4;
+            default : return -1;
+        }
+    }
+    /**
+     * Create the raw (not normalized) probabilities
+     * by multiplying together the probabilities
+     * of each base given its cumulative quality value.
+     * Each base's probability of being the consensus is {@code 1 - 10^(-q/10)}
+     * and the error probability is evenly distributed to the other bases.
+     * 
+     * @param cumulativeQualityValues the sum of the quality values
+     * of each base in {@link ConsensusUtil#BASES_TO_CONSIDER} order.
+     * @return a new ConsensusProbabilities.
+     */
+    static ConsensusProbabilities fromCumulativeQualityValues(int[] cumulativeQualityValues){
+        double[] raw = new double[NUMBER_OF_BASES];
+        Arrays.fill(raw, 1D);
+        for(int base=0; base< NUMBER_OF_BASES; base++){
+            double probability = Math.pow(ONE_TENTH, cumulativeQualityValues[base]*ONE_TENTH);
+            for(int i=0; i< NUMBER_OF_BASES; i++){
+                raw[i] *= i==base ? 1 - probability : probability* ONE_QUARTER;
             }
         }
+        return new ConsensusProbabilities(raw);
     }
     /**
      * Get the probability that the given nucleotide is
@@ -80,44 +100,62 @@ final class ConsensusProbabilities{
         if(base==null){
             throw new NullPointerException("base can not be null");
         }
-        return probabilityMap.get(base);
+        int index = indexOf(base);
+        return index <0 ? null : probabilities[index];
+    }
+    /**
+     * Get the probability of the base at the given
+     * index of {@link ConsensusUtil#BASES_TO_CONSIDER}.
+     * @param index the index of the base.
+     * @return the probability.
+     */
+    double get(int index){
+        return probabilities[index];
+    }
+    /**
+     * Get the lowest probability of all the bases.
+     * NaN probabilities (which happen if there are no quality values)
+     * are ignored.
+     * @return the lowest probability or 0 if there are no probabilities.
+     */
+    double getLowestProbability(){
+        double lowest = Double.MAX_VALUE;
+        for(double probability : probabilities){
+            if(Double.compare(probability, lowest) <0){
+                lowest = probability;
+            }
+        }
+        if(lowest == Double.MAX_VALUE){
+            //no probabilities
+            return 0D;
+        }
+        return lowest;
     }
     
     public ConsensusProbabilities normalize(){
         double sumOfRawProbabilities= 0D;
-        for(Nucleotide currentBase : ConsensusUtil.BASES_TO_CONSIDER){
-            sumOfRawProbabilities+= probabilityMap.get(currentBase);
+        for(double probability : probabilities){
+            sumOfRawProbabilities+= probability;
         }
-        Map<Nucleotide, Double> newMap = new EnumMap<Nucleotide, Double>(Nucleotide.class);
-        newMap.put(Nucleotide.Adenine, computeNormalizedProbabilityFor(Nucleotide.Adenine, sumOfRawProbabilities));
-        newMap.put(Nucleotide.Cytosine, computeNormalizedProbabilityFor(Nucleotide.Cytosine, sumOfRawProbabilities));
-        newMap.put(Nucleotide.Guanine, computeNormalizedProbabilityFor(Nucleotide.Guanine, sumOfRawProbabilities));
-        newMap.put(Nucleotide.Thymine, computeNormalizedProbabilityFor(Nucleotide.Thymine, sumOfRawProbabilities));
-        newMap.put(Nucleotide.Gap, computeNormalizedProbabilityFor(Nucleotide.Gap, sumOfRawProbabilities));
-        
-        return new ConsensusProbabilities(newMap);
-    }
-    
-    @SuppressWarnings("PMD.CompareObjectsWithEquals")
-    private Double computeNormalizedProbabilityFor(Nucleotide base, double sumOfRawProbabilities){
-        double result= 0D;
-        for(Nucleotide currentBase : BASES_TO_CONSIDER){
-            if(currentBase != base){
-                result+= probabilityMap.get(currentBase);
+        double[] normalized = new double[NUMBER_OF_BASES];
+        for(int base=0; base< NUMBER_OF_BASES; base++){
+            double result= 0D;
+            for(int i=0; i< NUMBER_OF_BASES; i++){
+                if(i != base){
+                    result+= probabilities[i];
+                }
             }
+            normalized[base] = result/sumOfRawProbabilities;
         }
-        return result/sumOfRawProbabilities;
+        return new ConsensusProbabilities(normalized);
     }
     
-    public Set<Entry<Nucleotide, Double>> entrySet(){
-        return probabilityMap.entrySet();
-    }
     /**
     * {@inheritDoc}
     */
     @Override
     public String toString() {
-        return "ProbabilityStruct [probabilityMap=" + probabilityMap + "]";
+        return "ProbabilityStruct [probabilities=" + Arrays.toString(probabilities) + "]";
     }
     
     
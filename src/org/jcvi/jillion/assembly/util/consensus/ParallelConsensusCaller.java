@@ -0,0 +1,308 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.assembly.util.consensus;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Function;
+
+import org.jcvi.jillion.assembly.Contig;
+import org.jcvi.jillion.assembly.util.SliceMap;
+import org.jcvi.jillion.assembly.util.SliceMapBuilder;
+import org.jcvi.jillion.core.datastore.DataStore;
+import org.jcvi.jillion.core.datastore.DataStoreException;
+import org.jcvi.jillion.core.qual.PhredQuality;
+import org.jcvi.jillion.core.qual.QualitySequenceBuilder;
+import org.jcvi.jillion.core.residue.nt.AsciiNucleotideDecoder;
+import org.jcvi.jillion.core.util.iter.StreamingIterator;
+import org.jcvi.jillion.internal.core.util.Sneak;
+/**
+ * {@code ParallelConsensusCaller} recalls the consensus 
+ * of whole contigs using a {@link ConsensusCaller} on a {@link ForkJoinPool}.
+ * The slices of a contig are split into ranges 
+ * which are called concurrently and the results are written
+ * into primitive arrays which are then assembled, in order,
+ * into the consensus {@link org.jcvi.jillion.core.residue.nt.NucleotideSequence}
+ * and consensus {@link org.jcvi.jillion.core.qual.QualitySequence}.
+ * Many contigs from a {@link DataStore} can also be recalled at the same time.
+ * <p>
+ * The {@link ConsensusCaller} is called from several threads at once
+ * so it must be thread safe; all the {@link ConsensusCaller}
+ * implementations in this package are.
+ * </p>
+ * 
+ * @author dkatzel
+ *
+ * @since 5.3
+ */
+public final class ParallelConsensusCaller {
+
+	private final ConsensusCaller caller;
+	private final ForkJoinPool pool;
+	private final int slicesPerTask;
+	
+	private ParallelConsensusCaller(Builder builder){
+		this.caller = builder.caller;
+		this.pool = builder.pool;
+		this.slicesPerTask = builder.slicesPerTask;
+	}
+	/**
+	 * Call the consensus of every slice in the given {@link SliceMap}.
+	 * 
+	 * @param sliceMap the {@link SliceMap} to call; can not be null.
+	 * 
+	 * @return a new {@link CalledConsensus}; will never be null.
+	 * 
+	 * @throws NullPointerException if sliceMap is null.
+	 */
+	public CalledConsensus callConsensus(SliceMap sliceMap){
+		Objects.requireNonNull(sliceMap);
+		return pool.invoke(new SliceMapTask(sliceMap));
+	}
+	/**
+	 * Call the consensus of every contig in the given {@link DataStore}
+	 * using a {@link SliceMapBuilder} with the given default quality
+	 * for each read base.
+	 * 
+	 * @param contigs the {@link DataStore} of contigs; can not be null.
+	 * 
+	 * @param defaultQuality the quality to use for every read base; can not be null.
+	 * 
+	 * @param <C> the type of {@link Contig}.
+	 * 
+	 * @return a new Map of contig id to {@link CalledConsensus}
+	 * in the same order as the DataStore's ids; will never be null.
+	 * 
+	 * @throws DataStoreException if there is a problem getting the contigs.
+	 * @throws NullPointerException if either parameter is null.
+	 */
+	public <C extends Contig<?>> Map<String, CalledConsensus> callConsensus(DataStore<C> contigs, PhredQuality defaultQuality) throws DataStoreException{
+		Objects.requireNonNull(defaultQuality);
+		return callConsensus(contigs, contig -> createSliceMap(contig, defaultQuality));
+	}
+	
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static SliceMap createSliceMap(Contig<?> contig, PhredQuality defaultQuality){
+		return new SliceMapBuilder(contig, defaultQuality).build();
+	}
+	/**
+	 * Call the consensus of every contig in the given {@link DataStore}.
+	 * The contigs are fetched and their {@link SliceMap}s created
+	 * by the worker threads so only the contigs currently being
+	 * called are in memory at the same time.
+	 * 
+	 * @param contigs the {@link DataStore} of contigs; can not be null.
+	 * 
+	 * @param sliceMapFactory the function to create the {@link SliceMap}
+	 * of each contig, for example, using a {@link SliceMapBuilder}; can not be null.
+	 * 
+	 * @param <C> the type of {@link Contig}.
+	 * 
+	 * @return a new Map of contig id to {@link CalledConsensus}
+	 * in the same order as the DataStore's ids; will never be null.
+	 * 
+	 * @throws DataStoreException if there is a problem getting the contigs.
+	 * @throws NullPointerException if either parameter is null.
+	 */
+	public <C extends Contig<?>> Map<String, CalledConsensus> callConsensus(DataStore<C> contigs, 
+			Function<? super C, ? extends SliceMap> sliceMapFactory) throws DataStoreException{
+		Objects.requireNonNull(contigs);
+		Objects.requireNonNull(sliceMapFactory);
+		
+		List<ContigTask<C>> tasks = new ArrayList<>();
+		try(StreamingIterator<String> ids = contigs.idIterator()){
+			while(ids.hasNext()){
+				ContigTask<C> task = new ContigTask<>(ids.next(), contigs, sliceMapFactory);
+				pool.execute(task);
+				tasks.add(task);
+			}
+		}catch(RuntimeException | DataStoreException e){
+			for(ForkJoinTask<?> task : tasks){
+				task.cancel(true);
+			}
+			throw e;
+		}
+		Map<String, CalledConsensus> map = new LinkedHashMap<>();
+		for(ContigTask<C> task : tasks){
+			map.put(task.id, task.join());
+		}
+		return map;
+	}
+	
+	private CalledConsensus call(SliceMap sliceMap){
+		int length = (int) sliceMap.getSize();
+		byte[] asciiBases = new byte[length];
+		byte[] qualities = new byte[length];
+		new RangeTask(sliceMap, 0, length, asciiBases, qualities).invoke();
+		
+		return new CalledConsensus(
+				new AsciiNucleotideDecoder(length).append(asciiBases, 0, length).build(), 
+				new QualitySequenceBuilder(qualities).build());
+	}
+	
+	private final class SliceMapTask extends RecursiveTask<CalledConsensus>{
+
+		private static final long serialVersionUID = 1L;
+		
+		private final transient SliceMap sliceMap;
+		
+		SliceMapTask(SliceMap sliceMap){
+			this.sliceMap = sliceMap;
+		}
+		@Override
+		protected CalledConsensus compute() {
+			return call(sliceMap);
+		}
+	}
+	
+	private final class ContigTask<C extends Contig<?>> extends RecursiveTask<CalledConsensus>{
+
+		private static final long serialVersionUID = 1L;
+		
+		private final String id;
+		private final transient DataStore<C> contigs;
+		private final transient Function<? super C, ? extends SliceMap> sliceMapFactory;
+		
+		ContigTask(String id, DataStore<C> contigs, Function<? super C, ? extends SliceMap> sliceMapFactory) {
+			this.id = id;
+			this.contigs = contigs;
+			this.sliceMapFactory = sliceMapFactory;
+		}
+
+		@Override
+		protected CalledConsensus compute() {
+			C contig;
+			try {
+				contig = contigs.get(id);
+			} catch (DataStoreException e) {
+				throw Sneak.sneakyThrow(e);
+			}
+			return call(sliceMapFactory.apply(contig));
+		}
+	}
+	/**
+	 * Calls the consensus of a range of slices, splitting
+	 * the range in half until it is small enough.
+	 */
+	private final class RangeTask extends RecursiveAction{
+
+		private static final long serialVersionUID = 1L;
+		
+		private final transient SliceMap sliceMap;
+		private final int start, end;
+		private final byte[] asciiBases, qualities;
+		
+		RangeTask(SliceMap sliceMap, int start, int end, byte[] asciiBases, byte[] qualities) {
+			this.sliceMap = sliceMap;
+			this.start = start;
+			this.end = end;
+			this.asciiBases = asciiBases;
+			this.qualities = qualities;
+		}
+
+		@Override
+		protected void compute() {
+			if(end - start > slicesPerTask){
+				int mid = (start + end) >>> 1;
+				invokeAll(new RangeTask(sliceMap, start, mid, asciiBases, qualities),
+						new RangeTask(sliceMap, mid, end, asciiBases, qualities));
+				return;
+			}
+			for(int i=start; i< end; i++){
+				ConsensusResult result = caller.callConsensus(sliceMap.getSlice(i));
+				asciiBases[i] = (byte) result.getConsensus().getCharacter().charValue();
+				int quality = result.getConsensusQuality();
+				qualities[i] = (byte) Math.max(PhredQuality.MIN_VALUE, Math.min(PhredQuality.MAX_VALUE, quality));
+			}
+		}
+	}
+	/**
+	 * Builder for {@link ParallelConsensusCaller}.
+	 * 
+	 * @author dkatzel
+	 *
+	 * @since 5.3
+	 */
+	public static final class Builder{
+		private static final int DEFAULT_SLICES_PER_TASK = 4096;
+		
+		private final ConsensusCaller caller;
+		private ForkJoinPool pool = ForkJoinPool.commonPool();
+		private int slicesPerTask = DEFAULT_SLICES_PER_TASK;
+		/**
+		 * Create a new Builder that will use the given {@link ConsensusCaller}
+		 * to call each slice.
+		 * 
+		 * @param caller the thread safe {@link ConsensusCaller} to use; can not be null.
+		 * 
+		 * @throws NullPointerException if caller is null.
+		 */
+		public Builder(ConsensusCaller caller){
+			this.caller = Objects.requireNonNull(caller);
+		}
+		/**
+		 * Use the given {@link ForkJoinPool} instead of
+		 * the common pool.
+		 * 
+		 * @param pool the {@link ForkJoinPool} to use; can not be null.
+		 * 
+		 * @return this.
+		 * 
+		 * @throws NullPointerException if pool is null.
+		 */
+		public Builder pool(ForkJoinPool pool){
+			this.pool = Objects.requireNonNull(pool);
+			return this;
+		}
+		/**
+		 * The max number of slices that are called by a single
+		 * task before the range is split.  Defaults to {@value #DEFAULT_SLICES_PER_TASK}.
+		 * 
+		 * @param slicesPerTask the number of slices; must be &ge; 1.
+		 * 
+		 * @return this.
+		 * 
+		 * @throws IllegalArgumentException if slicesPerTask &lt; 1.
+		 */
+		public Builder slicesPerTask(int slicesPerTask){
+			if(slicesPerTask <1){
+				throw new IllegalArgumentException("slices per task must be >= 1");
+			}
+			this.slicesPerTask = slicesPerTask;
+			return this;
+		}
+		/**
+		 * Create a new {@link ParallelConsensusCaller}.
+		 * 
+		 * @return a new {@link ParallelConsensusCaller}; will never be null.
+		 */
+		public ParallelConsensusCaller build(){
+			return new ParallelConsensusCaller(this);
+		}
+	}
+}
@@ -33,7 +33,6 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Objects;
 import java.util.function.LongConsumer;
@@ -41,7 +40,6 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.jcvi.jillion.core.io.IOUtil;
-import org.jcvi.jillion.internal.core.util.Caches;
 import org.jcvi.jillion.internal.core.util.JillionUtil;
 
 
@@ -139,9 +137,9 @@ public abstract class Range implements Rangeable,Iterable<Long>, Serializable{
 	 */
 	private static final long UNSIGNED_INT_MAX = 4294967295L;
 	/**
-	 * Initial size of our cache of ranges {@link #CACHE}.
+	 * Default number of Ranges in our cache {@link #cache}.
 	 */
-    private static final int INITIAL_CACHE_SIZE = 1024;
+    private static final int DEFAULT_CACHE_SIZE = 1<<16;
 
     /**
      * Regular expression in the form (left) .. (right).
@@ -157,10 +155,10 @@ public abstract class Range implements Rangeable,Iterable<Long>, Serializable{
     private static Pattern COMMA_PATTERN = Pattern.compile("(\\d+)\\s*,\\s*(\\d+)");
     /**
      * Cache of previously built ranges.  
-     * This cache uses  {@link SoftReference}s
-     * so memory can be reclaimed if needed.
+     * This is a fixed size lock-free cache
+     * so threads building Ranges don't contend with each other.
      */
-    private static final Map<CacheKey, Range> CACHE;
+    private static volatile RangeCache cache = new RangeCache(DEFAULT_CACHE_SIZE);
     
     
     /**
@@ -412,10 +410,33 @@ public abstract class Range implements Rangeable,Iterable<Long>, Serializable{
     }
     
     /**
-     * Initialize cache with a soft reference cache that will grow as needed.
+     * Change the number of Ranges that are cached
+     * by the factory methods and {@link Builder#build()}.
+     * The cache is a fixed size so when a new Range is built
+     * it may replace a previously cached Range.  Changing the size
+     * clears the cache and its statistics.
+     * 
+     * @param size the number of Ranges to cache which will be rounded up
+     * to a power of 2; or 0 to turn off caching entirely and always
+     * create new instances.  The default is 65536.
+     * 
+     * @throws IllegalArgumentException if size is negative or &gt; 2^30.
+     * 
+     * @since 5.3
      */
-    static{
-         CACHE = Caches.createSoftReferencedValueCache(INITIAL_CACHE_SIZE);
+    public static void setCacheSize(int size){
+        cache = new RangeCache(size);
+    }
+    /**
+     * Get the current statistics of the Range cache
+     * to see how often Ranges are reused.
+     * 
+     * @return a new {@link CacheStats} snapshot; will never be null.
+     * 
+     * @since 5.3
+     */
+    public static CacheStats getCacheStats(){
+        return cache.stats();
     }
     /**
      * Factory method to get a {@link Range} object in
@@ -613,12 +634,8 @@ public abstract class Range implements Rangeable,Iterable<Long>, Serializable{
 	 * or null if the Range was not in the cache.
 	 * @throws NullPointerException if range is null.
 	 */
-	static synchronized Range removeFromCache(Range range){
-	    CacheKey key = CacheKey.createCacheKeyFor(range);
-	    if(key !=null){
-		return CACHE.remove(key);
-	    }
-	    return null;
+	static Range removeFromCache(Range range){
+	    return cache.remove(range);
 	}
 
 
@@ -3076,21 +3093,14 @@ public abstract class Range implements Rangeable,Iterable<Long>, Serializable{
         	}
     		
     		
-    		CacheKey cacheKey = CacheKey.createCacheKeyFor(begin, end);
-    		
-    		if(cacheKey!=null){
-    		    return CACHE.computeIfAbsent(cacheKey, k->{ 
-    		        if(k.end >= k.begin) {
-    		            return buildNewRange(k.begin,k.end); 
-    		        }
-    		        return buildNewEmptyRange(k.begin);
-    		    });
+    		RangeCache currentCache = cache;
+    		Range cached = currentCache.get(begin, end);
+    		if(cached !=null){
+    		    return cached;
     		}
-    		
-            if(end >= begin) {
-                return buildNewRange(begin,end);            
-            }
-            return buildNewEmptyRange(begin);
+    		Range range = end >= begin ? buildNewRange(begin,end) : buildNewEmptyRange(begin);
+    		currentCache.put(range);
+    		return range;
             
     	}
 		@Override
@@ -3166,58 +3176,76 @@ public abstract class Range implements Rangeable,Iterable<Long>, Serializable{
         }
     }
     
-    private static final class CacheKey{
-        private final int begin,end;
+    /**
+     * {@code CacheStats} is a snapshot of the statistics
+     * of the cache used by the Range factory methods.
+     * 
+     * @author dkatzel
+     *
+     * @since 5.3
+     */
+    public static final class CacheStats{
+        private final int size;
+        private final long hitCount, missCount, evictionCount;
         
-        public CacheKey(int begin, int end) {
-            this.begin = begin;
-            this.end = end;
+        CacheStats(int size, long hitCount, long missCount, long evictionCount) {
+            this.size = size;
+            this.hitCount = hitCount;
+            this.missCount = missCount;
+            this.evictionCount = evictionCount;
         }
-        
-        public static CacheKey createCacheKeyFor(Range range){
-           return createCacheKeyFor(range.getBegin(), range.getEnd());
+        /**
+         * Get the max number of Ranges that can be cached.
+         * @return the size; will be 0 if caching is turned off.
+         */
+        public int getSize() {
+            return size;
         }
-        
-        public static CacheKey createCacheKeyFor(long begin, long end){
-           if(begin <0 || begin > Integer.MAX_VALUE || end <0 || end > Integer.MAX_VALUE){
-               return null;
-           }
-           return new CacheKey( (int)begin, (int)end);
+        /**
+         * Get the number of times a cached Range was returned.
+         * @return the hit count; will always be &ge; 0.
+         */
+        public long getHitCount() {
+            return hitCount;
         }
-
-        @Override
-        public int hashCode() {
-            final int prime = 31;
-            int result = 1;
-            result = prime * result + begin;
-            result = prime * result + end;
-            return result;
+        /**
+         * Get the number of times a new Range had to be created.
+         * @return the miss count; will always be &ge; 0.
+         */
+        public long getMissCount() {
+            return missCount;
         }
-
-        @Override
-        public boolean equals(Object obj) {
-            if (this == obj) {
-                return true;
-            }
-            if (obj == null) {
-                return false;
-            }
-            if (!(obj instanceof CacheKey)) {
-                return false;
-            }
-            CacheKey other = (CacheKey) obj;
-            if (begin != other.begin) {
-                return false;
-            }
-            if (end != other.end) {
-                return false;
-            }
-            return true;
+        /**
+         * Get the number of times a cached Range was replaced
+         * by a different Range.
+         * @return the eviction count; will always be &ge; 0.
+         */
+        public long getEvictionCount() {
+            return evictionCount;
+        }
+        /**
+         * Get the total number of Ranges requested.
+         * @return the number of hits plus the number of misses.
+         */
+        public long getRequestCount() {
+            return hitCount + missCount;
+        }
+        /**
+         * Get the ratio of requests that returned a cached Range.
+         * @return the hit rate between 0 and 1; or 1 if there have not been
+         * any requests.
+         */
+        public double getHitRate() {
+            long requestCount = getRequestCount();
+            return requestCount ==0 ? 1D : (double) hitCount / requestCount;
         }
         
-        
-        
-        
+        @Override
+        public String toString() {
+            return "CacheStats [size=" + size + ", hitCount=" + hitCount
+                    + ", missCount=" + missCount + ", evictionCount="
+                    + evictionCount + "]";
+        }
     }
     /**
      * Create a new Range.Builder instance
@@ -0,0 +1,140 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.core;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+/**
+ * Lock-free, fixed size, flyweight cache of {@link Range}s.
+ * Each begin and end coordinate pair hashes to a single
+ * slot so looking up a Range is just an array read and comparing
+ * the coordinates.  If a different Range is built
+ * that hashes to the same slot, it replaces the old one
+ * so the cache never grows beyond its size and never
+ * needs to be swept.
+ * <p>
+ * Threads never block each other; if two threads
+ * build the same missing Range at the same time, then
+ * they might get different (but equal) instances.
+ * </p>
+ * @author dkatzel
+ *
+ * @since 5.3
+ */
+final class RangeCache {
+
+	private final AtomicReferenceArray<Range> slots;
+	private final int mask;
+	
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+	/**
+	 * Create a new cache.
+	 * @param size the number of Ranges to cache which will
+	 * be rounded up to a power of 2; if 0, then nothing is cached.
+	 * @throws IllegalArgumentException if size is negative or
+	 * greater than 2^30.
+	 */
+	RangeCache(int size){
+		if(size < 0 || size > 1<<30){
+			throw new IllegalArgumentException("cache size must be between 0 and 2^30: " + size);
+		}
+		if(size ==0){
+			slots = null;
+			mask = 0;
+		}else{
+			int capacity = Integer.highestOneBit(size);
+			if(capacity < size){
+				capacity <<=1;
+			}
+			slots = new AtomicReferenceArray<>(capacity);
+			mask = capacity -1;
+		}
+	}
+	
+	int size(){
+		return slots ==null ? 0 : slots.length();
+	}
+	
+	private int indexOf(long begin, long end){
+		long h = begin * 0x9E3779B97F4A7C15L + end;
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		return (int) h & mask;
+	}
+	/**
+	 * Get the cached Range with the given coordinates.
+	 * @param begin the begin coordinate.
+	 * @param end the end coordinate.
+	 * @return the cached Range or {@code null} if it isn't cached.
+	 */
+	Range get(long begin, long end){
+		if(slots ==null){
+			misses.increment();
+			return null;
+		}
+		Range range = slots.get(indexOf(begin, end));
+		if(range !=null && range.getBegin() == begin && range.getEnd() == end){
+			hits.increment();
+			return range;
+		}
+		misses.increment();
+		return null;
+	}
+	/**
+	 * Cache the given range replacing whatever
+	 * Range was in its slot.
+	 * @param range the Range to cache.
+	 */
+	void put(Range range){
+		if(slots ==null){
+			return;
+		}
+		Range old = slots.getAndSet(indexOf(range.getBegin(), range.getEnd()), range);
+		if(old !=null){
+			evictions.increment();
+		}
+	}
+	/**
+	 * Remove the given Range from the cache.
+	 * @param range the Range to remove.
+	 * @return the Range that was in the cache or 
+	 * {@code null} if it wasn't cached.
+	 */
+	Range remove(Range range){
+		if(slots ==null){
+			return null;
+		}
+		int index = indexOf(range.getBegin(), range.getEnd());
+		Range cached = slots.get(index);
+		if(cached !=null && cached.getBegin() == range.getBegin() && cached.getEnd() == range.getEnd()
+				&& slots.compareAndSet(index, cached, null)){
+			return cached;
+		}
+		return null;
+	}
+	
+	Range.CacheStats stats(){
+		return new Range.CacheStats(size(), hits.sum(), misses.sum(), evictions.sum());
+	}
+}
@@ -0,0 +1,445 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.core;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+/**
+ * {@code RangeIndex} is an immutable index
+ * over a collection of {@link Rangeable}s that can quickly
+ * find which elements intersect a given {@link Range}
+ * without having to check every element.
+ * <p>
+ * The index is an implicit augmented interval tree: the elements
+ * are sorted by begin coordinate and the coordinates
+ * and the max end coordinate of each subtree are stored in primitive arrays
+ * so the only objects in the index are the elements themselves.
+ * A query takes {@code O(log N + M)} time where N is the number
+ * of elements and M is the number of elements returned.
+ * </p>
+ * <p>
+ * Elements are always returned sorted by begin coordinate
+ * (ties are in the order they were in the original collection).
+ * Intersection follows the same rules as {@link Range#intersects(Range)} 
+ * so empty Ranges never intersect anything.
+ * </p>
+ * @author dkatzel
+ *
+ * @param <T> the type of Rangeable in the index.
+ * 
+ * @since 5.3
+ */
+public final class RangeIndex<T extends Rangeable> implements Iterable<T>{
+	/**
+	 * Subtrees at this level or lower are 
+	 * scanned linearly instead of traversed.
+	 */
+	private static final int SCAN_LEVEL = 3;
+	/**
+	 * Only compute the max ends of a level in parallel
+	 * if there are at least this many nodes in it.
+	 */
+	private static final int MIN_PARALLEL_NODES = 1<<14;
+	
+	private final Object[] elements;
+	private final long[] begins;
+	private final long[] ends;
+	private final long[] maxEnds;
+	private final int rootLevel;
+	
+	/**
+	 * Create a new RangeIndex of the given elements.
+	 * 
+	 * @param elements the elements to index; can not be null
+	 * or contain null elements but may be empty.
+	 * 
+	 * @param <T> the type of Rangeable in the index.
+	 * 
+	 * @return a new RangeIndex; will never be null.
+	 * 
+	 * @throws NullPointerException if elements is null or contains null.
+	 */
+	public static <T extends Rangeable> RangeIndex<T> of(Collection<? extends T> elements){
+		return new RangeIndex<>(elements, false);
+	}
+	/**
+	 * Create a new RangeIndex of the given elements
+	 * using multiple threads in the common {@link java.util.concurrent.ForkJoinPool}
+	 * to sort the elements and build the index.  This is only
+	 * worth it for very large collections.
+	 * 
+	 * @param elements the elements to index; can not be null
+	 * or contain null elements but may be empty.
+	 * 
+	 * @param <T> the type of Rangeable in the index.
+	 * 
+	 * @return a new RangeIndex; will never be null.
+	 * 
+	 * @throws NullPointerException if elements is null or contains null.
+	 */
+	public static <T extends Rangeable> RangeIndex<T> parallelOf(Collection<? extends T> elements){
+		return new RangeIndex<>(elements, true);
+	}
+	
+	private RangeIndex(Collection<? extends T> input, boolean parallel){
+		Object[] unsorted = input.toArray();
+		int n = unsorted.length;
+		long[] unsortedBegins = new long[n];
+		long[] unsortedEnds = new long[n];
+		range(n, parallel).forEach(i ->{
+			Rangeable r = (Rangeable) Objects.requireNonNull(unsorted[i], "elements can not contain null");
+			Range range = r.asRange();
+			unsortedBegins[i] = range.getBegin();
+			unsortedEnds[i] = range.getEnd();
+		});
+		
+		int[] order = sortByBegin(unsortedBegins, parallel);
+		elements = new Object[n];
+		begins = new long[n];
+		ends = new long[n];
+		maxEnds = new long[n];
+		range(n, parallel).forEach(i->{
+			int j = order[i];
+			elements[i] = unsorted[j];
+			begins[i] = unsortedBegins[j];
+			ends[i] = unsortedEnds[j];
+		});
+		rootLevel = computeMaxEnds(parallel);
+	}
+	
+	private static IntStream range(int n, boolean parallel){
+		IntStream stream = IntStream.range(0, n);
+		return parallel ? stream.parallel() : stream;
+	}
+	/**
+	 * Compute the stable sorted order of the given begin coordinates.
+	 * If the begin coordinates and the indexes fit in a single
+	 * long then we pack them together and sort the primitives
+	 * which is much faster than sorting boxed indexes with a Comparator.
+	 */
+	private static int[] sortByBegin(long[] begins, boolean parallel){
+		int n = begins.length;
+		if(n ==0){
+			return new int[0];
+		}
+		long min = Long.MAX_VALUE, max = Long.MIN_VALUE;
+		for(long b : begins){
+			min = Math.min(min, b);
+			max = Math.max(max, b);
+		}
+		int indexBits = 32 - Integer.numberOfLeadingZeros(n);
+		long span = max - min;
+		if(span >=0 && 64 - Long.numberOfLeadingZeros(span) + indexBits < 64){
+			long offset = min;
+			long[] packed = new long[n];
+			range(n, parallel).forEach(i -> packed[i] = ((begins[i] - offset) << indexBits) | i);
+			if(parallel){
+				Arrays.parallelSort(packed);
+			}else{
+				Arrays.sort(packed);
+			}
+			long mask = (1L << indexBits) -1;
+			int[] order = new int[n];
+			range(n, parallel).forEach(i -> order[i] = (int) (packed[i] & mask));
+			return order;
+		}
+		Integer[] boxed = new Integer[n];
+		range(n, parallel).forEach(i -> boxed[i] = i);
+		Comparator<Integer> comparator = (a,b)-> Long.compare(begins[a], begins[b]);
+		if(parallel){
+			Arrays.parallelSort(boxed, comparator);
+		}else{
+			Arrays.sort(boxed, comparator);
+		}
+		int[] order = new int[n];
+		range(n, parallel).forEach(i -> order[i] = boxed[i]);
+		return order;
+	}
+	/**
+	 * Compute the max end of each node in the implicit tree
+	 * from the bottom up.  Node i at level k has its children
+	 * at {@code i - 2^(k-1)} and {@code i + 2^(k-1)}; the leaves are the even indexes.
+	 * If the tree isn't full, a right child may be past the end of the arrays
+	 * in which case the max end of the rightmost node at that level is used instead.
+	 * 
+	 * @return the level of the root node.
+	 */
+	private int computeMaxEnds(boolean parallel){
+		int n = begins.length;
+		if(n ==0){
+			return -1;
+		}
+		long lastIndex=0;
+		long lastMax=0;
+		for(int i=0; i< n; i+=2){
+			lastIndex = i;
+			lastMax = maxEnds[i] = ends[i];
+		}
+		int k;
+		for(k=1; 1L<<k <= n; k++){
+			long halfStep = 1L<<(k-1);
+			long first = (halfStep<<1) -1;
+			long step = halfStep<<2;
+			int numberOfNodes = first >= n ? 0 : (int)((n - 1 - first)/step) +1;
+			long currentLastMax = lastMax;
+			IntConsumer computeNode = j ->{
+				int i = (int) (first + j*step);
+				long max = Math.max(ends[i], maxEnds[(int)(i - halfStep)]);
+				maxEnds[i] = Math.max(max, i + halfStep < n ? maxEnds[(int)(i + halfStep)] : currentLastMax);
+			};
+			if(parallel && numberOfNodes >= MIN_PARALLEL_NODES){
+				IntStream.range(0, numberOfNodes).parallel().forEach(computeNode);
+			}else{
+				for(int j=0; j< numberOfNodes; j++){
+					computeNode.accept(j);
+				}
+			}
+			//move last to its parent
+			lastIndex = ((lastIndex >> k) & 1) ==1 ? lastIndex - halfStep : lastIndex + halfStep;
+			if(lastIndex < n && maxEnds[(int) lastIndex] > lastMax){
+				lastMax = maxEnds[(int) lastIndex];
+			}
+		}
+		return k-1;
+	}
+	/**
+	 * Get the number of elements in this index.
+	 * @return the number of elements; will always be &ge; 0.
+	 */
+	public int size(){
+		return elements.length;
+	}
+	/**
+	 * Is this index empty.
+	 * @return {@code true} if there are no elements; {@code false} otherwise.
+	 */
+	public boolean isEmpty(){
+		return elements.length ==0;
+	}
+	/**
+	 * Get the element at the given offset when
+	 * all the elements are sorted by begin coordinate.
+	 * @param i the offset.
+	 * @return the element; will never be null.
+	 * @throws IndexOutOfBoundsException if i is out of bounds.
+	 */
+	@SuppressWarnings("unchecked")
+	public T get(int i){
+		return (T) elements[i];
+	}
+	/**
+	 * Iterate over all the elements sorted by begin coordinate.
+	 */
+	@Override
+	public Iterator<T> iterator() {
+		return stream().iterator();
+	}
+	/**
+	 * Stream all the elements sorted by begin coordinate.
+	 * @return a new Stream; will never be null.
+	 */
+	public Stream<T> stream(){
+		return IntStream.range(0, elements.length).mapToObj(this::get);
+	}
+	/**
+	 * Stream the elements that intersect the given Range.
+	 * The index is traversed lazily as the Stream is consumed
+	 * so short circuiting operations like {@code findFirst()} only
+	 * traverse as much of the index as they need.
+	 * 
+	 * @param target the Range to intersect; can not be null.
+	 * @return a new Stream of the intersecting elements sorted by begin coordinate;
+	 * will never be null but may be empty.
+	 * 
+	 * @throws NullPointerException if target is null.
+	 */
+	public Stream<T> overlapping(Range target){
+		Objects.requireNonNull(target);
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(new OverlapIterator(target.getBegin(), target.getEnd()), 
+				Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.IMMUTABLE), false);
+	}
+	/**
+	 * Stream the elements that contain the given coordinate.
+	 * This is the same as {@code overlapping(Range.of(coordinate))}.
+	 * 
+	 * @param coordinate the 0-based coordinate to stab.
+	 * @return a new Stream of the elements sorted by begin coordinate;
+	 * will never be null but may be empty.
+	 */
+	public Stream<T> stabbing(long coordinate){
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(new OverlapIterator(coordinate, coordinate), 
+				Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.IMMUTABLE), false);
+	}
+	/**
+	 * Perform the given action on each element that
+	 * intersects the given Range, in begin coordinate order.
+	 * This does not create any intermediate objects.
+	 * 
+	 * @param target the Range to intersect; can not be null.
+	 * @param consumer the action to perform; can not be null.
+	 * 
+	 * @throws NullPointerException if either parameter is null.
+	 */
+	public void forEachOverlapping(Range target, Consumer<? super T> consumer){
+		Objects.requireNonNull(consumer);
+		OverlapIterator iter = new OverlapIterator(target.getBegin(), target.getEnd());
+		while(iter.hasNext()){
+			consumer.accept(iter.next());
+		}
+	}
+	/**
+	 * Count the number of elements that intersect the given Range.
+	 * @param target the Range to intersect; can not be null.
+	 * @return the number of intersecting elements.
+	 * @throws NullPointerException if target is null.
+	 */
+	public long countOverlapping(Range target){
+		OverlapIterator iter = new OverlapIterator(target.getBegin(), target.getEnd());
+		long count=0;
+		for(int i = iter.nextIndex; i >=0; i = iter.advance()){
+			count++;
+		}
+		return count;
+	}
+	/**
+	 * Does the given Range intersect any element in this index.
+	 * 
+	 * @param target the Range to intersect; can not be null.
+	 * @return {@code true} if at least one element intersects
+	 * the target; {@code false} otherwise.
+	 * 
+	 * @throws NullPointerException if target is null.
+	 * 
+	 * @see Ranges#intersects(Collection, Range)
+	 */
+	public boolean intersects(Range target){
+		return new OverlapIterator(target.getBegin(), target.getEnd()).hasNext();
+	}
+	/**
+	 * Lazy top down traversal of the implicit tree.
+	 * Nodes are visited in order so the elements
+	 * are returned sorted by begin coordinate.
+	 */
+	private final class OverlapIterator implements Iterator<T>{
+		private final long queryBegin, queryEnd;
+		//each node on the stack is its index, its level
+		//and whether its left child has already been visited.
+		private final long[] nodeStack = new long[64];
+		private final int[] levelStack = new int[64];
+		private final boolean[] leftVisitedStack = new boolean[64];
+		private int stackSize;
+		
+		//current linear scan of a small subtree
+		private int scanIndex, scanEnd;
+		
+		private int nextIndex = -1;
+		
+		OverlapIterator(long queryBegin, long queryEnd){
+			this.queryBegin = queryBegin;
+			this.queryEnd = queryEnd;
+			//empty queries never intersect
+			if(rootLevel >=0 && queryEnd >= queryBegin){
+				push((1L<<rootLevel) -1, rootLevel, false);
+			}
+			nextIndex = advance();
+		}
+		
+		private void push(long node, int level, boolean leftVisited){
+			nodeStack[stackSize] = node;
+			levelStack[stackSize] = level;
+			leftVisitedStack[stackSize++] = leftVisited;
+		}
+		
+		private boolean intersects(int i){
+			return ends[i] >= queryBegin && ends[i] >= begins[i];
+		}
+		/**
+		 * Find the next intersecting element.
+		 * @return the index of the next intersecting element
+		 * or -1 if there are no more.
+		 */
+		int advance(){
+			int n = begins.length;
+			while(true){
+				while(scanIndex < scanEnd){
+					int i = scanIndex++;
+					if(begins[i] > queryEnd){
+						scanEnd = 0;
+						break;
+					}
+					if(intersects(i)){
+						return i;
+					}
+				}
+				if(stackSize ==0){
+					return -1;
+				}
+				stackSize--;
+				long node = nodeStack[stackSize];
+				int level = levelStack[stackSize];
+				if(level <= SCAN_LEVEL){
+					long first = node >> level << level;
+					scanIndex = (int) Math.min(first, n);
+					scanEnd = (int) Math.min(first + (1L<<(level+1)) -1, n);
+				}else if(!leftVisitedStack[stackSize]){
+					long leftChild = node - (1L<<(level-1));
+					push(node, level, true);
+					//the left child may be past the end of the arrays
+					//if the tree isn't full
+					if(leftChild >= n || maxEnds[(int) leftChild] >= queryBegin){
+						push(leftChild, level-1, false);
+					}
+				}else if(node < n && begins[(int) node] <= queryEnd){
+					push(node + (1L<<(level-1)), level-1, false);
+					if(intersects((int) node)){
+						return (int) node;
+					}
+				}
+			}
+		}
+		
+		@Override
+		public boolean hasNext() {
+			return nextIndex >=0;
+		}
+
+		@Override
+		public T next() {
+			if(nextIndex <0){
+				throw new NoSuchElementException();
+			}
+			T next = get(nextIndex);
+			nextIndex = advance();
+			return next;
+		}
+	}
+}
@@ -0,0 +1,120 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.core.datastore;
+
+import java.util.Objects;
+import java.util.function.ToLongFunction;
+
+import org.jcvi.jillion.core.util.Builder;
+/**
+ * {@code CachedDataStoreBuilder} builds a Dynamic Proxy wrapping
+ * a DataStore which caches the results of {@link DataStore#get(String)}
+ * in a thread safe Least Recently Used (LRU) SoftReference cache
+ * that concurrent callers don't have to wait on.
+ * The returned DataStore also implements {@link DataStoreUtil.CacheableDataStore}.
+ * 
+ * @author dkatzel
+ *
+ * @param <T> the type of record in the DataStore.
+ * @param <D> the interface of DataStore to proxy.
+ * 
+ * @see DataStoreUtil#createNewCachedDataStore(Class, DataStore, int)
+ * 
+ * @since 5.3
+ */
+public final class CachedDataStoreBuilder<T, D extends DataStore<T>> implements Builder<D>{
+
+	private final Class<D> datastoreInterface;
+	private final D delegate;
+	
+	private int maxSize = 1000;
+	private ToLongFunction<? super T> weigher;
+	private long maxWeight;
+	private boolean coalesceLoads = true;
+	/**
+	 * Create a new builder.
+	 * @param datastoreInterface the DataStore interface to proxy; can not be null.
+	 * @param delegate the DataStore to wrap; can not be null.
+	 * @throws NullPointerException if either parameter is null.
+	 */
+	public CachedDataStoreBuilder(Class<D> datastoreInterface, D delegate) {
+		this.datastoreInterface = Objects.requireNonNull(datastoreInterface);
+		this.delegate = Objects.requireNonNull(delegate);
+	}
+	/**
+	 * The max number of records to keep in the cache.
+	 * If not set, defaults to 1000.
+	 * @param maxSize the max number of records; must be &ge; 1.
+	 * @return this.
+	 * @throws IllegalArgumentException if maxSize &lt; 1.
+	 */
+	public CachedDataStoreBuilder<T, D> maxSize(int maxSize){
+		if(maxSize <1){
+			throw new IllegalArgumentException("max size must be >= 1");
+		}
+		this.maxSize = maxSize;
+		return this;
+	}
+	/**
+	 * Also limit the cache by the total weight of the records
+	 * it holds, for example the number of bases, so a few large
+	 * records don't use up all the memory.  The least recently used
+	 * records are evicted until the cache weighs at most the max weight.
+	 * Records that weigh more than the max weight are not cached.
+	 * 
+	 * @param maxWeight the max total weight; must be &ge; 1.
+	 * @param weigher the function to compute the weight of a record;
+	 * can not be null.
+	 * @return this.
+	 * @throws NullPointerException if weigher is null.
+	 * @throws IllegalArgumentException if maxWeight &lt; 1.
+	 */
+	public CachedDataStoreBuilder<T, D> maxWeight(long maxWeight, ToLongFunction<? super T> weigher){
+		if(maxWeight <1){
+			throw new IllegalArgumentException("max weight must be >= 1");
+		}
+		this.weigher = Objects.requireNonNull(weigher);
+		this.maxWeight = maxWeight;
+		return this;
+	}
+	/**
+	 * Should concurrent cache misses for the same id
+	 * only fetch the record from the wrapped DataStore once.
+	 * If not set, defaults to {@code true}.
+	 * @param coalesceLoads {@code true} if only one fetch should be made;
+	 * {@code false} if each miss should fetch the record.
+	 * @return this.
+	 */
+	public CachedDataStoreBuilder<T, D> coalesceLoads(boolean coalesceLoads){
+		this.coalesceLoads = coalesceLoads;
+		return this;
+	}
+	/**
+	 * Create a new cached DataStore.
+	 * @return a new proxy instance of type D which also implements
+	 * {@link DataStoreUtil.CacheableDataStore}.
+	 */
+	@Override
+	public D build() {
+		return DataStoreUtil.createNewCachedDataStore(datastoreInterface, delegate, maxSize, weigher, maxWeight, coalesceLoads);
+	}
+
+}
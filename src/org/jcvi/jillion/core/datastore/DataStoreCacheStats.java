@@ -0,0 +1,130 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.core.datastore;
+/**
+ * {@code DataStoreCacheStats} is an immutable
+ * snapshot of the statistics of a cached {@link DataStore}.
+ * 
+ * @author dkatzel
+ * 
+ * @see DataStoreUtil.CacheableDataStore#getCacheStats()
+ * 
+ * @since 5.3
+ */
+public final class DataStoreCacheStats {
+
+	private final long hitCount, missCount, loadCount, evictionCount;
+	/**
+	 * Create a new instance.
+	 * @param hitCount the number of gets that were found in the cache.
+	 * @param missCount the number of gets that were not found in the cache.
+	 * @param loadCount the number of gets that had to be fetched
+	 * from the wrapped datastore; may be less than the missCount
+	 * if concurrent misses for the same id were coalesced.
+	 * @param evictionCount the number of records removed to make room.
+	 */
+	public DataStoreCacheStats(long hitCount, long missCount, long loadCount, long evictionCount) {
+		this.hitCount = hitCount;
+		this.missCount = missCount;
+		this.loadCount = loadCount;
+		this.evictionCount = evictionCount;
+	}
+	/**
+	 * The number of gets that were found in the cache.
+	 * @return the number of hits.
+	 */
+	public long getHitCount() {
+		return hitCount;
+	}
+	/**
+	 * The number of gets that were not found in the cache.
+	 * @return the number of misses.
+	 */
+	public long getMissCount() {
+		return missCount;
+	}
+	/**
+	 * The number of times a record was fetched from
+	 * the wrapped datastore.
+	 * @return the number of loads.
+	 */
+	public long getLoadCount() {
+		return loadCount;
+	}
+	/**
+	 * The number of records that were removed
+	 * from the cache to make room for other records.
+	 * @return the number of evictions.
+	 */
+	public long getEvictionCount() {
+		return evictionCount;
+	}
+	/**
+	 * The number of gets, which is the sum of the hits and misses.
+	 * @return the number of gets.
+	 */
+	public long getRequestCount(){
+		return hitCount + missCount;
+	}
+	/**
+	 * The ratio of gets that were hits.
+	 * @return a number between 0 and 1; or 1 if there
+	 * have not been any gets.
+	 */
+	public double getHitRate(){
+		long requests = getRequestCount();
+		return requests ==0 ? 1D : (double) hitCount / requests;
+	}
+	
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + (int) (evictionCount ^ (evictionCount >>> 32));
+		result = prime * result + (int) (hitCount ^ (hitCount >>> 32));
+		result = prime * result + (int) (loadCount ^ (loadCount >>> 32));
+		result = prime * result + (int) (missCount ^ (missCount >>> 32));
+		return result;
+	}
+	
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof DataStoreCacheStats)) {
+			return false;
+		}
+		DataStoreCacheStats other = (DataStoreCacheStats) obj;
+		return evictionCount == other.evictionCount
+				&& hitCount == other.hitCount
+				&& loadCount == other.loadCount
+				&& missCount == other.missCount;
+	}
+	
+	@Override
+	public String toString() {
+		return "DataStoreCacheStats [hitCount=" + hitCount + ", missCount="
+				+ missCount + ", loadCount=" + loadCount + ", evictionCount="
+				+ evictionCount + "]";
+	}
+	
+}
@@ -26,21 +26,21 @@ import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collection;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.function.Function;
+import java.util.function.ToLongFunction;
 
 import org.jcvi.jillion.core.io.IOUtil;
 import org.jcvi.jillion.core.util.ThrowingStream;
 import org.jcvi.jillion.core.util.iter.IteratorUtil;
 import org.jcvi.jillion.core.util.iter.StreamingIterator;
 import org.jcvi.jillion.core.util.streams.ThrowingBiConsumer;
+import org.jcvi.jillion.internal.core.datastore.ConcurrentRecordCache;
 import org.jcvi.jillion.internal.core.datastore.DataStoreStreamingIterator;
-import org.jcvi.jillion.internal.core.util.Caches;
 import org.jcvi.jillion.internal.core.util.Sneak;
 /**
  * Utility class containing static
@@ -305,7 +305,10 @@ public final class DataStoreUtil {
      * and an additional interface, {@link CacheableDataStore} has been added
      * to the list of interfaces the returned {@link DataStore} implements.  This will
      * keep the Most recent {@code cacheSize} records in memory as long as the JVM doesn't
-     * need the memory for other things.
+     * need the memory for other things.  The cache can be used
+     * by many threads at the same time and concurrent gets of the same uncached
+     * record only fetch it from the delegate once; use a {@link CachedDataStoreBuilder}
+     * to change these options or to also limit the cache by weight.
      * @param <D> interface of DataStore to proxy
      * @param c class object of D
      * @param delegate instance of DataStore
@@ -316,10 +319,15 @@ public final class DataStoreUtil {
      * @see #clearCacheFrom(DataStore)
      * @see #isACachedDataStore(DataStore)
      */
-    @SuppressWarnings("unchecked")
     public static <D extends DataStore<?>> D createNewCachedDataStore(Class<D> c,D delegate, int cacheSize){
+        return createNewCachedDataStore(c, delegate, cacheSize, null, 0, true);
+    }
+    
+    @SuppressWarnings("unchecked")
+    static <T, D extends DataStore<?>> D createNewCachedDataStore(Class<D> c,D delegate, int cacheSize, 
+    		ToLongFunction<? super T> weigher, long maxWeight, boolean coalesceLoads){
         return (D) Proxy.newProxyInstance(c.getClassLoader(), new Class<?>[]{c, CacheableDataStore.class}, 
-                new CachedDataStoreInvocationHandler<D>(delegate,cacheSize));
+                new CachedDataStoreInvocationHandler<T>((DataStore<T>) delegate,cacheSize, weigher, maxWeight, coalesceLoads));
     }
     
     
@@ -715,57 +723,44 @@ public final class DataStoreUtil {
 	/**
 	 * {@code CachedDataStore} uses the Java Proxy classes to
 	 * wrap a given DataStore instance with a cache for objects returned
-	 * by {@link DataStore#get(String)}.
+	 * by {@link DataStore#get(String)}.  The cache is thread safe
+	 * and isn't guarded by a single lock so this handler
+	 * isn't synchronized.
 	 * @author dkatzel
 	 *
 	 *
 	 */
-	private static final class CachedDataStoreInvocationHandler <D extends DataStore<?>> implements InvocationHandler{
+	private static final class CachedDataStoreInvocationHandler <T> implements InvocationHandler{
 
-	    private final D delegate;
-	    private final Map<String, Object> cache;
-	    private static final Class<?>[] GET_PARAMETERS = new Class<?>[]{String.class};
+	    private final DataStore<T> delegate;
+	    private final ConcurrentRecordCache<T> cache;
 	   
-	    private CachedDataStoreInvocationHandler(D delegate, int cacheSize){
+	    private CachedDataStoreInvocationHandler(DataStore<T> delegate, int cacheSize, ToLongFunction<? super T> weigher, long maxWeight, boolean coalesceLoads){
 	        this.delegate = delegate;
-	        cache= Caches.createSoftReferencedValueLRUCache(cacheSize);
+	        cache= new ConcurrentRecordCache<T>(delegate::get, cacheSize, weigher, maxWeight, coalesceLoads);
 	    }
 	   
 	    @Override
-	    public synchronized Object invoke(Object proxy, Method method, Object[] args)
+	    public Object invoke(Object proxy, Method method, Object[] args)
 	            throws Throwable {
+	    	final String methodName = method.getName();
+	    	if(args==null){
+	    		if("clearCache".equals(methodName)){
+	    			cache.clear();
+	    			return null;
+	    		}
+	    		if("getCacheStats".equals(methodName)){
+	    			return cache.getStats();
+	    		}
+	    		if("close".equals(methodName)){
+	    			cache.clear();
+	    		}
+	    	}else if(args.length==1 && "get".equals(methodName) && method.getParameterTypes()[0] == String.class){
+	    		//call get directly so cache hits don't use reflection
+	    		return cache.get((String)args[0]);
+	    	}
 	    	try{
-		        final String methodName = method.getName();
-		        if("close".equals(methodName) && args==null){
-		            cache.clear();
-		        }
-		        else if("clearCache".equals(methodName) && args==null){
-		            cache.clear();
-		            return null;
-		        }
-		        else if("get".equals(methodName) && Arrays.equals(GET_PARAMETERS,method.getParameterTypes())){
-		            String id = (String)args[0];
-		            //we are have to check for null
-		            //because the object could be removed
-		            //between checking and getting
-		            //even in a synchronized block?
-		            Object result =cache.get(id);
-		            if(result !=null){
-		                return result;
-		            }
-		            
-		            Object obj =method.invoke(delegate, args);
-		            if(obj==null){
-		            	//we don't put nulls in our cache because
-			            //it might kickout something else
-			            //and cause us to refetch anyway
-			            //since we assume a null value means it's not in the cache.
-		            	return null;
-		            }		            
-		            cache.put(id, obj);
-		            return obj;
-		        }
-		        return method.invoke(delegate, args);
+	    		return method.invoke(delegate, args);
 	    	}catch(InvocationTargetException e){
 	    		throw e.getCause();
 	    	}
@@ -785,5 +780,13 @@ public final class DataStoreUtil {
          * closing the datastore.
          */
         void clearCache();
+        /**
+         * Get a snapshot of the hit, miss and eviction counts
+         * of this cache so far.
+         * @return a new {@link DataStoreCacheStats}; never null.
+         * 
+         * @since 5.3
+         */
+        DataStoreCacheStats getCacheStats();
     }
 }
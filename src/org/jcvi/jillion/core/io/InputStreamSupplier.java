@@ -110,6 +110,22 @@ public interface InputStreamSupplier {
     default Optional<File> getFile(){
         return Optional.empty();
     }
+    /**
+     * Are the bytes returned by the {@link InputStream}s
+     * created by this supplier exactly the bytes in the
+     * {@link #getFile() file}, so the file could be read directly
+     * (for example by memory-mapping it) instead.
+     * 
+     * @return {@code true} if the file is known and is not compressed
+     * or otherwise transformed; {@code false} otherwise.
+     * 
+     * @implNote the default implementation returns {@code false}.
+     * 
+     * @since 5.3
+     */
+    default boolean isRawFile(){
+        return false;
+    }
     /**
      * Create a new {@link InputStreamSupplier} for the given {@link File}
      * and try to correctly automatically decompress it.
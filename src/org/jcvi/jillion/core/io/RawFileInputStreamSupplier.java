@@ -57,6 +57,11 @@ class RawFileInputStreamSupplier implements InputStreamSupplier {
     public Optional<File> getFile() {
         return Optional.of(file);
     }
+    
+    @Override
+    public boolean isRawFile() {
+        return true;
+    }
 
     /**
      * Uses {@link RandomAccessFileInputStream} to start
@@ -21,14 +21,20 @@
 package org.jcvi.jillion.core.residue;
 
 import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.Spliterators;
+import java.util.Spliterator;
 import java.util.function.Consumer;
 
 import org.jcvi.jillion.core.Range;
 /**
  * Internal class that uses a {@link java.util.Spliterator} to make
  * {@link java.util.stream.Stream}s of {@link Kmer}s.
+ * <p>
+ * The last k residues seen are kept in a ring buffer
+ * so each residue is only read once and each {@link Kmer}
+ * only needs a single builder.  The spliterator
+ * can be split by kmer offset so the stream can be processed
+ * in parallel.
+ * </p>
  * @author dkatzel
  *
  * @param <R>
@@ -37,56 +43,103 @@ import org.jcvi.jillion.core.Range;
  * 
  * @since 5.3
  */
-class KmerSpliterator<R extends Residue, S extends ResidueSequence<R, S, B>, B extends ResidueSequenceBuilder<R, S>> extends Spliterators.AbstractSpliterator<Kmer<S>> {
-    private LinkedList<ResidueSequenceBuilder<R, S>> builders = new LinkedList<>();
-    private long counter;
-    private final Iterator<R> iter;
+class KmerSpliterator<R extends Residue, S extends ResidueSequence<R, S, B>, B extends ResidueSequenceBuilder<R, S>> implements Spliterator<Kmer<S>> {
+    /**
+     * Don't bother splitting if there are fewer kmers than this.
+     */
+    private static final int MIN_SPLIT_SIZE = 1024;
     
     private final int k;
     private final S sequence;
+    private final Object[] ring;
+    /**
+     * The offset of the next kmer to make.
+     */
+    private long counter;
+    /**
+     * The offset of the first kmer NOT to make.
+     */
+    private final long end;
+    
+    private Iterator<R> iter;
+    /**
+     * The index into the ring of the oldest residue
+     * which will be overwritten by the next residue.
+     */
+    private int ringIndex;
+    private boolean started;
+    
     public KmerSpliterator(int k, S residueSequence, Range range){
-        super(residueSequence.getLength() - k +1, 0);
+        this(k, residueSequence, range.getBegin(), Math.max(range.getBegin(), range.getEnd() - k + 2));
+        //create the iterator now so an invalid Range is thrown right away
+        iter = residueSequence.iterator(range);
+    }
+    
+    private KmerSpliterator(int k, S residueSequence, long start, long end){
+        if(k < 1){
+            throw new IllegalArgumentException("k must be >= 1 : " + k);
+        }
         this.k = k;
-        counter=range.getBegin();
         this.sequence = residueSequence;
-        iter = residueSequence.iterator(range);
-        
-        if(residueSequence.getLength() >=k){
-            for(int i=0; i< k; i++){
-                addNextBase();
-            }
+        this.counter = start;
+        this.end = end;
+        this.ring = new Object[k];
+    }
+    
+    private void fillRing(){
+        if(iter ==null){
+            iter = sequence.iterator(Range.of(counter, end + k - 2));
         }
-        
+        for(int i=0; i< k-1; i++){
+            ring[i] = iter.next();
+        }
+        ringIndex = k-1;
+        started = true;
     }
     
-   
-        
+    @SuppressWarnings("unchecked")
+    @Override
+    public boolean tryAdvance(Consumer<? super Kmer<S>> action) {
+        if(counter >= end){
+            return false;
+        }
+        if(!started){
+            fillRing();
+        }
+        ring[ringIndex] = iter.next();
+        ringIndex = (ringIndex +1) % k;
         
-        private void addNextBase(){
-            if(iter.hasNext()){
-                R n = iter.next();
-               
-                builders.addLast(sequence.newEmptyBuilder(k).turnOffDataCompression(true));
-                
-                builders.forEach( b-> b.append(n));
-            }else if(!builders.isEmpty()){
-                //no more left remove all except the first if it's long enough
-                ResidueSequenceBuilder<R, S> head = builders.pop();
-                builders.clear();
-                if(head.getLength() == k){
-                    builders.add(head);
-                }
-                
-            }
+        ResidueSequenceBuilder<R, S> builder = sequence.newEmptyBuilder(k).turnOffDataCompression(true);
+        //oldest residue is now the one after the one we just added
+        for(int i=0; i< k; i++){
+            builder.append((R) ring[(ringIndex + i) % k]);
         }
-        @Override
-        public boolean tryAdvance(Consumer<? super Kmer<S>> action) {
-            if(builders.isEmpty()){
-                return false;
-            }
-            action.accept( new Kmer<>(counter++, builders.pop().build()));
-            addNextBase();
-            return !builders.isEmpty();
+        action.accept( new Kmer<>(counter++, builder.build()));
+        return true;
+    }
+    
+    @Override
+    public Spliterator<Kmer<S>> trySplit() {
+        long size = end - counter;
+        if(started || size < MIN_SPLIT_SIZE){
+            return null;
         }
+        long mid = counter + size/2;
+        KmerSpliterator<R, S, B> prefix = new KmerSpliterator<>(k, sequence, counter, mid);
+        counter = mid;
+        //iterator (if any) was for the whole range
+        iter = null;
+        return prefix;
+    }
+    
+    @Override
+    public long estimateSize() {
+        return end - counter;
+    }
+    
+    @Override
+    public int characteristics() {
+        return ORDERED | SIZED | SUBSIZED | NONNULL | IMMUTABLE;
+    }
     
 }
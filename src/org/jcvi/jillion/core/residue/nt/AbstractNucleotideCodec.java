@@ -21,8 +21,10 @@
 package org.jcvi.jillion.core.residue.nt;
 
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
+import java.util.function.Consumer;
 
 import org.jcvi.jillion.core.Range;
 import org.jcvi.jillion.core.util.iter.SingleElementIterator;
@@ -84,6 +86,15 @@ abstract class AbstractNucleotideCodec implements NucleotideCodec{
             this.sententialBase = sententialBase;
         }
         
+        /**
+         * Get the {@link Nucleotide} that is stored
+         * by offset instead of in the encoded bases.
+         * @return the sentinel base.
+         */
+        protected Nucleotide getSentinelBase(){
+        	return sententialBase;
+        }
+        
         protected abstract int getNucleotidesPerGroup();
         
         
@@ -344,10 +355,21 @@ abstract class AbstractNucleotideCodec implements NucleotideCodec{
         
         private byte[] encodeNucleotides(Iterator<Nucleotide> iterator, int[] sentienelOffsetArray,
                 final int unEncodedSize) {
+        	return encodeNucleotides(sentienelOffsetArray, unEncodedSize, 
+        			result -> encodeAll(iterator, unEncodedSize, result));
+        }
+        /**
+         * Write the header and then have the given writer
+         * write the encoded bases directly into the encoded byte array.
+         * @param sentienelOffsetArray the offsets of the sentinel bases.
+         * @param unEncodedSize the number of bases.
+         * @param encodedBasesWriter writes exactly {@link #computeHeaderlessEncodedSize(int)}
+         * bytes of encoded bases to the given buffer.
+         * @return the encoded bytes.
+         */
+        protected byte[] encodeNucleotides(int[] sentienelOffsetArray,
+                final int unEncodedSize, Consumer<ByteBuffer> encodedBasesWriter) {
             int encodedBasesSize = computeHeaderlessEncodedSize(unEncodedSize);
-            ByteBuffer encodedBases = ByteBuffer.allocate(encodedBasesSize);
-            encodeAll(iterator, unEncodedSize, encodedBases);
-            encodedBases.flip();
             ValueSizeStrategy numBasesSizeStrategy = ValueSizeStrategy.getStrategyFor(unEncodedSize);
             int numberOfSentinels = sentienelOffsetArray.length;
 			ValueSizeStrategy sentinelSizeStrategy = numberOfSentinels==0
@@ -368,7 +390,7 @@ abstract class AbstractNucleotideCodec implements NucleotideCodec{
             		numBasesSizeStrategy.put(result, sentienelOffsetArray[i]);
                 }
             }
-            result.put(encodedBases);
+            encodedBasesWriter.accept(result);
             return result.array();
         }
         
@@ -403,6 +425,53 @@ abstract class AbstractNucleotideCodec implements NucleotideCodec{
 			}
         }
        
+        @Override
+        public byte[] reverseComplement(byte[] encodedData){
+        	int length = decodedLengthOf(encodedData);
+        	Nucleotide[] reverseComplement = new Nucleotide[length];
+        	Iterator<Nucleotide> iter = iterator(encodedData);
+        	for(int i=length-1; i>=0; i--){
+        		reverseComplement[i] = iter.next().complement();
+        	}
+        	return encodeNucleotides(Arrays.asList(reverseComplement).iterator(), 
+        			getReverseComplementedSentinelOffsets(encodedData, length), length);
+        }
+        /**
+         * Get the offsets of the sentinel bases
+         * after the sequence has been reversed.
+         * The sentinel bases (N and gap) are their own complements
+         * so only their offsets change.
+         * @param encodedData the encoded bytes.
+         * @param length the number of bases.
+         * @return a new sorted array of offsets.
+         */
+        protected int[] getReverseComplementedSentinelOffsets(byte[] encodedData, int length){
+        	GrowableIntArray offsets = getSentinelOffsets(encodedData);
+        	int numberOfSentinels = offsets.getCurrentLength();
+        	int[] reversed = new int[numberOfSentinels];
+        	for(int i=0; i< numberOfSentinels; i++){
+        		reversed[numberOfSentinels -1 -i] = length -1 - offsets.get(i);
+        	}
+        	return reversed;
+        }
+        /**
+         * Get the offset into the encoded bytes
+         * of the first encoded base which is right after the header.
+         * @param encodedData the encoded bytes.
+         * @return the offset of the first encoded byte of bases.
+         */
+        protected int getEncodedBasesOffset(byte[] encodedData){
+        	ByteBuffer buf = ByteBuffer.wrap(encodedData);
+        	ValueSizeStrategy offsetStrategy = VALUE_SIZE_STRATEGIES[buf.get()];
+        	offsetStrategy.getNext(buf);
+        	ValueSizeStrategy sentinelStrategy = VALUE_SIZE_STRATEGIES[buf.get()];
+        	if(sentinelStrategy == ValueSizeStrategy.NONE){
+        		return buf.position();
+        	}
+        	int numberOfSentinels = sentinelStrategy.getNext(buf);
+        	return buf.position() + numberOfSentinels * offsetStrategy.getNumberOfBytesPerValue();
+        }
+        
         protected int computeHeaderlessEncodedSize(final int size) {
             return (size+3)/getNucleotidesPerGroup();
         }
@@ -21,7 +21,11 @@
 package org.jcvi.jillion.core.residue.nt;
 
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.function.IntSupplier;
+
+import org.jcvi.jillion.core.Range;
 
 /**
  * Encodes each basecall into two bytes.
@@ -92,6 +96,147 @@ abstract class AbstractTwoBitEncodedNucleotideCodec extends AbstractNucleotideCo
         result.put((byte) ((b3<<6 | b2<<4 | b1<<2 | b0) &0xFF));
 		
 	}
+	/**
+	 * Encode the bases already packed in the given {@link TwoBitNucleotideBuffer}
+	 * without having to encode each base again.
+	 * @param numberOfNucleotides the number of nucleotides in the buffer.
+	 * @param sentinelOffsets the offsets of the sentinel bases which
+	 * must be the only bases in the buffer that aren't A,C,G or T.
+	 * @param packedBases the packed bases.
+	 * @return the encoded bytes.
+	 */
+	byte[] encode(int numberOfNucleotides, int[] sentinelOffsets, TwoBitNucleotideBuffer packedBases){
+		return encodeNucleotides(sentinelOffsets, numberOfNucleotides, packedBases::writeTwoBitEncodedBases);
+	}
+	/**
+	 * Encode bases that are already packed 4 to a byte
+	 * in the same bit order as this codec.
+	 * @param numberOfNucleotides the number of nucleotides packed.
+	 * @param sentinelOffsets the offsets of the sentinel bases which
+	 * must be packed as 0.
+	 * @param packedBases the packed bases; must be at least
+	 * {@code (numberOfNucleotides +3)/4} bytes long.
+	 * @return the encoded bytes.
+	 */
+	byte[] encode(int numberOfNucleotides, int[] sentinelOffsets, byte[] packedBases){
+		return encodeNucleotides(sentinelOffsets, numberOfNucleotides,
+				out -> out.put(packedBases, 0, computeHeaderlessEncodedSize(numberOfNucleotides)));
+	}
+
+	/**
+	 * Count the G/C bases a word at a time.
+	 * Sentinel bases and the padding are encoded as A
+	 * so they are never counted.
+	 */
+	@Override
+	public long getGCCount(byte[] encodedData){
+		ByteBuffer buf = TwoBitPackedWords.wrap(encodedData, getEncodedBasesOffset(encodedData), decodedLengthOf(encodedData));
+		long count=0;
+		while(buf.hasRemaining()){
+			count += TwoBitPackedWords.countGC(TwoBitPackedWords.nextWord(buf));
+		}
+		return count;
+	}
+	/**
+	 * If the other sequence is also 2 bit encoded, then
+	 * the bases are compared a word at a time
+	 * and only the sentinel offsets are compared base by base.
+	 */
+	@Override
+	public long getHammingDistance(byte[] encodedData, NucleotideCodec otherCodec, byte[] otherEncodedData){
+		if(!(otherCodec instanceof AbstractTwoBitEncodedNucleotideCodec)){
+			return super.getHammingDistance(encodedData, otherCodec, otherEncodedData);
+		}
+		AbstractTwoBitEncodedNucleotideCodec other = (AbstractTwoBitEncodedNucleotideCodec) otherCodec;
+		int length = decodedLengthOf(encodedData);
+		int basesOffset = getEncodedBasesOffset(encodedData);
+		int otherBasesOffset = other.getEncodedBasesOffset(otherEncodedData);
+		
+		ByteBuffer buf = TwoBitPackedWords.wrap(encodedData, basesOffset, length);
+		ByteBuffer otherBuf = TwoBitPackedWords.wrap(otherEncodedData, otherBasesOffset, length);
+		long count=0;
+		while(buf.hasRemaining()){
+			count += TwoBitPackedWords.countDifferences(TwoBitPackedWords.nextWord(buf), TwoBitPackedWords.nextWord(otherBuf));
+		}
+		//the sentinel bases are encoded as 0
+		//so the word comparison may be wrong at those offsets
+		int[] sentinels = getSentinelOffsets(encodedData).toArray();
+		int[] otherSentinels = other.getSentinelOffsets(otherEncodedData).toArray();
+		int i=0, j=0;
+		while(i < sentinels.length || j < otherSentinels.length){
+			int offset = Math.min(i < sentinels.length ? sentinels[i] : Integer.MAX_VALUE,
+								j < otherSentinels.length ? otherSentinels[j] : Integer.MAX_VALUE);
+			boolean isSentinel = i < sentinels.length && sentinels[i] == offset;
+			boolean otherIsSentinel = j < otherSentinels.length && otherSentinels[j] == offset;
+			if(isSentinel){
+				i++;
+			}
+			if(otherIsSentinel){
+				j++;
+			}
+			byte code = getCode(encodedData, basesOffset, offset);
+			byte otherCode = getCode(otherEncodedData, otherBasesOffset, offset);
+			Nucleotide base = isSentinel ? getSentinelBase() : getGlyphFor(code);
+			Nucleotide otherBase = otherIsSentinel ? other.getSentinelBase() : getGlyphFor(otherCode);
+			if(code != otherCode){
+				count--;
+			}
+			if(base != otherBase){
+				count++;
+			}
+		}
+		return count;
+	}
+	
+	private static byte getCode(byte[] encodedData, int basesOffset, int offset){
+		return (byte)((encodedData[basesOffset + (offset >>>2)] >> ((offset & 0x3) <<1)) & 0x3);
+	}
+	/**
+	 * Read the codes directly from the encoded bytes
+	 * since they are already 2 bit codes.
+	 */
+	@Override
+	public IntSupplier twoBitCodes(byte[] encodedData, Range range){
+		int basesOffset = getEncodedBasesOffset(encodedData);
+		int[] sentinels = getSentinelOffsets(encodedData).toArray();
+		int begin = (int) range.getBegin();
+		int firstSentinel = Arrays.binarySearch(sentinels, begin);
+		int startIndex = firstSentinel >=0 ? firstSentinel : -firstSentinel -1;
+		return new IntSupplier() {
+			private int offset = begin;
+			private int sentinelIndex = startIndex;
+			
+			@Override
+			public int getAsInt() {
+				int current = offset++;
+				if(sentinelIndex < sentinels.length && sentinels[sentinelIndex] == current){
+					sentinelIndex++;
+					//sentinels are N or gap
+					return -1;
+				}
+				return getCode(encodedData, basesOffset, current);
+			}
+		};
+	}
+	/**
+	 * Reverse complement a word at a time without
+	 * decoding any of the bases.
+	 */
+	@Override
+	public byte[] reverseComplement(byte[] encodedData){
+		int length = decodedLengthOf(encodedData);
+		long[] words = TwoBitPackedWords.toWords(encodedData, getEncodedBasesOffset(encodedData), length);
+		TwoBitPackedWords.complement(words, length);
+		TwoBitPackedWords.reverse(words, length);
+		
+		int[] sentinelOffsets = getReverseComplementedSentinelOffsets(encodedData, length);
+		//sentinel bases are always encoded as 0
+		for(int offset : sentinelOffsets){
+			TwoBitPackedWords.setCode(words, offset, 0);
+		}
+		return encodeNucleotides(sentinelOffsets, length, out -> TwoBitPackedWords.write(words, length, out));
+	}
+	
 	protected AbstractTwoBitEncodedNucleotideCodec(Nucleotide sententialBase) {
 		super(sententialBase);
 	}
@@ -0,0 +1,231 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.core.residue.nt;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.jcvi.jillion.internal.core.util.GrowableByteArray;
+import org.jcvi.jillion.internal.core.util.GrowableIntArray;
+/**
+ * {@code AsciiNucleotideDecoder} decodes ASCII encoded
+ * bases, such as the bytes of a fasta file, directly into
+ * a {@link NucleotideSequence} without creating any intermediate
+ * Strings or {@link Nucleotide} objects.
+ * <p>
+ * A, C, G and T are packed 2 bits each as they are read;
+ * only the offsets of any other bases are kept on the side.
+ * If the only other bases are Ns or the only other bases are gaps, which
+ * is almost always the case for reference sequences, then {@link #build()}
+ * writes the packed bases straight into the same 2 bit encoding that
+ * {@link NucleotideSequenceBuilder} would choose.  Otherwise,
+ * the bases are handed off to a {@link NucleotideSequenceBuilder}.
+ * </p>
+ * <p>
+ * Any ASCII whitespace (including line terminators) is ignored.
+ * This class is able to decode both
+ * '*' (consed) and '-' (TIGR) as gap characters and
+ * lowercase bases are treated the same as uppercase bases.
+ * </p>
+ * <p>
+ * NOT THREAD SAFE.
+ * </p>
+ * @author dkatzel
+ * 
+ * @since 5.3
+ */
+public final class AsciiNucleotideDecoder {
+
+	private static final byte SKIP = -1;
+	private static final byte INVALID = -2;
+	
+	private static final int ORDINAL_A = Nucleotide.Adenine.ordinal();
+	private static final int ORDINAL_N = Nucleotide.Unknown.ordinal();
+	private static final int ORDINAL_GAP = Nucleotide.Gap.ordinal();
+	
+	private static final int CHUNK_SIZE = 8192;
+	/**
+	 * The Nucleotide ordinal for each ASCII value
+	 * or {@link #SKIP} or {@link #INVALID}.
+	 */
+	private static final byte[] ORDINALS = new byte[256];
+	
+	static{
+		for(int i=0; i< ORDINALS.length; i++){
+			try{
+				Nucleotide n = Nucleotide.parseOrNull((char)i);
+				ORDINALS[i] = n==null? SKIP : (byte) n.ordinal();
+			}catch(IllegalArgumentException e){
+				ORDINALS[i] = INVALID;
+			}
+		}
+	}
+	
+	private byte[] packed;
+	private int length;
+	
+	private final GrowableIntArray nOffsets = new GrowableIntArray(12);
+	private final GrowableIntArray gapOffsets = new GrowableIntArray(12);
+	private final GrowableIntArray otherOffsets = new GrowableIntArray(12);
+	private final GrowableByteArray otherOrdinals = new GrowableByteArray(12);
+	
+	private byte[] chunk;
+	/**
+	 * Create a new decoder.
+	 * @param expectedLength the number of bases that are expected
+	 * to be decoded; used to size the buffers.  More or fewer bases
+	 * may actually be decoded.
+	 * 
+	 * @throws IllegalArgumentException if expectedLength is negative.
+	 */
+	public AsciiNucleotideDecoder(int expectedLength){
+		if(expectedLength <0){
+			throw new IllegalArgumentException("expected length can not be negative");
+		}
+		packed = new byte[(expectedLength +3)/4];
+	}
+	/**
+	 * Decode all the remaining bytes in the given buffer.
+	 * The buffer's position is advanced to its limit.
+	 * 
+	 * @param asciiBases the ASCII encoded bases to decode; can not be null.
+	 * 
+	 * @return this.
+	 * 
+	 * @throws NullPointerException if asciiBases is null.
+	 * @throws IllegalArgumentException if any byte is not a valid 
+	 * nucleotide or whitespace.
+	 */
+	public AsciiNucleotideDecoder append(ByteBuffer asciiBases){
+		if(asciiBases.hasArray()){
+			int position = asciiBases.position();
+			int remaining = asciiBases.remaining();
+			append(asciiBases.array(), asciiBases.arrayOffset() + position, remaining);
+			asciiBases.position(position + remaining);
+			return this;
+		}
+		if(chunk ==null){
+			chunk = new byte[CHUNK_SIZE];
+		}
+		while(asciiBases.hasRemaining()){
+			int numberOfBytes = Math.min(chunk.length, asciiBases.remaining());
+			asciiBases.get(chunk, 0, numberOfBytes);
+			append(chunk, 0, numberOfBytes);
+		}
+		return this;
+	}
+	/**
+	 * Decode the given range of bytes.
+	 * 
+	 * @param asciiBases the ASCII encoded bases to decode; can not be null.
+	 * @param offset the offset into the array of the first byte to decode.
+	 * @param numberOfBytes the number of bytes to decode.
+	 * 
+	 * @return this.
+	 * 
+	 * @throws NullPointerException if asciiBases is null.
+	 * @throws IllegalArgumentException if any byte is not a valid 
+	 * nucleotide or whitespace.
+	 * @throws ArrayIndexOutOfBoundsException if the offset or number of bytes
+	 * is outside of the array.
+	 */
+	public AsciiNucleotideDecoder append(byte[] asciiBases, int offset, int numberOfBytes){
+		ensureCapacity(length + numberOfBytes);
+		int end = offset + numberOfBytes;
+		for(int i= offset; i< end; i++){
+			int ordinal = ORDINALS[asciiBases[i] & 0xFF];
+			if(ordinal >= ORDINAL_A){
+				packed[length >>>2] |= (ordinal - ORDINAL_A) << ((length & 0x3) <<1);
+			}else if(ordinal == SKIP){
+				continue;
+			}else if(ordinal == ORDINAL_N){
+				nOffsets.append(length);
+			}else if(ordinal == ORDINAL_GAP){
+				gapOffsets.append(length);
+			}else if(ordinal == INVALID){
+				throw new IllegalArgumentException("invalid character " + (char)(asciiBases[i] & 0xFF) + " ascii value " + (asciiBases[i] & 0xFF));
+			}else{
+				otherOffsets.append(length);
+				otherOrdinals.append((byte)ordinal);
+			}
+			length++;
+		}
+		return this;
+	}
+	
+	private void ensureCapacity(int maxLength){
+		int bytesNeeded = (maxLength +3)/4;
+		if(bytesNeeded > packed.length){
+			packed = Arrays.copyOf(packed, Math.max(bytesNeeded, packed.length *2));
+		}
+	}
+	/**
+	 * Get the number of bases decoded so far.
+	 * @return the number of bases; will always be &ge; 0.
+	 */
+	public int getLength(){
+		return length;
+	}
+	/**
+	 * Create a new {@link NucleotideSequence} of all the bases
+	 * decoded so far.
+	 * 
+	 * @return a new {@link NucleotideSequence}; will never be null.
+	 */
+	public NucleotideSequence build(){
+		int numberOfNs = nOffsets.getCurrentLength();
+		int numberOfGaps = gapOffsets.getCurrentLength();
+		if(otherOffsets.getCurrentLength() ==0 && (numberOfNs ==0 || numberOfGaps ==0)){
+			//same decision as NucleotideSequenceBuilder
+			int fourBitBufferSize =BasicNucleotideCodec.INSTANCE.getNumberOfEncodedBytesFor(length, numberOfGaps);
+			int twoBitBufferSize = AcgtnNucloetideCodec.INSTANCE.getNumberOfEncodedBytesFor(length,
+            		Math.max(numberOfGaps, numberOfNs));
+			if(twoBitBufferSize <= fourBitBufferSize){
+				AbstractTwoBitEncodedNucleotideCodec codec = numberOfGaps==0? AcgtnNucloetideCodec.INSTANCE : AcgtGapNucleotideCodec.INSTANCE;
+				int[] sentinels = numberOfGaps==0? nOffsets.toArray() : gapOffsets.toArray();
+				return new DefaultNucleotideSequence(codec, codec.encode(length, sentinels, packed));
+			}
+		}
+		return new NucleotideSequenceBuilder(length)
+						.append(toNucleotideArray())
+						.build();
+	}
+	
+	private Nucleotide[] toNucleotideArray(){
+		Nucleotide[] bases = new Nucleotide[length];
+		for(int i=0; i< length; i++){
+			int code = (packed[i>>>2] >> ((i & 0x3) <<1)) & 0x3;
+			bases[i] = Nucleotide.getByOrdinal(ORDINAL_A + code);
+		}
+		setAll(bases, nOffsets, Nucleotide.Unknown);
+		setAll(bases, gapOffsets, Nucleotide.Gap);
+		for(int i=0; i< otherOffsets.getCurrentLength(); i++){
+			bases[otherOffsets.get(i)] = Nucleotide.getByOrdinal(otherOrdinals.get(i));
+		}
+		return bases;
+	}
+	
+	private static void setAll(Nucleotide[] bases, GrowableIntArray offsets, Nucleotide value){
+		for(int i=0; i< offsets.getCurrentLength(); i++){
+			bases[offsets.get(i)] = value;
+		}
+	}
+}
@@ -35,6 +35,21 @@ import org.jcvi.jillion.internal.core.util.GrowableIntArray;
 final class BasicNucleotideCodec extends AbstractNucleotideCodec{
 
 	 public static final BasicNucleotideCodec INSTANCE = new BasicNucleotideCodec();
+	 /**
+	  * The number of G/C bases encoded in each possible byte.
+	  */
+	 private static final byte[] GC_COUNTS = new byte[256];
+	 
+	 static{
+		 for(int i=0; i< GC_COUNTS.length; i++){
+			 GC_COUNTS[i] = (byte)(gcCountOf(i >>4) + gcCountOf(i & 0x0F));
+		 }
+	 }
+	 
+	 private static int gcCountOf(int ordinal){
+		 Nucleotide n = Nucleotide.VALUES.get(ordinal);
+		 return n == Nucleotide.Cytosine || n == Nucleotide.Guanine || n == Nucleotide.Strong ? 1 : 0;
+	 }
 	    
 	    private BasicNucleotideCodec(){
 	        super(Nucleotide.Gap);
@@ -90,37 +105,41 @@ final class BasicNucleotideCodec extends AbstractNucleotideCodec{
 	}
 	
 	
+	@Override
+	public long getGCCount(byte[] encodedData){
+		int length = decodedLengthOf(encodedData);
+		int start = getEncodedBasesOffset(encodedData);
+		//the padding nibble is 0 which is not G/C
+		int end = start + (length+1)/2;
+		long count=0;
+		for(int i=start; i< end; i++){
+			count += GC_COUNTS[encodedData[i] & 0xFF];
+		}
+		return count;
+	}
+	
 	@Override
 	public List<Range> getNRanges(byte[] encodedData){
     	List<Range> ranges = new ArrayList<>();
-    	Iterator<Nucleotide> iter = iterator(encodedData);
-    	int offset=0;
-    	Range.Builder currentBuilder = null;
-    	while(iter.hasNext()){
-    		Nucleotide n = iter.next();
-    		if(n == Nucleotide.Unknown){
-    			if(currentBuilder == null){
-    				currentBuilder = new Range.Builder(1)
-    										.shift(offset);
-    			}else{
-    				//do we grow or make a new one?
-    				if(currentBuilder.getEnd() == offset -1){
-    					//grow
-    					currentBuilder.expandEnd(1);
-    				}else{
-    					//new range
-    					ranges.add(currentBuilder.build());
-    					
-    					currentBuilder = new Range.Builder(1)
-								.shift(offset);
-    				}
+    	int length = decodedLengthOf(encodedData);
+    	int start = getEncodedBasesOffset(encodedData);
+    	//N is ordinal 0 so we can look at the nibbles
+    	//directly without decoding each base
+    	int currentStart = -1;
+    	for(int offset=0; offset < length; offset++){
+    		int value = encodedData[start + (offset >>>1)];
+    		boolean isN = ((offset & 0x01)==0 ? (value >>4) & 0x0F : value & 0x0F) ==0;
+    		if(isN){
+    			if(currentStart <0){
+    				currentStart = offset;
     			}
+    		}else if(currentStart >=0){
+    			ranges.add(Range.of(currentStart, offset -1));
+    			currentStart = -1;
     		}
-    		offset++;
     	}
-    	if(currentBuilder !=null){
-    		ranges.add(currentBuilder.build());
-			
+    	if(currentStart >=0){
+    		ranges.add(Range.of(currentStart, length -1));
     	}
     	return ranges;
     }
@@ -0,0 +1,151 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.core.residue.nt;
+
+import java.util.Arrays;
+
+import org.jcvi.jillion.core.Range;
+import org.jcvi.jillion.internal.core.util.GrowableByteArray;
+/**
+ * {@link NucleotideBuffer} that stores each
+ * nucleotide ordinal as a separate byte.
+ * 
+ * @author dkatzel
+ *
+ * @since 5.3
+ */
+final class ByteNucleotideBuffer implements NucleotideBuffer{
+
+	private static final byte GAP_VALUE = Nucleotide.Gap.getOrdinalAsByte();
+	
+	private GrowableByteArray data;
+	
+	ByteNucleotideBuffer(GrowableByteArray data){
+		this.data = data;
+	}
+	
+	@Override
+	public int getCurrentLength() {
+		return data.getCurrentLength();
+	}
+
+	@Override
+	public byte get(int offset) {
+		return data.get(offset);
+	}
+
+	@Override
+	public void replace(int offset, byte value) {
+		data.replace(offset, value);
+	}
+
+	@Override
+	public void append(GrowableByteArray values) {
+		data.append(values);
+	}
+
+	@Override
+	public void append(NucleotideBuffer other) {
+		if(other instanceof ByteNucleotideBuffer){
+			data.append(((ByteNucleotideBuffer)other).data);
+		}else{
+			data.append(other.toArray());
+		}
+	}
+
+	@Override
+	public void insert(int offset, GrowableByteArray values) {
+		data.insert(offset, values);
+	}
+
+	@Override
+	public void remove(Range range) {
+		data.remove(range);
+	}
+
+	@Override
+	public GrowableByteArray subArray(Range range) {
+		return data.subArray(range);
+	}
+
+	@Override
+	public byte[] toArray() {
+		return data.toArray();
+	}
+
+	@Override
+	public void reverse() {
+		data.reverse();
+	}
+
+	@Override
+	public void complement() {
+		byte[] bytes = data.toArray();
+		for(int i=0; i<bytes.length; i++){
+			bytes[i]=Nucleotide.VALUES.get(bytes[i]).complement().getOrdinalAsByte();
+		}
+		data = new GrowableByteArray(bytes);
+	}
+
+	@Override
+	public void reverseComplement() {
+		byte[] bytes = data.toArray();
+		int currentLength = bytes.length;
+		int pivotOffset = currentLength/2;
+		
+		for(int i=0; i<pivotOffset; i++){
+			int compOffset = currentLength-1-i;
+			
+			Nucleotide tmp = Nucleotide.VALUES.get(bytes[i]).complement();
+			
+			byte complementOrdinal = Nucleotide.VALUES.get(bytes[compOffset]).complement().getOrdinalAsByte();
+			bytes[i] = complementOrdinal;
+			bytes[compOffset] = tmp.getOrdinalAsByte();
+		}
+		if(currentLength%2!=0){
+			bytes[pivotOffset] = Nucleotide.VALUES.get(bytes[pivotOffset]).complement().getOrdinalAsByte();
+		}
+		data = new GrowableByteArray(bytes);
+	}
+
+	@Override
+	public void ungap() {
+		byte[] oldBytes = data.toArray();
+		byte[] newBytes = new byte[oldBytes.length];
+		int newOffset=0;
+		for(int i=0; i< oldBytes.length; i++){
+			if(oldBytes[i] != GAP_VALUE){
+				newBytes[newOffset++] = oldBytes[i];
+			}
+		}
+		data = new GrowableByteArray(Arrays.copyOf(newBytes, newOffset));
+	}
+
+	@Override
+	public void clear() {
+		data.clear();
+	}
+
+	@Override
+	public NucleotideBuffer copy() {
+		return new ByteNucleotideBuffer(data.copy());
+	}
+}
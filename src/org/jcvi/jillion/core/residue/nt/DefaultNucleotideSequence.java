@@ -30,6 +30,7 @@ import java.io.Serializable;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Objects;
+import java.util.function.IntSupplier;
 import java.util.function.LongSupplier;
 import java.util.regex.Pattern;
 import java.util.stream.Stream;
@@ -272,5 +273,37 @@ final class DefaultNucleotideSequence extends AbstractResidueSequence<Nucleotide
 		return codec.getNRanges(data);
 	}
 	
+	@Override
+	public long getGCCount() {
+		return codec.getGCCount(data);
+	}
+	
+	@Override
+	public long getHammingDistance(NucleotideSequence other) {
+		if(!(other instanceof DefaultNucleotideSequence)){
+			return NucleotideSequence.super.getHammingDistance(other);
+		}
+		DefaultNucleotideSequence otherSeq = (DefaultNucleotideSequence) other;
+		if(otherSeq.getLength() != getLength()){
+			throw new IllegalArgumentException(String.format("sequences must be the same length %d vs %d", getLength(), otherSeq.getLength()));
+		}
+		return codec.getHammingDistance(data, otherSeq.codec, otherSeq.data);
+	}
+	
+	/**
+	 * Get the 2 bit codes of the bases in the given range.
+	 * @param range the Range of bases to get; can not be null.
+	 * @return a new IntSupplier.
+	 * @see NucleotideCodec#twoBitCodes(byte[], Range)
+	 */
+	IntSupplier twoBitCodes(Range range){
+		return codec.twoBitCodes(data, range);
+	}
+	
+	@Override
+	public NucleotideSequence reverseComplement() {
+		return new DefaultNucleotideSequence(codec, codec.reverseComplement(data));
+	}
+	
 	
 }
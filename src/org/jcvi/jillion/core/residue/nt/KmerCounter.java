@@ -0,0 +1,778 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.core.residue.nt;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import org.jcvi.jillion.core.datastore.DataStore;
+import org.jcvi.jillion.core.datastore.DataStoreException;
+import org.jcvi.jillion.core.io.IOUtil;
+/**
+ * {@code KmerCounter} counts the k-mers of {@link NucleotideSequence}s
+ * using the packed {@code long} k-mers of {@link RollingKmers}
+ * as keys in primitive open addressing hash tables so
+ * no objects are created per k-mer.
+ * <p>
+ * The k-mers are split into stripes by hash each with its own
+ * table and lock so sequences can be added from many threads at the same time.
+ * If a memory budget is set and a stripe grows beyond its share,
+ * the stripe's counts are spilled to disk partitioned by hash and
+ * the partitions are merged one at a time when the counts are read. 
+ * </p>
+ * <p>
+ * Counts may be added concurrently, but the counts should
+ * only be read after all the sequences have been added.
+ * </p>
+ * <pre>
+ * try(KmerCounter counter = new KmerCounter.Builder(21)
+ *                                  .canonical(true)
+ *                                  .maxKmersInMemory(50_000_000)
+ *                                  .build();
+ *     FastqDataStore datastore = ...){
+ *     
+ *     counter.addAll(datastore, FastqRecord::getNucleotideSequence);
+ *     long[] spectrum = counter.getSpectrum(100);
+ * }
+ * </pre>
+ * @author dkatzel
+ * 
+ * @since 5.3
+ */
+public final class KmerCounter implements Closeable{
+	/**
+	 * Consumer of a k-mer and its count.
+	 * 
+	 * @author dkatzel
+	 *
+	 */
+	@FunctionalInterface
+	public interface PackedKmerCountConsumer{
+		/**
+		 * Consume the next k-mer and its count.
+		 * @param packedKmer the packed k-mer.
+		 * @param count the number of times the k-mer was seen; always &ge; 1.
+		 */
+		void accept(long packedKmer, long count);
+	}
+	
+	private static final int STRIPE_BUFFER_SIZE = 256;
+	
+	private final RollingKmers rollingKmers;
+	private final long minCount;
+	
+	private final Stripe[] stripes;
+	private final int stripeMask;
+	private final int numberOfPartitions;
+	/**
+	 * The max number of entries in each stripe before
+	 * it spills; or {@link Integer#MAX_VALUE} if we never spill.
+	 */
+	private final int maxEntriesPerStripe;
+	
+	private final LongAdder totalKmers = new LongAdder();
+	
+	private final ThreadLocal<StripeBuffers> buffers = ThreadLocal.withInitial(StripeBuffers::new);
+	
+	private final File userSpillDir;
+	/**
+	 * Set the first time a stripe spills; guarded by this
+	 * and only read while holding a stripe lock (or after holding all of them)
+	 * so any stripe that has spilled sees it.
+	 */
+	private File spillDir;
+	private volatile boolean spilled;
+	private volatile boolean closed;
+	
+	private KmerCounter(Builder builder){
+		this.rollingKmers = new RollingKmers.Builder(builder.k)
+										.canonical(builder.canonical)
+										.build();
+		this.minCount = builder.minCount;
+		
+		int numberOfStripes = Integer.highestOneBit(Math.max(1, builder.concurrencyLevel) *2 -1);
+		stripes = new Stripe[numberOfStripes];
+		for(int i=0; i< numberOfStripes; i++){
+			stripes[i] = new Stripe(i);
+		}
+		stripeMask = numberOfStripes -1;
+		numberOfPartitions = builder.numberOfPartitions;
+		maxEntriesPerStripe = builder.maxKmersInMemory == null ? Integer.MAX_VALUE 
+								: (int) Math.min(Integer.MAX_VALUE, Math.max(1, builder.maxKmersInMemory / numberOfStripes));
+		userSpillDir = builder.spillDir;
+	}
+	/**
+	 * Get the size of each k-mer.
+	 * @return k.
+	 */
+	public int getK(){
+		return rollingKmers.getK();
+	}
+	/**
+	 * Are the k-mers counted as canonical k-mers.
+	 * @return {@code true} if the k-mers are canonical.
+	 */
+	public boolean isCanonical(){
+		return rollingKmers.isCanonical();
+	}
+	/**
+	 * Get the total number of k-mers (not distinct k-mers) added so far.
+	 * @return the number of k-mers; will always be &ge; 0.
+	 */
+	public long getTotalNumberOfKmers(){
+		return totalKmers.sum();
+	}
+	/**
+	 * Has this counter spilled any counts to disk.
+	 * @return {@code true} if counts have been spilled.
+	 */
+	public boolean hasSpilled(){
+		return spilled;
+	}
+	/**
+	 * Add a single packed k-mer.  If this counter is canonical, then
+	 * the k-mer must already be canonical.
+	 * This method is thread safe.
+	 * @param packedKmer the packed k-mer to count.
+	 * 
+	 * @throws UncheckedIOException if there is a problem spilling counts to disk.
+	 * @throws IllegalStateException if this counter is closed.
+	 */
+	public void add(long packedKmer){
+		checkNotClosed();
+		stripes[stripeOf(packedKmer)].add(packedKmer);
+		totalKmers.increment();
+	}
+	/**
+	 * Count all the k-mers of the given sequence.  
+	 * This method is thread safe.
+	 * @param sequence the sequence to count; can not be null.
+	 * 
+	 * @throws NullPointerException if sequence is null.
+	 * @throws UncheckedIOException if there is a problem spilling counts to disk.
+	 * @throws IllegalStateException if this counter is closed.
+	 */
+	public void add(NucleotideSequence sequence){
+		checkNotClosed();
+		StripeBuffers stripeBuffers = buffers.get();
+		rollingKmers.forEach(sequence, (offset, kmer) -> stripeBuffers.add(kmer));
+		stripeBuffers.flush();
+	}
+	/**
+	 * Count all the k-mers of all the sequences in the given stream.
+	 * If the stream is parallel then the sequences are counted in parallel.
+	 * @param sequences the stream of sequences to count; can not be null.
+	 * 
+	 * @throws NullPointerException if sequences is null.
+	 * @throws UncheckedIOException if there is a problem spilling counts to disk.
+	 * @throws IllegalStateException if this counter is closed.
+	 */
+	public void addAll(Stream<? extends NucleotideSequence> sequences){
+		sequences.forEach(this::add);
+	}
+	/**
+	 * Count all the k-mers of all the records in the given {@link DataStore}.
+	 * @param datastore the {@link DataStore} to count; can not be null.
+	 * @param sequenceFunction function to get the {@link NucleotideSequence}
+	 * of each record for example {@code FastqRecord::getNucleotideSequence}; can not be null.
+	 * 
+	 * @throws DataStoreException if there is a problem iterating over the records.
+	 * @throws UncheckedIOException if there is a problem spilling counts to disk.
+	 * @throws IllegalStateException if this counter is closed.
+	 */
+	public <T> void addAll(DataStore<T> datastore, Function<? super T, ? extends NucleotideSequence> sequenceFunction) throws DataStoreException{
+		try(Stream<T> records = datastore.records()){
+			addAll(records.map(sequenceFunction));
+		}
+	}
+	/**
+	 * Get the count of the given packed k-mer.
+	 * If counts have been spilled to disk, then each call
+	 * reads the k-mer's whole spill partition, so lookups take time
+	 * proportional to the partition size; use {@link #forEach(PackedKmerCountConsumer)}
+	 * to read many counts.
+	 * @param packedKmer the packed k-mer to look for.
+	 * @return the number of times that k-mer was counted; 
+	 * may be 0.  The min count is not used.
+	 * @throws IOException if there is a problem reading spilled counts.
+	 * @throws IllegalStateException if this counter is closed.
+	 */
+	public long getCount(long packedKmer) throws IOException{
+		checkNotClosed();
+		Stripe stripe = stripes[stripeOf(packedKmer)];
+		synchronized(stripe){
+			long count = stripe.table.get(packedKmer);
+			File spillFile = stripe.getSpillFile(partitionOf(packedKmer));
+			if(spillFile !=null && spillFile.exists()){
+				try(DataInputStream in = openSpillFile(spillFile)){
+					while(true){
+						long kmer = in.readLong();
+						long spilledCount = in.readLong();
+						if(kmer == packedKmer){
+							count += spilledCount;
+						}
+					}
+				}catch(EOFException e){
+					//end of file
+				}
+			}
+			return count;
+		}
+	}
+	/**
+	 * Call the given consumer for every distinct k-mer
+	 * that has a count &ge; the min count.  The order of the k-mers
+	 * is not defined.
+	 * @param consumer the consumer to call; can not be null.
+	 * @throws IOException if there is a problem reading spilled counts.
+	 * @throws IllegalStateException if this counter is closed.
+	 */
+	public void forEach(PackedKmerCountConsumer consumer) throws IOException{
+		if(consumer ==null){
+			throw new NullPointerException("consumer can not be null");
+		}
+		forEachCount((kmer, count) ->{
+			if(count >= minCount){
+				consumer.accept(kmer, count);
+			}
+		});
+	}
+	/**
+	 * Get the number of distinct k-mers
+	 * that have a count &ge; the min count.
+	 * @return the number of distinct k-mers.
+	 * @throws IOException if there is a problem reading spilled counts.
+	 * @throws IllegalStateException if this counter is closed.
+	 */
+	public long getNumberOfDistinctKmers() throws IOException{
+		long[] count = new long[1];
+		forEach((kmer, c) -> count[0]++);
+		return count[0];
+	}
+	/**
+	 * Compute the k-mer spectrum: the number of distinct k-mers
+	 * that were seen each number of times.  The min count is not used
+	 * so the spectrum can be used to pick one.
+	 * @param maxCount the largest count to have its own bin; must be &ge; 1.
+	 * @return a new array of length {@code maxCount+1} where
+	 * element {@code i} is the number of distinct k-mers seen exactly i times
+	 * except the last element which is the number seen maxCount or more times.
+	 * Element 0 is always 0.
+	 * @throws IOException if there is a problem reading spilled counts.
+	 * @throws IllegalArgumentException if maxCount &lt; 1.
+	 * @throws IllegalStateException if this counter is closed.
+	 */
+	public long[] getSpectrum(int maxCount) throws IOException{
+		if(maxCount < 1){
+			throw new IllegalArgumentException("max count must be >= 1 : " + maxCount);
+		}
+		long[] spectrum = new long[maxCount +1];
+		forEachCount((kmer, count) -> spectrum[(int) Math.min(count, maxCount)]++);
+		return spectrum;
+	}
+	
+	/**
+	 * Get the average probe length over all the k-mers
+	 * currently in memory.
+	 * @return the average probe length; or 0 if there are none.
+	 */
+	double getAverageProbeLength(){
+		double total=0;
+		long size=0;
+		for(Stripe stripe : stripes){
+			synchronized(stripe){
+				total += stripe.table.getAverageProbeLength() * stripe.table.size;
+				size += stripe.table.size;
+			}
+		}
+		return size==0 ? 0 : total/size;
+	}
+	
+	private void forEachCount(PackedKmerCountConsumer consumer) throws IOException{
+		checkNotClosed();
+		if(!spilled){
+			for(Stripe stripe : stripes){
+				synchronized(stripe){
+					stripe.table.forEach(consumer);
+				}
+			}
+			return;
+		}
+		//put everything on disk so each partition
+		//can be merged on its own
+		for(Stripe stripe : stripes){
+			synchronized(stripe){
+				stripe.spill();
+			}
+		}
+		for(int partition=0; partition < numberOfPartitions; partition++){
+			CountTable merged = new CountTable(1024);
+			for(Stripe stripe : stripes){
+				File spillFile = stripe.getSpillFile(partition);
+				if(spillFile ==null || !spillFile.exists()){
+					continue;
+				}
+				try(DataInputStream in = openSpillFile(spillFile)){
+					while(true){
+						long kmer = in.readLong();
+						merged.add(kmer, in.readLong());
+					}
+				}catch(EOFException e){
+					//end of file
+				}
+			}
+			merged.forEach(consumer);
+		}
+	}
+	
+	private static DataInputStream openSpillFile(File spillFile) throws IOException{
+		return new DataInputStream(new BufferedInputStream(new FileInputStream(spillFile), 1 << 16));
+	}
+	
+	private void checkNotClosed(){
+		if(closed){
+			throw new IllegalStateException("counter is closed");
+		}
+	}
+	/**
+	 * Deletes any spilled files.
+	 */
+	@Override
+	public void close() throws IOException {
+		if(closed){
+			return;
+		}
+		closed = true;
+		for(Stripe stripe : stripes){
+			synchronized(stripe){
+				stripe.table = new CountTable(16);
+			}
+		}
+		if(spillDir !=null){
+			if(userSpillDir ==null){
+				IOUtil.recursiveDelete(spillDir);
+			}else{
+				for(Stripe stripe : stripes){
+					for(int i=0; i< numberOfPartitions; i++){
+						File f = stripe.getSpillFile(i);
+						if(f !=null){
+							IOUtil.deleteIgnoreError(f);
+						}
+					}
+				}
+			}
+		}
+	}
+	
+	private synchronized File getSpillDir() throws IOException{
+		if(spillDir ==null){
+			if(userSpillDir ==null){
+				spillDir = Files.createTempDirectory("kmerCounts").toFile();
+			}else{
+				IOUtil.mkdirs(userSpillDir);
+				spillDir = userSpillDir;
+			}
+		}
+		return spillDir;
+	}
+	/**
+	 * Mix the bits of the k-mer so similar k-mers
+	 * end up in different stripes and partitions
+	 * (this is the MurmurHash3 finalizer).
+	 */
+	private static long hash(long kmer){
+		long h = kmer;
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+	
+	private int stripeOf(long kmer){
+		return (int) hash(kmer) & stripeMask;
+	}
+	
+	private int partitionOf(long kmer){
+		return (int) Long.remainderUnsigned(hash(kmer) >>> 32, numberOfPartitions);
+	}
+	/**
+	 * Per thread buffers of k-mers for each stripe
+	 * so each stripe is only locked once for many k-mers.
+	 */
+	private final class StripeBuffers{
+		private final long[][] kmers = new long[stripes.length][STRIPE_BUFFER_SIZE];
+		private final int[] sizes = new int[stripes.length];
+		
+		void add(long kmer){
+			int stripe = stripeOf(kmer);
+			kmers[stripe][sizes[stripe]++] = kmer;
+			if(sizes[stripe] == STRIPE_BUFFER_SIZE){
+				flush(stripe);
+			}
+		}
+		
+		void flush(){
+			for(int i=0; i< sizes.length; i++){
+				if(sizes[i] > 0){
+					flush(i);
+				}
+			}
+		}
+		
+		private void flush(int stripe){
+			int size = sizes[stripe];
+			//reset first so an exception doesn't re-add these later
+			sizes[stripe] = 0;
+			stripes[stripe].addAll(kmers[stripe], size);
+			totalKmers.add(size);
+		}
+	}
+	
+	private final class Stripe{
+		private final int index;
+		private CountTable table = new CountTable(1024);
+		
+		Stripe(int index){
+			this.index = index;
+		}
+		
+		synchronized void add(long kmer){
+			table.add(kmer, 1);
+			spillIfNeeded();
+		}
+		
+		synchronized void addAll(long[] kmers, int length){
+			for(int i=0; i< length; i++){
+				table.add(kmers[i], 1);
+			}
+			spillIfNeeded();
+		}
+		
+		private void spillIfNeeded(){
+			if(table.size() > maxEntriesPerStripe){
+				try {
+					spill();
+				} catch (IOException e) {
+					throw new UncheckedIOException("error spilling kmer counts", e);
+				}
+			}
+		}
+		
+		File getSpillFile(int partition){
+			return spillDir ==null ? null : new File(spillDir, index + "-" + partition + ".counts");
+		}
+		/**
+		 * Append our counts to the spill files
+		 * and clear our table.
+		 * Must be called while holding our lock.
+		 */
+		void spill() throws IOException{
+			if(table.size() ==0){
+				return;
+			}
+			File dir = getSpillDir();
+			spilled = true;
+			DataOutputStream[] outs = new DataOutputStream[numberOfPartitions];
+			try{
+				for(int i=0; i< numberOfPartitions; i++){
+					outs[i] = new DataOutputStream(new BufferedOutputStream(
+							new FileOutputStream(new File(dir, index + "-" + i + ".counts"), true), 8192));
+				}
+				IOException[] error = new IOException[1];
+				table.forEach((kmer, count) ->{
+					if(error[0] !=null){
+						return;
+					}
+					try{
+						DataOutputStream out = outs[partitionOf(kmer)];
+						out.writeLong(kmer);
+						out.writeLong(count);
+					}catch(IOException e){
+						error[0] = e;
+					}
+				});
+				if(error[0] !=null){
+					throw error[0];
+				}
+			}finally{
+				for(DataOutputStream out : outs){
+					if(out !=null){
+						out.close();
+					}
+				}
+			}
+			table = new CountTable(1024);
+		}
+	}
+	/**
+	 * Open addressing hash table of packed k-mer to count
+	 * using linear probing.  Since every k-mer is a valid
+	 * key (including 0) the key 0 is stored separately.
+	 * <p>
+	 * The slot is taken from the high bits of the hash
+	 * since the low bits pick the stripe and so are the same
+	 * for every key in a stripe's table.
+	 * </p>
+	 */
+	static final class CountTable{
+		private static final double MAX_LOAD = 0.5;
+		
+		private long[] keys;
+		private long[] counts;
+		private int mask;
+		private int shift;
+		private int size;
+		
+		private long zeroCount;
+		
+		CountTable(int initialCapacity){
+			int capacity = Integer.highestOneBit(Math.max(4, initialCapacity) *2 -1);
+			keys = new long[capacity];
+			counts = new long[capacity];
+			mask = capacity -1;
+			shift = Long.numberOfLeadingZeros(mask);
+		}
+		
+		int size(){
+			return size + (zeroCount > 0 ? 1 : 0);
+		}
+		
+		void add(long key, long count){
+			if(key ==0){
+				zeroCount += count;
+				return;
+			}
+			int index = slotOf(key);
+			while(true){
+				long current = keys[index];
+				if(current == key){
+					counts[index] += count;
+					return;
+				}
+				if(current ==0){
+					keys[index] = key;
+					counts[index] = count;
+					size++;
+					if(size > keys.length * MAX_LOAD){
+						grow();
+					}
+					return;
+				}
+				index = (index +1) & mask;
+			}
+		}
+		
+		long get(long key){
+			if(key ==0){
+				return zeroCount;
+			}
+			int index = slotOf(key);
+			while(true){
+				long current = keys[index];
+				if(current == key){
+					return counts[index];
+				}
+				if(current ==0){
+					return 0;
+				}
+				index = (index +1) & mask;
+			}
+		}
+		
+		private int slotOf(long key){
+			return (int) (hash(key) >>> shift);
+		}
+		/**
+		 * Get the average number of slots looked at
+		 * to find each key.
+		 * @return the average probe length; or 0 if empty.
+		 */
+		double getAverageProbeLength(){
+			if(size ==0){
+				return 0;
+			}
+			long total=0;
+			for(int i=0; i< keys.length; i++){
+				if(keys[i] !=0){
+					total += ((i - slotOf(keys[i])) & mask) +1;
+				}
+			}
+			return total / (double) size;
+		}
+		
+		private void grow(){
+			long[] oldKeys = keys;
+			long[] oldCounts = counts;
+			keys = new long[oldKeys.length *2];
+			counts = new long[oldKeys.length *2];
+			mask = keys.length -1;
+			shift = Long.numberOfLeadingZeros(mask);
+			size =0;
+			for(int i=0; i< oldKeys.length; i++){
+				if(oldKeys[i] !=0){
+					add(oldKeys[i], oldCounts[i]);
+				}
+			}
+		}
+		
+		void forEach(PackedKmerCountConsumer consumer){
+			if(zeroCount > 0){
+				consumer.accept(0, zeroCount);
+			}
+			for(int i=0; i< keys.length; i++){
+				if(keys[i] !=0){
+					consumer.accept(keys[i], counts[i]);
+				}
+			}
+		}
+	}
+	/**
+	 * Builder for {@link KmerCounter}.
+	 * 
+	 * @author dkatzel
+	 *
+	 */
+	public static final class Builder{
+		private final int k;
+		private boolean canonical;
+		private long minCount = 1;
+		private int concurrencyLevel = Runtime.getRuntime().availableProcessors() *4;
+		private Long maxKmersInMemory;
+		private File spillDir;
+		private int numberOfPartitions = 64;
+		/**
+		 * Create a new Builder.
+		 * @param k the size of each k-mer; must be between 1 and
+		 * {@value RollingKmers#MAX_PACKED_K}.
+		 * 
+		 * @throws IllegalArgumentException if k is out of range.
+		 */
+		public Builder(int k){
+			if(k < 1 || k > RollingKmers.MAX_PACKED_K){
+				throw new IllegalArgumentException("k must be between 1 and " + RollingKmers.MAX_PACKED_K + " : " + k);
+			}
+			this.k = k;
+		}
+		/**
+		 * Count canonical k-mers (the smaller of each k-mer and its
+		 * reverse complement).
+		 * @param canonical {@code true} to count canonical k-mers;
+		 * defaults to {@code false}.
+		 * @return this.
+		 */
+		public Builder canonical(boolean canonical){
+			this.canonical = canonical;
+			return this;
+		}
+		/**
+		 * Only report k-mers that were seen at least this many times
+		 * (for example 2 to filter out most sequencing errors).
+		 * @param minCount the min count; must be &ge; 1; defaults to 1.
+		 * @return this.
+		 * @throws IllegalArgumentException if minCount &lt; 1.
+		 */
+		public Builder minCount(long minCount){
+			if(minCount < 1){
+				throw new IllegalArgumentException("min count must be >= 1 : " + minCount);
+			}
+			this.minCount = minCount;
+			return this;
+		}
+		/**
+		 * The expected number of threads adding sequences at the same time.
+		 * @param concurrencyLevel the number of threads; must be &ge; 1;
+		 * defaults to 4 times the number of processors.
+		 * @return this.
+		 * @throws IllegalArgumentException if concurrencyLevel &lt; 1.
+		 */
+		public Builder concurrencyLevel(int concurrencyLevel){
+			if(concurrencyLevel < 1){
+				throw new IllegalArgumentException("concurrency level must be >= 1 : " + concurrencyLevel);
+			}
+			this.concurrencyLevel = concurrencyLevel;
+			return this;
+		}
+		/**
+		 * Spill counts to disk if there are more than this many distinct
+		 * k-mers in memory.  Each distinct k-mer in memory takes
+		 * 16 bytes per slot and the tables are kept at most half full
+		 * so each k-mer can take up to 64 bytes.
+		 * @param maxKmersInMemory the max number of k-mers; must be &ge; 1.
+		 * If not set, then counts are never spilled.
+		 * @return this.
+		 * @throws IllegalArgumentException if maxKmersInMemory &lt; 1.
+		 */
+		public Builder maxKmersInMemory(long maxKmersInMemory){
+			if(maxKmersInMemory < 1){
+				throw new IllegalArgumentException("max kmers in memory must be >= 1 : " + maxKmersInMemory);
+			}
+			this.maxKmersInMemory = maxKmersInMemory;
+			return this;
+		}
+		/**
+		 * The directory to write spilled counts to.
+		 * @param spillDir the directory; if {@code null} or not set,
+		 * then a new temp directory is used.
+		 * @return this.
+		 */
+		public Builder spillDirectory(File spillDir){
+			this.spillDir = spillDir;
+			return this;
+		}
+		/**
+		 * The number of partitions to split spilled counts into;
+		 * each partition is merged in memory on its own.
+		 * @param numberOfPartitions the number of partitions; must be &ge; 1;
+		 * defaults to 64.
+		 * @return this.
+		 * @throws IllegalArgumentException if numberOfPartitions &lt; 1.
+		 */
+		public Builder numberOfSpillPartitions(int numberOfPartitions){
+			if(numberOfPartitions < 1){
+				throw new IllegalArgumentException("number of partitions must be >= 1 : " + numberOfPartitions);
+			}
+			this.numberOfPartitions = numberOfPartitions;
+			return this;
+		}
+		/**
+		 * Create a new {@link KmerCounter}.
+		 * @return a new {@link KmerCounter}; will never be null.
+		 */
+		public KmerCounter build(){
+			return new KmerCounter(this);
+		}
+	}
+}
@@ -0,0 +1,80 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.core.residue.nt;
+
+import org.jcvi.jillion.core.Range;
+import org.jcvi.jillion.internal.core.util.GrowableByteArray;
+/**
+ * {@code NucleotideBuffer} is the mutable storage
+ * of {@link Nucleotide} ordinal values used by a {@link NucleotideSequenceBuilder}.
+ * All offsets are gapped offsets.
+ * 
+ * @author dkatzel
+ *
+ * @since 5.3
+ */
+interface NucleotideBuffer {
+	/**
+	 * Get the number of nucleotides currently in the buffer.
+	 * @return the length; will always be &ge; 0.
+	 */
+	int getCurrentLength();
+	/**
+	 * Get the ordinal of the nucleotide at the given offset.
+	 * @param offset the offset to get.
+	 * @return the {@link Nucleotide} ordinal as a byte.
+	 */
+	byte get(int offset);
+	
+	void replace(int offset, byte value);
+	
+	void append(GrowableByteArray values);
+	
+	void append(NucleotideBuffer other);
+	
+	void insert(int offset, GrowableByteArray values);
+	
+	void remove(Range range);
+	/**
+	 * Create a new {@link GrowableByteArray} of the nucleotide
+	 * ordinals in the given Range.  If the range extends beyond
+	 * this buffer, then only the intersecting portion is used.
+	 * @param range the Range to copy; can not be null.
+	 * @return a new GrowableByteArray; will never be null.
+	 */
+	GrowableByteArray subArray(Range range);
+	
+	byte[] toArray();
+	
+	void reverse();
+	
+	void complement();
+	
+	void reverseComplement();
+	/**
+	 * Remove all the gaps.
+	 */
+	void ungap();
+	
+	void clear();
+	
+	NucleotideBuffer copy();
+}
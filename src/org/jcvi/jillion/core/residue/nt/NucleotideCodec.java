@@ -23,6 +23,7 @@ package org.jcvi.jillion.core.residue.nt;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.IntSupplier;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Stream;
@@ -191,6 +192,77 @@ interface NucleotideCodec extends GlyphCodec<Nucleotide>{
     }
     
     List<Range> getNRanges(byte[] encodedData);
+    /**
+     * Count the number of {@link Nucleotide#Cytosine}s,
+     * {@link Nucleotide#Guanine}s and {@link Nucleotide#Strong}s
+     * in the encoded sequence.
+     * @param encodedData the encoded bytes which contain
+     * all the nucleotides.
+     * @return the number of G/C bases; will always be {@code >=0}.
+     * 
+     * @since 5.3
+     */
+    default long getGCCount(byte[] encodedData){
+        //override if something better!
+        long count=0;
+        Iterator<Nucleotide> iter = iterator(encodedData);
+        while(iter.hasNext()){
+            Nucleotide n = iter.next();
+            if(n == Nucleotide.Cytosine || n == Nucleotide.Guanine || n == Nucleotide.Strong){
+                count++;
+            }
+        }
+        return count;
+    }
+    /**
+     * Count the number of offsets where the bases
+     * of the two encoded sequences are not the same.
+     * Both sequences must have the same length.
+     * @param encodedData the encoded bytes which contain
+     * all the nucleotides.
+     * @param otherCodec the codec used to encode the other sequence.
+     * @param otherEncodedData the encoded bytes of the other sequence.
+     * @return the number of mismatches; will always be {@code >=0}.
+     * 
+     * @since 5.3
+     */
+    default long getHammingDistance(byte[] encodedData, NucleotideCodec otherCodec, byte[] otherEncodedData){
+        //override if something better!
+        long count=0;
+        Iterator<Nucleotide> iter = iterator(encodedData);
+        Iterator<Nucleotide> otherIter = otherCodec.iterator(otherEncodedData);
+        while(iter.hasNext()){
+            if(iter.next() != otherIter.next()){
+                count++;
+            }
+        }
+        return count;
+    }
+    /**
+     * Create an {@link IntSupplier} that returns the 2 bit code
+     * (A=0, C=1, G=2, T=3) of each base in the given range in order.
+     * @param encodedData the encoded bytes which contain
+     * all the nucleotides.
+     * @param range the Range of bases to get; can not be null.
+     * @return a new IntSupplier that returns -1 for any base
+     * that is not A,C,G or T.
+     * 
+     * @since 5.3
+     */
+    default IntSupplier twoBitCodes(byte[] encodedData, Range range){
+        //override if something better!
+        return TwoBitPackedWords.codesOf(iterator(encodedData, range));
+    }
+    /**
+     * Encode the reverse complement of the encoded sequence
+     * using this codec.
+     * @param encodedData the encoded bytes which contain
+     * all the nucleotides.
+     * @return the encoded bytes of the reverse complement.
+     * 
+     * @since 5.3
+     */
+    byte[] reverseComplement(byte[] encodedData);
     
     default Stream<Range> matches(byte[] encodedData, String regex){
       //override if something better!
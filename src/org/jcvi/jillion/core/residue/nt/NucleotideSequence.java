@@ -27,8 +27,10 @@ package org.jcvi.jillion.core.residue.nt;
 
 
 import java.io.Serializable;
+import java.util.Iterator;
 import java.util.List;
 import java.util.regex.Pattern;
+import java.util.stream.LongStream;
 import java.util.stream.Stream;
 
 import org.jcvi.jillion.core.Range;
@@ -169,6 +171,100 @@ public interface NucleotideSequence extends ResidueSequence<Nucleotide, Nucleoti
      * @since 5.3
      */
     List<Range> getRangesOfNs();
+    /**
+     * Count the number of {@link Nucleotide#Cytosine}s,
+     * {@link Nucleotide#Guanine}s and {@link Nucleotide#Strong}s
+     * in this sequence.
+     * 
+     * @return the number of G/C bases; will always be {@code >=0}.
+     * 
+     * @implNote the default implementation iterates over every base;
+     * implementations are encouraged to override this method
+     * to count the bases directly from their encoded form.
+     * 
+     * @since 5.3
+     */
+    default long getGCCount(){
+        long count=0;
+        for(Nucleotide n : this){
+            if(n == Nucleotide.Cytosine || n == Nucleotide.Guanine || n == Nucleotide.Strong){
+                count++;
+            }
+        }
+        return count;
+    }
+    /**
+     * Count the number of offsets where this sequence 
+     * and the given sequence have different {@link Nucleotide}s.
+     * Ambiguity codes are compared as is so an {@code N} is 
+     * a mismatch to an {@code A}.
+     * 
+     * @param other the other sequence to compare to; can not be null
+     * and must be the same length as this sequence.
+     * 
+     * @return the number of mismatches; will always be {@code >=0}.
+     * 
+     * @throws NullPointerException if other is null.
+     * @throws IllegalArgumentException if other is not the same length as this sequence.
+     * 
+     * @implNote the default implementation iterates over every base;
+     * implementations are encouraged to override this method
+     * to compare the bases directly from their encoded form.
+     * 
+     * @since 5.3
+     */
+    default long getHammingDistance(NucleotideSequence other){
+        if(other.getLength() != getLength()){
+            throw new IllegalArgumentException(String.format("sequences must be the same length %d vs %d", getLength(), other.getLength()));
+        }
+        long count=0;
+        Iterator<Nucleotide> iter = iterator();
+        Iterator<Nucleotide> otherIter = other.iterator();
+        while(iter.hasNext()){
+            if(iter.next() != otherIter.next()){
+                count++;
+            }
+        }
+        return count;
+    }
+    /**
+     * Create a new {@link NucleotideSequence} that is the
+     * reverse complement of this sequence.
+     * 
+     * @return a new {@link NucleotideSequence}; will never be null.
+     * 
+     * @implSpec the default implementation is the same as
+     * {@code toBuilder().reverseComplement().build()}.
+     * 
+     * @since 5.3
+     */
+    default NucleotideSequence reverseComplement(){
+        return toBuilder().reverseComplement().build();
+    }
+    /**
+     * Create a new {@link LongStream} of all the k-mers
+     * of this sequence packed 2 bits per base into longs.
+     * k-mers that contain any base other than A, C, G or T
+     * are skipped.  This is much faster than {@link #kmers(int)}
+     * since no objects are created per k-mer.
+     * 
+     * @param k the size of each kmer; must be between 1 and {@value RollingKmers#MAX_PACKED_K}.
+     * @param canonical if {@code true} then emit the smaller of each
+     * k-mer and its reverse complement.
+     * @return a new {@link LongStream}; will never be null but may be empty.
+     * 
+     * @throws IllegalArgumentException if k is less than 1.
+     * @throws IllegalStateException if k is greater than {@value RollingKmers#MAX_PACKED_K}.
+     * 
+     * @see RollingKmers
+     * @since 5.3
+     */
+    default LongStream packedKmers(int k, boolean canonical){
+        return new RollingKmers.Builder(k)
+                        .canonical(canonical)
+                        .build()
+                        .stream(this);
+    }
     /**
      * Create a new NucleotideSequence of the given sequence.
      * 
@@ -61,7 +61,7 @@ public final class NucleotideSequenceBuilder implements ResidueSequenceBuilder<N
     private static final byte T_VALUE = Nucleotide.Thymine.getOrdinalAsByte();
    
     
-    private GrowableByteArray data;
+    private NucleotideBuffer data;
     /**
      * The CodecDecider will keep track of what types of
      * bases we have and how many in order to decide
@@ -102,7 +102,7 @@ public final class NucleotideSequenceBuilder implements ResidueSequenceBuilder<N
         if(initialCapacity<1){
             throw new IllegalArgumentException("initial capacity must be >=1");
         }
-        data = new GrowableByteArray(initialCapacity);
+        data = new ByteNucleotideBuffer(new GrowableByteArray(initialCapacity));
         codecDecider = new CodecDecider();
     }
     /**
@@ -114,7 +114,7 @@ public final class NucleotideSequenceBuilder implements ResidueSequenceBuilder<N
     public NucleotideSequenceBuilder(NucleotideSequence sequence){
         assertNotNull(sequence);
         NewValues newValues = new NewValues(sequence);
-        this.data = newValues.getData();
+        this.data = new ByteNucleotideBuffer(newValues.getData());
         codecDecider = new CodecDecider(newValues);
     }
     /**
@@ -126,7 +126,7 @@ public final class NucleotideSequenceBuilder implements ResidueSequenceBuilder<N
     public NucleotideSequenceBuilder(Iterable<Nucleotide> sequence){
         assertNotNull(sequence);
         NewValues newValues = new NewValues(sequence);
-        this.data = newValues.getData();
+        this.data = new ByteNucleotideBuffer(newValues.getData());
         codecDecider = new CodecDecider(newValues);
     }
     /**
@@ -146,7 +146,7 @@ public final class NucleotideSequenceBuilder implements ResidueSequenceBuilder<N
 			throw new NullPointerException(NULL_SEQUENCE_ERROR_MSG);
 		}
 		NewValues newValues = new NewValues(sequence);
-		this.data = newValues.getData();
+		this.data = new ByteNucleotideBuffer(newValues.getData());
 		codecDecider = new CodecDecider(newValues);
     }
     
@@ -167,7 +167,7 @@ public final class NucleotideSequenceBuilder implements ResidueSequenceBuilder<N
 			throw new NullPointerException(NULL_SEQUENCE_ERROR_MSG);
 		}
 		NewValues newValues = new NewValues(sequence);
-		this.data = newValues.getData();
+		this.data = new ByteNucleotideBuffer(newValues.getData());
 		codecDecider = new CodecDecider(newValues);
     }
     /**
@@ -181,7 +181,7 @@ public final class NucleotideSequenceBuilder implements ResidueSequenceBuilder<N
 			throw new NullPointerException("singleNucleotide can not be null");
 		}
 		NewValues newValues = new NewValues(singleNucleotide);
-		this.data = newValues.getData();
+		this.data = new ByteNucleotideBuffer(newValues.getData());
 		codecDecider = new CodecDecider(newValues);
 	}
 
@@ -190,8 +190,8 @@ public final class NucleotideSequenceBuilder implements ResidueSequenceBuilder<N
         this.data = copy.data.copy();
         this.codecDecider = copy.codecDecider.copy();
     }
-    private NucleotideSequenceBuilder(GrowableByteArray data){
-    	this.data = data;
+    private NucleotideSequenceBuilder(GrowableByteArray data, boolean packed){
+    	this.data = packed ? new TwoBitNucleotideBuffer(data) : new ByteNucleotideBuffer(data);
     	NewValues newValues = new NewValues(data);
     	this.codecDecider = new CodecDecider(newValues);
     }
@@ -214,7 +214,7 @@ public final class NucleotideSequenceBuilder implements ResidueSequenceBuilder<N
      */
 	public NucleotideSequenceBuilder(NucleotideSequence seq, Range range) {
 		NewValues newValues = new NewValues(seq.iterator(range));
-		this.data = newValues.getData();
+		this.data = new ByteNucleotideBuffer(newValues.getData());
 		codecDecider = new CodecDecider(newValues);
 	}
 
@@ -846,7 +846,7 @@ public final class NucleotideSequenceBuilder implements ResidueSequenceBuilder<N
         	
         	}
         	
-        	return codecDecider.encode(iterator());
+        	return codecDecider.encode(iterator(), data);
 
     }
     @Override
@@ -947,7 +947,7 @@ public final class NucleotideSequenceBuilder implements ResidueSequenceBuilder<N
     	}
     	
     	Range trimRange = range.intersection(Range.ofLength(getLength()));
-    	NucleotideSequenceBuilder builder = new NucleotideSequenceBuilder(data.subArray(trimRange));
+    	NucleotideSequenceBuilder builder = new NucleotideSequenceBuilder(data.subArray(trimRange), isUsingPackedStorage());
 		if(codecDecider.hasAlignedReference()){
 			builder.setReferenceHint(codecDecider.alignedReference.reference, codecDecider.alignedReference.offset+ (int)range.getBegin());
 		}
@@ -977,7 +977,7 @@ public final class NucleotideSequenceBuilder implements ResidueSequenceBuilder<N
      * @since 5.0
      */
 	public NucleotideSequenceBuilder copy(Range gappedRange) {
-		return new NucleotideSequenceBuilder(data.subArray(gappedRange));
+		return new NucleotideSequenceBuilder(data.subArray(gappedRange), isUsingPackedStorage());
 	}
    
 	@Override
@@ -1123,24 +1123,7 @@ public final class NucleotideSequenceBuilder implements ResidueSequenceBuilder<N
      * @return this.
      */
     public NucleotideSequenceBuilder reverseComplement(){
-    	byte[] bytes = data.toArray();
-        int currentLength = bytes.length;
-        int pivotOffset = currentLength/2;
-        
-        
-        for(int i=0; i<pivotOffset; i++){
-            int compOffset = currentLength-1-i;
-            
-            Nucleotide tmp = Nucleotide.VALUES.get(bytes[i]).complement();
-           
-            byte complementOrdinal = Nucleotide.VALUES.get(bytes[compOffset]).complement().getOrdinalAsByte();
-            bytes[i] = complementOrdinal;
-            bytes[compOffset] = tmp.getOrdinalAsByte();
-        }
-        if(currentLength%2!=0){
-        	bytes[pivotOffset] = Nucleotide.VALUES.get(bytes[pivotOffset]).complement().getOrdinalAsByte();
-        }
-        data = new GrowableByteArray(bytes);
+    	data.reverseComplement();
         codecDecider.reverse();
         return this;
     }
@@ -1161,13 +1144,7 @@ public final class NucleotideSequenceBuilder implements ResidueSequenceBuilder<N
      * @return this.
      */
     public NucleotideSequenceBuilder complement(){
-        int currentLength = codecDecider.getCurrentLength();
-        byte[] complementedData = new byte[currentLength];
-        byte[] originalData = data.toArray();
-        for(int i=0; i<originalData.length; i++){
-        	complementedData[i]=Nucleotide.VALUES.get(originalData[i]).complement().getOrdinalAsByte();
-        }
-        this.data = new GrowableByteArray(complementedData);
+        data.complement();
         //codec decider shouldn't change since number
         //of ambiguities, Ns and gaps wont change
         //and the offsets of N's and gaps won't change
@@ -1191,6 +1168,45 @@ public final class NucleotideSequenceBuilder implements ResidueSequenceBuilder<N
     	codecDecider.forceBasicCompression(turnOffDataCompression);
     	return this;
     }
+    /**
+     * Change how the nucleotides are stored while they are being built.
+     * By default, each nucleotide takes up a byte.  Packed storage
+     * stores A,C,G and T in only 2 bits each and keeps a separate list
+     * of the offsets of any other bases (gaps, N and other ambiguities)
+     * which greatly reduces the memory needed to build
+     * long sequences that are mostly A,C,G and T, such as
+     * genomes and contig consensus sequences.
+     * Reverse complementing, inserting and deleting work 
+     * on many packed bases at a time and if the sequence only 
+     * has gaps or only has Ns, then {@link #build()} copies the packed bases 
+     * directly instead of encoding each base again.
+     * Any nucleotides already in this builder are kept, and
+     * copies of this builder will use the same storage.
+     * 
+     * @param packed {@code true} to pack the bases 2 bits each;
+     * {@code false} to store each base as a byte. Defaults to {@code false}.
+     * @return this.
+     * 
+     * @since 5.3
+     */
+    public NucleotideSequenceBuilder usePackedStorage(boolean packed){
+    	if(packed != isUsingPackedStorage()){
+    		GrowableByteArray values = new GrowableByteArray(data.toArray());
+    		data = packed ? new TwoBitNucleotideBuffer(values) : new ByteNucleotideBuffer(values);
+    	}
+    	return this;
+    }
+    /**
+     * Is this builder storing its nucleotides packed into 2 bits each.
+     * @return {@code true} if packed storage is being used; {@code false} otherwise.
+     * 
+     * @see #usePackedStorage(boolean)
+     * 
+     * @since 5.3
+     */
+    public boolean isUsingPackedStorage(){
+    	return data instanceof TwoBitNucleotideBuffer;
+    }
     /**
      * {@inheritDoc}
      * 
@@ -1214,27 +1230,7 @@ public final class NucleotideSequenceBuilder implements ResidueSequenceBuilder<N
 			return this;
 		}
 		
-		byte[] oldBytes = data.toArray();
-		byte[] newBytes = new byte[oldBytes.length-codecDecider.gapOffsets.getCurrentLength()];
-		// bulk copy all bits that aren't
-		// for the gaps
-		Iterator<Integer> gapIterator = codecDecider.gapOffsets.iterator();
-		
-		int oldOffset = 0;
-		int newOffset = 0;
-		while (gapIterator.hasNext()) {
-			int nextGapOffset = gapIterator.next().intValue();
-			for (; oldOffset < nextGapOffset; oldOffset++,newOffset++) {
-				newBytes[newOffset] = oldBytes[oldOffset];
-			}
-			// skip gap
-			oldOffset ++;
-		}
-		// fill in rest of bits after the gaps
-		for (; oldOffset < oldBytes.length; oldOffset++,newOffset++) {
-			newBytes[newOffset] = oldBytes[oldOffset];
-		}
-		data = new GrowableByteArray(newBytes);
+		data.ungap();
 		codecDecider.ungap();
 		return this;
     }
@@ -1338,7 +1334,7 @@ public final class NucleotideSequenceBuilder implements ResidueSequenceBuilder<N
         	gapOffsets = new GrowableIntArray(12);
         	nOffsets = new GrowableIntArray(12);
         }
-        public NucleotideSequence encode(Iterator<Nucleotide> iterator) {
+        public NucleotideSequence encode(Iterator<Nucleotide> iterator, NucleotideBuffer data) {
         	
         	int numberOfGaps = gapOffsets.getCurrentLength();
             int numberOfNs = nOffsets.getCurrentLength();
@@ -1357,14 +1353,24 @@ public final class NucleotideSequenceBuilder implements ResidueSequenceBuilder<N
                 return new DefaultNucleotideSequence(BasicNucleotideCodec.INSTANCE, encodedBytes);
             }
             if(numberOfGaps==0 ){
-                byte[] encodedBytes= AcgtnNucloetideCodec.INSTANCE.encode(currentLength, nOffsets.toArray(), iterator);
+                byte[] encodedBytes= encodeTwoBit(AcgtnNucloetideCodec.INSTANCE, nOffsets.toArray(), iterator, data);
                 return new DefaultNucleotideSequence(AcgtnNucloetideCodec.INSTANCE, encodedBytes);
             }
             
-            byte[] encodedBytes= AcgtGapNucleotideCodec.INSTANCE.encode(currentLength, gapOffsets.toArray(), iterator);
+            byte[] encodedBytes= encodeTwoBit(AcgtGapNucleotideCodec.INSTANCE, gapOffsets.toArray(), iterator, data);
             return new DefaultNucleotideSequence(AcgtGapNucleotideCodec.INSTANCE, encodedBytes);
        
 		}
+        
+        private byte[] encodeTwoBit(AbstractTwoBitEncodedNucleotideCodec codec, int[] sentinelOffsets, 
+        		Iterator<Nucleotide> iterator, NucleotideBuffer data){
+        	if(data instanceof TwoBitNucleotideBuffer){
+        		//the only bases that aren't A,C,G or T are the sentinels
+        		//so the packed bases are already encoded
+        		return codec.encode(currentLength, sentinelOffsets, (TwoBitNucleotideBuffer)data);
+        	}
+        	return codec.encode(currentLength, sentinelOffsets, iterator);
+        }
 		CodecDecider(NewValues newValues){
         	nOffsets = newValues.getNOffsets().copy();
 			currentLength = newValues.getLength();
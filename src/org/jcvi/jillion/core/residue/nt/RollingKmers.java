@@ -0,0 +1,529 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.core.residue.nt;
+
+import java.util.Spliterator;
+import java.util.function.IntSupplier;
+import java.util.function.LongConsumer;
+import java.util.stream.LongStream;
+import java.util.stream.StreamSupport;
+
+import org.jcvi.jillion.core.Range;
+/**
+ * {@code RollingKmers} computes all the k-mers
+ * of a {@link NucleotideSequence} as 2 bit packed primitive values
+ * by rolling each new base into the previous k-mer, so
+ * no objects are created per k-mer.
+ * <p>
+ * Each base is packed into 2 bits (A=0, C=1, G=2, T=3) with the 
+ * first base of the k-mer in the most significant bits so 
+ * packed k-mers sort in the same order as their Strings.
+ * k-mers of size {@value #MAX_PACKED_K} or less fit in a single {@code long};
+ * larger k-mers are packed into a {@code long[]} with the most significant
+ * bases in the first element.
+ * </p>
+ * <p>
+ * Any base that is not A, C, G or T (Ns, other ambiguities and gaps) 
+ * can not be packed so no k-mer that
+ * includes one of those bases is emitted.
+ * </p>
+ * <p>
+ * If canonical k-mers are requested, then the smaller of each k-mer
+ * and its reverse complement is emitted.
+ * </p>
+ * <p>
+ * Instances are immutable and thread safe.
+ * </p>
+ * @author dkatzel
+ * 
+ * @since 5.3
+ */
+public final class RollingKmers {
+	/**
+	 * The largest k that can be packed into a single {@code long}.
+	 */
+	public static final int MAX_PACKED_K = 32;
+	/**
+	 * Don't bother splitting streams with fewer
+	 * offsets than this.
+	 */
+	private static final int MIN_SPLIT_SIZE = 1 << 14;
+	
+	private static final char[] BASES = {'A', 'C', 'G', 'T'};
+	/**
+	 * Consumer of k-mers packed into a single {@code long}.
+	 * 
+	 * @author dkatzel
+	 *
+	 */
+	@FunctionalInterface
+	public interface PackedKmerConsumer{
+		/**
+		 * Consume the next k-mer.
+		 * @param offset the offset into the sequence of the first base of the k-mer.
+		 * @param packedKmer the packed k-mer.
+		 */
+		void accept(long offset, long packedKmer);
+	}
+	/**
+	 * Consumer of k-mers of any size packed into a {@code long[]}.
+	 * 
+	 * @author dkatzel
+	 *
+	 */
+	@FunctionalInterface
+	public interface PackedKmerWordsConsumer{
+		/**
+		 * Consume the next k-mer.
+		 * @param offset the offset into the sequence of the first base of the k-mer.
+		 * @param packedKmer the packed k-mer; <strong>this array is reused
+		 * for every k-mer</strong> so it must be copied if it
+		 * is needed after this method returns.
+		 */
+		void accept(long offset, long[] packedKmer);
+	}
+	
+	private final int k;
+	private final boolean canonical;
+	
+	private RollingKmers(Builder builder){
+		this.k = builder.k;
+		this.canonical = builder.canonical;
+	}
+	/**
+	 * Get the size of each k-mer.
+	 * @return k; will always be {@code >=1}.
+	 */
+	public int getK() {
+		return k;
+	}
+	/**
+	 * Are the canonical k-mers emitted.
+	 * @return {@code true} if the smaller of each k-mer and its reverse
+	 * complement are emitted; {@code false} if the k-mers
+	 * as they appear in the sequence are emitted.
+	 */
+	public boolean isCanonical() {
+		return canonical;
+	}
+	/**
+	 * Create a new {@link LongStream} of all the packed
+	 * k-mers of the given sequence.  The returned stream 
+	 * may be made parallel.
+	 * @param sequence the sequence to get the k-mers of; can not be null.
+	 * @return a new {@link LongStream}; will never be null but may be empty.
+	 * 
+	 * @throws NullPointerException if sequence is null.
+	 * @throws IllegalStateException if k &gt; {@value #MAX_PACKED_K}.
+	 */
+	public LongStream stream(NucleotideSequence sequence){
+		return stream(sequence, Range.ofLength(sequence.getLength()));
+	}
+	/**
+	 * Create a new {@link LongStream} of all the packed
+	 * k-mers of the given sub range of the sequence.  The returned stream 
+	 * may be made parallel.
+	 * @param sequence the sequence to get the k-mers of; can not be null.
+	 * @param range the Range of the sequence to use; can not be null.
+	 * @return a new {@link LongStream}; will never be null but may be empty.
+	 * 
+	 * @throws NullPointerException if any parameter is null.
+	 * @throws IllegalStateException if k &gt; {@value #MAX_PACKED_K}.
+	 * @throws IndexOutOfBoundsException if the Range is beyond the sequence.
+	 */
+	public LongStream stream(NucleotideSequence sequence, Range range){
+		checkPackedSize();
+		checkRange(sequence, range);
+		return StreamSupport.longStream(new PackedKmerSpliterator(sequence, 
+				range.getBegin(), Math.max(range.getBegin(), range.getEnd() - k + 2)), false);
+	}
+	/**
+	 * Call the given consumer for each packed k-mer of the sequence.
+	 * @param sequence the sequence to get the k-mers of; can not be null.
+	 * @param consumer the consumer to call; can not be null.
+	 * 
+	 * @throws NullPointerException if any parameter is null.
+	 * @throws IllegalStateException if k &gt; {@value #MAX_PACKED_K}.
+	 */
+	public void forEach(NucleotideSequence sequence, PackedKmerConsumer consumer){
+		forEach(sequence, Range.ofLength(sequence.getLength()), consumer);
+	}
+	/**
+	 * Call the given consumer for each packed k-mer of the given 
+	 * sub range of the sequence.
+	 * @param sequence the sequence to get the k-mers of; can not be null.
+	 * @param range the Range of the sequence to use; can not be null.
+	 * @param consumer the consumer to call; can not be null.
+	 * 
+	 * @throws NullPointerException if any parameter is null.
+	 * @throws IllegalStateException if k &gt; {@value #MAX_PACKED_K}.
+	 * @throws IndexOutOfBoundsException if the Range is beyond the sequence.
+	 */
+	public void forEach(NucleotideSequence sequence, Range range, PackedKmerConsumer consumer){
+		checkPackedSize();
+		checkRange(sequence, range);
+		if(consumer ==null){
+			throw new NullPointerException("consumer can not be null");
+		}
+		if(range.getLength() < k){
+			return;
+		}
+		PackedState state = new PackedState();
+		IntSupplier codes = codesOf(sequence, range);
+		long end = range.getEnd();
+		for(long offset = range.getBegin(); offset <= end; offset++){
+			if(state.push(codes.getAsInt())){
+				consumer.accept(offset - k +1, state.get());
+			}
+		}
+	}
+	/**
+	 * Call the given consumer for each k-mer of the sequence packed
+	 * into a {@code long[]}.  This works for any k.
+	 * @param sequence the sequence to get the k-mers of; can not be null.
+	 * @param consumer the consumer to call; can not be null.
+	 * 
+	 * @throws NullPointerException if any parameter is null.
+	 */
+	public void forEachWords(NucleotideSequence sequence, PackedKmerWordsConsumer consumer){
+		forEachWords(sequence, Range.ofLength(sequence.getLength()), consumer);
+	}
+	/**
+	 * Call the given consumer for each k-mer of the given 
+	 * sub range of the sequence packed
+	 * into a {@code long[]}.  This works for any k.
+	 * @param sequence the sequence to get the k-mers of; can not be null.
+	 * @param range the Range of the sequence to use; can not be null.
+	 * @param consumer the consumer to call; can not be null.
+	 * 
+	 * @throws NullPointerException if any parameter is null.
+	 * @throws IndexOutOfBoundsException if the Range is beyond the sequence.
+	 */
+	public void forEachWords(NucleotideSequence sequence, Range range, PackedKmerWordsConsumer consumer){
+		checkRange(sequence, range);
+		if(consumer ==null){
+			throw new NullPointerException("consumer can not be null");
+		}
+		if(range.getLength() < k){
+			return;
+		}
+		WordsState state = new WordsState();
+		IntSupplier codes = codesOf(sequence, range);
+		long end = range.getEnd();
+		for(long offset = range.getBegin(); offset <= end; offset++){
+			if(state.push(codes.getAsInt())){
+				consumer.accept(offset - k +1, state.get());
+			}
+		}
+	}
+	
+	private void checkPackedSize(){
+		if(k > MAX_PACKED_K){
+			throw new IllegalStateException("k must be <= " + MAX_PACKED_K + " to pack into a long; use forEachWords() instead");
+		}
+	}
+	
+	private static void checkRange(NucleotideSequence sequence, Range range){
+		if(range ==null){
+			throw new NullPointerException("range can not be null");
+		}
+		if(!range.isEmpty() && (range.getBegin() < 0 || range.getEnd() >= sequence.getLength())){
+			throw new IndexOutOfBoundsException("range " + range + " is beyond the sequence length " + sequence.getLength());
+		}
+	}
+	/**
+	 * Get the 2 bit codes of each base in the range
+	 * reading them directly from the encoded bytes if possible.
+	 */
+	private static IntSupplier codesOf(NucleotideSequence sequence, Range range){
+		if(sequence instanceof DefaultNucleotideSequence){
+			return ((DefaultNucleotideSequence) sequence).twoBitCodes(range);
+		}
+		return TwoBitPackedWords.codesOf(sequence.iterator(range));
+	}
+	
+	/**
+	 * Convert a packed k-mer back into a String.
+	 * @param packedKmer the packed k-mer.
+	 * @param k the size of the k-mer; must be between 1 and {@value #MAX_PACKED_K}.
+	 * @return a new String of length k.
+	 * 
+	 * @throws IllegalArgumentException if k is out of range.
+	 */
+	public static String toString(long packedKmer, int k){
+		if(k < 1 || k > MAX_PACKED_K){
+			throw new IllegalArgumentException("k must be between 1 and " + MAX_PACKED_K + " : " + k);
+		}
+		char[] chars = new char[k];
+		for(int i= k-1; i>=0; i--){
+			chars[i] = BASES[(int)(packedKmer & 0x3)];
+			packedKmer >>>=2;
+		}
+		return new String(chars);
+	}
+	/**
+	 * Convert a k-mer packed into a {@code long[]} back into a String.
+	 * @param packedKmer the packed k-mer; can not be null.
+	 * @param k the size of the k-mer.
+	 * @return a new String of length k.
+	 * 
+	 * @throws NullPointerException if packedKmer is null.
+	 * @throws IllegalArgumentException if k is less than 1 or
+	 * the array is not the right length for k.
+	 */
+	public static String toString(long[] packedKmer, int k){
+		if(k < 1){
+			throw new IllegalArgumentException("k must be >= 1 : " + k);
+		}
+		if(packedKmer.length != numberOfWordsFor(k)){
+			throw new IllegalArgumentException("packed kmer array is wrong length for k = " + k);
+		}
+		StringBuilder builder = new StringBuilder(k);
+		int basesInFirstWord = k - (packedKmer.length -1) * MAX_PACKED_K;
+		builder.append(toString(packedKmer[0], basesInFirstWord));
+		for(int i=1; i< packedKmer.length; i++){
+			builder.append(toString(packedKmer[i], MAX_PACKED_K));
+		}
+		return builder.toString();
+	}
+	
+	private static int numberOfWordsFor(int k){
+		return (k + MAX_PACKED_K -1)/MAX_PACKED_K;
+	}
+	/**
+	 * Rolls each base into the current k-mer
+	 * and its reverse complement when k &le; {@value #MAX_PACKED_K}.
+	 */
+	private final class PackedState{
+		private final long mask = k == MAX_PACKED_K ? -1L : (1L << (2*k)) -1;
+		private final int topShift = 2*(k-1);
+		private long forward, reverse;
+		private int validLength;
+		
+		boolean push(int code){
+			if(code <0){
+				validLength =0;
+				return false;
+			}
+			forward = ((forward << 2) | code) & mask;
+			reverse = (reverse >>> 2) | ((long)(3 - code) << topShift);
+			if(validLength < k){
+				validLength++;
+			}
+			return validLength == k;
+		}
+		
+		long get(){
+			if(canonical){
+				return Long.compareUnsigned(forward, reverse) <=0 ? forward : reverse;
+			}
+			return forward;
+		}
+	}
+	/**
+	 * Rolls each base into the current k-mer
+	 * and its reverse complement packed over several words.
+	 */
+	private final class WordsState{
+		private final int numberOfWords = numberOfWordsFor(k);
+		private final int basesInFirstWord = k - (numberOfWords -1) * MAX_PACKED_K;
+		private final long firstWordMask = basesInFirstWord == MAX_PACKED_K ? -1L : (1L << (2*basesInFirstWord)) -1;
+		private final int topShift = 2*(basesInFirstWord-1);
+		
+		private final long[] forward = new long[numberOfWords];
+		private final long[] reverse = new long[numberOfWords];
+		private final long[] canonicalKmer = canonical ? new long[numberOfWords] : null;
+		private int validLength;
+		
+		boolean push(int code){
+			if(code <0){
+				validLength =0;
+				return false;
+			}
+			//shift every word left by 1 base carrying the top
+			//base of each word into the previous word
+			int last = numberOfWords -1;
+			for(int i=0; i< last; i++){
+				forward[i] = (forward[i] << 2) | (forward[i+1] >>> 62);
+			}
+			forward[last] = (forward[last] << 2) | code;
+			forward[0] &= firstWordMask;
+			//shift reverse right by 1 base
+			for(int i=last; i> 0; i--){
+				reverse[i] = (reverse[i] >>> 2) | (reverse[i-1] << 62);
+			}
+			reverse[0] = (reverse[0] >>> 2) | ((long)(3 - code) << topShift);
+			
+			if(validLength < k){
+				validLength++;
+			}
+			return validLength == k;
+		}
+		
+		long[] get(){
+			if(!canonical){
+				return forward;
+			}
+			long[] smaller = forward;
+			for(int i=0; i< numberOfWords; i++){
+				int cmp = Long.compareUnsigned(forward[i], reverse[i]);
+				if(cmp !=0){
+					smaller = cmp < 0 ? forward : reverse;
+					break;
+				}
+			}
+			//copy so the consumer can't change our state
+			System.arraycopy(smaller, 0, canonicalKmer, 0, numberOfWords);
+			return canonicalKmer;
+		}
+	}
+	/**
+	 * Spliterator over the packed k-mers whose first base is
+	 * in the range [start, end) that can be split
+	 * by offset.  Each split reads the k-1 bases
+	 * before its first k-mer itself.
+	 */
+	private final class PackedKmerSpliterator implements Spliterator.OfLong{
+		private final NucleotideSequence sequence;
+		private long start;
+		private final long end;
+		
+		private IntSupplier codes;
+		private PackedState state;
+		private long basesLeft;
+		
+		PackedKmerSpliterator(NucleotideSequence sequence, long start, long end){
+			this.sequence = sequence;
+			this.start = start;
+			this.end = end;
+		}
+
+		/**
+		 * Start reading the bases of this split.
+		 * @return {@code false} if there are no k-mers.
+		 */
+		private boolean start(){
+			if(start >= end){
+				return false;
+			}
+			basesLeft = end - start + k -1;
+			codes = codesOf(sequence, Range.of(start, start + basesLeft -1));
+			state = new PackedState();
+			return true;
+		}
+		
+		@Override
+		public boolean tryAdvance(LongConsumer action) {
+			if(codes ==null && !start()){
+				return false;
+			}
+			while(basesLeft > 0){
+				basesLeft--;
+				if(state.push(codes.getAsInt())){
+					action.accept(state.get());
+					return true;
+				}
+			}
+			return false;
+		}
+		
+		@Override
+		public void forEachRemaining(LongConsumer action) {
+			if(codes ==null && !start()){
+				return;
+			}
+			//local copies so the loop doesn't have to keep updating fields
+			IntSupplier localCodes = codes;
+			PackedState localState = state;
+			for(long i= basesLeft; i>0; i--){
+				if(localState.push(localCodes.getAsInt())){
+					action.accept(localState.get());
+				}
+			}
+			basesLeft =0;
+		}
+		
+		@Override
+		public Spliterator.OfLong trySplit() {
+			long size = end - start;
+			if(codes !=null || size < MIN_SPLIT_SIZE){
+				return null;
+			}
+			long mid = start + size/2;
+			PackedKmerSpliterator prefix = new PackedKmerSpliterator(sequence, start, mid);
+			start = mid;
+			return prefix;
+		}
+
+		@Override
+		public long estimateSize() {
+			return codes ==null ? end - start : basesLeft;
+		}
+
+		@Override
+		public int characteristics() {
+			//not SIZED since k-mers with Ns are skipped
+			return ORDERED | NONNULL | IMMUTABLE;
+		}
+		
+	}
+	/**
+	 * Builder for {@link RollingKmers}.
+	 * 
+	 * @author dkatzel
+	 *
+	 */
+	public static final class Builder{
+		private final int k;
+		private boolean canonical = false;
+		/**
+		 * Create a new Builder.
+		 * @param k the size of each k-mer; must be &ge; 1.
+		 * 
+		 * @throws IllegalArgumentException if k &lt; 1.
+		 */
+		public Builder(int k){
+			if(k < 1){
+				throw new IllegalArgumentException("k must be >= 1 : " + k);
+			}
+			this.k = k;
+		}
+		/**
+		 * Emit the canonical k-mer (the smaller of 
+		 * each k-mer and its reverse complement)
+		 * instead of the k-mer as it appears in the sequence.
+		 * @param canonical {@code true} to emit canonical k-mers; defaults
+		 * to {@code false}.
+		 * @return this.
+		 */
+		public Builder canonical(boolean canonical){
+			this.canonical = canonical;
+			return this;
+		}
+		/**
+		 * Create a new {@link RollingKmers} instance.
+		 * @return a new {@link RollingKmers}; will never be null.
+		 */
+		public RollingKmers build(){
+			return new RollingKmers(this);
+		}
+	}
+}
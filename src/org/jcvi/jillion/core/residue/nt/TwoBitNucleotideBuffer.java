@@ -0,0 +1,396 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.core.residue.nt;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.jcvi.jillion.core.Range;
+import org.jcvi.jillion.internal.core.util.GrowableByteArray;
+import org.jcvi.jillion.internal.core.util.GrowableIntArray;
+/**
+ * {@link NucleotideBuffer} that packs A,C,G and T
+ * into 2 bits each, 32 bases to a {@code long},
+ * and keeps a sparse sorted list of the offsets and values
+ * of any other bases (gaps, N and other ambiguities).
+ * The 2 bits of those other bases are always set to 0.
+ * <p>
+ * The bases are packed in the same order
+ * as {@link AbstractTwoBitEncodedNucleotideCodec}: the first base 
+ * is in the lowest bits of the first word, so the little endian bytes of the words
+ * are the same as the 2 bit encoded bytes. 
+ * Insertions, deletions, reversing and complementing
+ * all shift or flip whole words at a time.
+ * </p>
+ * 
+ * @author dkatzel
+ *
+ * @since 5.3
+ */
+final class TwoBitNucleotideBuffer implements NucleotideBuffer{
+
+	private static final byte GAP_VALUE = Nucleotide.Gap.getOrdinalAsByte();
+	/**
+	 * The 2 bit code of each nucleotide ordinal; 
+	 * or -1 if the nucleotide can't be 2 bit encoded.
+	 */
+	private static final byte[] ORDINAL_TO_CODE;
+	
+	private static final byte[] CODE_TO_ORDINAL = new byte[]{
+			Nucleotide.Adenine.getOrdinalAsByte(),
+			Nucleotide.Cytosine.getOrdinalAsByte(),
+			Nucleotide.Guanine.getOrdinalAsByte(),
+			Nucleotide.Thymine.getOrdinalAsByte()
+	};
+	
+	private static final byte[] COMPLEMENT_ORDINALS;
+	
+	static{
+		int numberOfNucleotides = Nucleotide.VALUES.size();
+		ORDINAL_TO_CODE = new byte[numberOfNucleotides];
+		COMPLEMENT_ORDINALS = new byte[numberOfNucleotides];
+		Arrays.fill(ORDINAL_TO_CODE, (byte)-1);
+		for(int i=0; i< CODE_TO_ORDINAL.length; i++){
+			ORDINAL_TO_CODE[CODE_TO_ORDINAL[i]] = (byte)i;
+		}
+		for(Nucleotide n : Nucleotide.VALUES){
+			COMPLEMENT_ORDINALS[n.ordinal()] = n.complement().getOrdinalAsByte();
+		}
+	}
+	
+	private long[] words;
+	private int length;
+	/**
+	 * Sorted offsets of the bases that aren't A,C,G or T.
+	 */
+	private GrowableIntArray exceptionOffsets;
+	/**
+	 * The ordinals of the bases in {@link #exceptionOffsets}.
+	 */
+	private GrowableByteArray exceptionValues;
+	
+	TwoBitNucleotideBuffer(int initialCapacity){
+		words = new long[Math.max(1, TwoBitPackedWords.numberOfWordsFor(initialCapacity))];
+		exceptionOffsets = new GrowableIntArray(12);
+		exceptionValues = new GrowableByteArray(12);
+	}
+	
+	TwoBitNucleotideBuffer(GrowableByteArray values){
+		this(values.getCurrentLength());
+		append(values);
+	}
+	
+	private TwoBitNucleotideBuffer(TwoBitNucleotideBuffer copy){
+		words = Arrays.copyOf(copy.words, Math.max(1, TwoBitPackedWords.numberOfWordsFor(copy.length)));
+		length = copy.length;
+		exceptionOffsets = copy.exceptionOffsets.copy();
+		exceptionValues = copy.exceptionValues.copy();
+	}
+	
+	@Override
+	public int getCurrentLength() {
+		return length;
+	}
+
+	@Override
+	public byte get(int offset) {
+		assertValidOffset(offset);
+		int i = exceptionOffsets.binarySearch(offset);
+		if(i >=0){
+			return exceptionValues.get(i);
+		}
+		return CODE_TO_ORDINAL[getCode(offset)];
+	}
+	
+	private void assertValidOffset(int offset) {
+		if (offset <0 || offset >= length){
+			throw new IndexOutOfBoundsException(
+			"Index: "+offset+", Size: "+length);
+		}
+	}
+	
+	private int getCode(int offset){
+		return TwoBitPackedWords.getCode(words, offset);
+	}
+	
+	private void setCode(int offset, int code){
+		TwoBitPackedWords.setCode(words, offset, code);
+	}
+	/**
+	 * Get the index into the exception arrays
+	 * of the first exception with an offset &ge; the given offset.
+	 */
+	private int getExceptionIndexFor(int offset){
+		int i = exceptionOffsets.binarySearch(offset);
+		return i >=0 ? i : -i -1;
+	}
+
+	@Override
+	public void replace(int offset, byte value) {
+		assertValidOffset(offset);
+		int i = exceptionOffsets.binarySearch(offset);
+		int code = ORDINAL_TO_CODE[value];
+		if(code <0){
+			if(i>=0){
+				exceptionValues.replace(i, value);
+			}else{
+				int insertionPoint = -i -1;
+				exceptionOffsets.insert(insertionPoint, offset);
+				exceptionValues.insert(insertionPoint, value);
+			}
+			setCode(offset, 0);
+		}else{
+			if(i>=0){
+				exceptionOffsets.remove(i);
+				exceptionValues.remove(i);
+			}
+			setCode(offset, code);
+		}
+	}
+
+	@Override
+	public void append(GrowableByteArray values) {
+		int numberOfValues = values.getCurrentLength();
+		ensureCapacity(length + numberOfValues);
+		for(int i=0; i< numberOfValues; i++){
+			byte value = values.get(i);
+			int code = ORDINAL_TO_CODE[value];
+			if(code <0){
+				exceptionOffsets.append(length);
+				exceptionValues.append(value);
+			}else{
+				setCode(length, code);
+			}
+			length++;
+		}
+	}
+
+	@Override
+	public void append(NucleotideBuffer other) {
+		if(!(other instanceof TwoBitNucleotideBuffer)){
+			append(new GrowableByteArray(other.toArray()));
+			return;
+		}
+		TwoBitNucleotideBuffer otherBuffer = (TwoBitNucleotideBuffer) other;
+		//get everything before we change anything
+		//in case other is this
+		int otherLength = otherBuffer.length;
+		int[] otherExceptionOffsets = otherBuffer.exceptionOffsets.toArray();
+		byte[] otherExceptionValues = otherBuffer.exceptionValues.toArray();
+		
+		ensureCapacity(length + otherLength);
+		TwoBitPackedWords.copyBases(otherBuffer.words, 0, words, length, otherLength);
+		for(int i=0; i< otherExceptionOffsets.length; i++){
+			otherExceptionOffsets[i] += length;
+		}
+		exceptionOffsets.append(otherExceptionOffsets);
+		exceptionValues.append(otherExceptionValues);
+		length += otherLength;
+	}
+
+	@Override
+	public void insert(int offset, GrowableByteArray values) {
+		if(offset == length){
+			append(values);
+			return;
+		}
+		assertValidOffset(offset);
+		int numberOfValues = values.getCurrentLength();
+		ensureCapacity(length + numberOfValues);
+		//make room
+		TwoBitPackedWords.copyBases(words, offset, words, offset + numberOfValues, length - offset);
+		int exceptionIndex = getExceptionIndexFor(offset);
+		shiftExceptionOffsets(exceptionIndex, numberOfValues);
+		
+		GrowableIntArray newExceptionOffsets = new GrowableIntArray(12);
+		GrowableByteArray newExceptionValues = new GrowableByteArray(12);
+		for(int i=0; i< numberOfValues; i++){
+			byte value = values.get(i);
+			int code = ORDINAL_TO_CODE[value];
+			if(code <0){
+				newExceptionOffsets.append(offset+i);
+				newExceptionValues.append(value);
+				code = 0;
+			}
+			setCode(offset+i, code);
+		}
+		exceptionOffsets.insert(exceptionIndex, newExceptionOffsets);
+		exceptionValues.insert(exceptionIndex, newExceptionValues);
+		length += numberOfValues;
+	}
+	
+	private void shiftExceptionOffsets(int fromExceptionIndex, int amount){
+		int numberOfExceptions = exceptionOffsets.getCurrentLength();
+		for(int i=fromExceptionIndex; i< numberOfExceptions; i++){
+			exceptionOffsets.replace(i, exceptionOffsets.get(i) + amount);
+		}
+	}
+
+	@Override
+	public void remove(Range range) {
+		if (range.getBegin()<0 || range.getEnd() >= length){
+			throw new IndexOutOfBoundsException(
+				"range: "+range+", array size: "+length);
+		}
+		if(range.isEmpty()){
+			return;
+		}
+		int begin = (int) range.getBegin();
+		int end = (int) range.getEnd();
+		int numberRemoved = end - begin +1;
+		
+		TwoBitPackedWords.copyBases(words, end+1, words, begin, length - end -1);
+		clearBases(length - numberRemoved, length);
+		
+		int firstException = getExceptionIndexFor(begin);
+		int lastException = getExceptionIndexFor(end+1) -1;
+		if(lastException >= firstException){
+			Range exceptionRange = Range.of(firstException, lastException);
+			exceptionOffsets.remove(exceptionRange);
+			exceptionValues.remove(exceptionRange);
+		}
+		shiftExceptionOffsets(firstException, -numberRemoved);
+		length -= numberRemoved;
+	}
+
+	@Override
+	public GrowableByteArray subArray(Range range) {
+		if(range ==null){
+			throw new NullPointerException("range can not be null");
+		}
+		int start = (int) Math.max(0, range.getBegin());
+		int end = (int) Math.min(length, range.getEnd() +1);
+		return new GrowableByteArray(decode(start, Math.max(start, end)));
+	}
+	
+	private byte[] decode(int start, int end){
+		byte[] decoded = new byte[end - start];
+		int exceptionIndex = getExceptionIndexFor(start);
+		int nextException = exceptionIndex < exceptionOffsets.getCurrentLength() ? exceptionOffsets.get(exceptionIndex) : Integer.MAX_VALUE;
+		for(int i=start; i< end; i++){
+			if(i == nextException){
+				decoded[i-start] = exceptionValues.get(exceptionIndex);
+				exceptionIndex++;
+				nextException = exceptionIndex < exceptionOffsets.getCurrentLength() ? exceptionOffsets.get(exceptionIndex) : Integer.MAX_VALUE;
+			}else{
+				decoded[i-start] = CODE_TO_ORDINAL[getCode(i)];
+			}
+		}
+		return decoded;
+	}
+
+	@Override
+	public byte[] toArray() {
+		return decode(0, length);
+	}
+
+	@Override
+	public void reverse() {
+		TwoBitPackedWords.reverse(words, length);
+		int numberOfExceptions = exceptionOffsets.getCurrentLength();
+		for(int i=0; i< numberOfExceptions; i++){
+			exceptionOffsets.replace(i, length -1 - exceptionOffsets.get(i));
+		}
+		exceptionOffsets.reverse();
+		exceptionValues.reverse();
+	}
+
+	@Override
+	public void complement() {
+		TwoBitPackedWords.complement(words, length);
+		int numberOfExceptions = exceptionOffsets.getCurrentLength();
+		for(int i=0; i< numberOfExceptions; i++){
+			setCode(exceptionOffsets.get(i), 0);
+			exceptionValues.replace(i, COMPLEMENT_ORDINALS[exceptionValues.get(i)]);
+		}
+	}
+
+	@Override
+	public void reverseComplement() {
+		complement();
+		reverse();
+	}
+
+	@Override
+	public void ungap() {
+		int numberOfExceptions = exceptionOffsets.getCurrentLength();
+		GrowableIntArray newExceptionOffsets = new GrowableIntArray(Math.max(1, numberOfExceptions));
+		GrowableByteArray newExceptionValues = new GrowableByteArray(Math.max(1, numberOfExceptions));
+		int readOffset=0;
+		int writeOffset=0;
+		for(int i=0; i< numberOfExceptions; i++){
+			int offset = exceptionOffsets.get(i);
+			byte value = exceptionValues.get(i);
+			int segmentLength = offset - readOffset;
+			TwoBitPackedWords.copyBases(words, readOffset, words, writeOffset, segmentLength);
+			writeOffset += segmentLength;
+			if(value == GAP_VALUE){
+				readOffset = offset+1;
+			}else{
+				newExceptionOffsets.append(writeOffset);
+				newExceptionValues.append(value);
+				setCode(writeOffset, 0);
+				writeOffset++;
+				readOffset = offset +1;
+			}
+		}
+		TwoBitPackedWords.copyBases(words, readOffset, words, writeOffset, length - readOffset);
+		writeOffset += length - readOffset;
+		clearBases(writeOffset, length);
+		length = writeOffset;
+		exceptionOffsets = newExceptionOffsets;
+		exceptionValues = newExceptionValues;
+	}
+
+	@Override
+	public void clear() {
+		Arrays.fill(words, 0, TwoBitPackedWords.numberOfWordsFor(length), 0L);
+		length = 0;
+		exceptionOffsets.clear();
+		exceptionValues.clear();
+	}
+
+	@Override
+	public TwoBitNucleotideBuffer copy() {
+		return new TwoBitNucleotideBuffer(this);
+	}
+	/**
+	 * Write all the bases as 2 bit encoded bytes
+	 * in the same format as {@link AbstractTwoBitEncodedNucleotideCodec},
+	 * with all the bases that aren't A,C,G or T written as 0.
+	 * @param out the {@link ByteBuffer} to write to which must have at least
+	 * {@code (length+3)/4} bytes remaining.
+	 */
+	void writeTwoBitEncodedBases(ByteBuffer out){
+		TwoBitPackedWords.write(words, length, out);
+	}
+	
+	private void ensureCapacity(int numberOfBases){
+		int numberOfWords = TwoBitPackedWords.numberOfWordsFor(numberOfBases);
+		if(numberOfWords > words.length){
+			words = Arrays.copyOf(words, Math.max(numberOfWords, words.length*3/2 +1));
+		}
+	}
+	
+	private void clearBases(int from, int to){
+		TwoBitPackedWords.clearBases(words, from, to);
+	}
+}
@@ -0,0 +1,276 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.core.residue.nt;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Iterator;
+import java.util.function.IntSupplier;
+/**
+ * Utility methods for working on nucleotides
+ * packed 2 bits each into {@code long} words,
+ * 32 bases per word, using the same encoding as
+ * {@link AbstractTwoBitEncodedNucleotideCodec}: 
+ * A=0, C=1, G=2, T=3 with the first base in the lowest bits
+ * so the little endian bytes of the words are the same as
+ * the encoded bytes.
+ * <p>
+ * All of these methods work on a whole word
+ * (32 bases) at a time.
+ * </p>
+ * 
+ * @author dkatzel
+ *
+ * @since 5.3
+ */
+final class TwoBitPackedWords {
+
+	static final int BASES_PER_WORD = 32;
+	
+	private static final long LOW_BITS_OF_EACH_BASE = 0x5555555555555555L;
+	
+	private TwoBitPackedWords(){
+		//can not instantiate
+	}
+	
+	/**
+	 * Get the 2 bit code of the given base.
+	 * @param n the base.
+	 * @return the code or -1 if the base is not A,C,G or T.
+	 */
+	static int codeOf(Nucleotide n){
+		switch(n){
+			case Adenine : return 0;
+			case Cytosine : return 1;
+			case Guanine : return 2;
+			case Thymine : return 3;
+			default : return -1;
+		}
+	}
+	/**
+	 * Adapt the given {@link Iterator} into an {@link IntSupplier}
+	 * of the 2 bit codes of each base.
+	 * @param iter the Iterator to adapt.
+	 * @return a new IntSupplier which returns -1 for any base that isn't 
+	 * A,C,G or T.
+	 * @see #codeOf(Nucleotide)
+	 */
+	static IntSupplier codesOf(Iterator<Nucleotide> iter){
+		return () -> codeOf(iter.next());
+	}
+	
+	static int numberOfWordsFor(int numberOfBases){
+		return (numberOfBases + BASES_PER_WORD -1)/BASES_PER_WORD;
+	}
+	
+	static int getCode(long[] words, int offset){
+		return (int)(words[offset >>> 5] >>> ((offset & 31) <<1)) & 0x3;
+	}
+	
+	static void setCode(long[] words, int offset, int code){
+		int index = offset >>> 5;
+		int shift = (offset & 31) <<1;
+		words[index] = (words[index] & ~(0x3L << shift)) | ((long)code << shift);
+	}
+	/**
+	 * Read the 32 bases starting at the given offset
+	 * (any bases past the end of the array are 0).
+	 */
+	static long readBases(long[] words, int offset){
+		int index = offset >>> 5;
+		int shift = (offset & 31) <<1;
+		long bits = words[index] >>> shift;
+		if(shift !=0 && index+1 < words.length){
+			bits |= words[index+1] << (64 - shift);
+		}
+		return bits;
+	}
+	/**
+	 * Write the first numberOfBases bases of the given bits
+	 * starting at the given offset without changing any other bases.
+	 */
+	static void writeBases(long[] words, int offset, long bits, int numberOfBases){
+		long mask = numberOfBases == BASES_PER_WORD ? -1L : (1L << (numberOfBases <<1)) -1;
+		long maskedBits = bits & mask;
+		int index = offset >>> 5;
+		int shift = (offset & 31) <<1;
+		words[index] = (words[index] & ~(mask << shift)) | (maskedBits << shift);
+		int bitsInFirstWord = 64 - shift;
+		if(shift !=0 && (numberOfBases <<1) > bitsInFirstWord){
+			words[index+1] = (words[index+1] & ~(mask >>> bitsInFirstWord)) | (maskedBits >>> bitsInFirstWord);
+		}
+	}
+	/**
+	 * Copy bases from one packed array to another
+	 * a word at a time; the arrays may be the same
+	 * and the regions may overlap.
+	 */
+	static void copyBases(long[] src, int srcOffset, long[] dest, int destOffset, int numberOfBases){
+		if(numberOfBases <=0){
+			return;
+		}
+		if(src != dest || destOffset <= srcOffset){
+			for(int done=0; done < numberOfBases; done+=BASES_PER_WORD){
+				writeBases(dest, destOffset + done, readBases(src, srcOffset + done), 
+						Math.min(BASES_PER_WORD, numberOfBases - done));
+			}
+		}else{
+			//copy from the end so we don't overwrite
+			//bases we still need to read
+			int remaining = numberOfBases;
+			while(remaining >0){
+				int count = Math.min(BASES_PER_WORD, remaining);
+				remaining -= count;
+				writeBases(dest, destOffset + remaining, readBases(src, srcOffset + remaining), count);
+			}
+		}
+	}
+	
+	static void clearBases(long[] words, int from, int to){
+		for(int offset = from; offset < to; offset+=BASES_PER_WORD){
+			writeBases(words, offset, 0L, Math.min(BASES_PER_WORD, to - offset));
+		}
+	}
+	/**
+	 * Reverse the order of the 32 bases in the given word.
+	 */
+	static long reverseWord(long word){
+		long reversedBits = Long.reverse(word);
+		//reversing all the bits also swapped the 2 bits of each base
+		//so swap them back
+		return ((reversedBits >>> 1) & LOW_BITS_OF_EACH_BASE) | ((reversedBits & LOW_BITS_OF_EACH_BASE) << 1);
+	}
+	/**
+	 * Reverse the order of the first length bases
+	 * and keep all the bases after that set to 0.
+	 */
+	static void reverse(long[] words, int length){
+		int numberOfWords = numberOfWordsFor(length);
+		for(int i=0, j=numberOfWords-1; i<=j; i++, j--){
+			long tmp = reverseWord(words[i]);
+			words[i] = reverseWord(words[j]);
+			words[j] = tmp;
+		}
+		//the padding at the end of the last word
+		//is now at the beginning
+		int padding = numberOfWords * BASES_PER_WORD - length;
+		if(padding >0){
+			copyBases(words, padding, words, 0, length);
+			clearBases(words, length, numberOfWords * BASES_PER_WORD);
+		}
+	}
+	/**
+	 * Complement the first length bases
+	 * and keep all the bases after that set to 0.
+	 */
+	static void complement(long[] words, int length){
+		//A=0,C=1,G=2,T=3 so flipping both bits complements each base
+		int numberOfWords = numberOfWordsFor(length);
+		for(int i=0; i< numberOfWords; i++){
+			words[i] = ~words[i];
+		}
+		clearBases(words, length, numberOfWords * BASES_PER_WORD);
+	}
+	/**
+	 * Count the number of C and G bases in the word.
+	 * The 2 bits of C (01) and G (10) are the only codes
+	 * whose bits are different.
+	 */
+	static int countGC(long word){
+		return Long.bitCount((word ^ (word >>> 1)) & LOW_BITS_OF_EACH_BASE);
+	}
+	/**
+	 * Count the number of bases that are different
+	 * between the 2 words.
+	 */
+	static int countDifferences(long word, long otherWord){
+		long diff = word ^ otherWord;
+		return Long.bitCount((diff | (diff >>> 1)) & LOW_BITS_OF_EACH_BASE);
+	}
+	/**
+	 * Wrap the encoded bytes of the given number of bases
+	 * in a little endian {@link ByteBuffer} so the words
+	 * can be read using {@link #nextWord(ByteBuffer)}.
+	 * @param encoded the encoded bytes.
+	 * @param offset the offset into the encoded bytes of the first base.
+	 * @param numberOfBases the number of bases.
+	 * @return a new {@link ByteBuffer}.
+	 */
+	static ByteBuffer wrap(byte[] encoded, int offset, int numberOfBases){
+		return ByteBuffer.wrap(encoded, offset, (numberOfBases + 3)/4).order(ByteOrder.LITTLE_ENDIAN);
+	}
+	/**
+	 * Read the next word of bases from a buffer created by
+	 * {@link #wrap(byte[], int, int)}; if there are less
+	 * than 32 bases left then the rest of the word is 0.
+	 * @param buf the buffer to read.
+	 * @return the next word.
+	 */
+	static long nextWord(ByteBuffer buf){
+		if(buf.remaining() >= 8){
+			return buf.getLong();
+		}
+		long word = 0;
+		for(int i=0; buf.hasRemaining(); i++){
+			word |= (buf.get() & 0xFFL) << (i*8);
+		}
+		return word;
+	}
+	/**
+	 * Read the encoded bytes into words.
+	 * @param encoded the encoded bytes.
+	 * @param offset the offset into the encoded bytes of the first base.
+	 * @param numberOfBases the number of bases.
+	 * @return a new array of words.
+	 */
+	static long[] toWords(byte[] encoded, int offset, int numberOfBases){
+		long[] words = new long[Math.max(1, numberOfWordsFor(numberOfBases))];
+		ByteBuffer buf = wrap(encoded, offset, numberOfBases);
+		for(int i=0; buf.hasRemaining(); i++){
+			words[i] = nextWord(buf);
+		}
+		return words;
+	}
+	/**
+	 * Write the first length bases as encoded bytes.
+	 * @param words the packed bases.
+	 * @param length the number of bases to write.
+	 * @param out the {@link ByteBuffer} to write to which must have at least
+	 * {@code (length+3)/4} bytes remaining.
+	 */
+	static void write(long[] words, int length, ByteBuffer out){
+		int numberOfBytes = (length + 3)/4;
+		int numberOfFullWords = numberOfBytes/8;
+		ByteOrder originalOrder = out.order();
+		out.order(ByteOrder.LITTLE_ENDIAN);
+		for(int i=0; i< numberOfFullWords; i++){
+			out.putLong(words[i]);
+		}
+		out.order(originalOrder);
+		int bytesLeft = numberOfBytes % 8;
+		if(bytesLeft >0){
+			long lastWord = words[numberOfFullWords];
+			for(int i=0; i< bytesLeft; i++){
+				out.put((byte)(lastWord >>> (i*8)));
+			}
+		}
+	}
+}
@@ -34,9 +34,9 @@ import java.util.regex.Pattern;
 import org.jcvi.jillion.core.io.IOUtil;
 import org.jcvi.jillion.core.io.InputStreamSupplier;
 import org.jcvi.jillion.fasta.FastaVisitorCallback.FastaVisitorMemento;
+import org.jcvi.jillion.internal.core.io.BufferedLineParser;
 import org.jcvi.jillion.internal.core.io.LineParser;
 import org.jcvi.jillion.internal.core.io.OpenAwareInputStream;
-import org.jcvi.jillion.internal.core.io.TextLineParser;
 /**
  * {@code FastaFileParser} will parse a single 
  * fasta encoded file and call the appropriate
@@ -119,7 +119,7 @@ public abstract class FastaFileParser implements FastaParser{
 		InputStream in = null;		
 		try{
 			in = getInputStream();			
-			TextLineParser parser = new TextLineParser(in);
+			LineParser parser = new BufferedLineParser(in);
 			parseFile(parser, visitor);
 		}finally{
 			IOUtil.closeAndIgnoreErrors(in);
@@ -147,11 +147,11 @@ public abstract class FastaFileParser implements FastaParser{
 			throw new NullPointerException("visitor can not be null");
 		}
 	}
-	final void parseFile(TextLineParser parser, FastaVisitor visitor) throws IOException {
+	final void parseFile(LineParser parser, FastaVisitor visitor) throws IOException {
 		parseFile(parser, visitor, 0);
 	}
 	@SuppressWarnings("PMD.AvoidDeeplyNestedIfStmts")
-	final void parseFile(TextLineParser parser, FastaVisitor visitor, int initialRedundantIndex) throws IOException {
+	final void parseFile(LineParser parser, FastaVisitor visitor, int initialRedundantIndex) throws IOException {
 		AtomicBoolean keepParsing=new AtomicBoolean(true);
 		FastaRecordVisitor recordVisitor =null;
 		long currentOffset=parser.getPosition();
@@ -441,7 +441,7 @@ public abstract class FastaFileParser implements FastaParser{
 			
                     try (InputStream inputStream = fileSupplier.get(startOffset)) {
         
-                        TextLineParser parser = new TextLineParser(inputStream,
+                        LineParser parser = new BufferedLineParser(inputStream,
                                 startOffset);
                         if (memento instanceof RedundantOffsetMemento) {
                             int redundantIndex = ((RedundantOffsetMemento) memento)
@@ -25,6 +25,11 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
 import java.util.Objects;
 import java.util.Optional;
 
@@ -34,6 +39,7 @@ import org.jcvi.jillion.core.datastore.DataStoreEntry;
 import org.jcvi.jillion.core.datastore.DataStoreException;
 import org.jcvi.jillion.core.io.IOUtil;
 import org.jcvi.jillion.core.io.InputStreamSupplier;
+import org.jcvi.jillion.core.residue.nt.AsciiNucleotideDecoder;
 import org.jcvi.jillion.core.residue.nt.NucleotideSequence;
 import org.jcvi.jillion.core.residue.nt.NucleotideSequenceBuilder;
 import org.jcvi.jillion.core.util.iter.StreamingIterator;
@@ -45,37 +51,73 @@ import org.jcvi.jillion.internal.fasta.FastaIndexRecord;
  * {@link NucleotideFastaDataStore} implementation that uses
  * a FastaIndex to quickly seek to the appropriate part in
  * the fasta file to get a sequence or subsequence.
+ * <p>
+ * If the fasta file is not compressed, then it is memory-mapped
+ * and the line widths in the index are used to compute the exact
+ * bytes of any subsequence which are then decoded straight into
+ * an encoded {@link NucleotideSequence}.  The mapped file is never
+ * modified so any number of threads may get sequences concurrently.
+ * Compressed fasta files are still streamed line by line.
+ * </p>
  * 
  * @author dkatzel
  *
  * @since 5.1
  */
 class FaiNucleotideFastaFileDataStore implements NucleotideFastaFileDataStore{
-
+	/**
+	 * The max number of bytes mapped in a single buffer.
+	 */
+	private static final int DEFAULT_SEGMENT_SIZE = 1 <<30;
+	
 	private final InputStreamSupplier fastaFileSupplier;
 	private final FastaIndex index;
 	
 	private final NucleotideFastaDataStore delegate;
+	/**
+	 * The memory-mapped fasta file split into segments
+	 * of {@link #segmentSize} bytes (except the last); or {@code null}
+	 * if the file can not be mapped.
+	 */
+	private final MappedByteBuffer[] segments;
+	private final int segmentSize;
+	private final long fileLength;
 
 	
 	public static FaiNucleotideFastaFileDataStore create(File fastaFile, File faiFile,  NucleotideFastaDataStore delegate) throws IOException{
 		return new FaiNucleotideFastaFileDataStore(fastaFile, DefaultFastaIndex.parse(faiFile), delegate);
 	}
 	public FaiNucleotideFastaFileDataStore(File fastaFile, FastaIndex index, NucleotideFastaDataStore delegate) throws IOException {
+		this(fastaFile, index, delegate, DEFAULT_SEGMENT_SIZE);
+	}
+	
+	FaiNucleotideFastaFileDataStore(File fastaFile, FastaIndex index, NucleotideFastaDataStore delegate, int segmentSize) throws IOException {
 		
 		Objects.requireNonNull(delegate);
 		Objects.requireNonNull(index);
 		IOUtil.verifyIsReadable(fastaFile);
-		
+		if(segmentSize <1){
+			throw new IllegalArgumentException("segment size must be >= 1");
+		}
 		this.fastaFileSupplier = InputStreamSupplier.forFile(fastaFile);		
 		this.delegate = delegate;		
 		this.index = index;
-		
-		
-		
+		this.segmentSize = segmentSize;
+		this.fileLength = fastaFile.length();
+		this.segments = fastaFileSupplier.isRawFile()? map(fastaFile, fileLength, segmentSize) : null;
 	}
 
-	
+	private static MappedByteBuffer[] map(File fastaFile, long fileLength, int segmentSize) throws IOException{
+		MappedByteBuffer[] segments = new MappedByteBuffer[(int)((fileLength + segmentSize -1)/segmentSize)];
+		//the mappings stay valid after the channel is closed
+		try(FileChannel channel = FileChannel.open(fastaFile.toPath(), StandardOpenOption.READ)){
+			for(int i=0; i< segments.length; i++){
+				long start = i * (long)segmentSize;
+				segments[i] = channel.map(MapMode.READ_ONLY, start, Math.min(segmentSize, fileLength - start));
+			}
+		}
+		return segments;
+	}
 	
 	@Override
     public Optional<File> getFile() {
@@ -88,20 +130,56 @@ class FaiNucleotideFastaFileDataStore implements NucleotideFastaFileDataStore{
 	}
 	@Override
 	public NucleotideSequence getSequence(String id) throws DataStoreException {		
-		return getSequence(id, (record)-> record.newInputStream(fastaFileSupplier));
+		return getSequence(id, record -> Range.ofLength(record.getSeqLength()));
 	}
 
-	private NucleotideSequence getSequence(String id, InputStreamFactory inputStreamFactory) throws DataStoreException {
+	private NucleotideSequence getSequence(String id, SequenceRangeFactory rangeFactory) throws DataStoreException {
 		throwExceptionIfClosed();
 		FastaIndexRecord record = index.getIndexFor(id);
 		if(record ==null){
 			return null;
 		}
-		try(InputStream in = inputStreamFactory.get(record);
+		Range sequenceRange = rangeFactory.get(record);
+		if(sequenceRange.isEmpty()){
+			return new NucleotideSequenceBuilder().build();
+		}
+		Range fileRange = record.computeFileOffsetRange(sequenceRange);
+		if(segments ==null){
+			return parseSequence(record, sequenceRange);
+		}
+		return decodeMappedSequence(fileRange, (int) sequenceRange.getLength());
+	}
+	
+	private NucleotideSequence decodeMappedSequence(Range fileRange, int expectedLength) throws DataStoreException{
+		if(fileRange.getEnd() >= fileLength){
+			throw new DataStoreException("fai record points beyond the end of the fasta file : " + fileRange);
+		}
+		AsciiNucleotideDecoder decoder = new AsciiNucleotideDecoder(expectedLength);
+		long offset = fileRange.getBegin();
+		long end = fileRange.getEnd() +1;
+		while(offset < end){
+			//duplicate so each caller gets its own position
+			ByteBuffer segment = segments[(int)(offset / segmentSize)].duplicate();
+			int segmentOffset = (int)(offset % segmentSize);
+			int numberOfBytes = (int) Math.min(end - offset, segment.limit() - segmentOffset);
+			segment.position(segmentOffset);
+			segment.limit(segmentOffset + numberOfBytes);
+			try{
+				decoder.append(segment);
+			}catch(IllegalArgumentException e){
+				throw new DataStoreException("error decoding sequence at file offsets " + fileRange, e);
+			}
+			offset += numberOfBytes;
+		}
+		return decoder.build();
+	}
+	
+	private NucleotideSequence parseSequence(FastaIndexRecord record, Range sequenceRange) throws DataStoreException {
+		try(InputStream in = record.newInputStream(fastaFileSupplier, sequenceRange);
 			BufferedReader reader = new BufferedReader(new InputStreamReader(in, IOUtil.UTF_8))
 		){
 			
-			NucleotideSequenceBuilder builder = new NucleotideSequenceBuilder((int) record.getSeqLength());
+			NucleotideSequenceBuilder builder = new NucleotideSequenceBuilder((int) sequenceRange.getLength());
 			String line;
 			while( (line = reader.readLine()) !=null){
 				builder.append(line);
@@ -116,7 +194,9 @@ class FaiNucleotideFastaFileDataStore implements NucleotideFastaFileDataStore{
 
 	@Override
 	public NucleotideSequence getSubSequence(String id, long startOffset) throws DataStoreException {
-		return getSequence(id, (record)-> record.newInputStream(fastaFileSupplier, startOffset));
+		return getSequence(id, record -> new Range.Builder(record.getSeqLength())
+												.contractBegin(startOffset)
+												.build());
 	}
 
 
@@ -124,7 +204,7 @@ class FaiNucleotideFastaFileDataStore implements NucleotideFastaFileDataStore{
 
 	@Override
 	public NucleotideSequence getSubSequence(String id, Range includeRange) throws DataStoreException {
-		return getSequence(id, (record)-> record.newInputStream(fastaFileSupplier, includeRange));
+		return getSequence(id, record -> includeRange);
 	}
 
 
@@ -177,15 +257,14 @@ class FaiNucleotideFastaFileDataStore implements NucleotideFastaFileDataStore{
 	
 	/**
 	 * Interface for Lambda expression
-	 * that can throw IOException so lambdas 
-	 * can be one liners and not have to wrap the 
-	 * code in try-catch blocks.
+	 * that computes the sequence range to get
+	 * once the {@link FastaIndexRecord} is known.
 	 * 
 	 * @author dkatzel
 	 *
 	 */
-	private interface InputStreamFactory{
-		InputStream get(FastaIndexRecord record) throws IOException;
+	private interface SequenceRangeFactory{
+		Range get(FastaIndexRecord record);
 	}
 	
 }
@@ -0,0 +1,190 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.internal.assembly.util;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.jcvi.jillion.assembly.AssembledRead;
+import org.jcvi.jillion.assembly.util.GapQualityValueStrategy;
+import org.jcvi.jillion.assembly.util.Slice;
+import org.jcvi.jillion.assembly.util.SliceBuilder;
+import org.jcvi.jillion.core.Direction;
+import org.jcvi.jillion.core.datastore.DataStoreException;
+import org.jcvi.jillion.core.io.IOUtil;
+import org.jcvi.jillion.core.qual.PhredQuality;
+import org.jcvi.jillion.core.qual.QualitySequence;
+import org.jcvi.jillion.core.qual.QualitySequenceDataStore;
+import org.jcvi.jillion.core.residue.nt.Nucleotide;
+import org.jcvi.jillion.core.residue.nt.NucleotideSequence;
+import org.jcvi.jillion.core.util.iter.StreamingIterator;
+/**
+ * {@code StreamingSliceIterator} builds the {@link Slice}s
+ * of a contig one at a time, in consensus order, from reads
+ * sorted by gapped start offset.  Only the {@link SliceBuilder}s
+ * of the window of consensus positions covered by reads
+ * that have been seen but not yet finished are kept in memory, so the 
+ * memory used depends on the read length and coverage
+ * and not on the length of the contig.
+ * <p>
+ * A slice is finished once the next read starts after it,
+ * so reads are only pulled from the read iterator as needed.
+ * </p>
+ * @author dkatzel
+ *
+ * @param <R> the type of {@link AssembledRead}.
+ * 
+ * @since 5.3
+ */
+public final class StreamingSliceIterator<R extends AssembledRead> implements StreamingIterator<Slice>{
+
+	private final StreamingIterator<R> readIter;
+	private final Iterator<Nucleotide> consensusIter;
+	private final long consensusLength;
+	
+	private final QualitySequenceDataStore qualityDataStore;
+	private final PhredQuality defaultQuality;
+	private final GapQualityValueStrategy qualityValueStrategy;
+	/**
+	 * Ring buffer of the SliceBuilders of the window,
+	 * the builder for {@code nextOffset} is at {@code head}.
+	 */
+	private SliceBuilder[] window = new SliceBuilder[64];
+	private int head, windowSize;
+	private long nextOffset;
+	
+	private R nextRead;
+	private long nextReadStart;
+	
+	private boolean closed;
+	
+	public StreamingSliceIterator(StreamingIterator<R> readIter, NucleotideSequence consensus,
+			QualitySequenceDataStore qualityDataStore, PhredQuality defaultQuality,
+			GapQualityValueStrategy qualityValueStrategy) {
+		this.readIter = readIter;
+		this.consensusIter = consensus.iterator();
+		this.consensusLength = consensus.getLength();
+		this.qualityDataStore = qualityDataStore;
+		this.defaultQuality = defaultQuality;
+		this.qualityValueStrategy = qualityValueStrategy;
+		advanceRead();
+	}
+	
+	private void advanceRead(){
+		if(!readIter.hasNext()){
+			nextRead = null;
+			return;
+		}
+		long previousStart = nextReadStart;
+		nextRead = readIter.next();
+		nextReadStart = nextRead.getGappedStartOffset();
+		if(nextReadStart < previousStart){
+			throw new IllegalStateException("reads must be sorted by gapped start offset: " 
+						+ nextRead.getId() + " starts at " + nextReadStart + " which is before " + previousStart);
+		}
+	}
+
+	@Override
+	public boolean hasNext() {
+		return !closed && nextOffset < consensusLength;
+	}
+
+	@Override
+	public Slice next() {
+		if(!hasNext()){
+			throw new NoSuchElementException();
+		}
+		try{
+			while(nextRead !=null && nextReadStart <= nextOffset){
+				addToWindow(nextRead, nextReadStart);
+				advanceRead();
+			}
+		}catch(DataStoreException e){
+			throw new IllegalStateException("error building Slice", e);
+		}
+		SliceBuilder builder = getBuilder(nextOffset);
+		window[head] = null;
+		head = (head +1) & (window.length -1);
+		windowSize--;
+		nextOffset++;
+		if(!hasNext()){
+			close();
+		}
+		return builder.build();
+	}
+	
+	private void addToWindow(R read, long start) throws DataStoreException{
+		String id =read.getId();
+		Direction dir = read.getDirection();
+		Iterator<PhredQuality> qualities;
+		if(qualityDataStore ==null){
+			qualities = null;
+		}else{
+			QualitySequence fullQualities = qualityDataStore.get(id);
+			if(fullQualities ==null){
+				throw new NullPointerException("could not get qualities for "+id);
+			}
+			qualities = qualityValueStrategy.getGappedValidRangeQualitySequenceFor(read, fullQualities)
+												.iterator();
+		}
+		long offset = start;
+		Iterator<Nucleotide> baseIterator = read.getNucleotideSequence().iterator();
+		while(baseIterator.hasNext()){
+			Nucleotide base = baseIterator.next();
+			PhredQuality quality = qualities ==null ? defaultQuality : qualities.next();
+			getBuilder(offset++).add(id, base, quality, dir);
+		}
+	}
+	
+	private SliceBuilder getBuilder(long offset){
+		int index = (int)(offset - nextOffset);
+		while(index >= windowSize){
+			if(!consensusIter.hasNext()){
+				throw new IllegalStateException("read extends beyond the end of the consensus at offset " + offset);
+			}
+			if(windowSize == window.length){
+				growWindow();
+			}
+			window[(head + windowSize) & (window.length -1)] = new SliceBuilder().setConsensus(consensusIter.next());
+			windowSize++;
+		}
+		return window[(head + index) & (window.length -1)];
+	}
+	
+	private void growWindow(){
+		SliceBuilder[] newWindow = new SliceBuilder[window.length *2];
+		for(int i=0; i< windowSize; i++){
+			newWindow[i] = window[(head + i) & (window.length -1)];
+		}
+		window = newWindow;
+		head =0;
+	}
+
+	@Override
+	public void close() {
+		if(!closed){
+			closed = true;
+			window = null;
+			IOUtil.closeAndIgnoreErrors(readIter);
+		}
+	}
+
+}
@@ -0,0 +1,359 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.internal.core.datastore;
+
+import java.nio.ByteBuffer;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.IntFunction;
+
+import org.jcvi.jillion.core.io.IOUtil;
+import org.jcvi.jillion.internal.core.datastore.PersistentIdIndex.ValueCodec;
+/**
+ * {@code CompactIdIndex} is a {@link Map} of record ids
+ * to mementos for indexed datastores that uses
+ * a fraction of the memory of a {@link java.util.LinkedHashMap}.
+ * <p>
+ * Instead of a String key, an entry object and a memento object
+ * per record, each id is stored as UTF-8 bytes in large pages
+ * and each memento is stored as the {@code long}s
+ * its {@link ValueCodec} encodes it to.  Ids are looked up
+ * in an open addressing hash table of {@code int}s.
+ * So a record with a 30 character id and a single
+ * file offset takes about 54 bytes instead of more than 150.
+ * The pages can optionally be allocated off the heap.
+ * </p>
+ * <p>
+ * Like a {@link java.util.LinkedHashMap}, iteration order is insertion
+ * order and putting an id that is already present
+ * only replaces its value.  Removing ids is not supported.
+ * Any number of threads can read the map concurrently
+ * once it is fully populated but writes must not be concurrent
+ * with anything else.
+ * </p>
+ * @author dkatzel
+ *
+ * @param <M> the type of value in the map.
+ * 
+ * @since 5.3
+ */
+public final class CompactIdIndex<M> extends AbstractMap<String, M>{
+	
+	private static final int PAGE_SHIFT = 20;
+	private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+	private static final int PAGE_MASK = PAGE_SIZE -1;
+	
+	private static final int INITIAL_TABLE_SIZE = 16;
+	private static final int MAX_TABLE_SIZE = 1 << 30;
+	
+	private final ValueCodec<M> codec;
+	private final int numberOfValues;
+	private final int entrySize;
+	private final boolean offHeap;
+	private final long[] scratch;
+	
+	private ByteBuffer[] idPages = new ByteBuffer[1];
+	private long idBytesLength;
+	
+	private ByteBuffer[] entryPages = new ByteBuffer[1];
+	/**
+	 * 1-based entry indexes; 0 means empty.
+	 */
+	private int[] table = new int[INITIAL_TABLE_SIZE];
+	private int size;
+	
+	/**
+	 * Create a new empty instance that stores its
+	 * data on the heap.
+	 * @param codec the {@link ValueCodec} to convert the values; can not be null.
+	 * @throws NullPointerException if codec is null.
+	 */
+	public CompactIdIndex(ValueCodec<M> codec){
+		this(codec, false);
+	}
+	/**
+	 * Create a new empty instance.
+	 * @param codec the {@link ValueCodec} to convert the values; can not be null.
+	 * @param offHeap {@code true} if the ids and values should be stored
+	 * in direct buffers outside of the heap; {@code false} otherwise.
+	 * @throws NullPointerException if codec is null.
+	 */
+	public CompactIdIndex(ValueCodec<M> codec, boolean offHeap){
+		this.codec = codec;
+		this.numberOfValues = codec.getNumberOfValues();
+		this.entrySize = 8 * (1 + numberOfValues);
+		this.offHeap = offHeap;
+		this.scratch = new long[numberOfValues];
+	}
+	
+	private ByteBuffer allocatePage(){
+		return offHeap ? ByteBuffer.allocateDirect(PAGE_SIZE) : ByteBuffer.allocate(PAGE_SIZE);
+	}
+	
+	private static ByteBuffer[] ensurePage(ByteBuffer[] pages, int pageIndex){
+		if(pageIndex < pages.length){
+			return pages;
+		}
+		return Arrays.copyOf(pages, Math.max(pageIndex +1, pages.length *2));
+	}
+	/**
+	 * Adds the given id if it isn't already present
+	 * otherwise replaces its value.
+	 * 
+	 * @param id the id; can not be null.
+	 * @param value the value; can not be null.
+	 * @return the previous value or null if the id is new.
+	 * @throws NullPointerException if either parameter is null.
+	 */
+	@Override
+	public M put(String id, M value) {
+		if(value ==null){
+			throw new NullPointerException("value can not be null");
+		}
+		byte[] bytes = id.getBytes(IOUtil.UTF_8);
+		int slot = findSlot(bytes);
+		if(table[slot] !=0){
+			int entryIndex = table[slot] -1;
+			M previous = getValue(entryIndex);
+			writeValue(entryIndex, value);
+			return previous;
+		}
+		if(size == MAX_TABLE_SIZE -1){
+			//the table must always have an empty slot
+			throw new IllegalStateException("too many ids");
+		}
+		int entryIndex = size;
+		long entryStart = entrySize * (long) entryIndex;
+		//an entry may span 2 pages but each long in it never does
+		entryPages = ensurePage(entryPages, (int)((entryStart + entrySize -1) >>> PAGE_SHIFT));
+		setLong(entryStart, idBytesLength);
+		writeValue(entryIndex, value);
+		writeId(bytes);
+		
+		table[slot] = entryIndex +1;
+		size++;
+		//keep the load factor at most 0.5 until the table can't grow
+		if(size *2L > table.length && table.length < MAX_TABLE_SIZE){
+			rehash(table.length *2);
+		}
+		return null;
+	}
+	
+	private void writeValue(int entryIndex, M value){
+		codec.encode(value, scratch);
+		long position = entrySize * (long) entryIndex + 8;
+		for(int i=0; i< numberOfValues; i++){
+			setLong(position + 8L*i, scratch[i]);
+		}
+	}
+	
+	private void writeId(byte[] bytes){
+		int written=0;
+		while(written < bytes.length){
+			int pageIndex = (int)(idBytesLength >>> PAGE_SHIFT);
+			idPages = ensurePage(idPages, pageIndex);
+			if(idPages[pageIndex]==null){
+				idPages[pageIndex] = allocatePage();
+			}
+			int offset = (int)(idBytesLength & PAGE_MASK);
+			int length = Math.min(bytes.length - written, PAGE_SIZE - offset);
+			//only the writer changes the page position
+			ByteBuffer page = idPages[pageIndex];
+			page.position(offset);
+			page.put(bytes, written, length);
+			written += length;
+			idBytesLength += length;
+		}
+	}
+	
+	private void rehash(int newTableSize){
+		int[] newTable = new int[newTableSize];
+		int mask = newTableSize -1;
+		for(int i=0; i< size; i++){
+			int slot = (int)(PersistentIdIndex.hash(getIdBytes(i)) & mask);
+			while(newTable[slot] !=0){
+				slot = (slot +1) & mask;
+			}
+			newTable[slot] = i+1;
+		}
+		table = newTable;
+	}
+	/**
+	 * Find the slot for the given id bytes.
+	 * @param bytes the id as UTF-8.
+	 * @return the slot index which will either contain
+	 * the id's entry or be empty if the id isn't present.
+	 */
+	private int findSlot(byte[] bytes){
+		int mask = table.length -1;
+		int slot = (int)(PersistentIdIndex.hash(bytes) & mask);
+		while(table[slot] !=0 && !idEquals(table[slot] -1, bytes)){
+			slot = (slot +1) & mask;
+		}
+		return slot;
+	}
+	
+	private void setLong(long position, long value){
+		int pageIndex = (int)(position >>> PAGE_SHIFT);
+		if(entryPages[pageIndex]==null){
+			entryPages[pageIndex] = allocatePage();
+		}
+		entryPages[pageIndex].putLong((int)(position & PAGE_MASK), value);
+	}
+	//longs are 8 byte aligned so a single long never spans pages
+	private long getLong(long position){
+		return entryPages[(int)(position >>> PAGE_SHIFT)].getLong((int)(position & PAGE_MASK));
+	}
+	
+	private byte getIdByte(long position){
+		return idPages[(int)(position >>> PAGE_SHIFT)].get((int)(position & PAGE_MASK));
+	}
+	
+	private long getIdStart(int entryIndex){
+		return getLong(entrySize * (long) entryIndex);
+	}
+	private long getIdEnd(int entryIndex){
+		return entryIndex +1 == size ? idBytesLength : getIdStart(entryIndex +1);
+	}
+	
+	private byte[] getIdBytes(int entryIndex){
+		long start = getIdStart(entryIndex);
+		byte[] bytes = new byte[(int)(getIdEnd(entryIndex) - start)];
+		for(int i=0; i< bytes.length; i++){
+			bytes[i] = getIdByte(start + i);
+		}
+		return bytes;
+	}
+	
+	private String getId(int entryIndex){
+		return new String(getIdBytes(entryIndex), IOUtil.UTF_8);
+	}
+	
+	private boolean idEquals(int entryIndex, byte[] bytes){
+		long start = getIdStart(entryIndex);
+		if(getIdEnd(entryIndex) - start != bytes.length){
+			return false;
+		}
+		for(int i=0; i< bytes.length; i++){
+			if(getIdByte(start + i) != bytes[i]){
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	private M getValue(int entryIndex){
+		long[] values = new long[numberOfValues];
+		long position = entrySize * (long) entryIndex + 8;
+		for(int i=0; i< numberOfValues; i++){
+			values[i] = getLong(position + 8L*i);
+		}
+		return codec.decode(values);
+	}
+	
+	private int indexOf(Object key){
+		if(!(key instanceof String)){
+			return -1;
+		}
+		return table[findSlot(((String)key).getBytes(IOUtil.UTF_8))] -1;
+	}
+	
+	@Override
+	public M get(Object key) {
+		int entryIndex = indexOf(key);
+		return entryIndex <0 ? null : getValue(entryIndex);
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return indexOf(key) >=0;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+	/**
+	 * Removes all the ids and frees
+	 * the pages.
+	 */
+	@Override
+	public void clear() {
+		idPages = new ByteBuffer[1];
+		entryPages = new ByteBuffer[1];
+		table = new int[INITIAL_TABLE_SIZE];
+		idBytesLength=0;
+		size=0;
+	}
+	/**
+	 * Only decodes the ids, not the values.
+	 */
+	@Override
+	public Set<String> keySet() {
+		return new IndexSet<>(this::getId);
+	}
+
+	@Override
+	public Set<Map.Entry<String, M>> entrySet() {
+		return new IndexSet<>(entryIndex -> new SimpleImmutableEntry<>(getId(entryIndex), getValue(entryIndex)));
+	}
+	/**
+	 * Read-only view of each entry in insertion order.
+	 *
+	 * @param <T> the type of element created from each entry.
+	 */
+	private final class IndexSet<T> extends AbstractSet<T>{
+		private final IntFunction<T> elementFactory;
+
+		IndexSet(IntFunction<T> elementFactory){
+			this.elementFactory = elementFactory;
+		}
+
+		@Override
+		public Iterator<T> iterator() {
+			return new Iterator<T>() {
+				private int next=0;
+				private final int size = size();
+				@Override
+				public boolean hasNext() {
+					return next < size;
+				}
+
+				@Override
+				public T next() {
+					if(!hasNext()){
+						throw new NoSuchElementException();
+					}
+					return elementFactory.apply(next++);
+				}
+			};
+		}
+		@Override
+		public int size() {
+			return CompactIdIndex.this.size();
+		}
+	}
+}
@@ -0,0 +1,350 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.internal.core.datastore;
+
+import java.lang.ref.SoftReference;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
+
+import org.jcvi.jillion.core.datastore.DataStoreCacheStats;
+import org.jcvi.jillion.core.datastore.DataStoreException;
+import org.jcvi.jillion.internal.core.util.Sneak;
+/**
+ * {@code ConcurrentRecordCache} is a thread safe
+ * Least Recently Used (LRU) cache of datastore records
+ * that doesn't serialize all the callers on a single lock.
+ * <p>
+ * The ids are split across independently locked segments
+ * each of which is its own LRU cache of {@link SoftReference}s
+ * so different threads rarely wait on each other and
+ * the locks are only held long enough to update the access order.
+ * Records are never loaded while holding a lock.
+ * Records are evicted when a segment has too many records
+ * or, if a weigher is given, when all the records weigh too much.
+ * The weight is tracked for the whole cache; the segment the new record
+ * was put in evicts its least recently used records first and
+ * then the other segments are asked to evict theirs.
+ * </p>
+ * <p>
+ * If load coalescing is on, then concurrent misses
+ * for the same id only call the loader once and
+ * all the callers get the same record.
+ * </p>
+ * @author dkatzel
+ *
+ * @param <V> the type of record being cached.
+ * 
+ * @since 5.3
+ */
+public final class ConcurrentRecordCache<V> {
+	/**
+	 * Loads the record for an id on a cache miss.
+	 *
+	 * @param <V> the type of record.
+	 */
+	@FunctionalInterface
+	public interface Loader<V>{
+		/**
+		 * Load the record for the given id.
+		 * @param id the id of the record to load.
+		 * @return the record or {@code null} if there is
+		 * no record with that id.
+		 * @throws DataStoreException if there is a problem loading the record.
+		 */
+		V load(String id) throws DataStoreException;
+	}
+	
+	private static final int MAX_SEGMENTS = 16;
+	/**
+	 * Only use more than one segment if each segment
+	 * would hold at least this many records so small caches
+	 * stay exact LRU caches.
+	 */
+	private static final int MIN_RECORDS_PER_SEGMENT = 32;
+	
+	private final Segment<V>[] segments;
+	private final int segmentMask;
+	private final Loader<V> loader;
+	private final ToLongFunction<? super V> weigher;
+	private final long maxWeight;
+	private final AtomicLong totalWeight = new AtomicLong();
+	private final ConcurrentHashMap<String, CompletableFuture<V>> inFlightLoads;
+	
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder loads = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+	/**
+	 * Create a new cache.
+	 * @param loader the {@link Loader} to call on cache misses; can not be null.
+	 * @param maxSize the max number of records to keep; must be &ge; 1.
+	 * @param weigher the function to compute the weight of each record;
+	 * may be null if the cache should only be bounded by size.
+	 * @param maxWeight the max total weight of all the records in the cache;
+	 * ignored if weigher is null.
+	 * @param coalesceLoads {@code true} if concurrent misses for the same id
+	 * should only load the record once.
+	 * @throws NullPointerException if loader is null.
+	 * @throws IllegalArgumentException if maxSize &lt; 1 or if there is a weigher
+	 * and maxWeight &lt; 1.
+	 */
+	@SuppressWarnings("unchecked")
+	public ConcurrentRecordCache(Loader<V> loader, int maxSize, ToLongFunction<? super V> weigher, long maxWeight, boolean coalesceLoads){
+		this.loader = Objects.requireNonNull(loader);
+		if(maxSize <1){
+			throw new IllegalArgumentException("max size must be >= 1");
+		}
+		if(weigher !=null && maxWeight <1){
+			throw new IllegalArgumentException("max weight must be >= 1");
+		}
+		this.weigher = weigher;
+		this.maxWeight = weigher ==null ? Long.MAX_VALUE : maxWeight;
+		int numberOfSegments = Math.max(1, Math.min(MAX_SEGMENTS, Integer.highestOneBit(maxSize / MIN_RECORDS_PER_SEGMENT)));
+		segments = new Segment[numberOfSegments];
+		int segmentSize = (maxSize + numberOfSegments -1) / numberOfSegments;
+		for(int i=0; i< numberOfSegments; i++){
+			segments[i] = new Segment<>(segmentSize, this.maxWeight, totalWeight, evictions);
+		}
+		segmentMask = numberOfSegments -1;
+		inFlightLoads = coalesceLoads ? new ConcurrentHashMap<>() : null;
+	}
+	
+	private Segment<V> segmentFor(String id){
+		int h = id.hashCode();
+		//spread the high bits since there are only a few segments
+		h ^= (h >>> 16);
+		return segments[h & segmentMask];
+	}
+	
+	private void put(Segment<V> segment, String id, V value){
+		if(weigher ==null){
+			segment.put(id, value, 0);
+			return;
+		}
+		long weight = weigher.applyAsLong(value);
+		if(weight > maxWeight){
+			//would evict everything else and still not fit
+			return;
+		}
+		segment.put(id, value, weight);
+		//the segment only evicts its own records
+		//so if that wasn't enough, evict from the others
+		//without holding more than one lock at a time
+		for(int i=0; i< segments.length && totalWeight.get() > maxWeight; i++){
+			Segment<V> other = segments[i];
+			if(other != segment){
+				while(totalWeight.get() > maxWeight && other.evictEldest()){
+					//keep evicting
+				}
+			}
+		}
+	}
+	/**
+	 * Get the record for the given id from the cache
+	 * or load it if it isn't cached.
+	 * @param id the id of the record; can not be null.
+	 * @return the record or {@code null} if the loader returned null.
+	 * @throws DataStoreException if the loader throws a DataStoreException.
+	 */
+	public V get(String id) throws DataStoreException{
+		Segment<V> segment = segmentFor(id);
+		V value = segment.get(id);
+		if(value !=null){
+			hits.increment();
+			return value;
+		}
+		misses.increment();
+		if(inFlightLoads ==null){
+			return loadAndCache(segment, id);
+		}
+		CompletableFuture<V> future = new CompletableFuture<>();
+		CompletableFuture<V> existing = inFlightLoads.putIfAbsent(id, future);
+		if(existing !=null){
+			return await(existing);
+		}
+		try{
+			//another thread may have finished loading this id
+			//between our miss and registering our load
+			value = segment.get(id);
+			if(value ==null){
+				value = loadAndCache(segment, id);
+			}
+			future.complete(value);
+			return value;
+		}catch(Throwable t){
+			future.completeExceptionally(t);
+			throw t;
+		}finally{
+			inFlightLoads.remove(id, future);
+		}
+	}
+	
+	private V loadAndCache(Segment<V> segment, String id) throws DataStoreException{
+		loads.increment();
+		V value = loader.load(id);
+		//don't cache nulls since they would 
+		//kick out other records
+		if(value !=null){
+			put(segment, id, value);
+		}
+		return value;
+	}
+	
+	private static <V> V await(CompletableFuture<V> future) throws DataStoreException{
+		boolean interrupted = false;
+		try{
+			while(true){
+				try{
+					return future.get();
+				}catch(InterruptedException e){
+					//the load is already running in another thread
+					//so finish waiting for it
+					interrupted = true;
+				}catch(ExecutionException e){
+					//rethrow the same exception the loading thread got
+					throw Sneak.sneakyThrow(e.getCause());
+				}
+			}
+		}finally{
+			if(interrupted){
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+	/**
+	 * Remove all the records from the cache.
+	 * The statistics are not reset.
+	 */
+	public void clear(){
+		for(Segment<V> segment : segments){
+			segment.clear();
+		}
+	}
+	/**
+	 * Get the number of records currently
+	 * in the cache, which may include records
+	 * that have been garbage collected but not yet removed.
+	 * @return the number of records.
+	 */
+	public int size(){
+		int size=0;
+		for(Segment<V> segment : segments){
+			size += segment.size();
+		}
+		return size;
+	}
+	/**
+	 * Get a snapshot of the statistics of this cache.
+	 * @return a new {@link DataStoreCacheStats}; never null.
+	 */
+	public DataStoreCacheStats getStats(){
+		return new DataStoreCacheStats(hits.sum(), misses.sum(), loads.sum(), evictions.sum());
+	}
+	
+	private static final class Entry<V>{
+		private final SoftReference<V> ref;
+		private final long weight;
+		
+		Entry(V value, long weight){
+			this.ref = new SoftReference<>(value);
+			this.weight = weight;
+		}
+	}
+	/**
+	 * A single LRU cache guarded by its own monitor.
+	 *
+	 * @param <V> the type of record.
+	 */
+	private static final class Segment<V>{
+		private final LinkedHashMap<String, Entry<V>> map;
+		private final int maxSize;
+		private final long maxWeight;
+		private final AtomicLong totalWeight;
+		private final LongAdder evictions;
+		
+		Segment(int maxSize, long maxWeight, AtomicLong totalWeight, LongAdder evictions){
+			this.maxSize = maxSize;
+			this.maxWeight = maxWeight;
+			this.totalWeight = totalWeight;
+			this.evictions = evictions;
+			map = new LinkedHashMap<>(16, 0.75F, true);
+		}
+		
+		synchronized V get(String id){
+			Entry<V> entry = map.get(id);
+			if(entry ==null){
+				return null;
+			}
+			V value = entry.ref.get();
+			if(value ==null){
+				//garbage collected
+				map.remove(id);
+				totalWeight.addAndGet(-entry.weight);
+			}
+			return value;
+		}
+		
+		synchronized void put(String id, V value, long valueWeight){
+			Entry<V> old = map.put(id, new Entry<>(value, valueWeight));
+			totalWeight.addAndGet(old ==null ? valueWeight : valueWeight - old.weight);
+			
+			Iterator<Map.Entry<String, Entry<V>>> iter = map.entrySet().iterator();
+			//never evict the record we just put
+			while(map.size() > 1 && (map.size() > maxSize || totalWeight.get() > maxWeight)){
+				Entry<V> eldest = iter.next().getValue();
+				iter.remove();
+				totalWeight.addAndGet(-eldest.weight);
+				evictions.increment();
+			}
+		}
+		
+		synchronized boolean evictEldest(){
+			Iterator<Entry<V>> iter = map.values().iterator();
+			if(!iter.hasNext()){
+				return false;
+			}
+			Entry<V> eldest = iter.next();
+			iter.remove();
+			totalWeight.addAndGet(-eldest.weight);
+			evictions.increment();
+			return true;
+		}
+		
+		synchronized void clear(){
+			for(Entry<V> entry : map.values()){
+				totalWeight.addAndGet(-entry.weight);
+			}
+			map.clear();
+		}
+		
+		synchronized int size(){
+			return map.size();
+		}
+	}
+}
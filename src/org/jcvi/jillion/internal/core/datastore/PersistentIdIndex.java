@@ -0,0 +1,503 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.internal.core.datastore;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.IntFunction;
+
+import org.jcvi.jillion.core.io.IOUtil;
+/**
+ * {@code PersistentIdIndex} reads and writes 
+ * sidecar index files that map each record id in a file
+ * to a few {@code long} values (usually file offsets) so 
+ * indexed datastores don't have to re-parse the entire
+ * file each time they are opened.
+ * <p>
+ * The index file stores the length and last modified time
+ * of the file that was indexed so stale indexes are detected
+ * and ignored.  The index is memory-mapped when it is read
+ * and ids are looked up in an on-disk hash table
+ * so opening even a very large index takes almost no time
+ * or heap.
+ * </p>
+ * <p>
+ * The file format is all big endian:
+ * <ol>
+ * <li>a 64 byte header of the magic number, version, format id,
+ * number of values per entry, indexed file length and last modified time,
+ * number of entries, hash table size, the number of id bytes
+ * and a format specific value.</li>
+ * <li>an entry per id in the original iteration order, each of which
+ * is the offset of the id's UTF-8 bytes followed by the values.</li>
+ * <li>the hash table of 1-based entry indexes (0 means empty).</li>
+ * <li>all the ids as UTF-8 bytes.</li>
+ * </ol>
+ * All the sections start on 8 byte boundaries
+ * so no value spans two mapped segments.
+ * </p>
+ * @author dkatzel
+ *
+ * @since 5.3
+ */
+public final class PersistentIdIndex {
+	/**
+	 * "JIDX" in ASCII.
+	 */
+	private static final int MAGIC_NUMBER = 0x4A494458;
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = 64;
+	
+	private static final int SEGMENT_SHIFT = 30;
+	private static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) -1;
+	
+	private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+	private static final long FNV_PRIME = 0x100000001b3L;
+	/**
+	 * Converts the values stored in the index
+	 * to and from the objects in the map.
+	 * 
+	 * @param <M> the type of value in the map.
+	 */
+	public interface ValueCodec<M>{
+		/**
+		 * The number of {@code long}s needed to store a single value.
+		 * @return a number &ge; 1.
+		 */
+		int getNumberOfValues();
+		/**
+		 * Write the given value as longs into the given array.
+		 * @param value the value to encode; will not be null.
+		 * @param out the array to write to which is 
+		 * {@link #getNumberOfValues()} long.
+		 */
+		void encode(M value, long[] out);
+		/**
+		 * Create the value from the longs that were written by
+		 * {@link #encode(Object, long[])}.
+		 * @param values the array of longs; will be 
+		 * {@link #getNumberOfValues()} long.
+		 * @return the value; can not be null.
+		 */
+		M decode(long[] values);
+	}
+	
+	private PersistentIdIndex(){
+		//can not instantiate
+	}
+	/**
+	 * Write a new index file for the given entries.  The index
+	 * is first written to a temp file which is then moved to the index path
+	 * so other processes never see a partially written index.
+	 * 
+	 * @param indexFile the index file to write; can not be null.
+	 * @param indexedFile the file the entries refer to; can not be null and must exist.
+	 * @param formatName the name of the file format which is used to make sure
+	 * the index is read back by the same kind of datastore; can not be null.
+	 * @param codec the {@link ValueCodec} to convert the map values; can not be null.
+	 * @param entries the map of ids to values to write; iteration order is preserved.
+	 * 
+	 * @throws IOException if there is a problem writing the index.
+	 * @throws NullPointerException if any parameter is null.
+	 */
+	public static <M> void write(File indexFile, File indexedFile, String formatName, ValueCodec<M> codec, Map<String, M> entries) throws IOException{
+		write(indexFile, indexedFile, formatName, codec, entries, 0L);
+	}
+	/**
+	 * Write a new index file for the given entries that also
+	 * stores a format specific value in the header, for example
+	 * an encoding that would otherwise have to be determined by parsing the file.
+	 * 
+	 * @param indexFile the index file to write; can not be null.
+	 * @param indexedFile the file the entries refer to; can not be null and must exist.
+	 * @param formatName the name of the file format which is used to make sure
+	 * the index is read back by the same kind of datastore; can not be null.
+	 * @param codec the {@link ValueCodec} to convert the map values; can not be null.
+	 * @param entries the map of ids to values to write; iteration order is preserved.
+	 * @param formatValue the value to store which can be read back
+	 * by {@link #getFormatValue(Map)}.
+	 * 
+	 * @throws IOException if there is a problem writing the index.
+	 * @throws NullPointerException if any parameter is null.
+	 */
+	public static <M> void write(File indexFile, File indexedFile, String formatName, ValueCodec<M> codec, Map<String, M> entries, long formatValue) throws IOException{
+		int numberOfEntries = entries.size();
+		int numberOfValues = codec.getNumberOfValues();
+		int tableSize = computeTableSize(numberOfEntries);
+		int[] table = new int[tableSize];
+		long[] idOffsets = new long[numberOfEntries];
+		long numberOfIdBytes=0;
+		int i=0;
+		for(String id : entries.keySet()){
+			byte[] bytes = id.getBytes(IOUtil.UTF_8);
+			int slot = (int)(hash(bytes) & (tableSize -1));
+			while(table[slot] !=0){
+				slot = (slot +1) & (tableSize -1);
+			}
+			table[slot] = i+1;
+			idOffsets[i++] = numberOfIdBytes;
+			numberOfIdBytes += bytes.length;
+		}
+		File parentDir = indexFile.getAbsoluteFile().getParentFile();
+		IOUtil.mkdirs(parentDir);
+		File tmp = File.createTempFile(indexFile.getName(), ".tmp", parentDir);
+		try{
+			try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp.toPath())))){
+				out.writeInt(MAGIC_NUMBER);
+				out.writeInt(VERSION);
+				out.writeInt(formatName.hashCode());
+				out.writeInt(numberOfValues);
+				out.writeLong(indexedFile.length());
+				out.writeLong(indexedFile.lastModified());
+				out.writeLong(numberOfEntries);
+				out.writeLong(tableSize);
+				out.writeLong(numberOfIdBytes);
+				out.writeLong(formatValue);
+				
+				long[] values = new long[numberOfValues];
+				i=0;
+				for(M value : entries.values()){
+					out.writeLong(idOffsets[i++]);
+					codec.encode(value, values);
+					for(long v : values){
+						out.writeLong(v);
+					}
+				}
+				for(int entryIndex : table){
+					out.writeInt(entryIndex);
+				}
+				writePadding(out, tableSize * 4L);
+				for(String id : entries.keySet()){
+					out.write(id.getBytes(IOUtil.UTF_8));
+				}
+			}
+			try{
+				Files.move(tmp.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			}catch(AtomicMoveNotSupportedException e){
+				Files.move(tmp.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+		}finally{
+			IOUtil.deleteIgnoreError(tmp);
+		}
+	}
+	
+	private static void writePadding(OutputStream out, long bytesWritten) throws IOException{
+		for(long i = bytesWritten; (i & 0x7) !=0; i++){
+			out.write(0);
+		}
+	}
+	/**
+	 * Read the given index file if it exists and is still valid for the given
+	 * indexed file.
+	 * 
+	 * @param indexFile the index file to read; can not be null.
+	 * @param indexedFile the file the entries refer to; can not be null.
+	 * @param formatName the name of the file format the index
+	 * was written with.
+	 * @param codec the {@link ValueCodec} to convert the map values; can not be null.
+	 * 
+	 * @return an unmodifiable {@link Map} backed by the memory-mapped index whose
+	 * iteration order is the same as the map that was written; or
+	 * an empty Optional if the index doesn't exist, is for a different format
+	 * or the indexed file has changed since the index was written.
+	 * Calling {@link Map#clear()} on the returned map releases the index.
+	 * 
+	 * @throws IOException if there is a problem reading the index.
+	 * @throws NullPointerException if any parameter is null.
+	 */
+	public static <M> Optional<Map<String, M>> read(File indexFile, File indexedFile, String formatName, ValueCodec<M> codec) throws IOException{
+		if(!indexFile.exists() || indexFile.length() < HEADER_SIZE){
+			return Optional.empty();
+		}
+		long indexLength = indexFile.length();
+		MappedByteBuffer[] segments = new MappedByteBuffer[(int)((indexLength + SEGMENT_MASK) >>> SEGMENT_SHIFT)];
+		try(FileChannel channel = FileChannel.open(indexFile.toPath(), StandardOpenOption.READ)){
+			for(int i=0; i< segments.length; i++){
+				long start = ((long) i) << SEGMENT_SHIFT;
+				segments[i] = channel.map(MapMode.READ_ONLY, start, Math.min(SEGMENT_MASK +1, indexLength - start));
+			}
+		}
+		MappedIndex<M> index = new MappedIndex<>(segments, codec);
+		if(!index.isValidFor(indexedFile, formatName, indexLength)){
+			return Optional.empty();
+		}
+		return Optional.of(index);
+	}
+	
+	/**
+	 * Get the format specific value that was written
+	 * to the header of the given index.
+	 * 
+	 * @param index a map returned by {@link #read(File, File, String, ValueCodec)}.
+	 * @return the format value; will be 0 if the index was written
+	 * without one.
+	 * 
+	 * @throws IllegalArgumentException if the map was not read from an index file.
+	 * @throws IllegalStateException if the index has been cleared.
+	 */
+	public static long getFormatValue(Map<String, ?> index){
+		if(!(index instanceof MappedIndex)){
+			throw new IllegalArgumentException("not a persistent index");
+		}
+		return ((MappedIndex<?>) index).getFormatValue();
+	}
+	
+	private static int computeTableSize(int numberOfEntries){
+		//keep the load factor at most 0.5
+		int size = 2;
+		while(size < numberOfEntries *2L){
+			size <<=1;
+		}
+		return size;
+	}
+	
+	static long hash(byte[] bytes){
+		//FNV-1a then a Murmur3 finalizer to spread the bits
+		long h = FNV_OFFSET_BASIS;
+		for(byte b : bytes){
+			h ^= b & 0xFF;
+			h *= FNV_PRIME;
+		}
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+	
+	private static final class MappedIndex<M> extends AbstractMap<String, M>{
+		private volatile MappedByteBuffer[] segments;
+		private final ValueCodec<M> codec;
+		private final int numberOfValues;
+		
+		private int numberOfEntries;
+		private int tableSize;
+		private long idBytesLength;
+		
+		private long entriesStart, tableStart, idsStart;
+		private int entrySize;
+		
+		MappedIndex(MappedByteBuffer[] segments, ValueCodec<M> codec){
+			this.segments = segments;
+			this.codec = codec;
+			this.numberOfValues = codec.getNumberOfValues();
+		}
+		
+		boolean isValidFor(File indexedFile, String formatName, long indexLength){
+			if(getInt(0) != MAGIC_NUMBER || getInt(4) != VERSION
+					|| getInt(8) != formatName.hashCode() || getInt(12) != numberOfValues
+					|| getLong(16) != indexedFile.length() || getLong(24) != indexedFile.lastModified()){
+				return false;
+			}
+			long entries = getLong(32);
+			long table = getLong(40);
+			idBytesLength = getLong(48);
+			if(entries <0 || entries > Integer.MAX_VALUE || table <2 || table > Integer.MAX_VALUE){
+				return false;
+			}
+			numberOfEntries = (int) entries;
+			tableSize = (int) table;
+			entrySize = 8 * (1 + numberOfValues);
+			entriesStart = HEADER_SIZE;
+			tableStart = entriesStart + entrySize * (long) numberOfEntries;
+			idsStart = (tableStart + 4L * tableSize + 7) & ~0x7L;
+			
+			return idsStart + idBytesLength == indexLength;
+		}
+		
+		long getFormatValue(){
+			return getLong(56);
+		}
+		
+		private MappedByteBuffer[] getSegments(){
+			MappedByteBuffer[] current = segments;
+			if(current ==null){
+				throw new IllegalStateException("index has been cleared");
+			}
+			return current;
+		}
+		
+		private int getInt(long position){
+			return getSegments()[(int)(position >>> SEGMENT_SHIFT)].getInt((int)(position & SEGMENT_MASK));
+		}
+		private long getLong(long position){
+			return getSegments()[(int)(position >>> SEGMENT_SHIFT)].getLong((int)(position & SEGMENT_MASK));
+		}
+		private byte getByte(long position){
+			return getSegments()[(int)(position >>> SEGMENT_SHIFT)].get((int)(position & SEGMENT_MASK));
+		}
+		
+		private long getIdStart(int entryIndex){
+			return getLong(entriesStart + entrySize * (long) entryIndex);
+		}
+		private long getIdEnd(int entryIndex){
+			return entryIndex +1 == numberOfEntries ? idBytesLength : getIdStart(entryIndex +1);
+		}
+		
+		private String getId(int entryIndex){
+			long start = getIdStart(entryIndex);
+			byte[] bytes = new byte[(int)(getIdEnd(entryIndex) - start)];
+			for(int i=0; i< bytes.length; i++){
+				bytes[i] = getByte(idsStart + start + i);
+			}
+			return new String(bytes, IOUtil.UTF_8);
+		}
+		
+		private M getValue(int entryIndex){
+			long[] values = new long[numberOfValues];
+			long position = entriesStart + entrySize * (long) entryIndex + 8;
+			for(int i=0; i< numberOfValues; i++){
+				values[i] = getLong(position + 8L*i);
+			}
+			return codec.decode(values);
+		}
+		/**
+		 * Find the entry index for the given id.
+		 * @param key the id to look for.
+		 * @return the entry index or -1 if not found.
+		 */
+		private int indexOf(Object key){
+			if(!(key instanceof String) || segments ==null){
+				return -1;
+			}
+			byte[] bytes = ((String)key).getBytes(IOUtil.UTF_8);
+			int mask = tableSize -1;
+			int slot = (int)(hash(bytes) & mask);
+			while(true){
+				int value = getInt(tableStart + 4L * slot);
+				if(value ==0){
+					return -1;
+				}
+				int entryIndex = value -1;
+				if(idEquals(entryIndex, bytes)){
+					return entryIndex;
+				}
+				slot = (slot +1) & mask;
+			}
+		}
+		
+		private boolean idEquals(int entryIndex, byte[] bytes){
+			long start = getIdStart(entryIndex);
+			if(getIdEnd(entryIndex) - start != bytes.length){
+				return false;
+			}
+			long offset = idsStart + start;
+			for(int i=0; i< bytes.length; i++){
+				if(getByte(offset + i) != bytes[i]){
+					return false;
+				}
+			}
+			return true;
+		}
+
+		@Override
+		public M get(Object key) {
+			int entryIndex = indexOf(key);
+			return entryIndex <0 ? null : getValue(entryIndex);
+		}
+
+		@Override
+		public boolean containsKey(Object key) {
+			return indexOf(key) >=0;
+		}
+
+		@Override
+		public int size() {
+			return segments ==null ? 0 : numberOfEntries;
+		}
+		/**
+		 * Releases the mapped index; the map
+		 * is empty afterwards.
+		 */
+		@Override
+		public void clear() {
+			segments = null;
+		}
+
+		/**
+		 * Only decodes the ids, not the values.
+		 */
+		@Override
+		public Set<String> keySet() {
+			return new IndexSet<>(this::getId);
+		}
+
+		@Override
+		public Set<Map.Entry<String, M>> entrySet() {
+			return new IndexSet<>(entryIndex -> new SimpleImmutableEntry<>(getId(entryIndex), getValue(entryIndex)));
+		}
+		/**
+		 * Read-only view of each entry in iteration order.
+		 *
+		 * @param <T> the type of element created from each entry.
+		 */
+		private final class IndexSet<T> extends AbstractSet<T>{
+			private final IntFunction<T> elementFactory;
+
+			IndexSet(IntFunction<T> elementFactory){
+				this.elementFactory = elementFactory;
+			}
+
+			@Override
+			public Iterator<T> iterator() {
+				return new Iterator<T>() {
+					private int next=0;
+					private final int size = size();
+					@Override
+					public boolean hasNext() {
+						return next < size;
+					}
+
+					@Override
+					public T next() {
+						if(!hasNext()){
+							throw new NoSuchElementException();
+						}
+						return elementFactory.apply(next++);
+					}
+				};
+			}
+
+			@Override
+			public int size() {
+				return MappedIndex.this.size();
+			}
+		}
+	}
+}
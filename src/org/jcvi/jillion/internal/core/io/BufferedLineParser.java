@@ -0,0 +1,337 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.internal.core.io;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+import org.jcvi.jillion.core.io.IOUtil;
+/**
+ * {@code BufferedLineParser} is a {@link LineParser}
+ * that returns the same lines, with the same end of line
+ * characters and positions as {@link TextLineParser}
+ * but reads the input in large blocks and scans each block
+ * for the end of line characters instead of reading one byte
+ * at a time.
+ * <p>
+ * Parsers that don't need each line as a String can use
+ * {@link #nextLineAsCharSequence()} which returns a view of
+ * the bytes of the line still in the buffer so no objects
+ * are created per line.
+ * </p>
+ * <p/>
+ * This class is not Thread-safe
+ * @author dkatzel
+ *
+ * @since 5.3
+ */
+public final class BufferedLineParser implements LineParser{
+	/**
+	 * Default buffer size of {@value} bytes.
+	 * The buffer will grow if a line is longer.
+	 */
+	private static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+	/**
+	 * Line feed.
+	 */
+	private static final byte LF = '\n';
+	/**
+	 * Carriage return.
+	 */
+	private static final byte CR = '\r';
+	
+	private final InputStream in;
+	
+	private byte[] buffer;
+	/**
+	 * Offset into the buffer of the first byte
+	 * not returned yet.
+	 */
+	private int bufferStart;
+	/**
+	 * Offset into the buffer after the last byte read.
+	 */
+	private int bufferEnd;
+	private boolean endOfFile;
+	private boolean closed;
+	
+	private long position;
+	/**
+	 * Have we found where the next line ends yet.
+	 */
+	private boolean lineFound;
+	/**
+	 * Number of bytes in the next line including the end of line
+	 * characters; 0 if there are no more lines.
+	 */
+	private int lineLength;
+	/**
+	 * The next line as a String if it was peeked.
+	 */
+	private String peekedLine;
+	
+	private final Line line = new Line();
+	
+	public BufferedLineParser(File f) throws IOException{
+		this(new FileInputStream(f));
+	}
+	
+	public BufferedLineParser(File f, long initialPosition) throws IOException {
+		this(new RandomAccessFileInputStream(f, initialPosition), initialPosition);
+	}
+	
+	public BufferedLineParser(InputStream in) throws IOException{
+		this(in, 0L);
+	}
+	
+	public BufferedLineParser(InputStream in, long initialPosition) throws IOException{
+		this(in, initialPosition, DEFAULT_BUFFER_SIZE);
+	}
+	
+	BufferedLineParser(InputStream in, long initialPosition, int bufferSize) throws IOException{
+		if(in ==null){
+			throw new NullPointerException("inputStream can not be null");
+		}
+		if(initialPosition <0){
+			throw new IllegalArgumentException("initial position must be >=0");
+		}
+		this.in = in;
+		this.position = initialPosition;
+		this.buffer = new byte[Math.max(2, bufferSize)];
+		findNextLine();
+	}
+	/**
+	 * Find the end of the next line reading more
+	 * from the input if needed.
+	 * @return {@code true} if there is a next line.
+	 */
+	private boolean findNextLine() throws IOException{
+		if(lineFound){
+			return lineLength > 0;
+		}
+		//number of bytes after bufferStart we've already scanned
+		int scanned = 0;
+		while(true){
+			int i = bufferStart + scanned;
+			for(; i< bufferEnd; i++){
+				byte value = buffer[i];
+				if(value == LF){
+					return setNextLine(i +1);
+				}
+				if(value == CR){
+					//check if next value is LF
+					//since CR+LF is how Windows represents an end of line
+					if(i+1 < bufferEnd){
+						return setNextLine(buffer[i+1] == LF ? i+2 : i+1);
+					}
+					if(endOfFile){
+						return setNextLine(i+1);
+					}
+					//need to read more to see what's after the CR
+					//so scan the CR again after the next read
+					break;
+				}
+			}
+			if(endOfFile){
+				return setNextLine(bufferEnd);
+			}
+			scanned = i - bufferStart;
+			fill();
+		}
+	}
+	
+	private boolean setNextLine(int end){
+		lineFound = true;
+		lineLength = end - bufferStart;
+		return lineLength >0;
+	}
+	/**
+	 * Move the unread bytes to the beginning of the buffer
+	 * (growing it if it's full) and read more bytes from the input.
+	 */
+	private void fill() throws IOException{
+		int unread = bufferEnd - bufferStart;
+		if(bufferStart >0){
+			System.arraycopy(buffer, bufferStart, buffer, 0, unread);
+			bufferStart =0;
+			bufferEnd = unread;
+		}
+		if(bufferEnd == buffer.length){
+			byte[] newBuffer = new byte[buffer.length *2];
+			System.arraycopy(buffer, 0, newBuffer, 0, bufferEnd);
+			buffer = newBuffer;
+		}
+		int bytesRead = in.read(buffer, bufferEnd, buffer.length - bufferEnd);
+		if(bytesRead <0){
+			endOfFile = true;
+			IOUtil.closeAndIgnoreErrors(in);
+		}else{
+			bufferEnd += bytesRead;
+		}
+	}
+	
+	@Override
+	public boolean hasNextLine() {
+		try {
+			return !closed && findNextLine();
+		} catch (IOException e) {
+			throw new UncheckedIOException("error reading next line", e);
+		}
+	}
+
+	@Override
+	public String peekLine() {
+		if(!hasNextLine()){
+			return null;
+		}
+		if(peekedLine ==null){
+			peekedLine = new String(buffer, bufferStart, lineLength, StandardCharsets.ISO_8859_1);
+		}
+		return peekedLine;
+	}
+
+	@Override
+	public long getPosition() {
+		return position;
+	}
+
+	@Override
+	public boolean tracksPosition() {
+		return true;
+	}
+
+	@Override
+	public String nextLine() throws IOException {
+		String next = peekLine();
+		if(next !=null){
+			advance();
+			//read ahead like TextLineParser does
+			findNextLine();
+		}
+		return next;
+	}
+	/**
+	 * Get the next line (including end of line characters)
+	 * as a {@link CharSequence} that is a view of the 
+	 * bytes in our buffer.  The returned object
+	 * is reused and is only valid until the next method call
+	 * to this parser.
+	 * @return the next line; or {@code null} if there are no
+	 * more lines.
+	 * @throws IOException if there is a problem reading the next
+	 * line.
+	 */
+	@Override
+	public Line nextLineAsCharSequence() throws IOException{
+		if(closed || !findNextLine()){
+			return null;
+		}
+		line.set(buffer, bufferStart, lineLength);
+		advance();
+		return line;
+	}
+	
+	private void advance(){
+		position += lineLength;
+		bufferStart += lineLength;
+		lineFound = false;
+		peekedLine = null;
+	}
+
+	@Override
+	public void close() throws IOException {
+		closed = true;
+		IOUtil.closeAndIgnoreErrors(in);
+	}
+	/**
+	 * A reusable view of the bytes of a line as a {@link CharSequence}
+	 * where each byte is a char (ISO-8859-1).
+	 * 
+	 * @author dkatzel
+	 *
+	 */
+	public static final class Line implements CharSequence{
+		private byte[] bytes;
+		private int offset;
+		private int length;
+		
+		void set(byte[] bytes, int offset, int length){
+			this.bytes = bytes;
+			this.offset = offset;
+			this.length = length;
+		}
+		/**
+		 * Get the backing byte array;
+		 * the line starts at {@link #getOffset()}.
+		 * @return the byte array; should not be modified.
+		 */
+		public byte[] getBytes() {
+			return bytes;
+		}
+		/**
+		 * Get the offset into the backing byte array
+		 * of the first byte of this line.
+		 * @return the offset.
+		 */
+		public int getOffset() {
+			return offset;
+		}
+		/**
+		 * Get the length of this line without
+		 * the end of line characters.
+		 * @return the length.
+		 */
+		public int getLengthWithoutEndOfLine(){
+			int end = offset + length;
+			while(end > offset && (bytes[end-1] == LF || bytes[end-1] == CR)){
+				end--;
+			}
+			return end - offset;
+		}
+		
+		@Override
+		public int length() {
+			return length;
+		}
+
+		@Override
+		public char charAt(int index) {
+			if(index <0 || index >= length){
+				throw new IndexOutOfBoundsException("index " + index + " length " + length);
+			}
+			return (char) (bytes[offset + index] & 0xFF);
+		}
+
+		@Override
+		public CharSequence subSequence(int start, int end) {
+			return toString().subSequence(start, end);
+		}
+		
+		@Override
+		public String toString(){
+			return new String(bytes, offset, length, StandardCharsets.ISO_8859_1);
+		}
+	}
+}
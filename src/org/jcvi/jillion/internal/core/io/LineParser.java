@@ -87,6 +87,25 @@ public interface LineParser extends Closeable{
      */
     String nextLine() throws IOException;
 
+    /**
+     * Get the next line (including end of line characters)
+     * as a {@link CharSequence}.  Implementations may
+     * return an object that is reused so the returned
+     * value should not be used after the next call to
+     * this parser.
+     * @return a the next line; or {@code null} if there are no
+     * more lines.
+     * @throws IOException if there is a problem reading the next
+     * line.
+     * 
+     * @implSpec the default implementation returns {@link #nextLine()}.
+     * 
+     * @since 5.3
+     */
+    default CharSequence nextLineAsCharSequence() throws IOException{
+        return nextLine();
+    }
+    
     /**
      * 
      * {@inheritDoc}
@@ -20,92 +20,67 @@
  ******************************************************************************/
 package org.jcvi.jillion.internal.core.util.iter;
 
-import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
-
-import org.jcvi.jillion.core.util.iter.IteratorUtil;
-import org.jcvi.jillion.core.util.iter.PeekableStreamingIterator;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
 
 /**
  * Combine a list of pre-sorted Iterators into a single sorted iterator.
- * Each call to {@link #next()} will peek at the next elements in the wrapped
- * iterators and return the value that has the lowest sort value as determined
- * by the comparator (and advance that iterator).
+ * The head element of each wrapped iterator is kept in a priority queue
+ * so each call to {@link #next()} takes O(log k) comparisons
+ * where k is the number of iterators being merged.
+ * If elements from different iterators compare as equal,
+ * the element from the iterator earlier in the list is returned first
+ * so the merge is stable.
  * @author dkatzel
  *
  */
 public class MergedSortedRecordIterator<T> implements Iterator<T> {
-		private final List<PeekableStreamingIterator<T>> iterators;
 		
-		private T next;
-		private final Comparator<T> comparator;
+		private final PriorityQueue<Element<T>> queue;
 		
 		
 		public MergedSortedRecordIterator(List<? extends Iterator<T>> iterators, Comparator<T> comparator) {
-			this.iterators = new ArrayList<>();
-			for(Iterator<T> iter : iterators){
-			    if(iterators.isEmpty()){
-			        //skip empties
-			        continue;
-			    }
-			    this.iterators.add(IteratorUtil.createPeekableStreamingIterator(iter));
-			}
-			this.comparator =comparator;
-			
-			next= getNext();
-		}
-		
-		private T getNext(){
-			T bestElement = null;
-			PeekableStreamingIterator<T> bestIter =null;
-			
-			Iterator<PeekableStreamingIterator<T>> iter = iterators.iterator();
-			if(!iter.hasNext()){
-				return null;
-			}
-			do{
-				PeekableStreamingIterator<T> currentIter = iter.next();
-				if(currentIter.hasNext()){
-					bestElement = currentIter.peek();
-					bestIter = currentIter;
+			Comparator<Element<T>> elementComparator = (a, b) ->{
+				int cmp = comparator.compare(a.value, b.value);
+				if(cmp !=0){
+					return cmp;
 				}
-			}while(iter.hasNext() && bestElement ==null);
-			
-			while(iter.hasNext()){
-				PeekableStreamingIterator<T> currentIter = iter.next();
-				if(currentIter.hasNext()){
-					T currentElement = currentIter.peek();
-					if(comparator.compare(currentElement, bestElement) < 0){
-						//found new best
-						bestIter = currentIter;
-						bestElement = currentElement;
-					}
-					
+				return Integer.compare(a.sourceIndex, b.sourceIndex);
+			};
+			//PriorityQueue requires an initial capacity >=1
+			this.queue = new PriorityQueue<>(Math.max(1, iterators.size()), elementComparator);
+			int i=0;
+			for(Iterator<T> iter : iterators){
+				//skip empties
+				if(iter.hasNext()){
+					queue.add(new Element<>(iter.next(), iter, i));
 				}
+				i++;
 			}
-			if(bestIter ==null){
-				return null;
-			}
-			//advance best iterator
-			return bestIter.next();
-
-			
 		}
+		
 
 		@Override
 		public boolean hasNext() {
-			return next!=null;
+			return !queue.isEmpty();
 		}
 		
 		
 		@Override
 		public T next() {
-			//don't need to check has next
-			//since we can make sure we don't call it incorrectly
-			T ret= next;
-			next = getNext();
+			Element<T> best = queue.poll();
+			if(best ==null){
+				throw new NoSuchElementException();
+			}
+			T ret = best.value;
+			if(best.source.hasNext()){
+				//reuse element object to avoid extra allocations
+				best.value = best.source.next();
+				queue.add(best);
+			}
 			return ret;
 		}
 		
@@ -113,9 +88,23 @@ public class MergedSortedRecordIterator<T> implements Iterator<T> {
 		public void remove() {
 			throw new UnsupportedOperationException();				
 		}
-		
-		
-	                
-	        
+		/**
+		 * The current head element of one of the
+		 * iterators being merged.
+		 * @author dkatzel
+		 *
+		 * @param <T> the type of element being iterated over.
+		 */
+		private static final class Element<T>{
+			private T value;
+			private final Iterator<T> source;
+			private final int sourceIndex;
+			
+			Element(T value, Iterator<T> source, int sourceIndex) {
+				this.value = value;
+				this.source = source;
+				this.sourceIndex = sourceIndex;
+			}
+		}
 
 }
@@ -24,4 +24,19 @@ import org.jcvi.jillion.sam.VirtualFileOffset;
 
 public interface IndexerCallback{
 	void encodedIndex(VirtualFileOffset start, VirtualFileOffset end);
+	/**
+	 * Get an {@link IndexerCallback} that is bound to
+	 * the current state of this callback so that
+	 * {@link #encodedIndex(VirtualFileOffset, VirtualFileOffset)}
+	 * can be called later after more data has been written.
+	 * This is needed by writers that don't know the final
+	 * compressed file offsets until the data has been compressed.
+	 * 
+	 * @return an {@link IndexerCallback}; by default returns this.
+	 * 
+	 * @since 5.3
+	 */
+	default IndexerCallback bindToCurrentState(){
+		return this;
+	}
 }
@@ -33,6 +33,7 @@ import java.text.SimpleDateFormat;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Locale;
 import java.util.Objects;
 import java.util.function.Predicate;
@@ -730,4 +731,44 @@ public final class SamUtil {
 		};
 	}
 	
+	/**
+	 * Create a new {@link Predicate} that only accepts
+	 * mapped {@link SamRecord}s that align to the given reference
+	 * and whose alignment intersects any of the given Ranges.
+	 * 
+	 * @param referenceName the name of the reference; can not be null.
+	 * @param mergedRegionsOfInterest the regions of interest, which must be sorted
+	 * by begin coordinate and not overlap (for example the result of 
+	 * {@link org.jcvi.jillion.core.Ranges#merge(java.util.Collection)}); can not be null.
+	 * @return a new Predicate; will never be null.
+	 * 
+	 * @since 5.3
+	 */
+	public static Predicate<SamRecord> alignsToReference(String referenceName, List<Range> mergedRegionsOfInterest){
+		Objects.requireNonNull(referenceName, "reference name can not be null");
+		Objects.requireNonNull(mergedRegionsOfInterest, "alignment ranges can not be null");
+		
+		long[] begins = new long[mergedRegionsOfInterest.size()];
+		long[] ends = new long[begins.length];
+		int i=0;
+		for(Range r : mergedRegionsOfInterest){
+			begins[i] = r.getBegin();
+			ends[i] = r.getEnd();
+			i++;
+		}
+		return (record) -> {
+			if(!record.mapped() || !referenceName.equals(record.getReferenceName())){
+				return false;
+			}
+			Range alignmentRange = record.getAlignmentRange();
+			//find the last region that begins at or before the end of the read
+			//since the regions don't overlap, that's the only one
+			//that might intersect
+			int offset = Arrays.binarySearch(begins, alignmentRange.getEnd());
+			int lastCandidate = offset >=0 ? offset : -offset -2;
+			
+			return lastCandidate >=0 && ends[lastCandidate] >= alignmentRange.getBegin();
+		};
+	}
+	
 }
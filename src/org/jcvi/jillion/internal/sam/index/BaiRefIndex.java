@@ -108,6 +108,12 @@ class BaiRefIndex implements ReferenceIndex {
 		return Arrays.copyOf(intervals, intervals.length);
 	}
 
+	@Override
+	public VirtualFileOffset getMinimumOffsetFor(int referenceOffset) {
+		//don't make a defensive copy
+		return IndexUtil.getMinimumOffsetFor(intervals, referenceOffset);
+	}
+
 	@Override
 	public int hashCode() {
 		final int prime = 31;
@@ -27,6 +27,7 @@ import java.io.PushbackInputStream;
 import java.nio.ByteOrder;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
@@ -49,6 +50,16 @@ public final class IndexUtil {
 
 	private static final int INTERVAL_SHIFT = 14; //shift by 0x40_000 which is 14 bits or 16384
 	private static final byte[] BAM_INDEX_MAGIC = new byte[]{'B','A','I',1};
+	/**
+	 * Largest bin number that can be used for alignments.
+	 */
+	private static final int MAX_BIN_ID = METADATA_BIN_ID -1;
+	/**
+	 * The binning scheme only covers references up to 2^29 bases.
+	 */
+	private static final int MAX_REFERENCE_OFFSET = (1<<29) -1;
+	
+	private static final VirtualFileOffset BEGINNING_OF_FILE = new VirtualFileOffset(0L);
 	private IndexUtil(){
 		//can not instantiate
 	}
@@ -58,6 +69,122 @@ public final class IndexUtil {
 		
 	}
 	
+	/**
+	 * Get the smallest {@link VirtualFileOffset} in the given linear index
+	 * that can contain alignments overlapping the given reference offset.
+	 * 
+	 * @param intervals the linear index; may contain null elements.
+	 * @param referenceOffset the 0-based reference coordinate.
+	 * @return a {@link VirtualFileOffset}; will never be null.
+	 */
+	public static VirtualFileOffset getMinimumOffsetFor(VirtualFileOffset[] intervals, int referenceOffset){
+		//samtools only writes intervals up to the last one used
+		//so anything past that can't have any overlapping alignments
+		//but the last interval is still a safe lower bound.
+		//Jillion may also leave unused intervals null so use the 
+		//previous value since offsets only increase
+		for(int i= Math.min(getIntervalOffsetFor(Math.max(0, referenceOffset)), intervals.length -1); i>=0; i--){
+			if(intervals[i] !=null){
+				return intervals[i];
+			}
+		}
+		return BEGINNING_OF_FILE;
+	}
+	/**
+	 * Compute the smallest list of {@link Chunk}s from the given {@link ReferenceIndex}
+	 * that need to be read to find all the alignments that overlap any of the given
+	 * Ranges.  Only the bins that can overlap each range are considered,
+	 * chunks that end before the linear index's minimum offset for the range are skipped
+	 * and any chunks that overlap or touch the same BGZF block are coalesced
+	 * so that each part of the file only needs to be read once.
+	 * 
+	 * @param refIndex the {@link ReferenceIndex} to use; can not be null.
+	 * @param mergedRanges the Ranges to query, must be sorted by begin
+	 * coordinate and not overlap; can not be null.
+	 * @return a new List of non-overlapping Chunks sorted by file offset; 
+	 * will never be null but may be empty.
+	 */
+	public static List<Chunk> getOverlappingChunks(ReferenceIndex refIndex, List<Range> mergedRanges){
+		List<Bin> bins = refIndex.getBins();
+		List<Chunk> chunks = new ArrayList<>();
+		//since the ranges are sorted and the linear index only increases,
+		//the first range to include a bin has the smallest minimum offset
+		//so we only need to look at each bin once.
+		BitSet binsSeen = new BitSet(MAX_BIN_ID +1);
+		
+		for(Range range : mergedRanges){
+			int begin = (int) Math.max(0, Math.min(range.getBegin(), MAX_REFERENCE_OFFSET));
+			int end = (int) Math.max(begin, Math.min(range.getEnd(), MAX_REFERENCE_OFFSET));
+			
+			VirtualFileOffset minOffset = refIndex.getMinimumOffsetFor(begin);
+			
+			for(int binNumber : SamUtil.getCandidateOverlappingBins(begin, end+1)){
+				if(binsSeen.get(binNumber)){
+					continue;
+				}
+				binsSeen.set(binNumber);
+				Bin bin = findBin(bins, binNumber);
+				if(bin ==null){
+					continue;
+				}
+				for(Chunk chunk : bin.getChunks()){
+					if(chunk.getEnd().compareTo(minOffset) >0){
+						chunks.add(chunk);
+					}
+				}
+			}
+		}
+		return coalesce(chunks);
+	}
+	
+	private static List<Chunk> coalesce(List<Chunk> chunks){
+		if(chunks.size() <2){
+			return chunks;
+		}
+		chunks.sort((a,b)-> a.getBegin().compareTo(b.getBegin()));
+		
+		List<Chunk> coalesced = new ArrayList<>(chunks.size());
+		Iterator<Chunk> iter = chunks.iterator();
+		Chunk current = iter.next();
+		while(iter.hasNext()){
+			Chunk next = iter.next();
+			if(next.getBegin().compareTo(current.getEnd()) <=0
+					|| next.getBegin().getCompressedBamBlockOffset() == current.getEnd().getCompressedBamBlockOffset()){
+				//overlaps or starts in the same block
+				//so it's cheaper to keep reading
+				if(next.getEnd().compareTo(current.getEnd()) > 0){
+					current = new Chunk(current.getBegin(), next.getEnd());
+				}
+			}else{
+				coalesced.add(current);
+				current = next;
+			}
+		}
+		coalesced.add(current);
+		return coalesced;
+	}
+	/**
+	 * Bins in a ReferenceIndex are sorted by bin number
+	 * so we can do a binary search.
+	 */
+	private static Bin findBin(List<Bin> bins, int binNumber){
+		int low = 0;
+		int high = bins.size() -1;
+		while(low <= high){
+			int mid = (low + high) >>> 1;
+			Bin bin = bins.get(mid);
+			int midBinNumber = bin.getBinNumber();
+			if(midBinNumber < binNumber){
+				low = mid +1;
+			}else if(midBinNumber > binNumber){
+				high = mid -1;
+			}else{
+				return bin;
+			}
+		}
+		return null;
+	}
+	
 	public static BamIndex parseIndex(InputStream in, SamHeader header) throws IOException{
 		byte[] magicNumber = IOUtil.readByteArray(in, 4);
 		if(!Arrays.equals(BAM_INDEX_MAGIC, magicNumber)){
@@ -242,6 +242,12 @@ public final class ReferenceIndexBuilder{
 			return Arrays.copyOf(intervals, intervals.length);
 		}
 
+		@Override
+		public VirtualFileOffset getMinimumOffsetFor(int referenceOffset) {
+			//don't make a defensive copy
+			return IndexUtil.getMinimumOffsetFor(intervals, referenceOffset);
+		}
+
 
 
 		@Override
@@ -28,6 +28,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteOrder;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Objects;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Predicate;
@@ -64,16 +65,40 @@ class BamFileParser extends AbstractSamFileParser {
 
 	
 	private static final VirtualFileOffset BEGINNING_OF_FILE = new VirtualFileOffset(0);
+	
+	private static final SamParserOptions DEFAULT_OPTIONS = new SamParserOptions();
 	protected final File bamFile;
 	protected final SamAttributeValidator validator;
 	protected final String[] refNames;
 	protected final SamHeader header;
-	
+	/**
+	 * The number of threads to use to inflate
+	 * BGZF blocks.
+	 */
+	private final int numberOfDecompressionThreads;
 	
 	public BamFileParser(File bamFile) throws IOException {
 		this(bamFile, ReservedAttributeValidator.INSTANCE);
 	}
 	public BamFileParser(File bamFile, SamAttributeValidator validator) throws IOException {
+		this(bamFile, validator, 1);
+	}
+	/**
+	 * Create a new {@link BamFileParser} that will use the given number
+	 * of threads to decompress the BAM file.
+	 * 
+	 * @param bamFile the BAM file to parse; can not be null.
+	 * @param validator the {@link SamAttributeValidator} to use; can not be null.
+	 * @param numberOfDecompressionThreads the number of threads to use to
+	 * inflate BGZF blocks. If set to 1, then the file is decompressed
+	 * on the parsing thread. Must be &ge; 1.
+	 * 
+	 * @throws IOException if there is a problem parsing the BAM header.
+	 * @throws IllegalArgumentException if numberOfDecompressionThreads &lt; 1.
+	 * 
+	 * @since 5.3
+	 */
+	public BamFileParser(File bamFile, SamAttributeValidator validator, int numberOfDecompressionThreads) throws IOException {
 		if(bamFile ==null){
 			throw new NullPointerException("bam file can not be null");
 		}
@@ -89,8 +114,12 @@ class BamFileParser extends AbstractSamFileParser {
 		if(validator ==null){
 			throw new NullPointerException("validator can not be null");
 		}
+		if(numberOfDecompressionThreads <1){
+			throw new IllegalArgumentException("number of decompression threads must be >= 1 : " + numberOfDecompressionThreads);
+		}
 		this.bamFile = bamFile;
 		this.validator = validator;
+		this.numberOfDecompressionThreads = numberOfDecompressionThreads;
 		
 		try(BgzfInputStream in = new BgzfInputStream(bamFile)){
 			
@@ -129,41 +158,59 @@ class BamFileParser extends AbstractSamFileParser {
            
             
             if(options.getReferenceRange().isPresent()){
-                _parse(options.getReferenceName().get(), options.getReferenceRange().get(), options.shouldCreateMementos(), visitor);
+                _parse(options.getReferenceName().get(), options.getReferenceRange().get(), options, visitor);
+            }else if(options.getReferenceRanges().isPresent()){
+                _parse(options.getReferenceName().get(), options.getReferenceRanges().get(), options, visitor);
             }else{
-                _parse(options.getReferenceName().get(), options.shouldCreateMementos(), visitor);
+                _parse(options.getReferenceName().get(), options, visitor);
                 
             }
             return;
         }else{
             predicate = record -> true;
         }
-        accept(visitor, options.shouldCreateMementos(), predicate);
+        accept(visitor, options, predicate);
         
     }
 	
 
-	protected void _parse(String referenceName, Range alignmentRange, boolean shouldCreateMementos, SamVisitor visitor) throws IOException{
+	protected void _parse(String referenceName, Range alignmentRange, SamParserOptions options, SamVisitor visitor) throws IOException{
 	    verifyReferenceInHeader(referenceName);
-            accept(visitor, shouldCreateMementos, SamUtil.alignsToReference(referenceName, alignmentRange));
+            accept(visitor, options, SamUtil.alignsToReference(referenceName, alignmentRange));
 	}
-	protected void _parse(String referenceName, boolean shouldCreateMementos, SamVisitor visitor ) throws IOException{
+	/**
+	 * Visit only the records that map to the given reference
+	 * and intersect any of the given Ranges.
+	 * @param referenceName the name of the reference; can not be null.
+	 * @param mergedAlignmentRanges the Ranges to visit, sorted by begin
+	 * coordinate and non-overlapping.
+	 * @param options the other {@link SamParserOptions} to use.
+	 * @param visitor the visitor to call; can not be null.
+	 * @throws IOException if there is a problem parsing the BAM file.
+	 * 
+	 * @since 5.3
+	 */
+	protected void _parse(String referenceName, List<Range> mergedAlignmentRanges, SamParserOptions options, SamVisitor visitor) throws IOException{
+	    verifyReferenceInHeader(referenceName);
+	    accept(visitor, options, SamUtil.alignsToReference(referenceName, mergedAlignmentRanges));
+	}
+	protected void _parse(String referenceName, SamParserOptions options, SamVisitor visitor ) throws IOException{
             verifyReferenceInHeader(referenceName);
-            accept(visitor, shouldCreateMementos, SamUtil.alignsToReference(referenceName));
+            accept(visitor, options, SamUtil.alignsToReference(referenceName));
         }
 	
     @Override
 	public void parse(String referenceName, SamVisitor visitor) throws IOException {
-		 _parse(referenceName, false, visitor);
+		 _parse(referenceName, DEFAULT_OPTIONS, visitor);
 	}
 	@Override
 	public void parse(String referenceName, Range alignmentRange, SamVisitor visitor) throws IOException {
-	    _parse(referenceName, alignmentRange, false, visitor);		
+	    _parse(referenceName, alignmentRange, DEFAULT_OPTIONS, visitor);		
 	}
 	
 	@Override
 	public void parse(SamVisitor visitor) throws IOException {
-		accept(visitor, false, (record)->true);
+		accept(visitor, DEFAULT_OPTIONS, (record)->true);
 	}
 	
 	@Override
@@ -189,7 +236,7 @@ class BamFileParser extends AbstractSamFileParser {
 		
 		
 		
-		try(BgzfInputStream in = BgzfInputStream.create(bamFile, vfs)){
+		try(BgzfInputStream in = openBgzfStream(vfs)){
 			AtomicBoolean keepParsing = new AtomicBoolean(true);
 
 			parseBamRecords(visitor, (record)->true, (v)->true, in, keepParsing, new MementoLessBamCallback(keepParsing));
@@ -199,17 +246,55 @@ class BamFileParser extends AbstractSamFileParser {
 	
 	
 	
-	private void accept(SamVisitor visitor, boolean enableMementos, Predicate<SamRecord> filter) throws IOException {
+	private void accept(SamVisitor visitor, SamParserOptions options, Predicate<SamRecord> filter) throws IOException {
 		if(visitor ==null){
 			throw new NullPointerException("visitor can not be null");
 		}
-		try(BgzfInputStream in=new BgzfInputStream(bamFile)){			
+		try(BgzfInputStream in=openBgzfStream()){			
 			
-			parseBamFromBeginning(visitor, enableMementos, filter, (vfs)->true, in);
+			parseBamFromBeginning(visitor, options, filter, (vfs)->true, in);
 		}
 	}
 	
-	protected void parseBamFromBeginning(SamVisitor visitor, boolean enableMementos, Predicate<SamRecord> filter, Predicate<VirtualFileOffset> keepParsingPredicate, BgzfInputStream in) throws IOException {
+	/**
+	 * Create a new {@link AbstractBamCallback} for a new parse.
+	 * @param keepParsing the flag to set if parsing is halted.
+	 * @param options the {@link SamParserOptions} to use.
+	 * @return a new callback; will never be null.
+	 * 
+	 * @since 5.3
+	 */
+	protected AbstractBamCallback createCallback(AtomicBoolean keepParsing, SamParserOptions options){
+		AbstractBamCallback callback = options.shouldCreateMementos() ? new BamCallback(keepParsing) : new MementoLessBamCallback(keepParsing);
+		if(options.shouldDecodeLazily()){
+			callback.lazyBuffer = new LazyBamRecord.Buffer();
+		}
+		return callback;
+	}
+	
+	/**
+	 * Open a new {@link BgzfInputStream} from the beginning
+	 * of the BAM file using the configured number of decompression threads.
+	 * 
+	 * @return a new {@link BgzfInputStream}; will never be null.
+	 * @throws IOException if there is a problem opening the file.
+	 */
+	protected BgzfInputStream openBgzfStream() throws IOException{
+		return BgzfInputStream.create(bamFile, numberOfDecompressionThreads);
+	}
+	/**
+	 * Open a new {@link BgzfInputStream} starting at the given {@link VirtualFileOffset}
+	 * using the configured number of decompression threads.
+	 * 
+	 * @param vfs the {@link VirtualFileOffset} to seek to; can not be null.
+	 * @return a new {@link BgzfInputStream}; will never be null.
+	 * @throws IOException if there is a problem opening the file.
+	 */
+	protected BgzfInputStream openBgzfStream(VirtualFileOffset vfs) throws IOException{
+		return BgzfInputStream.create(bamFile, vfs, numberOfDecompressionThreads);
+	}
+	
+	protected void parseBamFromBeginning(SamVisitor visitor, SamParserOptions options, Predicate<SamRecord> filter, Predicate<VirtualFileOffset> keepParsingPredicate, BgzfInputStream in) throws IOException {
 		verifyMagicNumber(in);
 		//have to keep parsing header again for now
 		//since it updates the file pointer in our bgzf stream
@@ -218,7 +303,7 @@ class BamFileParser extends AbstractSamFileParser {
 		
 		parseReferenceNamesAndAddToHeader(in, headerBuilder);
 		AtomicBoolean keepParsing = new AtomicBoolean(true);
-		AbstractBamCallback callback = enableMementos ? new BamCallback(keepParsing) : new MementoLessBamCallback(keepParsing);
+		AbstractBamCallback callback = createCallback(keepParsing, options);
 		visitor.visitHeader(callback, header);
 		
 		parseBamRecords(visitor, filter, keepParsingPredicate, in, keepParsing, callback);
@@ -226,24 +311,49 @@ class BamFileParser extends AbstractSamFileParser {
 	
 	protected void parseBamRecords(SamVisitor visitor, Predicate<SamRecord> filter, Predicate<VirtualFileOffset> keepParsingPredicate, BgzfInputStream in, AtomicBoolean keepParsing, AbstractBamCallback callback) throws IOException {
 		
-		boolean canceledByPredicate=false;
+		boolean canceledByPredicate=visitBamRecords(visitor, filter, keepParsingPredicate, in, keepParsing, callback);
 		
+		if(canceledByPredicate || keepParsing.get()){
+			visitor.visitEnd();
+		}else{
+			visitor.halted();
+		}
+	}
+	/**
+	 * Parse the records from the given stream and visit the ones
+	 * that match the given filter, but do not call {@link SamVisitor#visitEnd()}
+	 * or {@link SamVisitor#halted()} so that several
+	 * sections of the file can be visited as one parse.
+	 * 
+	 * @param visitor the visitor to call.
+	 * @param filter only records that pass this filter are visited.
+	 * @param keepParsingPredicate tested against the start offset of each record
+	 * before it is parsed; if it returns {@code false} then parsing stops.
+	 * @param in the stream to parse.
+	 * @param keepParsing set to {@code false} if the visitor halts parsing.
+	 * @param callback the callback to pass to the visitor.
+	 * @return {@code true} if parsing stopped because of the keepParsingPredicate;
+	 * {@code false} otherwise.
+	 * @throws IOException if there is a problem parsing the BAM file.
+	 * 
+	 * @since 5.3
+	 */
+	protected boolean visitBamRecords(SamVisitor visitor, Predicate<SamRecord> filter, Predicate<VirtualFileOffset> keepParsingPredicate, BgzfInputStream in, AtomicBoolean keepParsing, AbstractBamCallback callback) throws IOException {
 		try{
 			VirtualFileOffset start = in.getCurrentVirutalFileOffset();
-			while(keepParsing.get() && in.hasMoreData()){	
-				SamRecord record = parseNextSamRecord(in, refNames, header);
+			while(keepParsing.get() && in.hasMoreData()){
+				//check before we parse the record so we don't
+				//waste time decoding a record we won't visit
+				if(!keepParsingPredicate.test(start)){
+					return true;
+				}
+				SamRecord record = callback.lazyBuffer ==null ? parseNextSamRecord(in, refNames, header) : parseNextLazySamRecord(in, callback.lazyBuffer);
 				
 				VirtualFileOffset end = in.getCurrentVirutalFileOffset();
-				if(keepParsingPredicate.test(start)){
-					if(filter.test(record)){
-					    callback.updateCurrentPosition(start);
-					    visitor.visitRecord(callback, record, start,end);
-					}
-				}else{
-					keepParsing.set(false);
-					canceledByPredicate=true;
+				if(filter.test(record)){
+				    callback.updateCurrentPosition(start);
+				    visitor.visitRecord(callback, record, start,end);
 				}
-				
 				//update start to be old end
 				start = end;
 			}
@@ -252,11 +362,7 @@ class BamFileParser extends AbstractSamFileParser {
 			//EOF until after we hit it otherwise
 			//we will mess up the offset computations
 		}
-		if(canceledByPredicate || keepParsing.get()){
-			visitor.visitEnd();
-		}else{
-			visitor.halted();
-		}
+		return false;
 	}
 	
 	private SamRecord parseNextSamRecord(InputStream in, String[] refNames, SamHeader header) throws IOException {
@@ -320,7 +426,14 @@ class BamFileParser extends AbstractSamFileParser {
 		
 		return builder.build();
 	}
-	private Cigar parseCigar(InputStream in, int numCigarOps)
+	private SamRecord parseNextLazySamRecord(InputStream in, LazyBamRecord.Buffer buffer) throws IOException {
+		int blockSize = getSignedInt(in);
+		byte[] data = buffer.newRecord(blockSize);
+		IOUtil.blockingRead(in, data, 0, blockSize);
+		return new LazyBamRecord(header, validator, refNames, buffer, blockSize);
+	}
+	
+	static Cigar parseCigar(InputStream in, int numCigarOps)
 			throws IOException {
 		Cigar.Builder cigarBuilder = new Cigar.Builder(numCigarOps);
 		for(int i=0; i<numCigarOps; i++){
@@ -380,7 +493,7 @@ class BamFileParser extends AbstractSamFileParser {
 		}
 		return refNames;
 	}
-	private SamAttribute parseAttribute(OpenAwareInputStream in) throws IOException {
+	static SamAttribute parseAttribute(OpenAwareInputStream in) throws IOException {
 		SamAttributeKey key = SamAttributeKeyFactory.getKey((char) in.read(), (char) in.read());
 		
 		char type = (char) in.read();
@@ -409,7 +522,7 @@ class BamFileParser extends AbstractSamFileParser {
 	}
 	
 	
-	private SamAttribute handleArray(SamAttributeKey key, OpenAwareInputStream in) throws IOException {
+	private static SamAttribute handleArray(SamAttributeKey key, OpenAwareInputStream in) throws IOException {
 		char arrayType = (char) in.read();
 		int length = IOUtil.readSignedInt(in);
 		//for memory packing, we read everything as
@@ -433,7 +546,7 @@ class BamFileParser extends AbstractSamFileParser {
 
 	}
 
-	private byte[] toByteArray(String hex) {
+	private static byte[] toByteArray(String hex) {
 		//2 chars per byte
 		byte[] array = new byte[hex.length()/2];
 		char[] chars = hex.toCharArray();
@@ -443,7 +556,7 @@ class BamFileParser extends AbstractSamFileParser {
 		return array;
 	}
 	
-	private String readNullTerminatedStringAttribute(OpenAwareInputStream in) throws IOException {
+	private static String readNullTerminatedStringAttribute(OpenAwareInputStream in) throws IOException {
 		//it looks like Strings are just null terminated
 		//the length is not encoded
 		//so just keep reading till we get to '\0'
@@ -461,7 +574,7 @@ class BamFileParser extends AbstractSamFileParser {
 	}
 	
 	
-	private QualitySequence readQualities(InputStream in, int seqLength) throws IOException{
+	static QualitySequence readQualities(InputStream in, int seqLength) throws IOException{
 		byte[] bytes = new byte[seqLength];
 		IOUtil.blockingRead(in, bytes);
 		if(bytes[0] == -1){
@@ -485,10 +598,10 @@ class BamFileParser extends AbstractSamFileParser {
 					.turnOffDataCompression(true)
 					.build();
 	}
-	private long getUnsignedInt(InputStream in) throws IOException {
+	private static long getUnsignedInt(InputStream in) throws IOException {
 		return IOUtil.readUnsignedInt(in, ByteOrder.LITTLE_ENDIAN);
 	}
-	private int getSignedInt(InputStream in) throws IOException {
+	private static int getSignedInt(InputStream in) throws IOException {
 		return (int) IOUtil.readUnsignedInt(in, ByteOrder.LITTLE_ENDIAN);
 	}
 	private void verifyMagicNumber(InputStream in) throws IOException {
@@ -540,6 +653,12 @@ class BamFileParser extends AbstractSamFileParser {
 	}
 	
 	protected abstract class AbstractBamCallback extends AbstractCallback {
+			/**
+			 * The buffer to use to read records that are lazily decoded;
+			 * or {@code null} if records should be fully decoded.
+			 */
+			private LazyBamRecord.Buffer lazyBuffer;
+			
             public AbstractBamCallback(AtomicBoolean keepParsing) {
                 super(keepParsing);
             }
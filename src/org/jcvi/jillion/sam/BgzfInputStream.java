@@ -139,6 +139,28 @@ class BgzfInputStream extends InflaterInputStream {
     public static BgzfInputStream create(File bamFile) throws IOException{
     	return new BgzfInputStream(bamFile);
     }
+    /**
+     * Creates a new BgzfInputStream that will use the given
+     * number of threads to decompress the BGZF blocks.
+     * 
+     * @param bamFile The bam file to parse.
+     * @param numberOfThreads the number of threads to use
+     * to decompress blocks; if set to 1 then the blocks are
+     * inflated on the calling thread. Must be &ge; 1.
+     *
+     * @throws ZipException if a GZIP format error has occurred or the
+     *                         compression method used is unsupported
+     * @throws IOException if an I/O error has occurred
+     * @throws IllegalArgumentException if numberOfThreads &lt; 1.
+     * 
+     * @since 5.3
+     */
+    static BgzfInputStream create(File bamFile, int numberOfThreads) throws IOException{
+    	if(numberOfThreads ==1){
+    		return new BgzfInputStream(bamFile);
+    	}
+    	return new ParallelBgzfInputStream(bamFile, numberOfThreads);
+    }
     /**
      * Creates a new {@link BgzfInputStream} starting
      * from the given {@link VirtualFileOffset}.
@@ -156,15 +178,47 @@ class BgzfInputStream extends InflaterInputStream {
      * @since 5.0
      */
     static BgzfInputStream create(File bamFile, VirtualFileOffset vfs) throws IOException{
+    	return create(bamFile, vfs, 1);
+    }
+    /**
+     * Creates a new {@link BgzfInputStream} starting
+     * from the given {@link VirtualFileOffset} that will use
+     * the given number of threads to decompress the BGZF blocks.
+     * 
+     * @param bamFile The bam file to parse.
+     * @param vfs the {@link VirtualFileOffset} to use to seek to before reading
+     *any bytes from the stream; can not be null.
+     * @param numberOfThreads the number of threads to use
+     * to decompress blocks; if set to 1 then the blocks are
+     * inflated on the calling thread. Must be &ge; 1.
+     *
+     * @throws ZipException if a GZIP format error has occurred or the
+     *                         compression method used is unsupported
+     *@throw IOException if an I/O error has occurred.
+     * 
+     * @throws NullPointerException if either parameter is null.
+     * @throws IllegalArgumentException if numberOfThreads &lt; 1.
+     * 
+     * @since 5.3
+     */
+    static BgzfInputStream create(File bamFile, VirtualFileOffset vfs, int numberOfThreads) throws IOException{
     	long compressedBamBlockOffset = vfs.getCompressedBamBlockOffset();
     	InputStream in;
     	if(compressedBamBlockOffset>0){
-    		in = new RandomAccessFileInputStream(bamFile, compressedBamBlockOffset);
+    		in = new BufferedInputStream(new RandomAccessFileInputStream(bamFile, compressedBamBlockOffset), BUFFER_SIZE);
     	}else{
-    		in = new BufferedInputStream(new FileInputStream(bamFile));
+    		in = new BufferedInputStream(new FileInputStream(bamFile), BUFFER_SIZE);
     	}
 		
-    	BgzfInputStream bgzfStream = new BgzfInputStream(in);
+    	BgzfInputStream bgzfStream;
+    	if(numberOfThreads ==1){
+    		bgzfStream = new BgzfInputStream(in, BUFFER_SIZE);
+    		//offsets reported by this stream must be relative
+    		//to the beginning of the file not where we seeked to.
+    		bgzfStream.compressedBlockBytesReadSoFar = compressedBamBlockOffset;
+    	}else{
+    		bgzfStream = new ParallelBgzfInputStream(in, compressedBamBlockOffset, numberOfThreads);
+    	}
     	
     	IOUtil.blockingSkip(bgzfStream, vfs.getUncompressedOffset());
     	
@@ -186,6 +240,19 @@ class BgzfInputStream extends InflaterInputStream {
         super(in, new Inflater(true), size);
         parseBlockHeader(in);
     }
+    /**
+     * Constructor for subclasses that handle
+     * reading and inflating the BGZF blocks themselves,
+     * the block header is not parsed and the 
+     * internal inflater and buffer are not used.
+     * 
+     * @param in the input stream positioned at the beginning
+     * of a BGZF block.
+     */
+    BgzfInputStream(InputStream in){
+    	//subclasses don't use our buffer so keep it small
+    	super(in, new Inflater(true), 1);
+    }
 
     /**
      * Creates a new input stream with a default buffer size.
@@ -197,22 +264,10 @@ class BgzfInputStream extends InflaterInputStream {
      * @throws IOException if an I/O error has occurred
      */
     public BgzfInputStream(File bam) throws IOException {
-        this(new BufferedInputStream(new FileInputStream(bam),BUFFER_SIZE));
+        this(new BufferedInputStream(new FileInputStream(bam),BUFFER_SIZE), BUFFER_SIZE);
     }
     
     
-    /**
-     * Creates a new input stream with a default buffer size.
-     * @param in the input stream
-     *
-     * @throws ZipException if a GZIP format error has occurred or the
-     *                         compression method used is unsupported
-     * @throws IOException if an I/O error has occurred
-     */
-    private BgzfInputStream(InputStream in) throws IOException {
-        this(in, BUFFER_SIZE);
-    }
-
     /**
      * Reads uncompressed data into an array of bytes. If <code>len</code> is not
      * zero, the method will block until some input can be decompressed; otherwise,
@@ -281,7 +336,7 @@ class BgzfInputStream extends InflaterInputStream {
 
   
     
-    private void assertNotClosed() throws IOException {
+    void assertNotClosed() throws IOException {
         if (closed) {
             throw new IOException("BAM file is closed");
         }
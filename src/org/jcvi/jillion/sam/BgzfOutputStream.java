@@ -55,7 +55,7 @@ final class BgzfOutputStream extends OutputStream{
 	 * BAM files whose largest offset is (1<<16) -1
 	 * we can make the max length 1<<16.
 	 */
-	private static final int MAX_COMPRESSED_BLOCK_SIZE = 1 <<16;
+	static final int MAX_COMPRESSED_BLOCK_SIZE = 1 <<16;
 	/**
 	 * Size of BGZF block not counting the actual compressed data
 	 */
@@ -66,13 +66,13 @@ final class BgzfOutputStream extends OutputStream{
 	 * by the virtual file offsets when indexing
 	 * BAM files to at most (1<<16) -1.
 	 */
-	private static final int MAX_UNCOMPRESSED_BLOCK_SIZE = MAX_COMPRESSED_BLOCK_SIZE - BGZF_BLOCK_FULL_HEADER_LENGTH;
+	static final int MAX_UNCOMPRESSED_BLOCK_SIZE = MAX_COMPRESSED_BLOCK_SIZE - BGZF_BLOCK_FULL_HEADER_LENGTH;
 	
 	/**
 	 * Use the compression level SAMTool's Picard uses,
 	 * not sure why they use {@value} instead of the default.
 	 */
-	private static final int GZIP_COMPRESSION_LEVEL = 5;
+	static final int GZIP_COMPRESSION_LEVEL = 5;
 	
 	/**
 	 * Common header to all BGZF encoded blocks
@@ -104,9 +104,14 @@ final class BgzfOutputStream extends OutputStream{
 	 * An End of File Trailer block written to the end
 	 * of BAM files so that unintended file truncation can be easily detected.
 	 */
-	private static final byte[] EOF_MARKER;	
+	static final byte[] EOF_MARKER;	
 	
 	private final CRC32 currentCrc32 = new CRC32();
+	/**
+	 * The {@link Deflater} used to compress every block;
+	 * it is reset after each block and ended when this stream is closed.
+	 */
+	private final Deflater deflater = new Deflater(GZIP_COMPRESSION_LEVEL, true);
 	/**
 	 * The number of bytes written to our uncompressedBuffer
 	 * so far that have not yet been flushed.
@@ -187,6 +192,34 @@ final class BgzfOutputStream extends OutputStream{
 		this.callback = callback;
 	}
 	
+	/**
+	 * Create a new {@link OutputStream}
+	 * that will write BGZF encoded data to the given
+	 * file using the given number of threads to compress the data.
+	 * 
+	 * @param outputBam the {@link File} to write to;
+	 * can not be null.  If the file, or any parent directories
+	 * do not exist, then they will be created.
+	 * @param callback the {@link IndexerCallback} to call back to
+	 * on during when writing to this {@link BgzfOutputStream};
+	 * if {@code null} then no callbacks will be called.
+	 * @param numberOfThreads the number of threads to use to compress blocks;
+	 * if set to 1 then the blocks are compressed on the calling thread.  Must be &ge; 1.
+	 * 
+	 * @return a new {@link OutputStream}; will never be null.
+	 * 
+	 * @throws NullPointerException if out is null.
+	 * @throws IOException if there is a problem creating the output file.
+	 * @throws IllegalArgumentException if numberOfThreads &lt; 1.
+	 * 
+	 * @since 5.3
+	 */
+	static OutputStream create(File outputBam, IndexerCallback callback, int numberOfThreads) throws IOException{
+		if(numberOfThreads ==1){
+			return new BgzfOutputStream(outputBam, callback);
+		}
+		return new ParallelBgzfOutputStream(outputBam, callback, numberOfThreads);
+	}
 	/**
 	 * {@inheritDoc}.
 	 */
@@ -308,19 +341,48 @@ final class BgzfOutputStream extends OutputStream{
 	@Override
 	public void flush() throws IOException {
 		if(currentUsedBufferLength >0){
-			//create a new Deflater each time.
-			//There were problems caused by re-using
-			//the deflater across blocks
-			//probably because we call finish() ?
-			Deflater currentDeflater = new Deflater(GZIP_COMPRESSION_LEVEL, true);
-			
-			currentDeflater.setInput(uncompressedBuffer, 0, currentUsedBufferLength);
-			currentDeflater.finish();
-			
-			int compressedLength =currentDeflater.deflate(compressedBuffer);
-			if(!currentDeflater.finished()){
-				Deflater noCompresessionDeflater = new Deflater(Deflater.NO_COMPRESSION, true);
-				noCompresessionDeflater.setInput(uncompressedBuffer, 0, currentUsedBufferLength);
+			byte[] asBytes;
+			try{
+				asBytes = encodeBlock(uncompressedBuffer, currentUsedBufferLength, deflater, compressedBuffer, currentCrc32);
+			}finally{
+				//encodeBlock calls finish() so the deflater
+				//must be reset before it can compress the next block
+				deflater.reset();
+			}
+			out.write(asBytes);
+			//out.flush();
+			//update counters
+			compressedBytesWrittenSoFar += asBytes.length;
+			//reset buffer
+			currentUsedBufferLength = 0;
+		}
+	}
+	/**
+	 * Compress the given uncompressed data into a complete
+	 * BGZF block including the header and footer.
+	 * 
+	 * @param uncompressed the uncompressed data.
+	 * @param length the number of bytes in the uncompressed array to encode;
+	 * must be &gt; 0 and &le; {@link #MAX_UNCOMPRESSED_BLOCK_SIZE}.
+	 * @param deflater the {@link Deflater} to use; must be set to 
+	 * no wrap and must either be new or have been reset.
+	 * @param compressedBuffer a temp buffer at least {@link #MAX_COMPRESSED_BLOCK_SIZE}
+	 * long to compress into.
+	 * @param crc32 the {@link CRC32} instance to use to compute the checksum.
+	 * 
+	 * @return a new byte array of the full BGZF block.
+	 * 
+	 * @throws IOException if the data could not be compressed to fit in a block.
+	 */
+	static byte[] encodeBlock(byte[] uncompressed, int length, Deflater deflater, byte[] compressedBuffer, CRC32 crc32) throws IOException{
+		deflater.setInput(uncompressed, 0, length);
+		deflater.finish();
+		
+		int compressedLength =deflater.deflate(compressedBuffer);
+		if(!deflater.finished()){
+			Deflater noCompresessionDeflater = new Deflater(Deflater.NO_COMPRESSION, true);
+			try{
+				noCompresessionDeflater.setInput(uncompressed, 0, length);
 				noCompresessionDeflater.finish();
 				
 				compressedLength =noCompresessionDeflater.deflate(compressedBuffer);
@@ -328,41 +390,42 @@ final class BgzfOutputStream extends OutputStream{
 					//shouldn't happen
 					throw new IOException("could not compress block to fit max size");
 				}
+			}finally{
+				noCompresessionDeflater.end();
 			}
-			currentCrc32.reset();
-			//CRC is the check sum of the UNCOMPRESSED data
-			currentCrc32.update(uncompressedBuffer, 0, currentUsedBufferLength);
-
-			ByteBuffer bgzfBlockBuffer = ByteBuffer.allocate(compressedLength + BGZF_BLOCK_FULL_HEADER_LENGTH);
-			bgzfBlockBuffer.order(ByteOrder.LITTLE_ENDIAN);
-			bgzfBlockBuffer.put(BGZF_BLOCK_HEADER);
-			//spec says write BSIZE -1
-			//I guess to make sure the 
-			//size will always fit in unsigned short.
-			//
-			//since we don't write out empty blocks
-			//in this format subtracting 1 will never make a negative number.
-			bgzfBlockBuffer.putShort((short)(bgzfBlockBuffer.capacity() -1));
-			bgzfBlockBuffer.put(compressedBuffer,0,compressedLength);
-			bgzfBlockBuffer.putInt((int)currentCrc32.getValue());
-			bgzfBlockBuffer.putInt(currentUsedBufferLength);
-			bgzfBlockBuffer.flip();
-			byte[] asBytes = new byte[bgzfBlockBuffer.remaining()];
-			bgzfBlockBuffer.get(asBytes);
-			out.write(asBytes);
-			//out.flush();
-			//update counters
-			compressedBytesWrittenSoFar += asBytes.length;
-			//reset buffer
-			currentUsedBufferLength = 0;
 		}
+		crc32.reset();
+		//CRC is the check sum of the UNCOMPRESSED data
+		crc32.update(uncompressed, 0, length);
+
+		ByteBuffer bgzfBlockBuffer = ByteBuffer.allocate(compressedLength + BGZF_BLOCK_FULL_HEADER_LENGTH);
+		bgzfBlockBuffer.order(ByteOrder.LITTLE_ENDIAN);
+		bgzfBlockBuffer.put(BGZF_BLOCK_HEADER);
+		//spec says write BSIZE -1
+		//I guess to make sure the 
+		//size will always fit in unsigned short.
+		//
+		//since we don't write out empty blocks
+		//in this format subtracting 1 will never make a negative number.
+		bgzfBlockBuffer.putShort((short)(bgzfBlockBuffer.capacity() -1));
+		bgzfBlockBuffer.put(compressedBuffer,0,compressedLength);
+		bgzfBlockBuffer.putInt((int)crc32.getValue());
+		bgzfBlockBuffer.putInt(length);
+		
+		//ByteBuffer.allocate() is backed by an array
+		//of exactly the capacity we need
+		return bgzfBlockBuffer.array();
 	}
 
 	@Override
 	public void close() throws IOException {
-		flush();
-		out.write(EOF_MARKER);
-		out.close();
+		try{
+			flush();
+			out.write(EOF_MARKER);
+		}finally{
+			deflater.end();
+			out.close();
+		}
 	}
 
 	
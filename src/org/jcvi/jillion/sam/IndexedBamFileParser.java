@@ -25,7 +25,8 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Objects;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Predicate;
@@ -35,6 +36,7 @@ import org.jcvi.jillion.internal.sam.SamUtil;
 import org.jcvi.jillion.internal.sam.index.IndexUtil;
 import org.jcvi.jillion.sam.attribute.SamAttributeValidator;
 import org.jcvi.jillion.sam.index.BamIndex;
+import org.jcvi.jillion.sam.index.Chunk;
 import org.jcvi.jillion.sam.index.ReferenceIndex;
 
 class IndexedBamFileParser extends BamFileParser{
@@ -42,7 +44,11 @@ class IndexedBamFileParser extends BamFileParser{
 	private static VirtualFileOffset BEGINING_OF_FILE = new VirtualFileOffset(0L);
 	
 	public IndexedBamFileParser(File bamFile, File baiFile, SamAttributeValidator validator) throws IOException {
-		super(bamFile, validator);
+		this(bamFile, baiFile, validator, 1);
+	}
+	
+	public IndexedBamFileParser(File bamFile, File baiFile, SamAttributeValidator validator, int numberOfDecompressionThreads) throws IOException {
+		super(bamFile, validator, numberOfDecompressionThreads);
 		try(InputStream in = new BufferedInputStream(new FileInputStream(baiFile))){
 			index = IndexUtil.parseIndex(in, this.getHeader());
 		}
@@ -51,7 +57,7 @@ class IndexedBamFileParser extends BamFileParser{
    
 
     @Override
-    protected void _parse(String referenceName, boolean shouldCreateMementos,
+    protected void _parse(String referenceName, SamParserOptions options,
             SamVisitor visitor) throws IOException {
        
 		Objects.requireNonNull(referenceName);
@@ -74,10 +80,10 @@ class IndexedBamFileParser extends BamFileParser{
 		
 		
 		
-		try(BgzfInputStream in = BgzfInputStream.create(bamFile, start)){
+		try(BgzfInputStream in = openBgzfStream(start)){
 			if(BEGINING_OF_FILE.equals(start)){
 				this.parseBamFromBeginning(visitor, 
-				        shouldCreateMementos,
+				        options,
 						recordMatchPredicate,
 						endPredicate, in);
 			}else{
@@ -87,54 +93,94 @@ class IndexedBamFileParser extends BamFileParser{
 						recordMatchPredicate,
 						endPredicate,
 						in,
-						keepParsing, shouldCreateMementos ? new BamCallback(keepParsing) :new MementoLessBamCallback(keepParsing));
+						keepParsing, createCallback(keepParsing, options));
 			}
 		}
 	}
     @Override
     protected void _parse(String referenceName, Range alignmentRange,
-            boolean shouldCreateMementos, SamVisitor visitor)
+            SamParserOptions options, SamVisitor visitor)
             throws IOException {
        
 		Objects.requireNonNull(referenceName);
+		Objects.requireNonNull(alignmentRange);
 		Objects.requireNonNull(visitor);
 		
-		ReferenceIndex refIndex =index.getReferenceIndex(referenceName);
+		Predicate<SamRecord> recordFilter = (record) -> {
+			if(!record.mapped() || !referenceName.equals(record.getReferenceName())){
+				return false;
+			}
+			return record.getAlignmentRange().isSubRangeOf(alignmentRange);
+		};
+		parseChunks(referenceName, Collections.singletonList(alignmentRange), recordFilter, options, visitor);
+	}
+    
+    @Override
+    protected void _parse(String referenceName, List<Range> mergedAlignmentRanges,
+            SamParserOptions options, SamVisitor visitor)
+            throws IOException {
+    	Objects.requireNonNull(referenceName);
+		Objects.requireNonNull(mergedAlignmentRanges);
+		Objects.requireNonNull(visitor);
+		
+		parseChunks(referenceName, mergedAlignmentRanges, 
+				SamUtil.alignsToReference(referenceName, mergedAlignmentRanges), 
+				options, visitor);
+    }
+    /**
+     * Only parse the parts of the BAM file that the index says
+     * may contain alignments that overlap the given ranges.
+     * Each chunk is only read once and the chunks are read in file order
+     * on the calling thread.
+     */
+    private void parseChunks(String referenceName, List<Range> mergedAlignmentRanges, 
+    		Predicate<SamRecord> recordFilter,
+            SamParserOptions options, SamVisitor visitor) throws IOException{
+    	
+    	ReferenceIndex refIndex =index.getReferenceIndex(referenceName);
 		if(refIndex ==null){
 			throw new IllegalArgumentException("no reference with name '"+ referenceName +"'");
 		}
-		//only let things pass that match some bin
-		int[] overlappingBins = SamUtil.getCandidateOverlappingBins(alignmentRange);
-		
-		//TODO can probably do better filtering by specific bins...
-		VirtualFileOffset start = refIndex.getLowestStartOffset();
-		VirtualFileOffset end = refIndex.getHighestEndOffset();
+		List<Chunk> chunks = IndexUtil.getOverlappingChunks(refIndex, mergedAlignmentRanges);
 		
-		Predicate<SamRecord> recordBinFilter = (record) -> {
-			if(!referenceName.equals(record.getReferenceName())){
-				return false;
-			}
+		AtomicBoolean keepParsing = new AtomicBoolean(true);
+		AbstractBamCallback callback = createCallback(keepParsing, options);
 		
-			Range readAlignmentRange = record.getAlignmentRange();
-			int bin = SamUtil.computeBinFor(readAlignmentRange);
-			if(Arrays.binarySearch(overlappingBins, bin) <0){
-				return false;
+		if(!mergedAlignmentRanges.isEmpty()){
+			//the BAM is sorted by coordinate so once we see a record
+			//that starts after the last range we are done
+			long lastEnd = mergedAlignmentRanges.get(mergedAlignmentRanges.size()-1).getEnd();
+			AtomicBoolean pastLastRange = new AtomicBoolean(false);
+			
+			Predicate<SamRecord> filter = record ->{
+				if(record.mapped() && referenceName.equals(record.getReferenceName()) 
+						&& record.getAlignmentRange().getBegin() > lastEnd){
+					pastLastRange.set(true);
+					return false;
+				}
+				return recordFilter.test(record);
+			};
+			
+			for(Chunk chunk : chunks){
+				if(!keepParsing.get() || pastLastRange.get()){
+					break;
+				}
+				VirtualFileOffset chunkEnd = chunk.getEnd();
+				//chunks are usually only a few blocks long so always
+				//inflate on this thread; a parallel stream would start
+				//a new thread pool per chunk and read ahead past the chunk end
+				try(BgzfInputStream in = BgzfInputStream.create(bamFile, chunk.getBegin())){
+					visitBamRecords(visitor, filter, 
+							vfs -> !pastLastRange.get() && vfs.compareTo(chunkEnd) <0,
+							in, keepParsing, callback);
+				}
 			}
-			return readAlignmentRange.isSubRangeOf(alignmentRange);
-		};
-		
-		try(BgzfInputStream in = BgzfInputStream.create(bamFile, start)){
-			//assume anything in this interval matches?
-			AtomicBoolean keepParsing = new AtomicBoolean(true);
-			this.parseBamRecords(visitor, 
-					recordBinFilter,
-					(vfs)-> vfs.compareTo(end) <=0,
-					in,
-					keepParsing,
-					shouldCreateMementos ? new BamCallback(keepParsing) :new MementoLessBamCallback(keepParsing));
 		}
-	}
-
-	
+		if(keepParsing.get()){
+			visitor.visitEnd();
+		}else{
+			visitor.halted();
+		}
+    }
 
 }
@@ -0,0 +1,421 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.sam;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+import org.jcvi.jillion.core.Direction;
+import org.jcvi.jillion.core.Range;
+import org.jcvi.jillion.core.io.IOUtil;
+import org.jcvi.jillion.core.qual.QualitySequence;
+import org.jcvi.jillion.core.residue.nt.NucleotideSequence;
+import org.jcvi.jillion.internal.core.io.OpenAwareInputStream;
+import org.jcvi.jillion.internal.sam.SamUtil;
+import org.jcvi.jillion.sam.attribute.InvalidAttributeException;
+import org.jcvi.jillion.sam.attribute.ReservedSamAttributeKeys;
+import org.jcvi.jillion.sam.attribute.SamAttribute;
+import org.jcvi.jillion.sam.attribute.SamAttributeKey;
+import org.jcvi.jillion.sam.attribute.SamAttributeValidator;
+import org.jcvi.jillion.sam.cigar.Cigar;
+import org.jcvi.jillion.sam.header.SamHeader;
+/**
+ * {@code LazyBamRecord} is a {@link SamRecord}
+ * that is a view of the raw decompressed bytes of a BAM encoded record.
+ * Only the fixed length fields (flags, positions, mapping quality etc)
+ * are decoded up front; the query name, {@link Cigar}, sequence, qualities
+ * and attributes are only decoded the first time they are asked for.
+ * <p>
+ * The bytes are in a buffer that is reused by the parser for the next
+ * record so this view is only valid during the call to 
+ * {@link SamVisitor#visitRecord(org.jcvi.jillion.sam.SamVisitor.SamVisitorCallback, SamRecord, VirtualFileOffset, VirtualFileOffset)}.
+ * Any decoded values that have already been asked for are still available
+ * afterwards, but decoding anything else will throw an {@link IllegalStateException}.
+ * Use {@link #copy()} to get a fully decoded record that can be kept.
+ * </p>
+ * <p>
+ * Attributes are not validated until the record is copied.
+ * </p>
+ * <p>
+ * Since decoding the whole record to compare it would fail once the view
+ * is no longer valid, {@code equals()} and {@code hashCode()} are 
+ * identity based; use {@link #copy()} first to compare records by value.
+ * </p>
+ * @author dkatzel
+ *
+ * @since 5.3
+ */
+final class LazyBamRecord implements SamRecord {
+	/**
+	 * Reusable buffer of the raw bytes of the current record.
+	 * The generation is incremented every time a new record
+	 * is read into the buffer so old views can tell they are
+	 * no longer valid.
+	 */
+	static final class Buffer{
+		private byte[] data = new byte[1024];
+		private int generation;
+		
+		byte[] newRecord(int length){
+			if(data.length < length){
+				data = new byte[Math.max(length, data.length *2)];
+			}
+			generation++;
+			return data;
+		}
+	}
+	
+	private static final int READ_NAME_OFFSET = 32;
+	
+	private final Buffer buffer;
+	private final int generation;
+	
+	private final SamHeader header;
+	private final SamAttributeValidator validator;
+	private final String[] refNames;
+	private final int length;
+	
+	private final int refId, startPosition, nextRefId, nextPosition, observedTemplateLength;
+	private final int readNameLength, numCigarOps, seqLength, flagBits;
+	private final byte mappingQuality;
+	
+	private SamRecordFlags flags;
+	private String queryName;
+	private Cigar cigar;
+	private NucleotideSequence sequence;
+	private QualitySequence qualities;
+	private boolean qualitiesDecoded;
+	private Map<SamAttributeKey, SamAttribute> attributes;
+	private int referenceLength = -1;
+	
+	/**
+	 * Create a new view of the record currently in the buffer.
+	 * @param buffer the buffer containing the record bytes
+	 * (not including the block size).
+	 * @param length the number of bytes in the record.
+	 */
+	LazyBamRecord(SamHeader header, SamAttributeValidator validator, String[] refNames, Buffer buffer, int length){
+		this.header = header;
+		this.validator = validator;
+		this.refNames = refNames;
+		this.buffer = buffer;
+		this.generation = buffer.generation;
+		this.length = length;
+		
+		byte[] data = buffer.data;
+		refId = getInt(data, 0);
+		//NOTE bam is 0-based while
+		//SAM is 1-based
+		startPosition = getInt(data, 4) +1;
+		int binMqReadLength = getInt(data, 8);
+		mappingQuality = (byte)((binMqReadLength>>8) & 0xFF);
+		readNameLength = binMqReadLength & 0xFF;
+		int flagsNumCigarOps = getInt(data, 12);
+		flagBits = (flagsNumCigarOps>>>16) & 0xFFFF;
+		numCigarOps = flagsNumCigarOps & 0xFFFF;
+		seqLength = getInt(data, 16);
+		nextRefId = getInt(data, 20);
+		nextPosition = getInt(data, 24) +1;
+		observedTemplateLength = getInt(data, 28);
+	}
+	
+	private static int getInt(byte[] data, int offset){
+		return (data[offset] & 0xFF)
+				| (data[offset+1] & 0xFF) <<8
+				| (data[offset+2] & 0xFF) <<16
+				| (data[offset+3] & 0xFF) <<24;
+	}
+	
+	private byte[] getValidData(){
+		if(buffer.generation != generation){
+			throw new IllegalStateException("record view is no longer valid, use copy() to keep a record after it has been visited");
+		}
+		return buffer.data;
+	}
+	
+	private int getCigarOffset(){
+		return READ_NAME_OFFSET + readNameLength;
+	}
+	
+	private int getSequenceOffset(){
+		return getCigarOffset() + 4*numCigarOps;
+	}
+	
+	private int getQualitiesOffset(){
+		return getSequenceOffset() + (seqLength+1)/2;
+	}
+	
+	private int getAttributesOffset(){
+		return getQualitiesOffset() + seqLength;
+	}
+	
+	private OpenAwareInputStream openStream(int offset, int end){
+		return new OpenAwareInputStream(new ByteArrayInputStream(getValidData(), offset, end - offset));
+	}
+	
+	@Override
+	public SamRecord copy(){
+		SamRecordBuilder builder = new SamRecordBuilder(header, validator)
+										.setQueryName(getQueryName())
+										.setFlags(flagBits)
+										.setStartPosition(startPosition)
+										.setMappingQuality(mappingQuality)
+										.setNextPosition(nextPosition)
+										.setObservedTemplateLength(observedTemplateLength)
+										.setCigar(getCigar())
+										.setSequence(getSequence())
+										.setQualities(getQualities());
+		if(refId >=0){
+			builder.setReferenceName(refNames[refId]);
+		}
+		if(nextRefId >=0){
+			builder.setNextReferenceName(refNames[nextRefId]);
+		}
+		for(SamAttribute attribute : getAttributes()){
+			try {
+				builder.addAttribute(attribute);
+			} catch (InvalidAttributeException e) {
+				throw new IllegalStateException("invalid attribute " + attribute, e);
+			}
+		}
+		return builder.build();
+	}
+	
+	@Override
+	public boolean isPrimary() {
+		SamRecordFlags flags = getFlags();
+		return !( flags.contains(SamRecordFlag.SECONDARY_ALIGNMENT)
+				|| flags.contains(SamRecordFlag.SUPPLEMENTARY_ALIGNMENT));
+	}
+
+	@Override
+	public boolean useForAnalysis() {
+		return !getFlags().contains(SamRecordFlag.SECONDARY_ALIGNMENT);
+	}
+
+	@Override
+	public String getQueryName() {
+		if(queryName ==null && readNameLength >0){
+			//don't include \0 at end of string
+			queryName = new String(getValidData(), READ_NAME_OFFSET, readNameLength -1, IOUtil.UTF_8);
+		}
+		return queryName;
+	}
+
+	@Override
+	public String getReferenceName() {
+		return refId >=0 ? refNames[refId] : null;
+	}
+
+	@Override
+	public String getNextName() {
+		return nextRefId >=0 ? refNames[nextRefId] : null;
+	}
+
+	@Override
+	public SamRecordFlags getFlags() {
+		if(flags ==null){
+			flags = SamRecordFlags.valueOf(flagBits);
+		}
+		return flags;
+	}
+
+	@Override
+	public int getStartPosition() {
+		return startPosition;
+	}
+
+	@Override
+	public int getNextOffset() {
+		return nextPosition;
+	}
+
+	@Override
+	public byte getMappingQuality() {
+		return mappingQuality;
+	}
+
+	@Override
+	public Cigar getCigar() {
+		if(cigar ==null && numCigarOps >0){
+			try {
+				cigar = BamFileParser.parseCigar(openStream(getCigarOffset(), getSequenceOffset()), numCigarOps);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		return cigar;
+	}
+
+	@Override
+	public NucleotideSequence getSequence() {
+		if(sequence ==null && seqLength >0){
+			try {
+				sequence = SamUtil.readBamEncodedSequence(openStream(getSequenceOffset(), getQualitiesOffset()), seqLength);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		return sequence;
+	}
+
+	@Override
+	public QualitySequence getQualities() {
+		if(!qualitiesDecoded){
+			if(seqLength >0){
+				try {
+					qualities = BamFileParser.readQualities(openStream(getQualitiesOffset(), getAttributesOffset()), seqLength);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}
+			qualitiesDecoded = true;
+		}
+		return qualities;
+	}
+
+	@Override
+	public int getObservedTemplateLength() {
+		return observedTemplateLength;
+	}
+	
+	private Map<SamAttributeKey, SamAttribute> getAttributeMap(){
+		if(attributes ==null){
+			Map<SamAttributeKey, SamAttribute> map = new LinkedHashMap<>();
+			int offset = getAttributesOffset();
+			if(offset < length){
+				OpenAwareInputStream in = openStream(offset, length);
+				try{
+					while(in.isOpen()){
+						SamAttribute attribute = BamFileParser.parseAttribute(in);
+						map.put(attribute.getKey(), attribute);
+					}
+				}catch(IOException e){
+					throw new UncheckedIOException(e);
+				}
+			}
+			attributes = Collections.unmodifiableMap(map);
+		}
+		return attributes;
+	}
+
+	@Override
+	public Collection<SamAttribute> getAttributes() {
+		return getAttributeMap().values();
+	}
+	
+	@Override
+	public boolean hasAttribute(SamAttributeKey key) {
+		Objects.requireNonNull(key, "key can not be null");
+		return getAttributeMap().containsKey(key);
+	}
+
+	@Override
+	public SamAttribute getAttribute(SamAttributeKey key) {
+		Objects.requireNonNull(key);
+		return getAttributeMap().get(key);
+	}
+
+	@Override
+	public boolean hasAttribute(ReservedSamAttributeKeys key) {
+		Objects.requireNonNull(key, "key can not be null");
+		return hasAttribute(key.getKey());
+	}
+
+	@Override
+	public SamAttribute getAttribute(ReservedSamAttributeKeys key) {
+		Objects.requireNonNull(key);
+		return getAttribute(key.getKey());
+	}
+
+	@Override
+	public boolean mapped() {
+		return (flagBits & SamRecordFlag.READ_UNMAPPED.getBitFlags()) ==0;
+	}
+
+	@Override
+	public Direction getDirection() {
+		return (flagBits & SamRecordFlag.REVERSE_COMPLEMENTED.getBitFlags()) ==0 ? Direction.FORWARD : Direction.REVERSE;
+	}
+	/**
+	 * Computes the alignment range directly from the
+	 * encoded cigar operations without creating a {@link Cigar}.
+	 * 
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Range getAlignmentRange() {
+		if(!mapped()){
+			return null;
+		}
+		if(referenceLength <0){
+			if(cigar !=null){
+				referenceLength = cigar.getNumberOfReferenceBasesAligned();
+			}else{
+				referenceLength = computeReferenceLength();
+			}
+		}
+		return new Range.Builder(referenceLength)
+						.shift(startPosition -1)
+						.build();
+	}
+	
+	private int computeReferenceLength(){
+		byte[] data = getValidData();
+		int offset = getCigarOffset();
+		int length=0;
+		for(int i=0; i< numCigarOps; i++, offset+=4){
+			int bits = getInt(data, offset);
+			switch(bits & 0xF){
+				//M, D, N, = and X consume the reference
+				case 0:
+				case 2:
+				case 3:
+				case 7:
+				case 8:
+					length += bits>>>4;
+					break;
+				default:
+					//do not increase length
+			}
+		}
+		return length;
+	}
+	/**
+	 * Returns a description of the fixed length fields
+	 * which is safe to call even after this view is no longer valid.
+	 */
+	@Override
+	public String toString() {
+		return "LazyBamRecord [queryName=" + (queryName ==null && buffer.generation == generation ? getQueryName() : queryName)
+				+ ", flags=" + flagBits
+				+ ", referenceName=" + (refId <0 ? null : refNames[refId])
+				+ ", startPosition=" + startPosition
+				+ ", mappingQuality=" + mappingQuality + "]";
+	}
+
+}
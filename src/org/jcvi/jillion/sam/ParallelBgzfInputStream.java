@@ -0,0 +1,393 @@
+/*******************************************************************************
+ * Jillion development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ *
+ *          http://www.gnu.org/copyleft/lesser.html
+ *
+ *
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ *
+ * Information about Jillion can be found on its homepage
+ *
+ *         http://jillion.sourceforge.net
+ *
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.sam;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+import org.jcvi.jillion.core.io.IOUtil;
+/**
+ * {@code ParallelBgzfInputStream} is a {@link BgzfInputStream}
+ * that reads ahead several compressed BGZF blocks
+ * and inflates them on a pool of worker threads
+ * while the calling thread consumes the already inflated blocks
+ * in file order.
+ * <p>
+ * Since each BGZF block is an independent GZIP member,
+ * blocks can be decompressed in any order. The compressed
+ * block boundaries are still tracked on the calling thread
+ * so {@link #getCurrentVirutalFileOffset()} returns the same
+ * values as the single threaded {@link BgzfInputStream}.
+ * </p>
+ *
+ * @author dkatzel
+ *
+ * @since 5.3
+ */
+class ParallelBgzfInputStream extends BgzfInputStream{
+	/**
+	 * The BGZF block header up to and including the XLEN field.
+	 */
+	private static final int FIXED_HEADER_LENGTH = 12;
+
+	private static final int FOOTER_LENGTH = 8;
+
+	private static final int FHCRC      = 2;
+	private static final int FEXTRA     = 4;
+	private static final int FNAME      = 8;
+	private static final int FCOMMENT   = 16;
+	/**
+	 * Max number of uncompressed bytes into a block
+	 * that can be encoded in a {@link VirtualFileOffset}.
+	 */
+	private static final int MAX_UNCOMPRESSED_OFFSET = 0xFFFF;
+
+	private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+
+	private final ExecutorService executor;
+
+	private final Queue<Inflater> idleInflaters = new ConcurrentLinkedQueue<>();
+
+	private final Deque<Future<InflatedBlock>> pending = new ArrayDeque<>();
+
+	private final int maxBlocksToReadAhead;
+
+	private long nextCompressedBlockOffset;
+
+	private boolean noMoreCompressedBlocks = false;
+
+	private InflatedBlock currentBlock;
+
+	private int currentOffsetInBlock;
+
+	private volatile boolean closed = false;
+
+	/**
+	 * Create a new {@link ParallelBgzfInputStream} from the beginning
+	 * of the given BAM file.
+	 *
+	 * @param bamFile the BAM file to parse.
+	 * @param numberOfThreads the number of threads used to inflate blocks;
+	 * must be &ge; 1.
+	 *
+	 * @throws IOException if there is a problem opening the file.
+	 * @throws IllegalArgumentException if numberOfThreads &lt; 1.
+	 */
+	ParallelBgzfInputStream(File bamFile, int numberOfThreads) throws IOException{
+		this(new BufferedInputStream(new FileInputStream(bamFile), 0xFFFF), 0L, numberOfThreads);
+	}
+	/**
+	 * Create a new {@link ParallelBgzfInputStream} from the given
+	 * {@link InputStream} which has already been positioned at the beginning
+	 * of a BGZF block.
+	 *
+	 * @param in the {@link InputStream} to read the compressed blocks from.
+	 * @param compressedOffset the number of compressed bytes into the BAM file
+	 * where the input stream is currently positioned.  This is used
+	 * to compute {@link VirtualFileOffset}s.
+	 * @param numberOfThreads the number of threads used to inflate blocks;
+	 * must be &ge; 1.
+	 *
+	 * @throws IllegalArgumentException if numberOfThreads &lt; 1.
+	 */
+	ParallelBgzfInputStream(InputStream in, long compressedOffset, int numberOfThreads){
+		super(in);
+		if(numberOfThreads <1){
+			throw new IllegalArgumentException("number of threads must be >= 1 : " + numberOfThreads);
+		}
+		this.nextCompressedBlockOffset = compressedOffset;
+		//keep enough blocks in flight so every thread
+		//has something to do while the consumer reads the current block
+		this.maxBlocksToReadAhead = numberOfThreads *2;
+		this.executor = Executors.newFixedThreadPool(numberOfThreads, r->{
+			Thread t = new Thread(r, "bgzf-inflater-" + THREAD_COUNTER.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		});
+	}
+
+	@Override
+	public int read(byte[] buf, int off, int len) throws IOException {
+		assertNotClosed();
+		if(!hasMoreData()){
+			return -1;
+		}
+		if(len ==0){
+			return 0;
+		}
+		//reads never cross block boundaries
+		//to keep the virtual file offsets
+		//the same as our parent class
+		while(currentBlock ==null || currentOffsetInBlock == currentBlock.data.length){
+			if(!advanceToNextBlock()){
+				eof = true;
+				return -1;
+			}
+		}
+		int bytesToCopy = Math.min(len, currentBlock.data.length - currentOffsetInBlock);
+		System.arraycopy(currentBlock.data, currentOffsetInBlock, buf, off, bytesToCopy);
+		currentOffsetInBlock +=bytesToCopy;
+		return bytesToCopy;
+	}
+
+	@Override
+	VirtualFileOffset getCurrentVirutalFileOffset() {
+		if(currentBlock ==null){
+			return VirtualFileOffset.create(nextCompressedBlockOffset, 0);
+		}
+		if(currentOffsetInBlock > MAX_UNCOMPRESSED_OFFSET){
+			//this will cause an overflow in the encoded virtual file offset
+			//so return the beginning of the next block instead
+			return VirtualFileOffset.create(currentBlock.compressedOffset + currentBlock.compressedLength, 0);
+		}
+		return VirtualFileOffset.create(currentBlock.compressedOffset, currentOffsetInBlock);
+	}
+
+	private boolean advanceToNextBlock() throws IOException{
+		fillPipeline();
+		Future<InflatedBlock> next = pending.poll();
+		if(next ==null){
+			currentBlock = null;
+			return false;
+		}
+		try {
+			currentBlock = next.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("interrupted while waiting for BGZF block to be inflated");
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if(cause instanceof IOException){
+				throw (IOException) cause;
+			}
+			throw new IOException("error inflating BGZF block", cause);
+		}
+		currentOffsetInBlock = 0;
+		//submit another block now that there is room
+		fillPipeline();
+		return true;
+	}
+
+	private void fillPipeline() throws IOException{
+		while(!noMoreCompressedBlocks && pending.size() < maxBlocksToReadAhead){
+			CompressedBlock block = readNextCompressedBlock();
+			if(block ==null){
+				noMoreCompressedBlocks = true;
+			}else{
+				pending.add(executor.submit(()-> inflate(block)));
+			}
+		}
+	}
+	/**
+	 * Read the entire next compressed block
+	 * from the wrapped stream without
+	 * inflating it.
+	 * @return a new {@link CompressedBlock} or {@code null}
+	 * if there are no more blocks.
+	 * @throws IOException if there is a problem reading the stream
+	 * or the block is not a valid BGZF block.
+	 */
+	private CompressedBlock readNextCompressedBlock() throws IOException{
+		int firstByte = in.read();
+		if(firstByte == -1){
+			return null;
+		}
+		byte[] header = new byte[FIXED_HEADER_LENGTH];
+		header[0] = (byte) firstByte;
+		IOUtil.blockingRead(in, header, 1, FIXED_HEADER_LENGTH -1);
+
+		if((header[0] & 0xFF) != 0x1f || (header[1] & 0xFF) != 0x8b){
+			throw new ZipException("Not in GZIP format");
+		}
+		if(header[2] != 8){
+			throw new ZipException("Unsupported compression method");
+		}
+		int flags = header[3] & 0xFF;
+		if((flags & FEXTRA) != FEXTRA){
+			throw new IOException("invalid BGZF file, F.EXTRA not set");
+		}
+		int extraLength = readLittleEndianShort(header, 10);
+		if(extraLength !=6){
+			throw new IOException("invalid BGZF file, F.EXTRA not correct length");
+		}
+		byte[] extra = new byte[extraLength];
+		IOUtil.blockingRead(in, extra);
+		if(extra[0] != 'B' || extra[1] != 'C'){
+			throw new IOException("invalid BGZF file, F.EXTRA Subfield IDs are wrong");
+		}
+		if(readLittleEndianShort(extra, 2) != 2){
+			throw new IOException("invalid BGZF file, F.EXTRA payload length not 2");
+		}
+		int totalBlockSize = readLittleEndianShort(extra, 4) +1;
+
+		byte[] rest = new byte[totalBlockSize - FIXED_HEADER_LENGTH - extraLength];
+		IOUtil.blockingRead(in, rest);
+
+		CompressedBlock block = new CompressedBlock(nextCompressedBlockOffset, totalBlockSize, flags, rest);
+		nextCompressedBlockOffset += totalBlockSize;
+		return block;
+	}
+
+	private InflatedBlock inflate(CompressedBlock block) throws IOException{
+		byte[] bytes = block.bytesAfterExtraFields;
+		int offset = 0;
+		//skip optional fields (not used by BGZF but allowed by GZIP)
+		if((block.flags & FNAME) == FNAME){
+			while(bytes[offset++] !=0){
+				//skip
+			}
+		}
+		if((block.flags & FCOMMENT) == FCOMMENT){
+			while(bytes[offset++] !=0){
+				//skip
+			}
+		}
+		if((block.flags & FHCRC) == FHCRC){
+			offset+=2;
+		}
+		int footerOffset = bytes.length - FOOTER_LENGTH;
+		long expectedCrc = readLittleEndianInt(bytes, footerOffset);
+		int expectedSize = (int) readLittleEndianInt(bytes, footerOffset +4);
+
+		byte[] data = new byte[expectedSize];
+		Inflater inflater = idleInflaters.poll();
+		if(inflater ==null){
+			inflater = new Inflater(true);
+		}
+		try{
+			inflater.setInput(bytes, offset, footerOffset - offset);
+			int inflated=0;
+			while(inflated < expectedSize){
+				int n = inflater.inflate(data, inflated, expectedSize - inflated);
+				if(n ==0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())){
+					break;
+				}
+				inflated +=n;
+			}
+			if(inflated != expectedSize){
+				throw new ZipException("invalid ISIZE");
+			}
+		} catch (DataFormatException e) {
+			String s = e.getMessage();
+			throw new IOException(s == null ? "Invalid ZLIB data format" : s, e);
+		}finally{
+			returnInflater(inflater);
+		}
+		CRC32 crc = new CRC32();
+		crc.update(data);
+		if(crc.getValue() != expectedCrc){
+			throw new ZipException("invalid CRC: expected " + expectedCrc + " actual " + crc.getValue());
+		}
+		return new InflatedBlock(block.compressedOffset, block.compressedLength, data);
+	}
+
+	/**
+	 * Return the inflater to the idle pool so it can be reused
+	 * or release it if the stream has been closed.
+	 * This is synchronized with {@link #close()} so an inflater
+	 * can never be added to the pool after the pool has been drained.
+	 */
+	private void returnInflater(Inflater inflater){
+		synchronized(idleInflaters){
+			if(closed){
+				inflater.end();
+			}else{
+				inflater.reset();
+				idleInflaters.add(inflater);
+			}
+		}
+	}
+
+	private static int readLittleEndianShort(byte[] bytes, int offset){
+		return (bytes[offset] & 0xFF) | (bytes[offset+1] & 0xFF) <<8;
+	}
+
+	private static long readLittleEndianInt(byte[] bytes, int offset){
+		return ((long) readLittleEndianShort(bytes, offset+2)) <<16 | readLittleEndianShort(bytes, offset);
+	}
+
+	@Override
+	public void close() throws IOException {
+		synchronized(idleInflaters){
+			if(closed){
+				return;
+			}
+			closed = true;
+		}
+		try{
+			executor.shutdownNow();
+			pending.clear();
+			currentBlock = null;
+			synchronized(idleInflaters){
+				Inflater inflater;
+				while((inflater = idleInflaters.poll()) !=null){
+					inflater.end();
+				}
+			}
+		}finally{
+			super.close();
+		}
+	}
+
+	private static final class CompressedBlock{
+		private final long compressedOffset;
+		private final int compressedLength;
+		private final int flags;
+		private final byte[] bytesAfterExtraFields;
+
+		CompressedBlock(long compressedOffset, int compressedLength,
+				int flags, byte[] bytesAfterExtraFields) {
+			this.compressedOffset = compressedOffset;
+			this.compressedLength = compressedLength;
+			this.flags = flags;
+			this.bytesAfterExtraFields = bytesAfterExtraFields;
+		}
+	}
+
+	private static final class InflatedBlock{
+		private final long compressedOffset;
+		private final int compressedLength;
+		private final byte[] data;
+
+		InflatedBlock(long compressedOffset, int compressedLength, byte[] data) {
+			this.compressedOffset = compressedOffset;
+			this.compressedLength = compressedLength;
+			this.data = data;
+		}
+	}
+}
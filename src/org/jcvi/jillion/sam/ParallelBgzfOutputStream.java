@@ -0,0 +1,363 @@
+/*******************************************************************************
+ * Jillion development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ *
+ *          http://www.gnu.org/copyleft/lesser.html
+ *
+ *
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ *
+ * Information about Jillion can be found on its homepage
+ *
+ *         http://jillion.sourceforge.net
+ *
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.sam;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import org.jcvi.jillion.core.io.IOUtil;
+import org.jcvi.jillion.internal.sam.IndexerCallback;
+/**
+ * {@code ParallelBgzfOutputStream} is an {@link OutputStream}
+ * that writes the same BGZF encoded data as {@link BgzfOutputStream}
+ * but compresses the blocks concurrently on a pool of worker threads.
+ * The compressed blocks are always written out in order.
+ * <p>
+ * Since the compressed size of a block isn't known
+ * until it has been compressed, the {@link VirtualFileOffset}s
+ * given to the {@link IndexerCallback} can not be computed
+ * when the data is written.  Instead the callbacks are
+ * delayed until all the blocks they span have been written out.
+ * The callbacks are still called in order, on the thread
+ * that is writing to this stream.
+ * </p>
+ * <p>
+ * NOT THREAD SAFE
+ * </p>
+ * @author dkatzel
+ *
+ * @since 5.3
+ */
+final class ParallelBgzfOutputStream extends OutputStream{
+
+	private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+
+	private final OutputStream out;
+
+	private final IndexerCallback callback;
+
+	private final ExecutorService executor;
+
+	private final Queue<Deflater> idleDeflaters = new ConcurrentLinkedQueue<>();
+	/**
+	 * Blocks that have been submitted to be compressed
+	 * but not yet written out, in file order.
+	 */
+	private final Deque<Block> blocksInFlight = new ArrayDeque<>();
+	/**
+	 * Callbacks that can not be called yet because
+	 * we don't know the compressed offsets of the blocks
+	 * they refer to.
+	 */
+	private final Deque<PendingCallback> pendingCallbacks = new ArrayDeque<>();
+
+	private final int maxBlocksInFlight;
+
+	private final byte[] singleByteArray = new byte[1];
+
+	private Block currentBlock;
+
+	private long compressedBytesWrittenSoFar=0;
+
+	private volatile boolean closed = false;
+
+	/**
+	 * Create a new {@link ParallelBgzfOutputStream}
+	 * that will write BGZF encoded data to the given
+	 * file.
+	 * @param outputBam the {@link File} to write to;
+	 * can not be null.  If the file, or any parent directories
+	 * do not exist, then they will be created.
+	 * @param callback the {@link IndexerCallback} to call back to
+	 * on during when writing to this stream;
+	 * if {@code null} then no callbacks will be called.
+	 * @param numberOfThreads the number of threads to use to compress blocks;
+	 * must be &ge; 1.
+	 *
+	 * @throws NullPointerException if out is null.
+	 * @throws IOException if there is a problem creating the output file.
+	 * @throws IllegalArgumentException if numberOfThreads &lt; 1.
+	 */
+	ParallelBgzfOutputStream(File outputBam, IndexerCallback callback, int numberOfThreads) throws IOException {
+		if(outputBam ==null){
+			throw new NullPointerException("output can not be null");
+		}
+		if(numberOfThreads <1){
+			throw new IllegalArgumentException("number of threads must be >= 1 : " + numberOfThreads);
+		}
+		IOUtil.mkdirs(outputBam.getParentFile());
+		this.out = new BufferedOutputStream(new FileOutputStream(outputBam), BgzfOutputStream.MAX_COMPRESSED_BLOCK_SIZE);
+		this.callback = callback;
+		//keep enough blocks in flight so every thread
+		//has something to do while we fill the next block
+		this.maxBlocksInFlight = numberOfThreads *2;
+		this.executor = Executors.newFixedThreadPool(numberOfThreads, r->{
+			Thread t = new Thread(r, "bgzf-deflater-" + THREAD_COUNTER.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		});
+		currentBlock = new Block();
+		//first block starts at the beginning of the file
+		currentBlock.compressedOffset = 0L;
+	}
+
+	@SuppressWarnings("PMD.SingularField")
+	@Override
+	public void write(int b) throws IOException {
+		singleByteArray[0] = (byte)b;
+		handleWrite(singleByteArray, 0, 1);
+	}
+
+	@Override
+	public void write(byte[] b) throws IOException {
+		handleWrite(b, 0, b.length);
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		handleWrite(b, off, len);
+	}
+
+	private void handleWrite(byte[] b, int off, int bytesToWriteLength) throws IOException{
+		if(closed){
+			throw new IOException("stream is closed");
+		}
+		if(bytesToWriteLength <0){
+			//follow OutputStream spec and throw Exception
+			throw new IndexOutOfBoundsException("length can not be negative : "+ bytesToWriteLength);
+		}
+		if(callback ==null){
+			handleWriteBody(b, off, bytesToWriteLength);
+		}else{
+			Block startBlock = currentBlock;
+			int startOffset = currentBlock.length;
+
+			handleWriteBody(b, off, bytesToWriteLength);
+
+			pendingCallbacks.add(new PendingCallback(callback.bindToCurrentState(),
+					startBlock, startOffset,
+					currentBlock, currentBlock.length));
+
+			callResolvedCallbacks();
+		}
+	}
+
+	private void handleWriteBody(byte[] b, int off, int bytesToWriteLength) throws IOException{
+		int currentOffset = off;
+		int bytesLeftToWrite = bytesToWriteLength;
+		while(bytesLeftToWrite > 0){
+			int bytesFreeInBuffer = BgzfOutputStream.MAX_UNCOMPRESSED_BLOCK_SIZE - currentBlock.length;
+			int bytesToWriteIntoCurrentBuffer = Math.min(bytesLeftToWrite,bytesFreeInBuffer);
+
+			System.arraycopy(b, currentOffset, currentBlock.uncompressed, currentBlock.length, bytesToWriteIntoCurrentBuffer);
+
+			currentBlock.length += bytesToWriteIntoCurrentBuffer;
+			currentOffset += bytesToWriteIntoCurrentBuffer;
+			bytesLeftToWrite -= bytesToWriteIntoCurrentBuffer;
+
+			if(currentBlock.length == BgzfOutputStream.MAX_UNCOMPRESSED_BLOCK_SIZE){
+				submitCurrentBlock();
+			}
+		}
+	}
+
+	private void submitCurrentBlock() throws IOException{
+		Block block = currentBlock;
+		block.compressed = executor.submit(()-> compress(block));
+		blocksInFlight.add(block);
+		currentBlock = new Block();
+		//only wait for compression to finish if we have too many
+		//blocks in flight
+		writeCompressedBlocks(blocksInFlight.size() >= maxBlocksInFlight);
+	}
+
+	private byte[] compress(Block block) throws IOException{
+		Deflater deflater = idleDeflaters.poll();
+		if(deflater ==null){
+			deflater = new Deflater(BgzfOutputStream.GZIP_COMPRESSION_LEVEL, true);
+		}
+		try{
+			return BgzfOutputStream.encodeBlock(block.uncompressed, block.length, deflater,
+					new byte[BgzfOutputStream.MAX_COMPRESSED_BLOCK_SIZE], new CRC32());
+		}finally{
+			returnDeflater(deflater);
+		}
+	}
+	/**
+	 * Return the deflater to the idle pool so it can be reused
+	 * or release it if the stream has been closed.
+	 * This is synchronized with {@link #close()} so a deflater
+	 * can never be added to the pool after the pool has been drained.
+	 */
+	private void returnDeflater(Deflater deflater){
+		synchronized(idleDeflaters){
+			if(closed){
+				deflater.end();
+			}else{
+				//reset so we can reuse the deflater for the next block
+				deflater.reset();
+				idleDeflaters.add(deflater);
+			}
+		}
+	}
+	/**
+	 * Write out any compressed blocks in order.
+	 * @param waitForOldest if {@code true} then block
+	 * until at least the oldest block in flight has been written;
+	 * otherwise only write the blocks that have already finished compressing.
+	 * @throws IOException if there is a problem compressing or writing the data.
+	 */
+	private void writeCompressedBlocks(boolean waitForOldest) throws IOException{
+		boolean mustWait = waitForOldest;
+		while(!blocksInFlight.isEmpty()){
+			Block oldest = blocksInFlight.peek();
+			if(!mustWait && !oldest.compressed.isDone()){
+				break;
+			}
+			byte[] bytes = getCompressedBytes(oldest);
+			out.write(bytes);
+			compressedBytesWrittenSoFar += bytes.length;
+			blocksInFlight.poll();
+			//now we know where the next block starts
+			Block next = blocksInFlight.isEmpty()? currentBlock : blocksInFlight.peek();
+			next.compressedOffset = compressedBytesWrittenSoFar;
+
+			mustWait = false;
+		}
+		callResolvedCallbacks();
+	}
+
+	private byte[] getCompressedBytes(Block block) throws IOException{
+		try {
+			return block.compressed.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("interrupted while waiting for BGZF block to be compressed");
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if(cause instanceof IOException){
+				throw (IOException) cause;
+			}
+			throw new IOException("error compressing BGZF block", cause);
+		}
+	}
+
+	private void callResolvedCallbacks(){
+		while(!pendingCallbacks.isEmpty() && pendingCallbacks.peek().isResolved()){
+			pendingCallbacks.poll().call();
+		}
+	}
+	/**
+	 * Compress any buffered data into a block
+	 * and write out all blocks.
+	 * <strong>This method should not be called directly.</strong>
+	 */
+	@Override
+	public void flush() throws IOException {
+		if(currentBlock.length >0){
+			submitCurrentBlock();
+		}
+		while(!blocksInFlight.isEmpty()){
+			writeCompressedBlocks(true);
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		if(closed){
+			return;
+		}
+		try{
+			flush();
+			out.write(BgzfOutputStream.EOF_MARKER);
+		}finally{
+			synchronized(idleDeflaters){
+				closed = true;
+			}
+			try{
+				executor.shutdownNow();
+				synchronized(idleDeflaters){
+					Deflater deflater;
+					while((deflater = idleDeflaters.poll()) !=null){
+						deflater.end();
+					}
+				}
+			}finally{
+				out.close();
+			}
+		}
+	}
+
+	private static final class Block{
+		private final byte[] uncompressed = new byte[BgzfOutputStream.MAX_UNCOMPRESSED_BLOCK_SIZE];
+		private int length;
+		/**
+		 * The offset into the compressed file
+		 * where this block starts; or -1 if not known yet.
+		 */
+		private long compressedOffset = -1;
+
+		private Future<byte[]> compressed;
+	}
+
+	private static final class PendingCallback{
+		private final IndexerCallback callback;
+		private final Block startBlock, endBlock;
+		private final int startOffset, endOffset;
+
+		PendingCallback(IndexerCallback callback, Block startBlock,
+				int startOffset, Block endBlock, int endOffset) {
+			this.callback = callback;
+			this.startBlock = startBlock;
+			this.startOffset = startOffset;
+			this.endBlock = endBlock;
+			this.endOffset = endOffset;
+		}
+		/**
+		 * The end block is never before the start block
+		 * so if the end block's offset is known, the start is too.
+		 * @return {@code true} if the offsets are known.
+		 */
+		boolean isResolved(){
+			return endBlock.compressedOffset >=0;
+		}
+
+		void call(){
+			callback.encodedIndex(VirtualFileOffset.create(startBlock.compressedOffset, startOffset),
+					VirtualFileOffset.create(endBlock.compressedOffset, endOffset));
+		}
+	}
+}
@@ -73,13 +73,20 @@ class PresortedBamFileWriter implements SamWriter{
     public PresortedBamFileWriter(SamHeader header, File outputFile,
             BamIndexer optionalIndexer, SamAttributeValidator attributeValidator, boolean includeIndexMetaData)
             throws IOException {
+        this(header, outputFile, optionalIndexer, attributeValidator, includeIndexMetaData, 1);
+    }
+    
+    public PresortedBamFileWriter(SamHeader header, File outputFile,
+            BamIndexer optionalIndexer, SamAttributeValidator attributeValidator, boolean includeIndexMetaData,
+            int numberOfCompressionThreads)
+            throws IOException {
         this.header = header;
         this.bamFile = outputFile;
         this.attributeValidator = attributeValidator;
         this.optionalIndexer = optionalIndexer;
         this.includeIndexMetaData = includeIndexMetaData;
         
-        out = new BgzfOutputStream(bamFile, optionalIndexer);
+        out = BgzfOutputStream.create(bamFile, optionalIndexer, numberOfCompressionThreads);
         int i = 0;
         for (SamReferenceSequence refSeq : header.getReferenceSequences()) {
             refSeqIndexMap.put(refSeq.getName(), Integer.valueOf(i));
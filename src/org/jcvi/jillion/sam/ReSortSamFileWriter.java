@@ -22,19 +22,22 @@ package org.jcvi.jillion.sam;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.jcvi.jillion.core.io.IOUtil;
-import org.jcvi.jillion.core.util.iter.IteratorUtil;
-import org.jcvi.jillion.core.util.iter.PeekableStreamingIterator;
 import org.jcvi.jillion.core.util.iter.StreamingIterator;
 import org.jcvi.jillion.internal.core.util.iter.AbstractBlockingStreamingIterator;
+import org.jcvi.jillion.internal.core.util.iter.MergedSortedRecordIterator;
 import org.jcvi.jillion.internal.sam.index.BamIndexer;
 import org.jcvi.jillion.sam.attribute.SamAttributeValidator;
 import org.jcvi.jillion.sam.header.SamHeader;
@@ -49,17 +52,24 @@ import org.jcvi.jillion.sam.header.SamHeader;
  * <p>
  * Algorithm: Keep an array of records in memory
  * (size of array specified by user).  When we
- * have filled the array, sort the in memory records
- * and write out a SAM/BAM file to a temp file and
- * clear the in memory array to make room for more
- * records.
+ * have filled the array, hand it off to a background thread
+ * which sorts the records and writes them out as a SAM/BAM temp file
+ * while a second array accepts more records.  If the 
+ * second array fills up before the background thread finishes,
+ * then we block until the previous temp file has been written
+ * so at most 2 arrays worth of records are in memory at any time.
+ * </p>
+ * <p>
  * When {@link SamWriter#close()} is called,
  * write the combined sorted
  * records to the specified output file.
  * Since 
  * we know each temp file and the in memory array are 
- * each sorted, we can use a merge sort like algorithm
- * to combine the records into one giant sorted list. 
+ * each sorted, we can use a k-way merge
+ * to combine the records into one giant sorted list.
+ * If there are more temp files than we are allowed to have open at once,
+ * then groups of temp files are first merged into larger temp files
+ * until the number of temp files is small enough.
  * </p>
  * @author dkatzel
  *
@@ -80,7 +90,20 @@ class ReSortSamFileWriter implements SamWriter {
 	private final Encoding encoding;
 	private final BamIndexer indexer;
 	private final boolean includeIndexMetaData;
-	
+	private final int numberOfCompressionThreads;
+	private final int maxOpenTempFiles;
+	/**
+	 * Single background thread that sorts
+	 * and writes out temp files.
+	 */
+	private final ExecutorService spillExecutor;
+	/**
+	 * The temp file currently being written
+	 * in the background; the future's value is the
+	 * (now cleared) record array which we can reuse.
+	 * Will be {@code null} if nothing is being written.
+	 */
+	private Future<SamRecord[]> pendingSpill;
 	
 	/**
 	 * 
@@ -97,19 +120,27 @@ class ReSortSamFileWriter implements SamWriter {
 	 * @param encodingToUse The {@link Encoding} to use to write the output file; can not be null.
 	 * @param indexer the {@link BamIndexer} to use to index the files
 	 * @param includeIndexMetaData  should the index also include metadata.
+	 * @param numberOfCompressionThreads the number of threads to use to compress BAM
+	 * encoded output; must be &ge; 1.
+	 * @param maxOpenTempFiles the maximum number of temp files to 
+	 * read at the same time when merging; must be &ge; 2.
 	 * 
 	 * @throws NullPointerException if any of the parameters that can't be null are null.
-	 * @throws IllegalArgumentException if maxRecordsToKeepInMemory is negative.
+	 * @throws IllegalArgumentException if maxRecordsToKeepInMemory is negative or maxOpenTempFiles &lt; 2.
 	 * 
 	 * @throws IOException if there is a problem creating the output file or creating a temp directory under tmpDirRoot.
 	 */
 	ReSortSamFileWriter(File outputFile, File tmpDirRoot, SamHeader header, 
 	        int maxRecordsToKeepInMemory, SamAttributeValidator attributeValidator,
-	        Encoding encodingToUse, BamIndexer indexer, boolean includeIndexMetaData) throws IOException {
+	        Encoding encodingToUse, BamIndexer indexer, boolean includeIndexMetaData,
+	        int numberOfCompressionThreads, int maxOpenTempFiles) throws IOException {
 		
 		if(maxRecordsToKeepInMemory <0){
 			throw new IllegalArgumentException("max records to keep in memory must be >=1");
 		}
+		if(maxOpenTempFiles <2){
+			throw new IllegalArgumentException("max open temp files must be >=2");
+		}
 		if(attributeValidator ==null){
 			throw new NullPointerException("attribute valiator can not be null");
 		}
@@ -134,6 +165,14 @@ class ReSortSamFileWriter implements SamWriter {
         this.indexer = indexer;
         
         this.includeIndexMetaData = includeIndexMetaData;
+        this.numberOfCompressionThreads = numberOfCompressionThreads;
+        this.maxOpenTempFiles = maxOpenTempFiles;
+        
+        this.spillExecutor = Executors.newSingleThreadExecutor(r->{
+        	Thread t = new Thread(r, "sam-resort-spill");
+        	t.setDaemon(true);
+        	return t;
+        });
 	}
 
 
@@ -161,33 +200,75 @@ class ReSortSamFileWriter implements SamWriter {
 	}
 
 	/**
-	 * Write all the records currently in memory
-	 * to a temp file encoded using the given encoding
-	 * @throws IOException
+	 * Hand off all the records currently in memory
+	 * to the background thread to be sorted and written to
+	 * a temp file encoded using the given encoding.
+	 * @throws IOException if there was a problem writing the previous temp file.
 	 */
 	private void persistInMemoryCacheIfNeeded() throws IOException {
 		if(currentInMemSize == maxRecordsToKeepInMemory){
-			
-			sortInMemoryRecords();
+			//only allow 1 temp file to be written at a time
+			//so we don't use more than 2x the memory
+			SamRecord[] recycledArray = waitForPendingSpill();
 			
 			File tempFile= File.createTempFile(outputFile.getName(), encoding.getSuffix(), tmpDir);
 			tempFiles.add(tempFile);
-			//never pass indexer to temp files
-			//only use in final if at all.
-			SamWriter writer = encoding.createPreSortedNoValidationOutputWriter(tempFile, header,null, false);
-			try{
-				for(int i=0; i<currentInMemSize; i++){
-					writer.writeRecord(inMemoryArray[i]);
+			
+			SamRecord[] recordsToSpill = inMemoryArray;
+			int numberOfRecordsToSpill = currentInMemSize;
+			pendingSpill = spillExecutor.submit(()->{
+				try{
+					Arrays.sort(recordsToSpill, 0, numberOfRecordsToSpill, recordComparator);
+					writeTempFile(tempFile, recordsToSpill, numberOfRecordsToSpill);
+				}finally{
+					//clear references to free up GC
+					Arrays.fill(recordsToSpill, 0, numberOfRecordsToSpill, null);
 				}
-			}finally{
-				IOUtil.closeAndIgnoreErrors(writer);
-				clearInMemoryArray();
-			}
+				return recordsToSpill;
+			});
 			
+			inMemoryArray = recycledArray ==null ? new SamRecord[maxRecordsToKeepInMemory] : recycledArray;
+			currentInMemSize=0;
 		}
 		
 	}
-
+	
+	private void writeTempFile(File tempFile, SamRecord[] records, int length) throws IOException{
+		//never pass indexer to temp files
+		//only use in final if at all.
+		try(SamWriter writer = encoding.createPreSortedNoValidationOutputWriter(tempFile, header,null, false, numberOfCompressionThreads)){
+			for(int i=0; i<length; i++){
+				writer.writeRecord(records[i]);
+			}
+		}
+	}
+	/**
+	 * Block until the temp file being written in the background
+	 * (if any) has been completely written.
+	 * @return the record array used by the background write
+	 * which has been cleared and can be reused; or {@code null}
+	 * if there was no background write.
+	 * @throws IOException if there was a problem writing the temp file.
+	 */
+	private SamRecord[] waitForPendingSpill() throws IOException{
+		if(pendingSpill ==null){
+			return null;
+		}
+		try {
+			return pendingSpill.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("interrupted while writing temp file");
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if(cause instanceof IOException){
+				throw (IOException) cause;
+			}
+			throw new IOException("error writing temp file", cause);
+		}finally{
+			pendingSpill = null;
+		}
+	}
 
 	private void clearInMemoryArray() {
 		currentInMemSize=0;
@@ -202,31 +283,80 @@ class ReSortSamFileWriter implements SamWriter {
 		//handle nulls and sort them last
 		//so we don't have to worry about those
 		//throwing NPE.
-		Arrays.sort(inMemoryArray, recordComparator);
+		Arrays.sort(inMemoryArray, 0, currentInMemSize, recordComparator);
+	}
+	/**
+	 * Merge groups of temp files into larger temp files
+	 * until there are no more than {@link #maxOpenTempFiles}.
+	 * The order of the temp files is maintained
+	 * so records that sort the same are still written
+	 * in the same order.
+	 * @throws IOException if there is a problem merging the temp files.
+	 */
+	private void mergeTempFilesUntilUnderBudget() throws IOException{
+		while(tempFiles.size() > maxOpenTempFiles){
+			List<File> mergedFiles = new ArrayList<>(tempFiles.size()/maxOpenTempFiles +1);
+			for(int i=0; i< tempFiles.size(); i+=maxOpenTempFiles){
+				List<File> group = tempFiles.subList(i, Math.min(i+maxOpenTempFiles, tempFiles.size()));
+				if(group.size() ==1){
+					mergedFiles.add(group.get(0));
+				}else{
+					mergedFiles.add(mergeTempFiles(group));
+				}
+			}
+			tempFiles.clear();
+			tempFiles.addAll(mergedFiles);
+		}
 	}
-
-
 	
+	private File mergeTempFiles(List<File> filesToMerge) throws IOException{
+		File mergedFile= File.createTempFile(outputFile.getName(), encoding.getSuffix(), tmpDir);
+		List<StreamingIterator<SamRecord>> iterators = new ArrayList<>(filesToMerge.size());
+		try{
+			for(File tempFile : filesToMerge){
+				iterators.add(new StreamingSamRecordIterator(tempFile, encoding));
+			}
+			Iterator<SamRecord> sortedIterator = new MergedSortedRecordIterator<>(iterators, recordComparator);
+			try(SamWriter writer = encoding.createPreSortedNoValidationOutputWriter(mergedFile, header,null, false, numberOfCompressionThreads)){
+				while(sortedIterator.hasNext()){
+					writer.writeRecord(sortedIterator.next());
+				}
+			}
+		}finally{
+			for(StreamingIterator<?> iter : iterators){
+				IOUtil.closeAndIgnoreErrors(iter);
+			}
+		}
+		for(File tempFile : filesToMerge){
+			IOUtil.deleteIgnoreError(tempFile);
+		}
+		return mergedFile;
+	}
 	
 	@Override
 	public void close() throws IOException {
-		List<PeekableStreamingIterator<SamRecord>> iterators =new ArrayList<PeekableStreamingIterator<SamRecord>>(1 + tempFiles.size());
+		List<StreamingIterator<SamRecord>> iterators =new ArrayList<StreamingIterator<SamRecord>>(1 + tempFiles.size());
 		SamWriter writer =null;
 		try{
+			waitForPendingSpill();
 			sortInMemoryRecords();
-
-			iterators.add(IteratorUtil.createPeekableStreamingIterator(new InMemoryStreamingIterator(currentInMemSize)));
 			
+			mergeTempFilesUntilUnderBudget();
+
 			for(File tempFile : tempFiles){
-				iterators.add(IteratorUtil.createPeekableStreamingIterator(new StreamingSamRecordIterator(tempFile, encoding)));
+				iterators.add(new StreamingSamRecordIterator(tempFile, encoding));
 			}
+			//in memory records were written last
+			//so they go last to keep ties in the order they were written
+			iterators.add(new InMemoryStreamingIterator(currentInMemSize));
 			
-			Iterator<SamRecord> sortedIterator = new MergedSortedRecordIterator(iterators, recordComparator);
-			writer = encoding.createPreSortedNoValidationOutputWriter(outputFile, header, indexer, includeIndexMetaData);
+			Iterator<SamRecord> sortedIterator = new MergedSortedRecordIterator<>(iterators, recordComparator);
+			writer = encoding.createPreSortedNoValidationOutputWriter(outputFile, header, indexer, includeIndexMetaData, numberOfCompressionThreads);
 			while(sortedIterator.hasNext()){
 				writer.writeRecord(sortedIterator.next());
 			}
 		}finally{
+			spillExecutor.shutdownNow();
 			for(StreamingIterator<?> iter : iterators){
 				IOUtil.closeAndIgnoreErrors(iter);
 			}
@@ -277,111 +407,8 @@ class ReSortSamFileWriter implements SamWriter {
 			
 		}
 		
-	}
-	/**
-	 * Combine a list of pre-sorted Iterators into a single sorted iterator.
-	 * Each call to {@link #next()} will peek at the next elements in the wrapped
-	 * iterators and return the value that has the lowest sort value as determined
-	 * by the comparator (and advance that iterator).
-	 * @author dkatzel
-	 *
-	 */
-	public static class MergedSortedRecordIterator implements Iterator<SamRecord> {
-			private final List<PeekableStreamingIterator<SamRecord>> iterators;
-			
-			private SamRecord next;
-			private final SortedSamRecordElementComparator comparator;
-			private final List<SortedSamRecordElement> elementList;
-			
-			
-			public MergedSortedRecordIterator(List<PeekableStreamingIterator<SamRecord>> iterators, Comparator<SamRecord> comparator) {
-				this.iterators = iterators;
-				this.comparator = new SortedSamRecordElementComparator(comparator);
-				elementList = new ArrayList<SortedSamRecordElement>(iterators.size());
-				
-				next= getNext();
-			}
-			
-			private SamRecord getNext(){
-				elementList.clear();
-				for(PeekableStreamingIterator<SamRecord> iter : iterators){
-					if(iter.hasNext()){
-						//we peek instead of next()
-						//incase we don't pick this record yet
-						elementList.add(new SortedSamRecordElement(iter.peek(), iter));
-					}
-				}
-				if(elementList.isEmpty()){
-					return null;
-				}
-				Collections.sort(elementList, comparator);
-				SortedSamRecordElement element= elementList.get(0);
-				//advance iterator
-				element.source.next();
-				return element.record;
-			}
-
-			@Override
-			public boolean hasNext() {
-				return next!=null;
-			}
-			
-			
-			@Override
-			public SamRecord next() {
-				//don't need to check has next
-				//since we can make sure we don't call it incorrectly
-				SamRecord ret= next;
-				next = getNext();
-				return ret;
-			}
-			
-			@Override
-			public void remove() {
-				throw new UnsupportedOperationException();				
-			}
-
-	}
-	/**
-	 * Struct that has a {@link SamRecord} and which
-	 * iterator that record belong to so we can advance
-	 * the iterator if selected.
-	 * @author dkatzel
-	 *
-	 */
-	private static class SortedSamRecordElement{
-		SamRecord record;
-		Iterator<SamRecord> source;
-		
-		public SortedSamRecordElement(SamRecord record,
-				Iterator<SamRecord> source) {
-			this.record = record;
-			this.source = source;
-		}
-
-		@Override
-		public String toString() {
-			return "SortedSamRecordElement [record=" + record + ", source="
-					+ source + "]";
-		}
-		
 	}
 	
-	private static class SortedSamRecordElementComparator implements Comparator<SortedSamRecordElement>{
-		private final Comparator<SamRecord> comparator;
-		
-
-		public SortedSamRecordElementComparator(Comparator<SamRecord> comparator) {
-			this.comparator = comparator;
-		}
-
-
-		@Override
-		public int compare(SortedSamRecordElement o1, SortedSamRecordElement o2) {
-			return comparator.compare(o1.record, o2.record);
-		}
-		
-	}
 	/**
 	 * Iterates over a sam (or bam) encoded file as a {@link StreamingIterator}.
 	 * @author dkatzel
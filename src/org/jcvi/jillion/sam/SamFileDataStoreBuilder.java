@@ -44,6 +44,8 @@ public final class SamFileDataStoreBuilder {
     private SamAttributeValidator validator = ReservedAttributeValidator.INSTANCE;
     
     private Predicate<SamRecord> filter;
+    
+    private int numberOfDecompressionThreads = 1;
     /**
      * Create a new Builder instance that will parse the given
      * sam or bam encoded file.  
@@ -123,6 +125,32 @@ public final class SamFileDataStoreBuilder {
         return this;
     }
     
+    /**
+     * Set the number of threads to use to decompress
+     * BAM encoded files.  If this method is not called,
+     * then the BAM file is decompressed on the parsing thread.
+     * This value is ignored if the input file is a SAM file.
+     * 
+     * @param numberOfThreads the number of threads to use
+     * to inflate BGZF blocks; must be &ge; 1.
+     * 
+     * @return this.
+     * 
+     * @throws IllegalArgumentException if numberOfThreads &lt; 1.
+     * 
+     * @since 5.3
+     * 
+     * @see SamParserFactory#create(File, SamAttributeValidator, int)
+     */
+    public SamFileDataStoreBuilder decompressionThreads(int numberOfThreads){
+        if(numberOfThreads <1){
+            throw new IllegalArgumentException("number of threads must be >= 1 : " + numberOfThreads);
+        }
+        this.numberOfDecompressionThreads = numberOfThreads;
+        
+        return this;
+    }
+    
     /**
      * Create a new {@link SamFileDataStore} using the configuration
      * provided so far.
@@ -135,9 +163,9 @@ public final class SamFileDataStoreBuilder {
     public SamFileDataStore build() throws IOException{
         SamParser parser;
         if(baiFile ==null){
-            parser = SamParserFactory.create(samFile, validator);
+            parser = SamParserFactory.create(samFile, validator, numberOfDecompressionThreads);
         }else{
-            parser = SamParserFactory.createUsingIndex(samFile, baiFile, validator);
+            parser = SamParserFactory.createUsingIndex(samFile, baiFile, validator, numberOfDecompressionThreads);
         }
         SamHeader header = parser.getHeader();
         if(SortOrder.QUERY_NAME.equals(header.getSortOrder())){
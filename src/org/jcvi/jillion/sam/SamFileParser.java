@@ -35,7 +35,8 @@ import org.jcvi.jillion.core.io.IOUtil;
 import org.jcvi.jillion.core.qual.QualitySequence;
 import org.jcvi.jillion.core.residue.nt.NucleotideSequence;
 import org.jcvi.jillion.core.residue.nt.NucleotideSequenceBuilder;
-import org.jcvi.jillion.internal.core.io.TextLineParser;
+import org.jcvi.jillion.internal.core.io.BufferedLineParser;
+import org.jcvi.jillion.internal.core.io.LineParser;
 import org.jcvi.jillion.internal.sam.SamUtil;
 import org.jcvi.jillion.sam.SamVisitor.SamVisitorCallback;
 import org.jcvi.jillion.sam.SamVisitor.SamVisitorCallback.SamVisitorMemento;
@@ -102,6 +103,8 @@ final class SamFileParser extends AbstractSamFileParser{
 	               
 	               if(options.getReferenceRange().isPresent()){
 	                   predicate = SamUtil.alignsToReference(options.getReferenceName().get(), options.getReferenceRange().get());
+	               }else if(options.getReferenceRanges().isPresent()){
+	                   predicate = SamUtil.alignsToReference(options.getReferenceName().get(), options.getReferenceRanges().get());
 	               }else{
 	                   predicate = SamUtil.alignsToReference(options.getReferenceName().get());
 	               }
@@ -133,9 +136,9 @@ final class SamFileParser extends AbstractSamFileParser{
 			parse(visitor);
 			return;
 		}
-		TextLineParser parser=null;
+		LineParser parser=null;
 		try{
-			parser = new TextLineParser(samFile, samMemento.position);
+			parser = new BufferedLineParser(samFile, samMemento.position);
 			
 			AtomicBoolean keepParsing = new AtomicBoolean(true);
 			
@@ -185,10 +188,10 @@ final class SamFileParser extends AbstractSamFileParser{
 		if(visitor ==null){
 			throw new NullPointerException("visitor can not be null");
 		}
-		TextLineParser parser =null;
+		LineParser parser =null;
 		
 		try{
-			parser= new TextLineParser(samFile);
+			parser= new BufferedLineParser(samFile);
 			AtomicBoolean keepParsing = new AtomicBoolean(true);
 			
 			SamVisitorCallback callback = callbackSupplier.create(keepParsing, parser.getPosition());
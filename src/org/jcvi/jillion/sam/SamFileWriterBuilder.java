@@ -48,6 +48,8 @@ public final class SamFileWriterBuilder {
 	
 	private static final int DEFAULT_RECORDS_IN_MEMORY = 2_000_000;
 	
+	private static final int DEFAULT_MAX_OPEN_TEMP_FILES = 64;
+	
 	private final File outputFile;
 	private final SamHeaderBuilder headerBuilder;
 	private SamAttributeValidator attributeValidator = ReservedAttributeValidator.INSTANCE;
@@ -62,6 +64,10 @@ public final class SamFileWriterBuilder {
 	
 	private boolean includeIndexMetadata=false;
 	
+	private int numberOfCompressionThreads = 1;
+	
+	private int maxOpenTempFiles = DEFAULT_MAX_OPEN_TEMP_FILES;
+	
 	/**
 	 * Get the max number of {@link SamRecord}s
 	 * to keep in memory at any one time if
@@ -262,6 +268,54 @@ public final class SamFileWriterBuilder {
 		headerBuilder.setSortOrder(sortOrder);
 		return this;
 	}
+	/**
+	 * Set the number of threads to use to compress
+	 * BAM encoded output.  BAM files are made up of many
+	 * independently compressed BGZF blocks so if more than one thread
+	 * is used, several blocks can be compressed concurrently
+	 * while still being written out in order. Any BAM index
+	 * created will be the same no matter how many threads are used.
+	 * If this method is not called, then the data is compressed
+	 * on the writing thread.  This value is ignored when writing SAM files.
+	 * 
+	 * @param numberOfThreads the number of threads to use; must be &ge; 1.
+	 * @return this.
+	 * @throws IllegalArgumentException if numberOfThreads &lt; 1.
+	 * 
+	 * @since 5.3
+	 */
+	public SamFileWriterBuilder compressionThreads(int numberOfThreads){
+		if(numberOfThreads < 1){
+			throw new IllegalArgumentException("number of threads must be >= 1 : " + numberOfThreads);
+		}
+		this.numberOfCompressionThreads = numberOfThreads;
+		return this;
+	}
+	/**
+	 * Set the maximum number of temp files to read
+	 * at the same time when merging re-sorted records
+	 * into the final output file.  If re-sorting on the fly
+	 * writes more temp files than this, then groups of temp files
+	 * are first merged into larger temp files so that the number of
+	 * open files never goes over this value.
+	 * If this method is not called, then up to 64 temp files
+	 * will be read at the same time.  This value is ignored
+	 * if not re-sorting.
+	 * 
+	 * @param maxOpenTempFiles the max number of temp files to read
+	 * at the same time; must be &ge; 2.
+	 * @return this.
+	 * @throws IllegalArgumentException if maxOpenTempFiles &lt; 2.
+	 * 
+	 * @since 5.3
+	 */
+	public SamFileWriterBuilder maxOpenTempFiles(int maxOpenTempFiles){
+		if(maxOpenTempFiles < 2){
+			throw new IllegalArgumentException("max open temp files must be >= 2 : " + maxOpenTempFiles);
+		}
+		this.maxOpenTempFiles = maxOpenTempFiles;
+		return this;
+	}
 	/**
 	 * Create a new {@link SamWriter} instance
 	 * using the provided configuration.
@@ -293,9 +347,9 @@ public final class SamFileWriterBuilder {
 			indexer =null;
 		}
 		if(writeUnSortedRecords()){
-			return encoding.createPreSortedNoValidationOutputWriter(outputFile, header, indexer,includeIndexMetadata);
+			return encoding.createPreSortedNoValidationOutputWriter(outputFile, header, indexer,includeIndexMetadata, numberOfCompressionThreads);
 		}
-		return encoding.createReSortedOutputWriter(outputFile, tmpDirRoot, header, maxRecordsToKeepInMemory, attributeValidator, indexer, includeIndexMetadata);
+		return encoding.createReSortedOutputWriter(outputFile, tmpDirRoot, header, maxRecordsToKeepInMemory, attributeValidator, indexer, includeIndexMetadata, numberOfCompressionThreads, maxOpenTempFiles);
 		
 	}
 
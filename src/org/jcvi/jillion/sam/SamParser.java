@@ -21,9 +21,13 @@
 package org.jcvi.jillion.sam;
 
 import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 
 import org.jcvi.jillion.core.Range;
+import org.jcvi.jillion.core.Ranges;
 import org.jcvi.jillion.sam.SamVisitor.SamVisitorCallback.SamVisitorMemento;
 import org.jcvi.jillion.sam.header.SamHeader;
 /**
@@ -117,6 +121,38 @@ public interface SamParser {
 	 * @since 5.0
 	 */
 	void parse(String referenceName, Range alignmentRange, SamVisitor visitor) throws IOException;
+	/**
+	 * Parse the Sam or Bam file and 
+	 * but only visit the {@link SamRecord}s
+	 * that map to the given reference and the read
+	 * alignment intersects at least one of the provided Ranges.
+	 * Each matching record is only visited once, even if it intersects
+	 * several of the Ranges, and the records are visited in file order.
+	 * <p>
+	 * This is the same as
+	 * {@code parse(new SamParserOptions().reference(referenceName, alignmentRanges), visitor)}.
+	 * Implementations that can use an index should only read
+	 * the parts of the file that can contain records in the given Ranges.
+	 * </p>
+	 * 
+	 * @param referenceName the name of the Reference to visit
+	 * the mapped records of; can not be null.
+	 * 
+	 * @param alignmentRanges the {@link Range}s on the Reference to visit
+	 * the mapped records of; can not be null or contain null elements.
+	 * The Ranges may be in any order and may overlap.
+	 * 
+	 * @param visitor the {@link SamVisitor}
+	 * to call the visit methods on;
+	 * can not be null.
+	 * @throws IOException if there is a problem parsing the sam or bam file.
+	 * @throws NullPointerException if any parameters are null.
+	 * 
+	 * @since 5.3
+	 */
+	default void parse(String referenceName, List<Range> alignmentRanges, SamVisitor visitor) throws IOException{
+		parse(new SamParserOptions().reference(referenceName, alignmentRanges), visitor);
+	}
 	
 	/**
          * Parse the Sam or Bam file and 
@@ -159,24 +195,75 @@ public interface SamParser {
             private final boolean createMementos;
             private final String referenceName;
             private final Range referenceRange;
+            private final List<Range> referenceRanges;
+            private final boolean decodeLazily;
             
             public SamParserOptions(){
-                this(false, null, null);
+                this(false, null, null, null, false);
             }
             
-            private SamParserOptions(boolean createMementos, String referenceName, Range range){
+            private SamParserOptions(boolean createMementos, String referenceName, Range range, List<Range> ranges, boolean decodeLazily){
                 this.createMementos = createMementos;
                 this.referenceName = referenceName;
                 this.referenceRange = range;
+                this.referenceRanges = ranges;
+                this.decodeLazily = decodeLazily;
             }
             public SamParserOptions reference(String referenceName){
-                return new SamParserOptions(createMementos, referenceName,null);
+                return new SamParserOptions(createMementos, referenceName,null, null, decodeLazily);
              }
             public SamParserOptions reference(String referenceName, Range referenceRange){
-                return new SamParserOptions(createMementos, referenceName,referenceRange);
+                return new SamParserOptions(createMementos, referenceName,referenceRange, null, decodeLazily);
+             }
+            /**
+             * Only visit the records that map to the given reference
+             * and intersect at least one of the given Ranges.
+             * 
+             * @param referenceName the name of the reference; can not be null.
+             * @param referenceRanges the Ranges on the reference;
+             * can not be null or contain null elements.  The Ranges
+             * may be in any order and may overlap.
+             * @return a new SamParserOptions.
+             * @throws NullPointerException if any parameter is null or
+             * referenceRanges contains a null.
+             * 
+             * @since 5.3
+             */
+            public SamParserOptions reference(String referenceName, List<Range> referenceRanges){
+                Objects.requireNonNull(referenceName, "reference name can not be null");
+                Objects.requireNonNull(referenceRanges, "reference ranges can not be null");
+                for(Range r : referenceRanges){
+                    Objects.requireNonNull(r, "reference ranges can not contain null");
+                }
+                return new SamParserOptions(createMementos, referenceName,null, 
+                        Collections.unmodifiableList(Ranges.merge(referenceRanges)), decodeLazily);
              }
             public SamParserOptions createMementos(boolean createMementos){
-               return new SamParserOptions(createMementos, referenceName, referenceRange);
+               return new SamParserOptions(createMementos, referenceName, referenceRange, referenceRanges, decodeLazily);
+            }
+            /**
+             * Should the visited {@link SamRecord}s only be decoded
+             * as needed.  If set to {@code true}, parsers that support it
+             * (currently only BAM parsers) will visit records that are views
+             * of the raw encoded bytes which only decode the query name, cigar,
+             * sequence, qualities and attributes when they are first asked for.
+             * These records are only valid during the call to 
+             * {@link SamVisitor#visitRecord(org.jcvi.jillion.sam.SamVisitor.SamVisitorCallback, SamRecord, VirtualFileOffset, VirtualFileOffset)}
+             * so visitors that need to keep a record must use {@link SamRecord#copy()}.
+             * Attributes are not validated until the record is copied.
+             * Defaults to {@code false}.
+             * 
+             * @param decodeLazily {@code true} to decode lazily; {@code false} otherwise.
+             * @return a new SamParserOptions.
+             * 
+             * @since 5.3
+             */
+            public SamParserOptions decodeLazily(boolean decodeLazily){
+                return new SamParserOptions(createMementos, referenceName, referenceRange, referenceRanges, decodeLazily);
+            }
+            
+            public boolean shouldDecodeLazily() {
+                return decodeLazily;
             }
 
             public boolean shouldCreateMementos() {
@@ -186,9 +273,28 @@ public interface SamParser {
             public Optional<String> getReferenceName() {
                 return Optional.ofNullable(referenceName);
             }
+            /**
+             * Get the single reference Range to use.
+             * This will be empty if no Range was given or if
+             * multiple ranges were given using {@link #reference(String, List)}.
+             * @return an Optional Range.
+             * @see #getReferenceRanges()
+             */
             public Optional<Range> getReferenceRange() {
                 return Optional.ofNullable(referenceRange);
             }
+            /**
+             * Get the reference Ranges set by {@link #reference(String, List)}.
+             * 
+             * @return an Optional unmodifiable List of Ranges which
+             * have been merged so that they are sorted by begin coordinate
+             * and do not overlap.
+             * 
+             * @since 5.3
+             */
+            public Optional<List<Range>> getReferenceRanges() {
+                return Optional.ofNullable(referenceRanges);
+            }
             
         }
 }
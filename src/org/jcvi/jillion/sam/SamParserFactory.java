@@ -92,10 +92,49 @@ public final class SamParserFactory {
 	 * @see #createUsingIndex(File, File, SamAttributeValidator)
 	 */
 	public static SamParser create(File f, SamAttributeValidator validator) throws IOException{
+		return create(f, validator, 1);
+	}
+	/**
+	 * Create a new {@link SamParser}
+	 * instance for the given SAM or BAM file
+	 * that will use the given number of threads to 
+	 * decompress BAM encoded files.
+	 * <p>
+	 * BAM files are made up of many independently compressed
+	 * BGZF blocks.  If more than one thread is requested, 
+	 * the parser will read ahead and inflate several blocks concurrently
+	 * which can greatly reduce the time it takes to parse large BAM files.
+	 * The records and {@link VirtualFileOffset}s seen by the {@link SamVisitor}
+	 * are the same no matter how many threads are used.
+	 * </p>
+	 * @param f the SAM or BAM file to be parsed;
+	 * can not be null, must exist and 
+	 * the file must end in either ".sam"
+	 * or ".bam" (ignoring case).
+	 * @param validator the {@link SamAttributeValidator}
+	 * to use to validate the {@link SamRecord}s being parsed;
+	 * can not be null.
+	 * @param numberOfDecompressionThreads the number of threads
+	 * to use to decompress BAM files; if set to 1 then 
+	 * the file is decompressed on the parsing thread.
+	 * This value is ignored for SAM files. Must be &ge; 1.
+	 * @return a new {@link SamParser} instance
+	 * will never be null.
+	 * @throws IOException if the file does not exist.
+	 * @throws NullPointerException if file or validator is null.
+	 * @throws IllegalArgumentException if the file's extension
+	 * is not either ".sam" or ".bam" (ignoring case) or if numberOfDecompressionThreads &lt; 1.
+	 * 
+	 * @see #create(File, SamAttributeValidator)
+	 * 
+	 * @since 5.3
+	 */
+	public static SamParser create(File f, SamAttributeValidator validator, int numberOfDecompressionThreads) throws IOException{
 		
 		if(validator == null){
 			throw new NullPointerException("validator can not be null");
 		}
+		verifyNumberOfDecompressionThreads(numberOfDecompressionThreads);
 		IOUtil.verifyIsReadable(f);
 		
 		String extension = FileUtil.getExtension(f);
@@ -103,19 +142,24 @@ public final class SamParserFactory {
 			return new SamFileParser(f,validator);
 		}
 		if("bam".equalsIgnoreCase(extension)){
-			return createFromBamFile(f, validator);			
+			return createFromBamFile(f, validator, numberOfDecompressionThreads);			
 		}
 		throw new IllegalArgumentException("unknown file format " + f.getName());
 	}
 	
+	private static void verifyNumberOfDecompressionThreads(int numberOfDecompressionThreads){
+		if(numberOfDecompressionThreads <1){
+			throw new IllegalArgumentException("number of decompression threads must be >= 1 : " + numberOfDecompressionThreads);
+		}
+	}
 	
-	private static SamParser createFromBamFile(File f, SamAttributeValidator validator) throws IOException {
-		SamParser unsortedBamParser= new BamFileParser(f, validator);
+	private static SamParser createFromBamFile(File f, SamAttributeValidator validator, int numberOfDecompressionThreads) throws IOException {
+		SamParser unsortedBamParser= new BamFileParser(f, validator, numberOfDecompressionThreads);
 		if(unsortedBamParser.getHeader().getSortOrder() == SortOrder.COORDINATE){
 			//is there an indexed bam file that goes with it?
 			File bai = new File(f.getParentFile(), f.getName() +".bai");
 			if(bai.exists()){
-				return createUsingIndex(f, bai, validator);
+				return createUsingIndex(f, bai, validator, numberOfDecompressionThreads);
 			}
 		
 		}
@@ -180,11 +224,48 @@ public final class SamParserFactory {
 	 * @since 5.0
 	 */
 	public static SamParser createUsingIndex(File bam, File bamIndex, SamAttributeValidator validator) throws IOException{
+		return createUsingIndex(bam, bamIndex, validator, 1);
+	}
+	/**
+	 * Create a new {@link SamParser}
+	 * instance for the Coordinate sorted BAM file
+	 * with accompanying BAI encoded file and
+	 * using the given {@link SamAttributeValidator}
+	 * to validate the {@link SamRecord}s to be parsed
+	 * and the given number of threads to decompress the BAM file.
+	 *
+	 * @param bam the Coordinate sorted BAM file to be parsed;
+	 * can not be null, must exist.
+	 * 
+	 * @param bamIndex the corresponding BAI encoded file to be parsed;
+	 * can not be null, must exist.
+	 * 
+	 *  @param validator the {@link SamAttributeValidator}
+	 * to use to validate the {@link SamRecord}s being parsed;
+	 * can not be null.
+	 * 
+	 * @param numberOfDecompressionThreads the number of threads
+	 * to use to decompress the BAM file; if set to 1 then 
+	 * the file is decompressed on the parsing thread. Must be &ge; 1.
+	 * 
+	 * @return a new {@link SamParser} instance
+	 * will never be null.
+	 * 
+	 * @throws IOException if the file does not exist.
+	 * @throws NullPointerException if any parameter is null.
+	 * @throws IllegalArgumentException if numberOfDecompressionThreads &lt; 1.
+	 * 
+	 * @see #create(File, SamAttributeValidator, int)
+	 * 
+	 * @since 5.3
+	 */
+	public static SamParser createUsingIndex(File bam, File bamIndex, SamAttributeValidator validator, int numberOfDecompressionThreads) throws IOException{
 		IOUtil.verifyIsReadable(bam);
 		IOUtil.verifyIsReadable(bamIndex);
 		if(validator == null){
 			throw new NullPointerException("validator can not be null");
 		}
-		return new IndexedBamFileParser(bam, bamIndex, validator);
+		verifyNumberOfDecompressionThreads(numberOfDecompressionThreads);
+		return new IndexedBamFileParser(bam, bamIndex, validator, numberOfDecompressionThreads);
 	}
 }
@@ -148,5 +148,20 @@ public interface SamRecord extends SamAttributed {
 	 * or {@code null} if this record didn't map.
 	 */
 	Range getAlignmentRange();
+	/**
+	 * Get a SamRecord with the same values as this record
+	 * that is safe to keep after the visit to this record has finished.
+	 * Some {@link SamParser} implementations can visit records
+	 * that are only views of the parser's internal buffers,
+	 * those records must be copied if they need to be kept.
+	 * 
+	 * @return a SamRecord; will never be null. Immutable
+	 * implementations may return this.
+	 * 
+	 * @since 5.3
+	 */
+	default SamRecord copy(){
+		return this;
+	}
 
 }
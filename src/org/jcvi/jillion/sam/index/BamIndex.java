@@ -31,6 +31,8 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import org.jcvi.jillion.core.Range;
+import org.jcvi.jillion.core.Ranges;
 import org.jcvi.jillion.core.io.IOUtil;
 import org.jcvi.jillion.core.util.MapUtil;
 import org.jcvi.jillion.internal.sam.index.IndexUtil;
@@ -196,6 +198,32 @@ public final class BamIndex {
 		return indexes.get(i);
 	}
 
+	/**
+	 * Get the smallest list of {@link Chunk}s of the BAM file that
+	 * need to be read to find all the alignments to the given reference
+	 * that overlap any of the given Ranges.
+	 * The returned chunks do not overlap and are sorted by file offset
+	 * so each part of the BAM file only needs to be read once.
+	 * The chunks may still contain alignments that don't overlap
+	 * any of the Ranges so the records must still be checked.
+	 * 
+	 * @param refName the name of the reference; can not be null.
+	 * @param alignmentRanges the Ranges on the reference to query;
+	 * can not be null. The Ranges may be in any order and may overlap.
+	 * 
+	 * @return a new List of Chunks; will never be null but may be empty.
+	 * @throws NullPointerException if any parameter is null.
+	 * @throws IllegalArgumentException if there is no reference with the given name.
+	 * 
+	 * @since 5.3
+	 */
+	public List<Chunk> getOverlappingChunks(String refName, Collection<Range> alignmentRanges){
+		ReferenceIndex refIndex = getReferenceIndex(refName);
+		if(refIndex ==null){
+			throw new IllegalArgumentException("no reference with name '"+ refName +"'");
+		}
+		return IndexUtil.getOverlappingChunks(refIndex, Ranges.merge(alignmentRanges));
+	}
 	@Override
 	public int hashCode() {
 		final int prime = 31;
@@ -22,6 +22,7 @@ package org.jcvi.jillion.sam.index;
 
 import java.util.List;
 
+import org.jcvi.jillion.internal.sam.index.IndexUtil;
 import org.jcvi.jillion.sam.VirtualFileOffset;
 
 /**
@@ -49,6 +50,23 @@ public interface ReferenceIndex {
 	 * there might be null cells in the array.
 	 */
 	VirtualFileOffset[] getIntervals();
+	/**
+	 * Get the smallest {@link VirtualFileOffset} 
+	 * from the linear index of any alignment that overlaps the 16kbp
+	 * window that contains the given reference coordinate.  No alignment 
+	 * that overlaps that coordinate can start before this offset.
+	 * 
+	 * @param referenceOffset the 0-based reference coordinate.
+	 * @return a {@link VirtualFileOffset}; will never be null.
+	 * If the linear index doesn't have a value for that window,
+	 * then the closest value from an earlier window is used
+	 * (or the beginning of the file if there is none).
+	 * 
+	 * @since 5.3
+	 */
+	default VirtualFileOffset getMinimumOffsetFor(int referenceOffset){
+		return IndexUtil.getMinimumOffsetFor(getIntervals(), referenceOffset);
+	}
 	/**
 	 * Does this ReferenceIndex contain
 	 * optional metadata?
@@ -56,6 +56,9 @@ public final class FastqFileDataStoreBuilder{
 	private boolean hasComments;
 	private boolean isMultiLine;
 	
+	private File persistentIndexFile;
+	private boolean filtered;
+	
 	/**
 	 * Create a new instance of {@code FastqFileDataStoreBuilder}
 	 * which will build a {@link FastqDataStore} for the given
@@ -240,6 +243,7 @@ public final class FastqFileDataStoreBuilder{
 			throw new NullPointerException("filter can not be null");
 		}
 		this.idFilter = filter;
+		this.filtered = true;
 		return this;
 	}
 	
@@ -281,8 +285,40 @@ public final class FastqFileDataStoreBuilder{
                     throw new NullPointerException("filter can not be null");
             }
             this.recordFilter = filter;
+            this.filtered = true;
             return this;
     }
+	/**
+	 * Store the index of record offsets that is built for a
+	 * {@link DataStoreProviderHint#RANDOM_ACCESS_OPTIMIZE_MEMORY} datastore
+	 * in the given sidecar file.  The first time the datastore is built,
+	 * the fastq file is parsed as usual and the index is written to the index file.
+	 * Later datastores for the same fastq file memory-map the index instead of
+	 * parsing the fastq file again, which makes opening a large fastq file
+	 * almost instant.
+	 * <p>
+	 * The index records the length and last modified time of the fastq file;
+	 * if the fastq file has changed, the index is rebuilt.
+	 * The index is ignored for all other {@link DataStoreProviderHint}s.
+	 * </p>
+	 * 
+	 * @param indexFile the index file to read or write, for example
+	 * {@code reads.fastq.jidx}; can not be null.
+	 * @return this.
+	 * 
+	 * @throws NullPointerException if indexFile is null.
+	 * 
+	 * @apiNote since filters can't be saved in the index,
+	 * this can not be combined with {@link #filter(Predicate)}
+	 * or {@link #filterRecords(Predicate)}.
+	 * 
+	 * @since 5.3
+	 */
+	public FastqFileDataStoreBuilder persistentIndex(File indexFile){
+		Objects.requireNonNull(indexFile);
+		this.persistentIndexFile = indexFile;
+		return this;
+	}
 	/**
 	 * Provide a {@link DataStoreProviderHint} to this builder
 	 * to let it know the implementation preferences of the client.
@@ -346,12 +382,18 @@ public final class FastqFileDataStoreBuilder{
 	 * @throws IllegalArgumentException if the quality values
 	 * are not valid for the specified {@link FastqQualityCodec}
 	 * (can be thrown even if the quality codec is auto-detected).
+	 * @throws IllegalStateException if a {@link #persistentIndex(File)} is used
+	 * with a filter, or with a data source that isn't a file.
 	 * @see #qualityCodec(FastqQualityCodec)
 	 * @see #hint(DataStoreProviderHint)
 	 * @see #filter(Predicate)
 	 * @see #filterRecords(Predicate)
+	 * @see #persistentIndex(File)
 	 */
 	public FastqFileDataStore build() throws IOException {
+	        if(persistentIndexFile !=null && filtered){
+	        	throw new IllegalStateException("can not use a persistent index with filters");
+	        }
 	    
 	    
 	        if(parser ==null){
@@ -362,20 +404,24 @@ public final class FastqFileDataStoreBuilder{
                         .build();
 	                                                    
 	        }
+		if(codec ==null && parser.isReadOnceOnly()){
+			//can't parse this twice
+			//to guess codec
+			//THEN re-parse to decode
+			throw new IllegalStateException("must set quality codec if parsing inputStream");
+		}
+		if(hint == DataStoreProviderHint.RANDOM_ACCESS_OPTIMIZE_MEMORY 
+				&& persistentIndexFile !=null && parser.canCreateMemento()){
+			//a valid index stores the codec so we don't have to guess
+			return IndexedFastqFileDataStore.create(parser, codec, persistentIndexFile);
+		}
 		if(codec ==null){
-			if(parser.isReadOnceOnly()){
-				//can't parse this twice
-				//to guess codec
-				//THEN re-parse to decode
-				throw new IllegalStateException("must set quality codec if parsing inputStream");
-			}
 			codec = FastqUtil.guessQualityCodecUsed(parser);
 		}
 		switch(hint){
 			case RANDOM_ACCESS_OPTIMIZE_SPEED:
 				return DefaultFastqFileDataStore.create(parser, codec, idFilter, recordFilter);
 			case RANDOM_ACCESS_OPTIMIZE_MEMORY:
-			        
 				return parser.canCreateMemento()?
 				        IndexedFastqFileDataStore.create(parser,  codec, idFilter, recordFilter)
 				        : DefaultFastqFileDataStore.create(parser, codec, idFilter, recordFilter);
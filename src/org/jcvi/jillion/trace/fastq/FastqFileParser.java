@@ -31,10 +31,10 @@ import java.util.regex.Pattern;
 
 import org.jcvi.jillion.core.io.IOUtil;
 import org.jcvi.jillion.core.io.InputStreamSupplier;
+import org.jcvi.jillion.internal.core.io.BufferedLineParser;
 import org.jcvi.jillion.internal.core.io.LineParser;
 import org.jcvi.jillion.internal.core.io.OpenAwareInputStream;
 import org.jcvi.jillion.internal.core.io.PositionlessLineParser;
-import org.jcvi.jillion.internal.core.io.TextLineParser;
 import org.jcvi.jillion.trace.fastq.FastqVisitor.FastqVisitorCallback;
 import org.jcvi.jillion.trace.fastq.FastqVisitor.FastqVisitorCallback.FastqVisitorMemento;
 /**
@@ -518,7 +518,7 @@ public abstract class FastqFileParser implements FastqParser{
 			}
 			
 			try(InputStream in = supplier.get()){
-				LineParser parser = trackPosition? new TextLineParser(in) :new PositionlessLineParser(in);
+				LineParser parser = trackPosition? new BufferedLineParser(in) :new PositionlessLineParser(in);
 				parseFastqFile(visitor, parser);			
 			}
 		}
@@ -537,7 +537,7 @@ public abstract class FastqFileParser implements FastqParser{
 			
                         try (InputStream in = supplier.get(startOffset)) {
                            
-                            TextLineParser parser = new TextLineParser(in, startOffset);
+                            LineParser parser = new BufferedLineParser(in, startOffset);
                             parseFastqFile(visitor, parser);
                         }
 			
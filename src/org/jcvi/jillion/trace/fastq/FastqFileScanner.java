@@ -0,0 +1,375 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.trace.fastq;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Objects;
+
+import org.jcvi.jillion.core.io.IOUtil;
+import org.jcvi.jillion.core.io.InputStreamSupplier;
+/**
+ * {@code FastqFileScanner} is a low level fastq parser
+ * that does not create any objects per record.
+ * Each record is given to a {@link SliceVisitor} as a 
+ * {@link FastqRecordSlice} which points at the raw bytes
+ * of the id, comment, bases and qualities inside a buffer
+ * that is reused for the whole file.  The deflines are split
+ * into id and comment by looking at the bytes 
+ * instead of using regular expressions.
+ * <p>
+ * This is much faster than {@link FastqFileParser} for jobs
+ * like counting, filtering or demultiplexing that only
+ * need to look at a few bytes of each record; the bases
+ * and qualities are only decoded if the visitor asks the slice to.
+ * </p>
+ * <p>
+ * Every record must be exactly 4 lines so multi-line fastq
+ * files are not supported.
+ * </p>
+ * 
+ * @author dkatzel
+ * 
+ * @since 5.3
+ * 
+ * @see FastqRecordSlice
+ */
+public final class FastqFileScanner {
+
+	private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+	/**
+	 * Visits each {@link FastqRecordSlice} of a fastq file.
+	 * 
+	 * @author dkatzel
+	 *
+	 * @param <E> the Throwable type the visitor can throw.
+	 * 
+	 * @since 5.3
+	 */
+	@FunctionalInterface
+	public interface SliceVisitor<E extends Throwable>{
+		/**
+		 * Visit the current record.
+		 * 
+		 * @param slice the current record which is only
+		 * valid until this method returns; will never be null.
+		 * 
+		 * @return {@code true} to keep scanning;
+		 * {@code false} to stop.
+		 * 
+		 * @throws E if there is a problem visiting the record.
+		 */
+		boolean visit(FastqRecordSlice slice) throws E;
+	}
+	
+	private final InputStreamSupplier supplier;
+	private final boolean hasComments;
+	/**
+	 * Create a new {@link FastqFileScanner} for the given
+	 * fastq file whose deflines do not contain comments.
+	 * 
+	 * @param fastq the fastq file to scan; must exist and be readable; 
+	 * may be a "normal" fastq file, or zipped or gzipped.
+	 * 
+	 * @return a new {@link FastqFileScanner}; will never be null.
+	 * 
+	 * @throws IOException if the file does not exist or is not readable.
+	 * @throws NullPointerException if fastq is null.
+	 */
+	public static FastqFileScanner create(File fastq) throws IOException{
+		return create(fastq, false);
+	}
+	/**
+	 * Create a new {@link FastqFileScanner} for the given
+	 * fastq file.
+	 * 
+	 * @param fastq the fastq file to scan; must exist and be readable; 
+	 * may be a "normal" fastq file, or zipped or gzipped.
+	 * 
+	 * @param hasComments do the deflines contain comments.  If {@code false},
+	 * then everything after the '@' is the id.
+	 * 
+	 * @return a new {@link FastqFileScanner}; will never be null.
+	 * 
+	 * @throws IOException if the file does not exist or is not readable.
+	 * @throws NullPointerException if fastq is null.
+	 */
+	public static FastqFileScanner create(File fastq, boolean hasComments) throws IOException{
+		return create(InputStreamSupplier.forFile(fastq), hasComments);
+	}
+	/**
+	 * Create a new {@link FastqFileScanner} for the fastq
+	 * data from the given {@link InputStreamSupplier}.
+	 * 
+	 * @param supplier the {@link InputStreamSupplier} to get the fastq data from;
+	 * can not be null.
+	 * 
+	 * @param hasComments do the deflines contain comments.  If {@code false},
+	 * then everything after the '@' is the id.
+	 * 
+	 * @return a new {@link FastqFileScanner}; will never be null.
+	 * 
+	 * @throws NullPointerException if supplier is null.
+	 */
+	public static FastqFileScanner create(InputStreamSupplier supplier, boolean hasComments){
+		return new FastqFileScanner(Objects.requireNonNull(supplier), hasComments);
+	}
+	
+	private FastqFileScanner(InputStreamSupplier supplier, boolean hasComments){
+		this.supplier = supplier;
+		this.hasComments = hasComments;
+	}
+	/**
+	 * Scan the fastq data and give each record to the given visitor
+	 * until either all the records have been visited or the
+	 * visitor returns {@code false}.
+	 * 
+	 * @param visitor the {@link SliceVisitor} to visit each record; can not be null.
+	 * 
+	 * @param <E> the Throwable type the visitor can throw.
+	 * 
+	 * @throws IOException if there is a problem reading the data
+	 * or the data is not valid fastq.
+	 * @throws E if the visitor throws an exception.
+	 * @throws NullPointerException if visitor is null.
+	 */
+	public <E extends Throwable> void scan(SliceVisitor<E> visitor) throws IOException, E{
+		Objects.requireNonNull(visitor);
+		try(InputStream in = supplier.get()){
+			Scan scan = new Scan(in, hasComments);
+			while(scan.nextRecord()){
+				if(!visitor.visit(scan.slice)){
+					return;
+				}
+			}
+		}
+	}
+	
+	private static boolean isWhitespace(byte b){
+		return (b & 0xFF) <= ' ';
+	}
+	
+	private static boolean isDigit(byte b){
+		return b >= '0' && b <= '9';
+	}
+	/**
+	 * The state of a single scan of the data.
+	 * The buffer always has the current record contiguous
+	 * starting at {@code start} so the slice can point
+	 * directly into it.
+	 */
+	private static final class Scan{
+		private final InputStream in;
+		private final boolean hasComments;
+		private final FastqRecordSlice slice = new FastqRecordSlice();
+		
+		private byte[] buffer = new byte[DEFAULT_BUFFER_SIZE];
+		private int start, limit;
+		private boolean eof;
+		//relative to start since the record may move
+		//when the buffer is refilled
+		private final int[] lineStarts = new int[4];
+		private final int[] lineEnds = new int[4];
+		
+		Scan(InputStream in, boolean hasComments){
+			this.in = in;
+			this.hasComments = hasComments;
+		}
+		
+		boolean nextRecord() throws IOException{
+			if(!skipBlankLines()){
+				return false;
+			}
+			int pos=0;
+			for(int line=0; line < 4; line++){
+				int searchFrom = pos;
+				int newLine;
+				while((newLine = indexOfNewLine(start + searchFrom)) <0 && !eof){
+					searchFrom = limit - start;
+					fill();
+				}
+				lineStarts[line] = pos;
+				if(newLine <0){
+					//last line doesn't end with a new line
+					//(or is missing which will be caught when validating)
+					lineEnds[line] = limit - start;
+					pos = lineEnds[line];
+				}else{
+					lineEnds[line] = newLine - start;
+					pos = lineEnds[line] +1;
+				}
+			}
+			populateSlice();
+			start += pos;
+			return true;
+		}
+		
+		private void populateSlice() throws IOException{
+			int deflineStart = start + lineStarts[0];
+			int deflineEnd = trimEnd(deflineStart, start + lineEnds[0]);
+			if(buffer[deflineStart] != '@'){
+				throw new IOException("invalid fastq defline. should start with '@' but was " + toString(deflineStart, deflineEnd));
+			}
+			int idStart = trimStart(deflineStart +1, deflineEnd);
+			int idEnd = deflineEnd;
+			int commentStart = deflineEnd;
+			if(hasComments){
+				idEnd = idStart;
+				while(idEnd < deflineEnd && !isWhitespace(buffer[idEnd])){
+					idEnd++;
+				}
+				commentStart = trimStart(idEnd, deflineEnd);
+				if(isCasava18(commentStart, deflineEnd)){
+					//casava 1.8 ids have a space so there is no comment
+					idEnd = deflineEnd;
+					commentStart = deflineEnd;
+				}
+			}
+			
+			int basesStart = trimStart(start + lineStarts[1], start + lineEnds[1]);
+			int basesEnd = trimEnd(basesStart, start + lineEnds[1]);
+			
+			int qualDeflineStart = start + lineStarts[2];
+			if(qualDeflineStart == start + lineEnds[2] || buffer[qualDeflineStart] != '+'){
+				throw new IOException("invalid quality defline. should start with '+' but was " 
+								+ toString(qualDeflineStart, start + lineEnds[2]));
+			}
+			int qualitiesStart = trimStart(start + lineStarts[3], start + lineEnds[3]);
+			int qualitiesEnd = trimEnd(qualitiesStart, start + lineEnds[3]);
+			
+			int numberOfBases = basesEnd - basesStart;
+			if(qualitiesEnd - qualitiesStart != numberOfBases){
+				throw new IOException(
+	    				String.format("incorrect number of quality values for current record '%s' : expected %d but was %d", 
+	    						toString(idStart, idEnd), numberOfBases, qualitiesEnd - qualitiesStart));
+			}
+			slice.update(buffer, idStart, idEnd - idStart, 
+					commentStart, deflineEnd - commentStart, 
+					basesStart, qualitiesStart, numberOfBases);
+		}
+		/**
+		 * Same as matching {@code \d:[N|Y]:\d+:(\S+)?} 
+		 * which is what follows the whitespace of a casava 1.8 id.
+		 */
+		private boolean isCasava18(int from, int end){
+			if(end - from < 6){
+				return false;
+			}
+			int i = from;
+			if(!isDigit(buffer[i++]) || buffer[i++] != ':'){
+				return false;
+			}
+			byte filter = buffer[i++];
+			if((filter != 'N' && filter != 'Y' && filter != '|') || buffer[i++] != ':'){
+				return false;
+			}
+			int controlStart = i;
+			while(i < end && isDigit(buffer[i])){
+				i++;
+			}
+			if(i == controlStart || i == end || buffer[i++] != ':'){
+				return false;
+			}
+			while(i < end){
+				if(isWhitespace(buffer[i++])){
+					return false;
+				}
+			}
+			return true;
+		}
+		
+		private String toString(int from, int end){
+			return new String(buffer, from, end - from, IOUtil.UTF_8);
+		}
+		
+		private int trimStart(int from, int end){
+			int i = from;
+			while(i < end && isWhitespace(buffer[i])){
+				i++;
+			}
+			return i;
+		}
+		
+		private int trimEnd(int from, int end){
+			int i = end;
+			while(i > from && isWhitespace(buffer[i-1])){
+				i--;
+			}
+			return i;
+		}
+		
+		private int indexOfNewLine(int from){
+			for(int i=from; i< limit; i++){
+				if(buffer[i] == '\n'){
+					return i;
+				}
+			}
+			return -1;
+		}
+		/**
+		 * Skip over any blank lines before the next record.
+		 * @return {@code true} if there is another record;
+		 * {@code false} if there is no more data.
+		 */
+		private boolean skipBlankLines() throws IOException{
+			while(true){
+				int i = start;
+				while(i < limit && isWhitespace(buffer[i])){
+					if(buffer[i] == '\n'){
+						start = i+1;
+					}
+					i++;
+				}
+				if(i < limit){
+					return true;
+				}
+				if(eof){
+					start = limit;
+					return false;
+				}
+				fill();
+			}
+		}
+		/**
+		 * Move the current record to the beginning
+		 * of the buffer (growing the buffer if the record
+		 * doesn't fit) and read more data after it.
+		 */
+		private void fill() throws IOException{
+			if(start > 0){
+				System.arraycopy(buffer, start, buffer, 0, limit - start);
+				limit -= start;
+				start = 0;
+			}
+			if(limit == buffer.length){
+				buffer = Arrays.copyOf(buffer, buffer.length *2);
+			}
+			int numberOfBytesRead = in.read(buffer, limit, buffer.length - limit);
+			if(numberOfBytesRead < 0){
+				eof = true;
+			}else{
+				limit += numberOfBytesRead;
+			}
+		}
+	}
+}
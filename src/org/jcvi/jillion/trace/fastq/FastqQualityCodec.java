@@ -77,6 +77,16 @@ public enum FastqQualityCodec {
 		        }
 		        return builder.build();
 		    }
+		    
+		    @Override
+		    QualitySequence decode(byte[] encodedQualities, int offset, int length) {
+		    	QualitySequenceBuilder builder = new QualitySequenceBuilder(length);
+		    	int end = offset + length;
+		    	for(int i=offset; i< end; i++){
+		    		builder.append(SolexaUtil.convertSolexaQualityToPhredQuality(encodedQualities[i] - 64));
+		    	}
+		    	return builder.build();
+		    }
 	}
 	;
 
@@ -123,6 +133,28 @@ public enum FastqQualityCodec {
         		.build();
     }
 
+    /**
+     * Decode the given range of FASTQ quality encoded ASCII bytes
+     * into the equivalent {@link QualitySequence} without
+     * creating an intermediate String.
+     * 
+     * @param encodedQualities the array containing the encoded qualities.
+     * @param offset the offset into the array of the first quality.
+     * @param length the number of qualities to decode.
+     * 
+     * @return a {@link QualitySequence}
+     * the decoded FASTQ quality values.
+     * 
+     * @since 5.3
+     */
+    QualitySequence decode(byte[] encodedQualities, int offset, int length) {
+    	byte[] buffer = new byte[length];
+    	for(int i=0; i<length; i++){
+    		buffer[i] =(byte)(encodedQualities[offset + i] - this.offset);
+    	}
+    	return new QualitySequenceBuilder(buffer).build();
+    }
+    
     private final int offset;
     
     FastqQualityCodec(int offset){
@@ -0,0 +1,243 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.trace.fastq;
+
+import org.jcvi.jillion.core.io.IOUtil;
+import org.jcvi.jillion.core.qual.QualitySequence;
+import org.jcvi.jillion.core.residue.nt.AsciiNucleotideDecoder;
+import org.jcvi.jillion.core.residue.nt.NucleotideSequence;
+/**
+ * {@code FastqRecordSlice} is a view of the raw bytes 
+ * of the fastq record currently being scanned by a {@link FastqFileScanner}.
+ * The id, optional comment, bases and encoded qualities
+ * are each a range of bytes in the same backing array
+ * which is reused for all the records in the file.
+ * <p>
+ * Nothing is decoded unless one of the decode methods
+ * is called, so jobs that only need to count, filter or
+ * demultiplex records can look at the bytes directly
+ * without creating any objects.
+ * </p>
+ * <p>
+ * A slice (and its backing array) is only valid
+ * until the visitor returns; the same instance
+ * is updated for the next record.  Use {@link #toFastqRecord(FastqQualityCodec)}
+ * to keep a record.
+ * </p>
+ * 
+ * @author dkatzel
+ * 
+ * @since 5.3
+ * 
+ * @see FastqFileScanner
+ */
+public final class FastqRecordSlice {
+
+	private byte[] buffer;
+	
+	private int idOffset, idLength;
+	private int commentOffset, commentLength;
+	private int basesOffset, qualitiesOffset;
+	private int numberOfBases;
+	
+	FastqRecordSlice(){
+		//created by FastqFileScanner
+	}
+	
+	void update(byte[] buffer, int idOffset, int idLength, 
+			int commentOffset, int commentLength,
+			int basesOffset, int qualitiesOffset, int numberOfBases){
+		this.buffer = buffer;
+		this.idOffset = idOffset;
+		this.idLength = idLength;
+		this.commentOffset = commentOffset;
+		this.commentLength = commentLength;
+		this.basesOffset = basesOffset;
+		this.qualitiesOffset = qualitiesOffset;
+		this.numberOfBases = numberOfBases;
+	}
+	/**
+	 * Get the backing array that all the offsets
+	 * refer to.  This array must not be modified
+	 * and is only valid until the visitor returns.
+	 * 
+	 * @return the backing byte array; will never be null.
+	 */
+	public byte[] getBuffer() {
+		return buffer;
+	}
+	/**
+	 * Get the offset into the backing array 
+	 * of the first byte of the id.
+	 * 
+	 * @return the offset of the id.
+	 */
+	public int getIdOffset() {
+		return idOffset;
+	}
+	/**
+	 * Get the number of bytes in the id.
+	 * 
+	 * @return the length of the id.
+	 */
+	public int getIdLength() {
+		return idLength;
+	}
+	/**
+	 * Does this record have a comment.
+	 * 
+	 * @return {@code true} if there is a comment;
+	 * {@code false} otherwise.
+	 */
+	public boolean hasComment(){
+		return commentLength >0;
+	}
+	/**
+	 * Get the offset into the backing array 
+	 * of the first byte of the comment.
+	 * 
+	 * @return the offset of the comment; only
+	 * meaningful if {@link #hasComment()} is {@code true}.
+	 */
+	public int getCommentOffset() {
+		return commentOffset;
+	}
+	/**
+	 * Get the number of bytes in the comment.
+	 * 
+	 * @return the length of the comment; will be 0
+	 * if there is no comment.
+	 */
+	public int getCommentLength() {
+		return commentLength;
+	}
+	/**
+	 * Get the offset into the backing array 
+	 * of the first base.
+	 * 
+	 * @return the offset of the bases.
+	 */
+	public int getBasesOffset() {
+		return basesOffset;
+	}
+	/**
+	 * Get the offset into the backing array 
+	 * of the first encoded quality.
+	 * 
+	 * @return the offset of the encoded qualities.
+	 */
+	public int getQualitiesOffset() {
+		return qualitiesOffset;
+	}
+	/**
+	 * Get the number of bases in this record
+	 * which is also the number of encoded qualities.
+	 * 
+	 * @return the number of bases; will always be &ge; 0.
+	 */
+	public int getNumberOfBases() {
+		return numberOfBases;
+	}
+	/**
+	 * Get the id as a String.
+	 * 
+	 * @return a new String; will never be null.
+	 */
+	public String getId(){
+		return new String(buffer, idOffset, idLength, IOUtil.UTF_8);
+	}
+	/**
+	 * Get the comment as a String.
+	 * 
+	 * @return a new String or {@code null} if there is no comment.
+	 */
+	public String getComment(){
+		if(commentLength ==0){
+			return null;
+		}
+		return new String(buffer, commentOffset, commentLength, IOUtil.UTF_8);
+	}
+	/**
+	 * Does the id of this record equal the given id.
+	 * Only ASCII ids can be compared this way.
+	 * 
+	 * @param id the id to compare; can not be null.
+	 * 
+	 * @return {@code true} if the ids are the same;
+	 * {@code false} otherwise.
+	 * 
+	 * @throws NullPointerException if id is null.
+	 */
+	public boolean idEquals(CharSequence id){
+		if(id.length() != idLength){
+			return false;
+		}
+		for(int i=0; i< idLength; i++){
+			if(buffer[idOffset +i] != id.charAt(i)){
+				return false;
+			}
+		}
+		return true;
+	}
+	/**
+	 * Decode the bases straight from the bytes
+	 * into a {@link NucleotideSequence} which will
+	 * use the 2 bit encoding if the bases allow it.
+	 * 
+	 * @return a new {@link NucleotideSequence}; will never be null.
+	 * 
+	 * @throws IllegalArgumentException if any of the bases are not valid.
+	 */
+	public NucleotideSequence decodeBases(){
+		return new AsciiNucleotideDecoder(numberOfBases)
+						.append(buffer, basesOffset, numberOfBases)
+						.build();
+	}
+	/**
+	 * Decode the encoded qualities straight from the bytes
+	 * into a {@link QualitySequence}.
+	 * 
+	 * @param qualityCodec the {@link FastqQualityCodec} the
+	 * qualities are encoded in; can not be null.
+	 * 
+	 * @return a new {@link QualitySequence}; will never be null.
+	 * 
+	 * @throws NullPointerException if qualityCodec is null.
+	 */
+	public QualitySequence decodeQualities(FastqQualityCodec qualityCodec){
+		return qualityCodec.decode(buffer, qualitiesOffset, numberOfBases);
+	}
+	/**
+	 * Create a new {@link FastqRecord} of this record
+	 * which, unlike this slice, is still valid after the visitor returns.
+	 * 
+	 * @param qualityCodec the {@link FastqQualityCodec} the
+	 * qualities are encoded in; can not be null.
+	 * 
+	 * @return a new {@link FastqRecord}; will never be null.
+	 * 
+	 * @throws NullPointerException if qualityCodec is null.
+	 */
+	public FastqRecord toFastqRecord(FastqQualityCodec qualityCodec){
+		return FastqRecordBuilder.create(getId(), decodeBases(), decodeQualities(qualityCodec), getComment())
+								.build();
+	}
+}
@@ -0,0 +1,523 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.trace.fastq;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.stream.Collector;
+
+import org.jcvi.jillion.core.qual.PhredQuality;
+import org.jcvi.jillion.core.residue.nt.Nucleotide;
+/**
+ * {@code FastqStatistics} computes common fastq quality control
+ * statistics in a single pass: per-position quality histograms,
+ * per-position base counts, a read length histogram, 
+ * a GC content distribution and an estimate of the fraction
+ * of duplicate reads.
+ * <p>
+ * All the counts are stored in primitive arrays that grow
+ * to the length of the longest read.  Records can either
+ * be {@link FastqRecord}s or {@link FastqRecordSlice}s from
+ * a {@link FastqFileScanner} in which case nothing is decoded.
+ * </p>
+ * <p>
+ * Duplicates are estimated by only keeping the reads whose
+ * hash of the bases falls in a sample; since every copy of
+ * a sequence has the same hash, either all or none of the copies
+ * are sampled so the duplicate fraction of the sample
+ * is the same as the whole.  The sample rate is halved whenever
+ * too many distinct sequences are being tracked.
+ * </p>
+ * 
+ * @implNote This implementation is not thread safe. However, it is safe to use
+ * {@link #collector()} on a parallel stream, because the parallel
+ * implementation of {@link java.util.stream.Stream#collect Stream.collect()}
+ * provides the necessary partitioning, isolation, and merging of results for
+ * safe and efficient parallel execution.  Statistics of separate chunks
+ * of a file can also be combined using {@link #combine(FastqStatistics)}.
+ * 
+ * @author dkatzel
+ * 
+ * @since 5.3
+ */
+public final class FastqStatistics {
+	/**
+	 * Qualities are binned from 0 up to
+	 * the highest sanger encodable quality.
+	 * Anything higher is counted as this value.
+	 */
+	public static final int MAX_QUALITY = 93;
+	
+	private static final int QUALITY_BINS = MAX_QUALITY +1;
+	
+	private static final int A=0, C=1, G=2, T=3, OTHER=4;
+	private static final int BASE_BINS = 5;
+	
+	private static final byte[] BASE_INDEX = new byte[256];
+	private static final byte[] UPPER_CASE = new byte[256];
+	/**
+	 * Quality bin for each encoded byte for each codec
+	 * indexed by codec ordinal.
+	 */
+	private static final byte[][] QUALITY_BIN;
+	
+	static{
+		Arrays.fill(BASE_INDEX, (byte) OTHER);
+		BASE_INDEX['A'] = BASE_INDEX['a'] = A;
+		BASE_INDEX['C'] = BASE_INDEX['c'] = C;
+		BASE_INDEX['G'] = BASE_INDEX['g'] = G;
+		BASE_INDEX['T'] = BASE_INDEX['t'] = T;
+		BASE_INDEX['U'] = BASE_INDEX['u'] = T;
+		for(int i=0; i< UPPER_CASE.length; i++){
+			UPPER_CASE[i] = (byte) Character.toUpperCase((char) i);
+		}
+		FastqQualityCodec[] codecs = FastqQualityCodec.values();
+		QUALITY_BIN = new byte[codecs.length][256];
+		for(FastqQualityCodec codec : codecs){
+			byte[] bins = QUALITY_BIN[codec.ordinal()];
+			for(int i=0; i< bins.length; i++){
+				PhredQuality quality;
+				try{
+					quality = codec.decode((char) i);
+				}catch(IllegalArgumentException e){
+					//out of range
+					quality = null;
+				}
+				if(quality ==null){
+					bins[i] = (byte) (i < codec.getOffset() ? 0 : MAX_QUALITY);
+				}else{
+					bins[i] = (byte) toQualityBin(quality.getQualityScore());
+				}
+			}
+		}
+	}
+	
+	private long numberOfRecords, numberOfBases;
+	private int maxLength;
+	private int minLength = Integer.MAX_VALUE;
+	
+	private long[] lengthCounts = new long[1];
+	/**
+	 * {@value #QUALITY_BINS} counts per position.
+	 */
+	private long[] qualityCounts = new long[0];
+	/**
+	 * {@value #BASE_BINS} counts per position.
+	 */
+	private long[] baseCounts = new long[0];
+	
+	private final long[] gcCounts = new long[101];
+	
+	private final DuplicateSampler duplicateSampler = new DuplicateSampler();
+	/**
+	 * Create a new {@link Collector} that computes the {@link FastqStatistics}
+	 * of a stream of {@link FastqRecord}s.
+	 * 
+	 * @return a new {@link Collector}; will never be null.
+	 */
+	public static Collector<FastqRecord, ?, FastqStatistics> collector(){
+		return Collector.of(FastqStatistics::new, 
+							FastqStatistics::accept, 
+							FastqStatistics::combine,
+							Collector.Characteristics.IDENTITY_FINISH,
+							Collector.Characteristics.UNORDERED);
+	}
+	
+	private static int toQualityBin(int quality){
+		if(quality <0){
+			return 0;
+		}
+		return Math.min(quality, MAX_QUALITY);
+	}
+	/**
+	 * Add the given record to these statistics.
+	 * 
+	 * @param record the record to add; can not be null.
+	 * 
+	 * @throws NullPointerException if record is null.
+	 */
+	public void accept(FastqRecord record){
+		byte[] qualities = record.getQualitySequence().toArray();
+		int length = qualities.length;
+		ensureCapacity(length);
+		
+		for(int i=0; i< length; i++){
+			qualityCounts[i * QUALITY_BINS + toQualityBin(qualities[i])]++;
+		}
+		
+		int gc=0, acgt=0;
+		long hash = DuplicateSampler.INITIAL_HASH;
+		Iterator<Nucleotide> iter = record.getNucleotideSequence().iterator();
+		for(int i=0; iter.hasNext(); i++){
+			char c = iter.next().getCharacter().charValue();
+			int base = BASE_INDEX[c & 0xFF];
+			baseCounts[i * BASE_BINS + base]++;
+			if(base != OTHER){
+				acgt++;
+				if(base == C || base ==G){
+					gc++;
+				}
+			}
+			hash = DuplicateSampler.hash(hash, UPPER_CASE[c & 0xFF]);
+		}
+		addRead(length, gc, acgt, hash);
+	}
+	/**
+	 * Add the given record to these statistics without
+	 * decoding the bases or qualities.
+	 * 
+	 * @param slice the record to add; can not be null.
+	 * 
+	 * @param qualityCodec the {@link FastqQualityCodec} the
+	 * qualities are encoded in; can not be null.
+	 * 
+	 * @throws NullPointerException if either parameter is null.
+	 */
+	public void accept(FastqRecordSlice slice, FastqQualityCodec qualityCodec){
+		byte[] qualityBins = QUALITY_BIN[qualityCodec.ordinal()];
+		byte[] buffer = slice.getBuffer();
+		int length = slice.getNumberOfBases();
+		ensureCapacity(length);
+		
+		int qualitiesOffset = slice.getQualitiesOffset();
+		for(int i=0; i< length; i++){
+			qualityCounts[i * QUALITY_BINS + qualityBins[buffer[qualitiesOffset + i] & 0xFF]]++;
+		}
+		
+		int gc=0, acgt=0;
+		long hash = DuplicateSampler.INITIAL_HASH;
+		int basesOffset = slice.getBasesOffset();
+		for(int i=0; i< length; i++){
+			int value = buffer[basesOffset + i] & 0xFF;
+			int base = BASE_INDEX[value];
+			baseCounts[i * BASE_BINS + base]++;
+			if(base != OTHER){
+				acgt++;
+				if(base == C || base ==G){
+					gc++;
+				}
+			}
+			hash = DuplicateSampler.hash(hash, UPPER_CASE[value]);
+		}
+		addRead(length, gc, acgt, hash);
+	}
+	
+	private void addRead(int length, int gc, int acgt, long hash){
+		numberOfRecords++;
+		numberOfBases += length;
+		minLength = Math.min(minLength, length);
+		lengthCounts[length]++;
+		if(acgt >0){
+			gcCounts[Math.round(gc * 100F / acgt)]++;
+		}
+		duplicateSampler.add(hash, 1);
+	}
+	
+	private void ensureCapacity(int length){
+		if(length <= maxLength){
+			return;
+		}
+		maxLength = length;
+		if(length >= lengthCounts.length){
+			int newLength = Math.max(length +1, lengthCounts.length *2);
+			lengthCounts = Arrays.copyOf(lengthCounts, newLength);
+			qualityCounts = Arrays.copyOf(qualityCounts, (newLength -1) * QUALITY_BINS);
+			baseCounts = Arrays.copyOf(baseCounts, (newLength -1) * BASE_BINS);
+		}
+	}
+	/**
+	 * Add all the counts of the other statistics
+	 * to these statistics.
+	 * 
+	 * @param other the other statistics to combine; can not be null.
+	 * 
+	 * @return this.
+	 * 
+	 * @throws NullPointerException if other is null.
+	 */
+	public FastqStatistics combine(FastqStatistics other){
+		if(other.numberOfRecords ==0){
+			return this;
+		}
+		ensureCapacity(other.maxLength);
+		numberOfRecords += other.numberOfRecords;
+		numberOfBases += other.numberOfBases;
+		minLength = Math.min(minLength, other.minLength);
+		addAll(lengthCounts, other.lengthCounts, other.maxLength +1);
+		addAll(qualityCounts, other.qualityCounts, other.maxLength * QUALITY_BINS);
+		addAll(baseCounts, other.baseCounts, other.maxLength * BASE_BINS);
+		addAll(gcCounts, other.gcCounts, gcCounts.length);
+		duplicateSampler.combine(other.duplicateSampler);
+		return this;
+	}
+	
+	private static void addAll(long[] counts, long[] otherCounts, int length){
+		for(int i=0; i< length; i++){
+			counts[i] += otherCounts[i];
+		}
+	}
+	/**
+	 * Get the number of records added.
+	 * 
+	 * @return the number of records; will always be &ge; 0.
+	 */
+	public long getNumberOfRecords() {
+		return numberOfRecords;
+	}
+	/**
+	 * Get the total number of bases of all the records added.
+	 * 
+	 * @return the number of bases; will always be &ge; 0.
+	 */
+	public long getNumberOfBases() {
+		return numberOfBases;
+	}
+	/**
+	 * Get the length of the shortest record.
+	 * 
+	 * @return the min length or 0 if no records have been added.
+	 */
+	public int getMinLength(){
+		return numberOfRecords ==0 ? 0 : minLength;
+	}
+	/**
+	 * Get the length of the longest record which is also
+	 * the number of positions that have statistics.
+	 * 
+	 * @return the max length or 0 if no records have been added.
+	 */
+	public int getMaxLength(){
+		return maxLength;
+	}
+	/**
+	 * Get the number of records of each length.
+	 * 
+	 * @return a new array where the index is the length
+	 * and the value is the number of records of that length;
+	 * the array length is {@code getMaxLength() +1}.
+	 */
+	public long[] getLengthHistogram(){
+		return Arrays.copyOf(lengthCounts, maxLength +1);
+	}
+	/**
+	 * Get the number of bases at the given position
+	 * with each quality value.
+	 * 
+	 * @param position the 0-based position in the reads.
+	 * 
+	 * @return a new array of length {@code MAX_QUALITY +1} 
+	 * where the index is the quality value.
+	 * 
+	 * @throws IndexOutOfBoundsException if position is negative
+	 * or &ge; {@link #getMaxLength()}.
+	 */
+	public long[] getQualityHistogram(int position){
+		checkPosition(position);
+		int start = position * QUALITY_BINS;
+		return Arrays.copyOfRange(qualityCounts, start, start + QUALITY_BINS);
+	}
+	/**
+	 * Get the average quality value of the bases at the given position.
+	 * 
+	 * @param position the 0-based position in the reads.
+	 * 
+	 * @return the mean quality; or 0 if no bases.
+	 * 
+	 * @throws IndexOutOfBoundsException if position is negative
+	 * or &ge; {@link #getMaxLength()}.
+	 */
+	public double getMeanQuality(int position){
+		checkPosition(position);
+		int start = position * QUALITY_BINS;
+		long count=0, sum=0;
+		for(int q=0; q< QUALITY_BINS; q++){
+			long value = qualityCounts[start + q];
+			count += value;
+			sum += value * q;
+		}
+		return count ==0 ? 0D : sum / (double) count;
+	}
+	/**
+	 * Get the number of reads that have the given base at 
+	 * the given position.
+	 * 
+	 * @param position the 0-based position in the reads.
+	 * 
+	 * @param base the base to count; only A,C,G and T are
+	 * counted separately, all other bases are counted as {@link Nucleotide#Unknown}.
+	 * 
+	 * @return the number of bases; will always be &ge; 0.
+	 * 
+	 * @throws NullPointerException if base is null.
+	 * @throws IndexOutOfBoundsException if position is negative
+	 * or &ge; {@link #getMaxLength()}.
+	 */
+	public long getBaseCount(int position, Nucleotide base){
+		checkPosition(position);
+		int index;
+		switch(base){
+			case Adenine : index = A; break;
+			case Cytosine : index = C; break;
+			case Guanine : index = G; break;
+			case Thymine : index = T; break;
+			case Unknown : index = OTHER; break;
+			default : return 0;
+		}
+		return baseCounts[position * BASE_BINS + index];
+	}
+	/**
+	 * Get the distribution of GC content of the reads.
+	 * Reads without any A, C, G or T bases are not counted.
+	 * 
+	 * @return a new array of length 101 where the index is the
+	 * GC percentage rounded to the nearest percent and the value 
+	 * is the number of reads.
+	 */
+	public long[] getGcHistogram(){
+		return gcCounts.clone();
+	}
+	/**
+	 * Get the number of reads in the duplicate estimation sample.
+	 * 
+	 * @return the number of sampled reads; will always be &ge; 0.
+	 */
+	public long getNumberOfSampledRecords(){
+		return duplicateSampler.numberOfReads;
+	}
+	/**
+	 * Estimate the fraction of reads that are 
+	 * duplicates of another read (have the same bases).
+	 * 
+	 * @return the estimated duplicate fraction between 0 and 1.
+	 */
+	public double getEstimatedDuplicateFraction(){
+		long sampled = duplicateSampler.numberOfReads;
+		if(sampled ==0){
+			return 0D;
+		}
+		return (sampled - duplicateSampler.size) / (double) sampled;
+	}
+	
+	private void checkPosition(int position){
+		if(position <0 || position >= maxLength){
+			throw new IndexOutOfBoundsException("position " + position + " must be between 0 and " + maxLength);
+		}
+	}
+	
+	@Override
+	public String toString() {
+		return "FastqStatistics [numberOfRecords=" + numberOfRecords
+				+ ", numberOfBases=" + numberOfBases + ", minLength="
+				+ getMinLength() + ", maxLength=" + maxLength
+				+ ", estimatedDuplicateFraction=" + getEstimatedDuplicateFraction() + "]";
+	}
+	/**
+	 * Counts of the distinct sequences whose hash is in the sample.
+	 * A read is sampled if the top {@code level} bits of its hash are all 0.
+	 */
+	private static final class DuplicateSampler{
+		private static final long INITIAL_HASH = 0xcbf29ce484222325L;
+		private static final long PRIME = 0x100000001b3L;
+		
+		private static final int MAX_DISTINCT = 1<<16;
+		
+		private long[] hashes = new long[16];
+		private long[] counts = new long[16];
+		private int size;
+		private int level;
+		private long numberOfReads;
+		/**
+		 * FNV-1a hash of the next base.
+		 */
+		static long hash(long hash, byte value){
+			return (hash ^ value) * PRIME;
+		}
+		
+		private static long mix(long h){
+			h ^= h >>> 33;
+			h *= 0xff51afd7ed558ccdL;
+			h ^= h >>> 33;
+			h *= 0xc4ceb9fe1a85ec53L;
+			h ^= h >>> 33;
+			//0 marks an empty slot
+			return h ==0 ? 1 : h;
+		}
+		
+		private boolean isSampled(long mixedHash){
+			return level ==0 || (mixedHash >>> (64 - level)) ==0;
+		}
+		
+		void add(long hash, long count){
+			addMixed(mix(hash), count);
+		}
+		
+		private void addMixed(long mixedHash, long count){
+			if(!isSampled(mixedHash)){
+				return;
+			}
+			numberOfReads += count;
+			int mask = hashes.length -1;
+			int i = (int) mixedHash & mask;
+			while(hashes[i] !=0){
+				if(hashes[i] == mixedHash){
+					counts[i] += count;
+					return;
+				}
+				i = (i+1) & mask;
+			}
+			hashes[i] = mixedHash;
+			counts[i] = count;
+			size++;
+			if(size > MAX_DISTINCT){
+				rehash(level +1);
+			}else if(size *2 > hashes.length){
+				rehash(level);
+			}
+		}
+		
+		private void rehash(int newLevel){
+			long[] oldHashes = hashes;
+			long[] oldCounts = counts;
+			level = newLevel;
+			int capacity = Math.max(16, Integer.highestOneBit(size) *4);
+			hashes = new long[capacity];
+			counts = new long[capacity];
+			size=0;
+			numberOfReads=0;
+			for(int i=0; i< oldHashes.length; i++){
+				if(oldHashes[i] !=0){
+					addMixed(oldHashes[i], oldCounts[i]);
+				}
+			}
+		}
+		
+		void combine(DuplicateSampler other){
+			if(other.level > level){
+				rehash(other.level);
+			}
+			for(int i=0; i< other.hashes.length; i++){
+				if(other.hashes[i] !=0){
+					addMixed(other.hashes[i], other.counts[i]);
+				}
+			}
+		}
+	}
+}
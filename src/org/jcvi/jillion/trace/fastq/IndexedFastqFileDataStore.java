@@ -32,7 +32,10 @@ import org.jcvi.jillion.core.datastore.DataStoreEntry;
 import org.jcvi.jillion.core.datastore.DataStoreException;
 import org.jcvi.jillion.core.util.iter.StreamingIterator;
 import org.jcvi.jillion.core.util.streams.ThrowingBiConsumer;
+import org.jcvi.jillion.internal.core.datastore.CompactIdIndex;
 import org.jcvi.jillion.internal.core.datastore.DataStoreStreamingIterator;
+import org.jcvi.jillion.internal.core.datastore.PersistentIdIndex;
+import org.jcvi.jillion.trace.fastq.FastqFileParser.OffsetMemento;
 import org.jcvi.jillion.trace.fastq.FastqVisitor.FastqVisitorCallback.FastqVisitorMemento;
 
 /**
@@ -47,6 +50,27 @@ import org.jcvi.jillion.trace.fastq.FastqVisitor.FastqVisitorCallback.FastqVisit
  */
 final class IndexedFastqFileDataStore{
 
+	private static final String INDEX_FORMAT = "fastq";
+	/**
+	 * Each memento is just the file offset of the record.
+	 */
+	private static final PersistentIdIndex.ValueCodec<FastqVisitorMemento> MEMENTO_CODEC = new PersistentIdIndex.ValueCodec<FastqVisitorMemento>() {
+
+		@Override
+		public int getNumberOfValues() {
+			return 1;
+		}
+
+		@Override
+		public void encode(FastqVisitorMemento value, long[] out) {
+			out[0] = ((OffsetMemento) value).getValue();
+		}
+
+		@Override
+		public FastqVisitorMemento decode(long[] values) {
+			return OffsetMemento.valueOf(values[0]);
+		}
+	};
    
     /**
    	 * Creates a new {@link IndexedFastqFileDataStore}
@@ -78,13 +102,76 @@ final class IndexedFastqFileDataStore{
     	parser.parse(visitor);
     	return visitor.build();
 	}
+	/**
+	 * Creates a new {@link IndexedFastqFileDataStore}
+	 * instance that reads its index from the given index file
+	 * if it exists and is still valid for the fastq file.  Otherwise,
+	 * the fastq file is parsed and the index is written to the index file
+	 * so the next datastore for this fastq file doesn't have to parse it.
+	 * 
+	 * @param parser the {@link FastqFileParser} instance used to 
+	 * to create an {@link IndexedFastqFileDataStore}; must have a file.
+	 * @param qualityCodec the {@link FastqQualityCodec} that should
+	 * be used to decode the encoded qualities of each record in the file;
+	 * if null, then the codec stored in the index is used,
+	 * or if the index has to be rewritten, the codec is guessed
+	 * from the fastq file and stored in the new index.
+	 * @param indexFile the index file to read or write; can not be null.
+	 * @return a new instance of {@link FastqFileDataStore};
+	 * never null.
+	 * @throws IOException if there is a problem parsing the fastq file
+	 * or reading or writing the index.
+	 * @throws IllegalStateException if the parser is not a {@link FastqFileParser} 
+	 * for a file.
+	 * 
+	 * @since 5.3
+	 */
+	static FastqFileDataStore create(FastqParser parser,
+			FastqQualityCodec qualityCodec, File indexFile) throws IOException {
+		if(!(parser instanceof FastqFileParser)){
+			throw new IllegalStateException("persistent index requires a FastqFileParser");
+		}
+		File fastqFile = parser.getFile()
+							.orElseThrow(()-> new IllegalStateException("persistent index requires a fastq file"));
+		Predicate<String> acceptAll = id -> true;
+		Optional<Map<String, FastqVisitorMemento>> index = PersistentIdIndex.read(indexFile, fastqFile, INDEX_FORMAT, MEMENTO_CODEC);
+		if(index.isPresent()){
+			FastqQualityCodec codecToUse = qualityCodec ==null ? decodeQualityCodec(PersistentIdIndex.getFormatValue(index.get())) : qualityCodec;
+			if(codecToUse !=null){
+				return new IndexedFastqFileDataStoreImpl(parser, codecToUse, acceptAll, null, index.get());
+			}
+			//index was written without a codec
+			index.get().clear();
+		}
+		FastqQualityCodec codecToUse = qualityCodec ==null ? FastqUtil.guessQualityCodecUsed(parser) : qualityCodec;
+		MementoedFastqDataStoreBuilderVisitor visitor = new MementoedFastqDataStoreBuilderVisitor(parser, codecToUse,
+				acceptAll, null);
+		parser.parse(visitor);
+		PersistentIdIndex.write(indexFile, fastqFile, INDEX_FORMAT, MEMENTO_CODEC, visitor.mementos, encodeQualityCodec(codecToUse));
+		return visitor.build();
+	}
+	/**
+	 * The quality codec is stored in the index header
+	 * as its ordinal +1 so 0 means it wasn't stored.
+	 */
+	private static long encodeQualityCodec(FastqQualityCodec codec){
+		return codec.ordinal() +1L;
+	}
+	
+	private static FastqQualityCodec decodeQualityCodec(long value){
+		FastqQualityCodec[] codecs = FastqQualityCodec.values();
+		if(value <1 || value > codecs.length){
+			return null;
+		}
+		return codecs[(int) value -1];
+	}
 
     
     
     
     
     private static final class MementoedFastqDataStoreBuilderVisitor extends AbstractFastqVisitor{
-    	private final Map<String, FastqVisitorMemento> mementos = new LinkedHashMap<String,FastqVisitorMemento>();
+    	private final Map<String, FastqVisitorMemento> mementos;
     	private final FastqQualityCodec qualityCodec;
     	 private final FastqParser parser;
     	 private final Predicate<String> filter;
@@ -97,6 +184,9 @@ final class IndexedFastqFileDataStore{
 			this.qualityCodec = qualityCodec;
 			this.filter = filter;
 			this.recordFilter = recordFilter;
+			//only FastqFileParser mementos are known to be OffsetMementos
+			this.mementos = parser instanceof FastqFileParser ? new CompactIdIndex<>(MEMENTO_CODEC)
+															: new LinkedHashMap<String,FastqVisitorMemento>();
 		}
 		public FastqFileDataStore build() {
 			return new IndexedFastqFileDataStoreImpl(parser, qualityCodec, filter, recordFilter,mementos);
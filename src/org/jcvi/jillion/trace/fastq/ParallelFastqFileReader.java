@@ -0,0 +1,404 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.trace.fastq;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jcvi.jillion.core.io.InputStreamSupplier;
+import org.jcvi.jillion.core.util.streams.ThrowingBiConsumer;
+import org.jcvi.jillion.internal.core.io.BufferedLineParser;
+import org.jcvi.jillion.internal.core.util.Sneak;
+import org.jcvi.jillion.trace.fastq.FastqFileParser.OffsetMemento;
+import org.jcvi.jillion.trace.fastq.FastqVisitor.FastqVisitorCallback;
+/**
+ * {@code ParallelFastqFileReader} parses a fastq file
+ * using several threads at once.
+ * <p>
+ * Uncompressed files are split into chunks of bytes that are parsed
+ * concurrently.  Each chunk starts at the first record whose defline
+ * starts at or after the chunk's first byte.  Since quality lines can
+ * also start with '@', a line is only considered a defline if it starts
+ * with '@' and the line two lines later starts with '+' which can't happen
+ * for a quality line because the line two lines after a quality line
+ * is the next record's bases.  This only works if every record
+ * is exactly 4 lines so multi-line fastq files are not supported.
+ * </p>
+ * <p>
+ * Compressed files (including BGZF compressed files) can't be split
+ * so they are decompressed by the calling thread 
+ * into blocks of whole records which are then parsed concurrently.
+ * </p>
+ * <p>
+ * Records are either given to the consumer in the same order
+ * as the file (on the calling thread) or as soon as they are parsed
+ * (on the worker threads) in which case the consumer must be thread safe.
+ * </p>
+ * 
+ * @author dkatzel
+ * 
+ * @since 5.3
+ */
+public final class ParallelFastqFileReader {
+
+	private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+	/**
+	 * Blocks of a compressed file are stored in a byte array
+	 * so they can't get too close to the max array size.
+	 */
+	private static final int MAX_BLOCK_SIZE = 1 << 30;
+	
+	private final InputStreamSupplier supplier;
+	private final FastqQualityCodec codec;
+	private final boolean hasComments;
+	private final boolean preserveOrder;
+	private final int numberOfThreads;
+	private final long chunkSize;
+	
+	private ParallelFastqFileReader(Builder builder) throws IOException {
+		this.supplier = InputStreamSupplier.forFile(builder.fastqFile);
+		this.codec = builder.codec;
+		this.hasComments = builder.hasComments;
+		this.preserveOrder = builder.preserveOrder;
+		this.numberOfThreads = builder.numberOfThreads;
+		this.chunkSize = builder.chunkSize;
+	}
+	/**
+	 * Parse all the records in the fastq file and call the given consumer
+	 * on each one.  If this reader preserves order,
+	 * then the consumer is called by the calling thread in file order;
+	 * otherwise the consumer is called concurrently by the worker threads
+	 * and must be thread safe.
+	 * If the consumer throws an exception, parsing is stopped
+	 * and the exception is rethrown by this method.
+	 * 
+	 * @param consumer a BiConsumer that takes the id of the record 
+	 * as the first parameter and the record as the second parameter; can not be null.
+	 * 
+	 * @throws IOException if there is a problem parsing the fastq file.
+	 * @throws E if the consumer throws an exception.
+	 * @throws NullPointerException if consumer is null.
+	 */
+	public <E extends Throwable> void forEach(ThrowingBiConsumer<String, FastqRecord, E> consumer) throws IOException, E{
+		Objects.requireNonNull(consumer, "consumer can not be null");
+		ExecutorService executor = Executors.newFixedThreadPool(numberOfThreads, r->{
+			Thread t = new Thread(r, "fastq-parser-" + THREAD_COUNTER.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		});
+		AtomicBoolean failed = new AtomicBoolean(false);
+		ThrowingBiConsumer<String, FastqRecord, E> workerConsumer = preserveOrder ? null : consumer;
+		//keep enough chunks in flight so every thread
+		//has something to do while the results are consumed
+		int maxChunksInFlight = numberOfThreads *2;
+		Deque<Future<List<FastqRecord>>> pending = new ArrayDeque<>(maxChunksInFlight);
+		try{
+			if(supplier.isRawFile()){
+				long length = supplier.getFile().get().length();
+				long numberOfChunks = (length + chunkSize -1) / chunkSize;
+				for(long i=0; i< numberOfChunks; i++){
+					long start = i * chunkSize;
+					pending.add(executor.submit(newTask(failed, workerConsumer, parseChunk(start, start+ chunkSize))));
+					drain(pending, maxChunksInFlight, consumer);
+				}
+			}else{
+				try(InputStream in = supplier.get();
+					BufferedLineParser parser = new BufferedLineParser(in)){
+					byte[] block;
+					while((block = nextBlock(parser)) !=null){
+						pending.add(executor.submit(newTask(failed, workerConsumer, parseBlock(block))));
+						drain(pending, maxChunksInFlight, consumer);
+					}
+				}
+			}
+			drain(pending, 0, consumer);
+		}finally{
+			failed.set(true);
+			executor.shutdownNow();
+		}
+	}
+	
+	private <E extends Throwable> void drain(Deque<Future<List<FastqRecord>>> pending, int maxPending, 
+			ThrowingBiConsumer<String, FastqRecord, E> consumer) throws IOException, E{
+		while(pending.size() > maxPending){
+			List<FastqRecord> records = await(pending.removeFirst());
+			if(preserveOrder){
+				for(FastqRecord record : records){
+					consumer.accept(record.getId(), record);
+				}
+			}
+		}
+	}
+	
+	private static <T> T await(Future<T> future) throws IOException{
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("interrupted while waiting for records to be parsed", e);
+		} catch (ExecutionException e) {
+			//rethrow the same exception the worker got
+			throw Sneak.sneakyThrow(e.getCause());
+		}
+	}
+	
+	@FunctionalInterface
+	private interface ChunkParser{
+		void parse(FastqVisitor visitor) throws IOException;
+	}
+	/**
+	 * Create a task that parses the records using the given {@link ChunkParser}.
+	 * @param failed set when any task fails so the others stop early.
+	 * @param consumer the consumer to give the records to; or null
+	 * if the records should be returned in a list instead.
+	 * @param chunkParser the {@link ChunkParser} to parse the records with.
+	 * @return a new {@link Callable}.
+	 */
+	private <E extends Throwable> Callable<List<FastqRecord>> newTask(AtomicBoolean failed,
+			ThrowingBiConsumer<String, FastqRecord, E> consumer, ChunkParser chunkParser){
+		return ()->{
+			List<FastqRecord> records = consumer ==null ? new ArrayList<>() : Collections.emptyList();
+			try{
+				chunkParser.parse(new AbstractFastqVisitor(){
+					@Override
+					public FastqRecordVisitor visitDefline(FastqVisitorCallback callback, String id, String optionalComment) {
+						if(failed.get()){
+							callback.haltParsing();
+							return null;
+						}
+						return new AbstractFastqRecordVisitor(id, optionalComment, codec) {
+							@Override
+							protected void visitRecord(FastqRecord record) {
+								if(consumer ==null){
+									records.add(record);
+								}else{
+									try {
+										consumer.accept(record.getId(), record);
+									} catch (Throwable t) {
+										throw Sneak.sneakyThrow(t);
+									}
+								}
+							}
+						};
+					}
+				});
+			}catch(Throwable t){
+				failed.set(true);
+				throw t;
+			}
+			return records;
+		};
+	}
+	/**
+	 * Parse all the records whose deflines start
+	 * in the given range of bytes.
+	 * @param start the offset of the first byte of the chunk.
+	 * @param end the offset of the first byte past the end of the chunk.
+	 * @param visitor the visitor to visit the records with.
+	 * @throws IOException if there is a problem parsing the file.
+	 */
+	private void parseChunk(long start, long end, FastqVisitor visitor) throws IOException{
+		long recordStart = start==0? 0 : findRecordStart(supplier, start);
+		if(recordStart <0 || recordStart >= end){
+			//no records start in this chunk
+			return;
+		}
+		FastqParser parser = FastqFileParser.create(supplier, hasComments, false, true);
+		parser.parse(new AbstractFastqVisitor() {
+
+			@Override
+			public FastqRecordVisitor visitDefline(FastqVisitorCallback callback, String id, String optionalComment) {
+				if(((OffsetMemento) callback.createMemento()).getValue() >= end){
+					//this record belongs to the next chunk
+					callback.haltParsing();
+					return null;
+				}
+				return visitor.visitDefline(callback, id, optionalComment);
+			}
+			
+		}, OffsetMemento.valueOf(recordStart));
+	}
+	
+	private ChunkParser parseChunk(long start, long end){
+		return visitor -> parseChunk(start, end, visitor);
+	}
+	
+	private ChunkParser parseBlock(byte[] records){
+		return visitor -> FastqFileParser.create(new ByteArrayInputStream(records), hasComments, false).parse(visitor);
+	}
+	/**
+	 * Read the next chunk size worth of whole records.
+	 * @param parser the parser to read the lines of the decompressed file from.
+	 * @return the bytes of the records; or null if there are no more records.
+	 * @throws IOException if there is a problem reading the file.
+	 */
+	private byte[] nextBlock(BufferedLineParser parser) throws IOException{
+		ByteArrayOutputStream block = new ByteArrayOutputStream((int) Math.min(chunkSize + 1024, MAX_BLOCK_SIZE));
+		while(block.size() < chunkSize && block.size() < MAX_BLOCK_SIZE && parser.hasNextLine()){
+			//each record is exactly 4 lines
+			for(int i=0; i< 4 && parser.hasNextLine(); i++){
+				BufferedLineParser.Line line = parser.nextLineAsCharSequence();
+				block.write(line.getBytes(), line.getOffset(), line.length());
+			}
+		}
+		return block.size()==0 ? null : block.toByteArray();
+	}
+	/**
+	 * Find the offset of the first fastq defline
+	 * that starts at or after the given offset.
+	 * 
+	 * @param supplier the {@link InputStreamSupplier} of the uncompressed fastq file.
+	 * @param offset the offset to start looking from; must be &gt; 0.
+	 * @return the offset of the defline or -1 if there are no
+	 * more records.
+	 * @throws IOException if there is a problem reading the file.
+	 */
+	static long findRecordStart(InputStreamSupplier supplier, long offset) throws IOException{
+		//start from the byte before so we can tell
+		//if the offset is the beginning of a line
+		try(InputStream in = supplier.get(offset -1);
+			BufferedLineParser parser = new BufferedLineParser(in, offset -1)){
+			//skip the rest of the current line
+			parser.nextLine();
+			
+			long[] positions = new long[3];
+			char[] firstChars = new char[3];
+			int linesRead=0;
+			while(parser.hasNextLine()){
+				int index = linesRead %3;
+				positions[index] = parser.getPosition();
+				BufferedLineParser.Line line = parser.nextLineAsCharSequence();
+				firstChars[index] = line.getLengthWithoutEndOfLine() ==0 ? 0 : line.charAt(0);
+				linesRead++;
+				if(linesRead >=3){
+					int candidate = linesRead %3;
+					//the line we just read is 2 lines after the candidate
+					if(firstChars[candidate] == '@' && firstChars[index] == '+'){
+						return positions[candidate];
+					}
+				}
+			}
+		}
+		return -1;
+	}
+	/**
+	 * Builder to configure and create a {@link ParallelFastqFileReader}.
+	 * 
+	 * @since 5.3
+	 */
+	public static final class Builder{
+		private static final long DEFAULT_CHUNK_SIZE = 8 * 1024 * 1024;
+		
+		private final File fastqFile;
+		private final FastqQualityCodec codec;
+		private boolean hasComments;
+		private boolean preserveOrder;
+		private int numberOfThreads = Runtime.getRuntime().availableProcessors();
+		private long chunkSize = DEFAULT_CHUNK_SIZE;
+		/**
+		 * Create a new Builder.
+		 * @param fastqFile the fastq file to parse; must exist, may be compressed
+		 * but every record must be exactly 4 lines.
+		 * @param codec the {@link FastqQualityCodec} used to encode the qualities
+		 * in this file; can not be null.
+		 * @throws NullPointerException if either parameter is null.
+		 */
+		public Builder(File fastqFile, FastqQualityCodec codec){
+			this.fastqFile = Objects.requireNonNull(fastqFile, "fastq file can not be null");
+			this.codec = Objects.requireNonNull(codec, "quality codec can not be null");
+		}
+		/**
+		 * Do the deflines contain comments.
+		 * If not set, defaults to {@code false}.
+		 * @param hasComments {@code true} if the deflines may contain comments.
+		 * @return this.
+		 */
+		public Builder hasComments(boolean hasComments){
+			this.hasComments = hasComments;
+			return this;
+		}
+		/**
+		 * Should the records be given to the consumer in the same order
+		 * as the file on the calling thread.  If set to {@code false},
+		 * the records are given to the consumer as soon as they are parsed
+		 * by the worker threads so the consumer must be thread safe.
+		 * If not set, defaults to {@code false}.
+		 * @param preserveOrder {@code true} to preserve the file order.
+		 * @return this.
+		 */
+		public Builder preserveOrder(boolean preserveOrder){
+			this.preserveOrder = preserveOrder;
+			return this;
+		}
+		/**
+		 * The number of threads to parse the file with.
+		 * If not set, defaults to the number of processors.
+		 * @param numberOfThreads the number of threads; must be &ge; 1.
+		 * @return this.
+		 * @throws IllegalArgumentException if numberOfThreads &lt; 1.
+		 */
+		public Builder numberOfThreads(int numberOfThreads){
+			if(numberOfThreads <1){
+				throw new IllegalArgumentException("number of threads must be >= 1 : " + numberOfThreads);
+			}
+			this.numberOfThreads = numberOfThreads;
+			return this;
+		}
+		/**
+		 * The number of bytes each thread parses at a time.
+		 * If not set, defaults to 8MB.
+		 * @param chunkSize the number of bytes in each chunk; must be &ge; 1.
+		 * @return this.
+		 * @throws IllegalArgumentException if chunkSize &lt; 1.
+		 */
+		public Builder chunkSize(long chunkSize){
+			if(chunkSize <1){
+				throw new IllegalArgumentException("chunk size must be >= 1 : " + chunkSize);
+			}
+			this.chunkSize = chunkSize;
+			return this;
+		}
+		/**
+		 * Create a new {@link ParallelFastqFileReader}.
+		 * @return a new {@link ParallelFastqFileReader}; will never be null.
+		 * @throws IOException if the file does not exist or can not be read.
+		 */
+		public ParallelFastqFileReader build() throws IOException{
+			return new ParallelFastqFileReader(this);
+		}
+	}
+}
@@ -22,8 +22,8 @@ package org.jcvi.jillion.trace.sff;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Optional;
 
 import org.jcvi.jillion.core.datastore.DataStoreClosedException;
 import org.jcvi.jillion.core.datastore.DataStoreEntry;
@@ -33,7 +33,9 @@ import org.jcvi.jillion.core.datastore.DataStoreFilters;
 import org.jcvi.jillion.core.residue.nt.NucleotideSequence;
 import org.jcvi.jillion.core.util.iter.IteratorUtil;
 import org.jcvi.jillion.core.util.iter.StreamingIterator;
+import org.jcvi.jillion.internal.core.datastore.CompactIdIndex;
 import org.jcvi.jillion.internal.core.datastore.DataStoreStreamingIterator;
+import org.jcvi.jillion.internal.core.datastore.PersistentIdIndex;
 import org.jcvi.jillion.trace.sff.SffVisitorCallback.SffVisitorMemento;
 
 
@@ -51,6 +53,28 @@ import org.jcvi.jillion.trace.sff.SffVisitorCallback.SffVisitorMemento;
  */
 final class CompletelyParsedIndexedSffFileDataStore {
 	
+	private static final String INDEX_FORMAT = "sff";
+	/**
+	 * Each memento is the file offset and read count.
+	 */
+	private static final PersistentIdIndex.ValueCodec<SffVisitorMemento> MEMENTO_CODEC = new PersistentIdIndex.ValueCodec<SffVisitorMemento>() {
+
+		@Override
+		public int getNumberOfValues() {
+			return 2;
+		}
+
+		@Override
+		public void encode(SffVisitorMemento value, long[] out) {
+			SffFileParser.getMementoValues(value, out);
+		}
+
+		@Override
+		public SffVisitorMemento decode(long[] values) {
+			return SffFileParser.createMemento(values);
+		}
+	};
+	
 	private CompletelyParsedIndexedSffFileDataStore(){
 		//can not instantiate
 	}
@@ -80,12 +104,43 @@ final class CompletelyParsedIndexedSffFileDataStore {
 	 * @throws IllegalArgumentException if sffFile does not exist.
 	 */
 	public static SffFileDataStore create(File sffFile, DataStoreFilter filter) throws IOException{
-		Visitor visitor = new Visitor(filter);
+		Visitor visitor = new Visitor(filter, false);
 		SffParser parser = SffFileParser.create(sffFile);
 		parser.parse(visitor);
 		
 		return visitor.build(parser, sffFile, filter);
 	}
+	/**
+	 * Create a new {@link SffFileDataStore} instance of all the reads
+	 * which reads its index from the given index file
+	 * if it exists and is still valid for the sff file.  Otherwise,
+	 * the sff file is parsed and the index is written to the index file
+	 * so the next datastore for this sff file doesn't have to parse it.
+	 * @param sffFile the sff file to create a datastore for.
+	 * @param indexFile the index file to read or write; can not be null.
+	 * @return a new {@link SffFileDataStore} instance; never null.
+	 * @throws IOException if there is a problem reading the file
+	 * or reading or writing the index.
+	 * @throws NullPointerException if either file is null.
+	 * 
+	 * @since 5.3
+	 */
+	public static SffFileDataStore create(File sffFile, File indexFile) throws IOException{
+		DataStoreFilter filter = DataStoreFilters.alwaysAccept();
+		SffParser parser = SffFileParser.create(sffFile);
+		Optional<Map<String, SffVisitorMemento>> index = PersistentIdIndex.read(indexFile, sffFile, INDEX_FORMAT, MEMENTO_CODEC);
+		if(index.isPresent()){
+			//still need the header for the key and flow sequences
+			//and the parser needs it to use the mementos
+			Visitor visitor = new Visitor(filter, true);
+			parser.parse(visitor);
+			return new DataStoreImpl(parser, sffFile, filter, visitor.keySequence, visitor.flowSequence, index.get());
+		}
+		Visitor visitor = new Visitor(filter, false);
+		parser.parse(visitor);
+		PersistentIdIndex.write(indexFile, sffFile, INDEX_FORMAT, MEMENTO_CODEC, visitor.mementos);
+		return visitor.build(parser, sffFile, filter);
+	}
 	
 	
 	
@@ -93,18 +148,24 @@ final class CompletelyParsedIndexedSffFileDataStore {
 		private Map<String, SffVisitorMemento> mementos;
 		
 		private final DataStoreFilter filter;
+		private final boolean headerOnly;
 		private NucleotideSequence keySequence,flowSequence;
 		
-		public Visitor(DataStoreFilter filter) {
+		public Visitor(DataStoreFilter filter, boolean headerOnly) {
 			this.filter = filter;
+			this.headerOnly = headerOnly;
 		}
 
 		@Override
 		public void visitHeader(SffVisitorCallback callback,
 				SffCommonHeader header) {
-			mementos = new LinkedHashMap<String,SffVisitorMemento>((int)header.getNumberOfReads());
 			keySequence = header.getKeySequence();
 			flowSequence = header.getFlowSequence();
+			if(headerOnly){
+				callback.haltParsing();
+				return;
+			}
+			mementos = new CompactIdIndex<>(MEMENTO_CODEC);
 		}
 
 		@Override
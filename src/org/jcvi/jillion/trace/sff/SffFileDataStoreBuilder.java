@@ -42,6 +42,8 @@ public class SffFileDataStoreBuilder {
 	//by default store everything in memory
 	private DataStoreProviderHint hint = DataStoreProviderHint.RANDOM_ACCESS_OPTIMIZE_SPEED;
 	
+	private File persistentIndexFile;
+	
 	/**
 	 * Create a new instance of {@code SffFileDataStoreBuilder}
 	 * which will build a {@link SffFileDataStore} for the given
@@ -80,6 +82,38 @@ public class SffFileDataStoreBuilder {
 		this.filter = filter;
 		return this;
 	}
+	/**
+	 * Store the index of read offsets that is built for a
+	 * {@link DataStoreProviderHint#RANDOM_ACCESS_OPTIMIZE_MEMORY} datastore
+	 * in the given sidecar file.  The first time the datastore is built,
+	 * the sff file is parsed as usual and the index is written to the index file.
+	 * Later datastores for the same sff file memory-map the index instead of
+	 * parsing the sff file again.
+	 * <p>
+	 * The index records the length and last modified time of the sff file;
+	 * if the sff file has changed, the index is rebuilt.
+	 * The index is not used if the sff file has its own 454 manifest index
+	 * or for any other {@link DataStoreProviderHint}.
+	 * </p>
+	 * 
+	 * @param indexFile the index file to read or write, for example
+	 * {@code reads.sff.jidx}; can not be null.
+	 * @return this.
+	 * 
+	 * @throws NullPointerException if indexFile is null.
+	 * 
+	 * @apiNote since filters can't be saved in the index,
+	 * this can not be combined with {@link #filter(DataStoreFilter)}.
+	 * 
+	 * @since 5.3
+	 */
+	public SffFileDataStoreBuilder persistentIndex(File indexFile){
+		if(indexFile==null){
+			throw new NullPointerException("index file can not be null");
+		}
+		this.persistentIndexFile = indexFile;
+		return this;
+	}
 	/**
 	 * Provide a {@link DataStoreProviderHint} to this builder
 	 * to let it know the implementation preferences of the client.
@@ -130,9 +164,15 @@ public class SffFileDataStoreBuilder {
 	 * never null.
 	 * @throws IOException if there is a problem parsing the 
 	 * sff file. 
+	 * @throws IllegalStateException if a {@link #persistentIndex(File)} is used
+	 * with a filter.
 	 * @see #hint(DataStoreProviderHint)
+	 * @see #persistentIndex(File)
 	 */
 	public SffFileDataStore build() throws IOException {
+		if(persistentIndexFile !=null && filter != DataStoreFilters.alwaysAccept()){
+			throw new IllegalStateException("can not use a persistent index with a filter");
+		}
 		switch(hint){
 			case RANDOM_ACCESS_OPTIMIZE_SPEED:
 				return DefaultSffFileDataStore.create(sffFile,filter);
@@ -152,6 +192,9 @@ public class SffFileDataStoreBuilder {
 			return manifestDataStore;
 		}
 		//no manifest
+		if(persistentIndexFile !=null){
+			return CompletelyParsedIndexedSffFileDataStore.create(sffFile, persistentIndexFile);
+		}
 		return CompletelyParsedIndexedSffFileDataStore.create(sffFile, filter);
 	}
 }
@@ -188,6 +188,42 @@ public abstract class SffFileParser implements SffParser{
 		}
 		
 	}
+	/**
+	 * Write the file position and read count of the given memento
+	 * into the first two elements of the given array so the
+	 * memento can be recreated later by {@link #createMemento(long[])}
+	 * (for example to persist an index).
+	 * @param memento a memento created by a file based parser.
+	 * @param out the array to write to.
+	 * 
+	 * @throws IllegalArgumentException if the memento was not created by
+	 * a file based parser.
+	 * 
+	 * @since 5.3
+	 */
+	static void getMementoValues(SffVisitorMemento memento, long[] out){
+		if(!(memento instanceof AbstractSffFileMemento)){
+			throw new IllegalArgumentException("don't know how to handle this memento");
+		}
+		out[0] = ((AbstractSffFileMemento)memento).getPosition();
+		out[1] = memento instanceof ReadRecordSffFileMemento ? ((ReadRecordSffFileMemento)memento).readCount : -1;
+	}
+	/**
+	 * Recreate a memento from the values written by
+	 * {@link #getMementoValues(SffVisitorMemento, long[])}.
+	 * The memento can only be used by a file based parser 
+	 * of the same file that has already parsed the header.
+	 * @param values the file position and read count.
+	 * @return a new memento.
+	 * 
+	 * @since 5.3
+	 */
+	static SffVisitorMemento createMemento(long[] values){
+		if(values[1] <0){
+			return new BeginningSffFileMomento();
+		}
+		return new ReadRecordSffFileMemento(values[0], (int) values[1]);
+	}
 	
 	private static class ParserState{
 		private final long position;
@@ -35,7 +35,10 @@ import org.junit.runners.Suite.SuiteClasses;
     	TestNucleotideNeedlemanWunschAligner.class,
     	TestProteinNeedlemanWunschAligner.class,
     	
-    	TestMultipleLocalAlignment.class
+    	TestMultipleLocalAlignment.class,
+    	TestBandedAndLinearSpaceAlignment.class,
+    	TestStripedSmithWatermanScorer.class,
+    	TestBatchPairwiseAligner.class
     }
     )
 public class AllPairwiseUnitTests {
@@ -0,0 +1,215 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.align.pairwise;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.jcvi.jillion.core.Range;
+import org.jcvi.jillion.core.residue.nt.NucleotideSequence;
+import org.jcvi.jillion.core.residue.nt.NucleotideSequenceBuilder;
+import org.junit.Test;
+
+public class TestBandedAndLinearSpaceAlignment extends AbstractTestNucleotideAligner{
+
+	private static final String BASES = "ACGT";
+	
+	private final Random random = new Random(1234);
+	
+	private NucleotideSequence randomSequence(int length){
+		StringBuilder builder = new StringBuilder(length);
+		for(int i=0; i< length; i++){
+			builder.append(BASES.charAt(random.nextInt(4)));
+		}
+		return new NucleotideSequenceBuilder(builder.toString()).build();
+	}
+	/**
+	 * Make a few substitutions and small indels.
+	 */
+	private NucleotideSequence mutate(NucleotideSequence seq, int numberOfMutations){
+		NucleotideSequenceBuilder builder = seq.toBuilder();
+		for(int i=0; i< numberOfMutations; i++){
+			//stay away from the ends
+			int offset = 10 + random.nextInt((int)builder.getLength() - 20);
+			switch(random.nextInt(3)){
+				case 0 : builder.replace(offset, randomSequence(1).get(0));
+						break;
+				case 1 : builder.insert(offset, randomSequence(1 + random.nextInt(3)));
+						break;
+				default : builder.delete(new Range.Builder(1+ random.nextInt(3)).shift(offset).build());
+						break;
+			}
+		}
+		return builder.build();
+	}
+	
+	private PairwiseAlignmentBuilder<?,?,NucleotidePairwiseSequenceAlignment> builder(NucleotideSequence query, NucleotideSequence subject){
+		return PairwiseAlignmentBuilder.createNucleotideAlignmentBuilder(query, subject, matrix)
+											.gapPenalty(-4, -1);
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void negativeBandWidthShouldThrowIllegalArgumentException(){
+		NucleotideSequence seq = randomSequence(10);
+		builder(seq, seq).bandWidth(-1);
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void negativeAdaptiveBandWidthShouldThrowIllegalArgumentException(){
+		NucleotideSequence seq = randomSequence(10);
+		builder(seq, seq).adaptiveBandWidth(-1);
+	}
+	
+	@Test(expected = IllegalStateException.class)
+	public void bandedLinearMemoryGlobalAlignmentShouldThrowIllegalStateException(){
+		NucleotideSequence seq = randomSequence(10);
+		builder(seq, seq).useGlobalAlignment()
+						.useLinearMemory(true)
+						.bandWidth(5)
+						.build();
+	}
+	
+	@Test
+	public void bandedGlobalSameAsFullMatrixForSimilarSequences(){
+		for(int i=0; i< 20; i++){
+			NucleotideSequence query = randomSequence(300);
+			NucleotideSequence subject = mutate(query, 6);
+			
+			assertEquals(builder(query, subject).useGlobalAlignment().build(),
+					builder(query, subject).useGlobalAlignment().bandWidth(20).build());
+		}
+	}
+	
+	@Test
+	public void bandedLocalSameAsFullMatrixForSimilarSequences(){
+		for(int i=0; i< 20; i++){
+			NucleotideSequence query = randomSequence(300);
+			NucleotideSequence subject = mutate(query, 6);
+			
+			assertEquals(builder(query, subject).useLocalAlignment().build(),
+					builder(query, subject).useLocalAlignment().bandWidth(20).build());
+		}
+	}
+	
+	@Test
+	public void narrowBandCanNotFindAlignmentOutsideBand(){
+		NucleotideSequence query = randomSequence(200);
+		NucleotideSequence subject = new NucleotideSequenceBuilder(query)
+													.insert(100, randomSequence(40))
+													.build();
+		
+		NucleotidePairwiseSequenceAlignment full = builder(query, subject).useGlobalAlignment().build();
+		//band always includes the 40 diagonals between the corners
+		NucleotidePairwiseSequenceAlignment banded = builder(query, subject).useGlobalAlignment().bandWidth(0).build();
+		assertEquals(full, banded);
+		
+		NucleotideSequence shiftedQuery = new NucleotideSequenceBuilder(query)
+													.delete(new Range.Builder(40).shift(20).build())
+													.insert(150, randomSequence(40))
+													.build();
+		NucleotidePairwiseSequenceAlignment fullShifted = builder(shiftedQuery, query).useGlobalAlignment().build();
+		NucleotidePairwiseSequenceAlignment narrowShifted = builder(shiftedQuery, query).useGlobalAlignment().bandWidth(5).build();
+		assertTrue(narrowShifted.getScore() < fullShifted.getScore());
+	}
+	
+	@Test
+	public void adaptiveBandWidensToFindAlignmentOutsideBand(){
+		NucleotideSequence query = randomSequence(200);
+		NucleotideSequence shiftedQuery = new NucleotideSequenceBuilder(query)
+													.delete(new Range.Builder(8).shift(20).build())
+													.insert(150, randomSequence(8))
+													.build();
+		NucleotidePairwiseSequenceAlignment fullShifted = builder(shiftedQuery, query).useGlobalAlignment().build();
+		
+		assertTrue(builder(shiftedQuery, query).useGlobalAlignment().bandWidth(1).build().getScore() < fullShifted.getScore());
+		assertEquals(fullShifted, builder(shiftedQuery, query).useGlobalAlignment().adaptiveBandWidth(1).build());
+	}
+	
+	@Test
+	public void adaptiveBandSameAsFullMatrix(){
+		for(int i=0; i< 20; i++){
+			NucleotideSequence query = randomSequence(300);
+			NucleotideSequence subject = mutate(query, 20);
+			
+			assertEquals(builder(query, subject).useGlobalAlignment().build(),
+					builder(query, subject).useGlobalAlignment().adaptiveBandWidth(1).build());
+			assertEquals(builder(query, subject).useLocalAlignment().build(),
+					builder(query, subject).useLocalAlignment().adaptiveBandWidth(1).build());
+		}
+	}
+	
+	@Test
+	public void linearMemoryExactMatch(){
+		NucleotideSequence seq = randomSequence(100);
+		
+		NucleotidePairwiseSequenceAlignment expected = createExpectedAlignment(seq.toString(), seq.toString(), 200);
+		assertEquals(expected, builder(seq, seq).useGlobalAlignment().useLinearMemory(true).build());
+	}
+	
+	@Test
+	public void linearMemoryGapInMiddle(){
+		NucleotidePairwiseSequenceAlignment expected = createExpectedAlignment(
+				"ACGTTGCAACGTAAAAGGTTCCAGT", 
+				"ACGTTGCAACGT----GGTTCCAGT",
+				 21*2 -4 -3);
+		NucleotideSequence query = new NucleotideSequenceBuilder("ACGTTGCAACGTAAAAGGTTCCAGT").build();
+		NucleotideSequence subject = new NucleotideSequenceBuilder("ACGTTGCAACGTGGTTCCAGT").build();
+		
+		assertEquals(expected, builder(query, subject).useGlobalAlignment().useLinearMemory(true).build());
+		assertEquals(expected, builder(query, subject).useGlobalAlignment().build());
+	}
+	
+	@Test
+	public void linearMemorySameScoreAsFullMatrixWithoutAffineGaps(){
+		for(int i=0; i< 20; i++){
+			NucleotideSequence query = randomSequence(300);
+			NucleotideSequence subject = mutate(query, 6);
+			NucleotidePairwiseSequenceAlignment full = builder(query, subject).gapPenalty(-3, -3).useGlobalAlignment().build();
+			NucleotidePairwiseSequenceAlignment linear = builder(query, subject).gapPenalty(-3, -3).useGlobalAlignment().useLinearMemory(true).build();
+			
+			assertEquals(full.getScore(), linear.getScore(), 0.001F);
+			assertIsGlobalAlignment(query, subject, linear);
+		}
+	}
+	
+	@Test
+	public void linearMemoryFindsOptimalAffineGapAlignment(){
+		for(int i=0; i< 20; i++){
+			NucleotideSequence query = randomSequence(300);
+			NucleotideSequence subject = mutate(query, 6);
+			NucleotidePairwiseSequenceAlignment full = builder(query, subject).useGlobalAlignment().build();
+			NucleotidePairwiseSequenceAlignment linear = builder(query, subject).useGlobalAlignment().useLinearMemory(true).build();
+			//the full matrix only approximates affine gaps
+			//so it might not find the best alignment
+			assertTrue(linear.getScore() >= full.getScore());
+			assertIsGlobalAlignment(query, subject, linear);
+		}
+	}
+	
+	private static void assertIsGlobalAlignment(NucleotideSequence query, NucleotideSequence subject, NucleotidePairwiseSequenceAlignment actual){
+		assertEquals(query.getLength(), actual.getQueryRange().getLength());
+		assertEquals(subject.getLength(), actual.getSubjectRange().getLength());
+		assertEquals(query, actual.getGappedQueryAlignment().toBuilder().ungap().build());
+		assertEquals(subject, actual.getGappedSubjectAlignment().toBuilder().ungap().build());
+	}
+}
@@ -0,0 +1,236 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.align.pairwise;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.jcvi.jillion.align.AminoAcidSubstitutionMatrix;
+import org.jcvi.jillion.align.BlosumMatrices;
+import org.jcvi.jillion.core.Range;
+import org.jcvi.jillion.core.datastore.DataStore;
+import org.jcvi.jillion.core.datastore.DataStoreException;
+import org.jcvi.jillion.core.datastore.DataStoreUtil;
+import org.jcvi.jillion.core.residue.aa.ProteinSequence;
+import org.jcvi.jillion.core.residue.aa.ProteinSequenceBuilder;
+import org.jcvi.jillion.core.residue.nt.Nucleotide;
+import org.jcvi.jillion.core.residue.nt.NucleotideSequence;
+import org.jcvi.jillion.core.residue.nt.NucleotideSequenceBuilder;
+import org.junit.Test;
+
+public class TestBatchPairwiseAligner extends AbstractTestNucleotideAligner{
+
+	private final Random random = new Random(1234);
+	
+	private final NucleotideSequence vector = randomSequence(500);
+	
+	private NucleotideSequence randomSequence(int length){
+		StringBuilder builder = new StringBuilder(length);
+		for(int i=0; i< length; i++){
+			builder.append("ACGT".charAt(random.nextInt(4)));
+		}
+		return new NucleotideSequenceBuilder(builder.toString()).build();
+	}
+	/**
+	 * Create a read that contains part of the vector
+	 * with a mismatch and an indel.
+	 */
+	private NucleotideSequence contaminatedRead(){
+		int start = random.nextInt(400);
+		NucleotideSequenceBuilder builder = vector.toBuilder().trim(Range.of(start, start+79));
+		builder.replace(20, builder.get(20) == Nucleotide.Adenine ? Nucleotide.Cytosine : Nucleotide.Adenine);
+		builder.delete(Range.of(50, 51));
+		return builder.prepend(randomSequence(random.nextInt(30)))
+						.append(randomSequence(random.nextInt(30)))
+						.build();
+	}
+	
+	private NucleotidePairwiseSequenceAlignment expected(NucleotideSequence query, boolean local){
+		//the striped scores use true affine gaps which can be
+		//different than the full matrix so use linear gap penalties
+		return PairwiseAlignmentBuilder.createNucleotideAlignmentBuilder(query, vector, matrix)
+											.gapPenalty(-2, -2)
+											.useLocalAlignment(local)
+											.build();
+	}
+	
+	private BatchPairwiseAligner<Nucleotide, NucleotideSequence, NucleotidePairwiseSequenceAlignment> createAligner(){
+		return BatchPairwiseAligner.createNucleotideBatchAlignerBuilder(vector, matrix)
+											.gapPenalty(-2, -2)
+											.build();
+	}
+	
+	@Test(expected = NullPointerException.class)
+	public void nullSubjectShouldThrowNPE(){
+		BatchPairwiseAligner.createNucleotideBatchAlignerBuilder(null, matrix);
+	}
+	
+	@Test(expected = NullPointerException.class)
+	public void nullPoolShouldThrowNPE(){
+		BatchPairwiseAligner.createNucleotideBatchAlignerBuilder(vector, matrix).pool(null);
+	}
+	
+	@Test
+	public void localAlignmentsSameAsPairwiseAlignmentBuilder(){
+		BatchPairwiseAligner<Nucleotide, NucleotideSequence, NucleotidePairwiseSequenceAlignment> sut = createAligner();
+		for(int i=0; i< 20; i++){
+			NucleotideSequence read = contaminatedRead();
+			assertEquals(expected(read, true), sut.align(read));
+		}
+	}
+	
+	@Test
+	public void unrelatedReadsHaveSameScoreAsPairwiseAlignmentBuilder(){
+		BatchPairwiseAligner<Nucleotide, NucleotideSequence, NucleotidePairwiseSequenceAlignment> sut = createAligner();
+		for(int i=0; i< 20; i++){
+			NucleotideSequence read = randomSequence(50 + random.nextInt(100));
+			//random reads can have several equally good alignments
+			//so only the score has to be the same
+			assertEquals(expected(read, true).getScore(), sut.align(read).getScore(), 0F);
+		}
+	}
+	
+	@Test
+	public void affineGapsHaveSameScoreAsPairwiseAlignmentBuilder(){
+		BatchPairwiseAligner<Nucleotide, NucleotideSequence, NucleotidePairwiseSequenceAlignment> sut = BatchPairwiseAligner.createNucleotideBatchAlignerBuilder(vector, matrix)
+																							.gapPenalty(-5, -1)
+																							.build();
+		for(int i=0; i< 300; i++){
+			NucleotideSequence read = i%2==0 ? randomSequence(20 + random.nextInt(60)) : contaminatedRead();
+			NucleotidePairwiseSequenceAlignment expected = PairwiseAlignmentBuilder.createNucleotideAlignmentBuilder(read, vector, matrix)
+																				.gapPenalty(-5, -1)
+																				.build();
+			assertEquals(expected.getScore(), sut.align(read).getScore(), 0F);
+		}
+	}
+	
+	@Test
+	public void nothingAligns(){
+		NucleotideSequence subject = new NucleotideSequenceBuilder("CCCCCCCCCC").build();
+		NucleotideSequence query = new NucleotideSequenceBuilder("AAAA").build();
+		
+		NucleotidePairwiseSequenceAlignment expected = PairwiseAlignmentBuilder.createNucleotideAlignmentBuilder(query, subject, matrix)
+																				.gapPenalty(-2, -2)
+																				.build();
+		NucleotidePairwiseSequenceAlignment actual = BatchPairwiseAligner.createNucleotideBatchAlignerBuilder(subject, matrix)
+																				.gapPenalty(-2, -2)
+																				.build()
+																				.align(query);
+		assertEquals(expected, actual);
+	}
+	
+	@Test
+	public void globalAlignmentsSameAsPairwiseAlignmentBuilder(){
+		BatchPairwiseAligner<Nucleotide, NucleotideSequence, NucleotidePairwiseSequenceAlignment> sut = BatchPairwiseAligner.createNucleotideBatchAlignerBuilder(vector, matrix)
+																													.gapPenalty(-2, -2)
+																													.useGlobalAlignment()
+																													.build();
+		for(int i=0; i< 3; i++){
+			NucleotideSequence read = contaminatedRead();
+			assertEquals(expected(read, false), sut.align(read));
+		}
+	}
+	
+	@Test
+	public void alignAllReturnsResultsInInputOrder(){
+		List<NucleotideSequence> reads = new ArrayList<>();
+		List<NucleotidePairwiseSequenceAlignment> expected = new ArrayList<>();
+		BatchPairwiseAligner<Nucleotide, NucleotideSequence, NucleotidePairwiseSequenceAlignment> sut = BatchPairwiseAligner.createNucleotideBatchAlignerBuilder(vector, matrix)
+																													.gapPenalty(-2, -2)
+																													.pool(new ForkJoinPool(3))
+																													.build();
+		for(int i=0; i< 50; i++){
+			NucleotideSequence read = contaminatedRead();
+			reads.add(read);
+			expected.add(sut.align(read));
+		}
+		List<NucleotidePairwiseSequenceAlignment> actual = new ArrayList<>();
+		sut.alignAll(reads.stream(), actual::add);
+		
+		assertEquals(expected, actual);
+	}
+	
+	@Test
+	public void alignAllUnorderedAlignsEverything(){
+		Map<String, NucleotideSequence> reads = new LinkedHashMap<>();
+		for(int i=0; i< 50; i++){
+			reads.put("read"+i, contaminatedRead());
+		}
+		BatchPairwiseAligner<Nucleotide, NucleotideSequence, NucleotidePairwiseSequenceAlignment> sut = createAligner();
+		
+		List<NucleotidePairwiseSequenceAlignment> actual = new ArrayList<>();
+		sut.alignAllUnordered(reads.values().stream(), actual::add);
+		assertEquals(reads.size(), actual.size());
+		for(NucleotideSequence read : reads.values()){
+			assertEquals(actual.contains(sut.align(read)), true);
+		}
+	}
+	
+	@Test
+	public void alignAllDataStore() throws DataStoreException{
+		Map<String, NucleotideSequence> reads = new LinkedHashMap<>();
+		for(int i=0; i< 50; i++){
+			reads.put("read"+i, contaminatedRead());
+		}
+		DataStore<NucleotideSequence> datastore = DataStoreUtil.adapt(reads);
+		BatchPairwiseAligner<Nucleotide, NucleotideSequence, NucleotidePairwiseSequenceAlignment> sut = createAligner();
+		
+		Map<String, NucleotidePairwiseSequenceAlignment> expected = new LinkedHashMap<>();
+		for(Map.Entry<String, NucleotideSequence> entry : reads.entrySet()){
+			expected.put(entry.getKey(), sut.align(entry.getValue()));
+		}
+		List<String> actualOrder = new ArrayList<>();
+		Map<String, NucleotidePairwiseSequenceAlignment> actual = new HashMap<>();
+		sut.alignAll(datastore, (id, alignment)->{
+			actualOrder.add(id);
+			actual.put(id, alignment);
+		});
+		assertEquals(new ArrayList<>(reads.keySet()), actualOrder);
+		assertEquals(expected, actual);
+		
+		Map<String, NucleotidePairwiseSequenceAlignment> unordered = new HashMap<>();
+		sut.alignAllUnordered(datastore, unordered::put);
+		assertEquals(expected, unordered);
+	}
+	
+	@Test
+	public void proteinLocalAlignmentSameAsPairwiseAlignmentBuilder(){
+		AminoAcidSubstitutionMatrix blosum62 = BlosumMatrices.blosum62();
+		ProteinSequence subject = new ProteinSequenceBuilder("MKTAYIAKQRQISFVKSHFSRQLEERLGLIEVQAPILSRVGDGTQDNLSGAEKAVQVKVKALPDAQFEVVHSLAKWKRQTLGQHDFSAGEGLYTHMKALRPDEDRLSPLHSVYVDQWDWERVMGDGERQFSTLKSTVEAIWAGIKATEAAVSEEFGLAPFLPDQIHFVHSQELLSRYPDLDAKGRERAIAKDLGAVFLVGIGGKLSDGHRHDVRAPDYDDWSTPSELGHAGLNGDILVWNPVLEDAFELSSMGIRVDADTLKHQLALTGDEDRLELEWHQALLRGEMPQTIGGGIGQSRLTMLLLQLPHIGQVQAGVWPAACRESVPALL").build();
+		ProteinSequence query = new ProteinSequenceBuilder("WWWGDGTQDNLSGAEKAVQVKVKALPDAQFEVVHSLAKWWW").build();
+		
+		ProteinPairwiseSequenceAlignment expected = PairwiseAlignmentBuilder.createProtienAlignmentBuilder(query, subject, blosum62)
+																				.gapPenalty(-4, -4)
+																				.build();
+		ProteinPairwiseSequenceAlignment actual = BatchPairwiseAligner.createProteinBatchAlignerBuilder(subject, blosum62)
+																				.gapPenalty(-4, -4)
+																				.build()
+																				.align(query);
+		assertEquals(expected, actual);
+	}
+}
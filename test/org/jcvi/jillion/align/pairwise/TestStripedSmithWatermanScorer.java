@@ -0,0 +1,178 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.align.pairwise;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.jcvi.jillion.align.NucleotideSubstitutionMatrix;
+import org.jcvi.jillion.align.NucleotideSubstitutionMatrixBuilder;
+import org.jcvi.jillion.core.Range;
+import org.jcvi.jillion.core.residue.nt.Nucleotide;
+import org.jcvi.jillion.core.residue.nt.NucleotideSequence;
+import org.jcvi.jillion.core.residue.nt.NucleotideSequenceBuilder;
+import org.junit.Test;
+
+public class TestStripedSmithWatermanScorer extends AbstractTestNucleotideAligner{
+
+	private final Random random = new Random(5678);
+	
+	private NucleotideSequence randomSequence(int length){
+		StringBuilder builder = new StringBuilder(length);
+		for(int i=0; i< length; i++){
+			builder.append("ACGT".charAt(random.nextInt(4)));
+		}
+		return new NucleotideSequenceBuilder(builder.toString()).build();
+	}
+	
+	private StripedSmithWatermanScorer.LocalScore score(NucleotideSequence query, NucleotideSequence subject, float open, float extend){
+		return StripedSmithWatermanScorer.create(AbstractPairwiseAligner.convertToUngappedByteArray(query), 
+								matrix, Nucleotide.VALUES, open, extend)
+						.score(AbstractPairwiseAligner.convertToUngappedByteArray(subject));
+	}
+	
+	private NucleotidePairwiseSequenceAlignment fullAlignment(NucleotideSequence query, NucleotideSequence subject, float open, float extend){
+		return PairwiseAlignmentBuilder.createNucleotideAlignmentBuilder(query, subject, matrix)
+										.gapPenalty(open, extend)
+										.build();
+	}
+	
+	@Test
+	public void fractionalScoresNotSupported(){
+		NucleotideSubstitutionMatrix fractional = new NucleotideSubstitutionMatrixBuilder(-1.5F).setMatch(2).build();
+		assertNull(StripedSmithWatermanScorer.create(new byte[]{1,2,3}, fractional, Nucleotide.VALUES, -2, -1));
+		assertNull(StripedSmithWatermanScorer.create(new byte[]{1,2,3}, matrix, Nucleotide.VALUES, -2.5F, -1));
+	}
+	
+	@Test
+	public void nothingAligns(){
+		StripedSmithWatermanScorer.LocalScore actual = score(new NucleotideSequenceBuilder("AAAA").build(), 
+													new NucleotideSequenceBuilder("CCCCCCCC").build(), -2, -2);
+		assertEquals(0, actual.getScore());
+		assertEquals(-1, actual.getQueryEnd());
+		assertEquals(-1, actual.getSubjectEnd());
+	}
+	
+	@Test
+	public void sameScoreAndEndAsFullMatrixWithoutAffineGaps(){
+		//query lengths that don't fill all the lanes too
+		for(int queryLength=1; queryLength< 40; queryLength++){
+			NucleotideSequence query = randomSequence(queryLength);
+			NucleotideSequence subject = randomSequence(100);
+			
+			NucleotidePairwiseSequenceAlignment expected = fullAlignment(query, subject, -2, -2);
+			StripedSmithWatermanScorer.LocalScore actual = score(query, subject, -2, -2);
+			
+			assertEquals(expected.getScore(), actual.getScore(), 0F);
+			assertEquals(expected.getQueryRange().getEnd(), actual.getQueryEnd());
+			assertEquals(expected.getSubjectRange().getEnd(), actual.getSubjectEnd());
+		}
+	}
+	
+	@Test
+	public void scoreAtLeastAsGoodAsFullMatrixWithAffineGaps(){
+		for(int i=0; i< 50; i++){
+			NucleotideSequence query = randomSequence(50);
+			NucleotideSequence subject = new NucleotideSequenceBuilder(randomSequence(100))
+													.append(new NucleotideSequenceBuilder(query)
+																.delete(new Range.Builder(3).shift(20).build()))
+													.append(randomSequence(100))
+													.build();
+			
+			NucleotidePairwiseSequenceAlignment expected = fullAlignment(query, subject, -4, -1);
+			StripedSmithWatermanScorer.LocalScore actual = score(query, subject, -4, -1);
+			
+			assertTrue(actual.getScore() >= expected.getScore());
+		}
+	}
+	
+	@Test
+	public void stripedAlignmentSameAsFullMatrix(){
+		for(int i=0; i< 20; i++){
+			NucleotideSequence read = randomSequence(80);
+			NucleotideSequence reference = new NucleotideSequenceBuilder(randomSequence(500))
+													.append(new NucleotideSequenceBuilder(read)
+																.replace(30, Nucleotide.Gap)
+																.ungap()
+																.replace(60, Nucleotide.Adenine))
+													.append(randomSequence(500))
+													.build();
+			
+			NucleotidePairwiseSequenceAlignment expected = fullAlignment(read, reference, -3, -3);
+			NucleotidePairwiseSequenceAlignment actual = PairwiseAlignmentBuilder.createNucleotideAlignmentBuilder(read, reference, matrix)
+																	.gapPenalty(-3, -3)
+																	.useStripedScoring(true)
+																	.build();
+			assertEquals(expected, actual);
+		}
+	}
+	
+	@Test
+	public void stripedAlignmentSameAsFullMatrixWithAffineGaps(){
+		for(int i=0; i< 300; i++){
+			NucleotideSequence query = randomSequence(20 + random.nextInt(60));
+			NucleotideSequence subject = randomSequence(50 + random.nextInt(300));
+			
+			NucleotidePairwiseSequenceAlignment expected = fullAlignment(query, subject, -5, -1);
+			NucleotidePairwiseSequenceAlignment actual = PairwiseAlignmentBuilder.createNucleotideAlignmentBuilder(query, subject, matrix)
+																	.gapPenalty(-5, -1)
+																	.useStripedScoring(true)
+																	.build();
+			assertEquals(expected.getScore(), actual.getScore(), 0F);
+		}
+	}
+	
+	@Test
+	public void stripedAlignmentFallsBackForFractionalScores(){
+		NucleotideSequence read = randomSequence(50);
+		NucleotideSequence reference = new NucleotideSequenceBuilder(randomSequence(100))
+													.append(read)
+													.append(randomSequence(100))
+													.build();
+		NucleotidePairwiseSequenceAlignment expected = fullAlignment(read, reference, -2.5F, -1);
+		NucleotidePairwiseSequenceAlignment actual = PairwiseAlignmentBuilder.createNucleotideAlignmentBuilder(read, reference, matrix)
+																	.gapPenalty(-2.5F, -1)
+																	.useStripedScoring(true)
+																	.build();
+		assertEquals(expected, actual);
+	}
+	
+	@Test
+	public void minimumSubjectStartIncludesWholeAlignment(){
+		for(int i=0; i< 20; i++){
+			NucleotideSequence read = randomSequence(60);
+			NucleotideSequence reference = new NucleotideSequenceBuilder(randomSequence(300))
+													.append(new NucleotideSequenceBuilder(read)
+															.insert(30, randomSequence(4)))
+													.append(randomSequence(300))
+													.build();
+			StripedSmithWatermanScorer scorer = StripedSmithWatermanScorer.create(AbstractPairwiseAligner.convertToUngappedByteArray(read), 
+					matrix, Nucleotide.VALUES, -3, -1);
+			StripedSmithWatermanScorer.LocalScore score = scorer.score(AbstractPairwiseAligner.convertToUngappedByteArray(reference));
+			
+			NucleotidePairwiseSequenceAlignment expected = fullAlignment(read, reference, -3, -1);
+			assertTrue(scorer.getMinimumSubjectStart(score) <= expected.getSubjectRange().getBegin());
+		}
+	}
+}
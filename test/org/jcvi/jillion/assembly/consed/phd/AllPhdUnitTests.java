@@ -42,6 +42,7 @@ import org.junit.runners.Suite.SuiteClasses;
      TestDefaultPhdDataStore2.class,
      TestIndexedPhdDataStore2.class,
      TestLargePhdDataStore2.class,
+     TestPhdFileDataStorePersistentIndex.class,
      
      
      TestPhdBallWriter.class,
@@ -0,0 +1,55 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.assembly.consed.phd;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.jcvi.jillion.core.datastore.AbstractTestPersistentIndexDataStore;
+import org.jcvi.jillion.core.datastore.DataStoreProviderHint;
+import org.jcvi.jillion.internal.ResourceHelper;
+import org.junit.Test;
+
+public class TestPhdFileDataStorePersistentIndex extends AbstractTestPersistentIndexDataStore<PhdDataStore>{
+
+	@Override
+	protected File getOriginalDataFile() throws IOException {
+		return new ResourceHelper(TestPhdFileDataStorePersistentIndex.class).getFile("files/fake.phd");
+	}
+
+	@Override
+	protected PhdDataStore createDataStore(File dataFile) throws IOException {
+		return new PhdFileDataStoreBuilder(dataFile).build();
+	}
+
+	@Override
+	protected PhdDataStore createIndexedDataStore(File dataFile, File indexFile) throws IOException {
+		return new PhdFileDataStoreBuilder(dataFile)
+							.hint(DataStoreProviderHint.RANDOM_ACCESS_OPTIMIZE_MEMORY)
+							.persistentIndex(indexFile)
+							.build();
+	}
+	
+	@Test(expected = NullPointerException.class)
+	public void nullIndexFileShouldThrowNPE() throws IOException{
+		new PhdFileDataStoreBuilder(dataFile).persistentIndex(null);
+	}
+}
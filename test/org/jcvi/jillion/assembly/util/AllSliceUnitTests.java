@@ -47,6 +47,7 @@ import org.junit.runners.Suite.SuiteClasses;
         TestSliceMapBuilderUsingDefaultQualities.class,
         
         TestSliceMapBuilderReadFilter.class,
+        TestSliceMapBuilderStream.class,
         
         AllConsensusUnitTests.class
         
@@ -0,0 +1,156 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.assembly.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.jcvi.jillion.assembly.AssembledRead;
+import org.jcvi.jillion.assembly.Contig;
+import org.jcvi.jillion.core.qual.PhredQuality;
+import org.jcvi.jillion.core.qual.QualitySequenceDataStore;
+import org.jcvi.jillion.internal.assembly.DefaultContig;
+import org.junit.Test;
+
+public class TestSliceMapBuilderStream extends AbstractTestSliceMap{
+
+	private final PhredQuality defaultQuality = PhredQuality.valueOf(20);
+	
+	@Override
+	protected SliceMap createSliceMapFor(Contig<AssembledRead> contig,
+			QualitySequenceDataStore qualityDatastore,
+			GapQualityValueStrategy qualityValueStrategy) {
+		try(Stream<Slice> stream = new SliceMapBuilder<AssembledRead>(contig, qualityDatastore)
+										.gapQualityValueStrategy(qualityValueStrategy)
+										.stream()){
+			return new ListSliceMap(stream.collect(Collectors.toList()));
+		}
+	}
+	
+	private Contig<AssembledRead> createRandomContig(Random random){
+		StringBuilder consensus = new StringBuilder();
+		for(int i=0; i< 2000; i++){
+			consensus.append("ACGT".charAt(random.nextInt(4)));
+		}
+		DefaultContig.Builder builder = new DefaultContig.Builder("contig", consensus.toString());
+		for(int i=0; i< 300; i++){
+			int start = random.nextInt(1900);
+			int length = 1 + random.nextInt(Math.min(150, consensus.length() - start));
+			builder.addRead("read" + i, start, consensus.substring(start, start + length));
+		}
+		return builder.build();
+	}
+	
+	@Test
+	public void sameSlicesAsBuild(){
+		Contig<AssembledRead> contig = createRandomContig(new Random(3));
+		SliceMap expected = new SliceMapBuilder<AssembledRead>(contig, defaultQuality).build();
+		
+		try(Stream<Slice> stream = new SliceMapBuilder<AssembledRead>(contig, defaultQuality).stream()){
+			assertEquals(expected, new ListSliceMap(stream.collect(Collectors.toList())));
+		}
+	}
+	
+	@Test
+	public void forEachGivesOffsets(){
+		Contig<AssembledRead> contig = createRandomContig(new Random(4));
+		SliceMap expected = new SliceMapBuilder<AssembledRead>(contig, defaultQuality)
+									.filter(read -> read.getGappedLength() > 50)
+									.build();
+		long[] count = new long[1];
+		new SliceMapBuilder<AssembledRead>(contig, defaultQuality)
+				.filter(read -> read.getGappedLength() > 50)
+				.forEach((offset, slice) ->{
+					assertEquals(count[0]++, offset);
+					assertEquals(expected.getSlice(offset), slice);
+				});
+		assertEquals(expected.getSize(), count[0]);
+	}
+	
+	@Test
+	public void alreadySortedReadsAreNotSorted(){
+		Contig<AssembledRead> contig = new DefaultContig.Builder("contigId", "ACGTACGT")
+											.addRead("read1", 0, "ACGTACGT")
+											.addRead("read2", 2, "GTAC")
+											.addRead("read3", 4, "ACGT")
+											.build();
+		List<Slice> actual = new ArrayList<>();
+		new SliceMapBuilder<AssembledRead>(contig, defaultQuality)
+					.readsSortedByStartOffset(true)
+					.forEach((offset, slice) -> actual.add(slice));
+		assertEquals(new SliceMapBuilder<AssembledRead>(contig, defaultQuality).build(), new ListSliceMap(actual));
+	}
+	
+	@Test(expected = IllegalStateException.class)
+	public void unsortedReadsDeclaredSortedShouldThrowIllegalStateException(){
+		Contig<AssembledRead> contig = new DefaultContig.Builder("contigId", "ACGTACGT")
+											.addRead("read1", 4, "ACGT")
+											.addRead("read2", 0, "ACGTACGT")
+											.build();
+		new SliceMapBuilder<AssembledRead>(contig, defaultQuality)
+					.readsSortedByStartOffset(true)
+					.forEach((offset, slice) -> {});
+	}
+	
+	private static final class ListSliceMap implements SliceMap{
+		private final List<Slice> slices;
+
+		ListSliceMap(List<Slice> slices) {
+			this.slices = slices;
+		}
+
+		@Override
+		public Iterator<Slice> iterator() {
+			return slices.iterator();
+		}
+
+		@Override
+		public Slice getSlice(long offset) {
+			return slices.get((int) offset);
+		}
+
+		@Override
+		public long getSize() {
+			return slices.size();
+		}
+
+		@Override
+		public int hashCode() {
+			return slices.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if(!(obj instanceof SliceMap)){
+				return false;
+			}
+			List<Slice> other = new ArrayList<>();
+			((SliceMap) obj).iterator().forEachRemaining(other::add);
+			return slices.equals(other);
+		}
+	}
+}
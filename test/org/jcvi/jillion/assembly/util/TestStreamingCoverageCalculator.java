@@ -0,0 +1,173 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.assembly.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.jcvi.jillion.core.Range;
+import org.junit.Test;
+
+public class TestStreamingCoverageCalculator {
+
+	private final Random random = new Random(42);
+	
+	@Test
+	public void noElements(){
+		StreamingCoverageCalculator sut = new StreamingCoverageCalculator.Builder().build();
+		sut.finish();
+		assertEquals(new CoverageMapStats(0, 0, 0D), sut.getStats());
+		assertEquals(0, sut.getLength());
+	}
+	
+	@Test
+	public void noElementsWithRangeIsAllZeroCoverage(){
+		List<long[]> regions = new ArrayList<>();
+		StreamingCoverageCalculator sut = new StreamingCoverageCalculator.Builder()
+												.range(Range.of(10, 19))
+												.regionConsumer((b,e,d)-> regions.add(new long[]{b,e,d}))
+												.build();
+		sut.finish();
+		assertEquals(1, regions.size());
+		assertArrayEquals(new long[]{10,19,0}, regions.get(0));
+		assertEquals(new CoverageMapStats(0, 0, 0D), sut.getStats());
+		assertEquals(10, sut.getDepthHistogram()[0]);
+	}
+	
+	@Test
+	public void overlappingElements(){
+		List<long[]> regions = new ArrayList<>();
+		StreamingCoverageCalculator sut = new StreamingCoverageCalculator.Builder()
+												.regionConsumer((b,e,d)-> regions.add(new long[]{b,e,d}))
+												.build();
+		sut.accept(Range.of(0, 9));
+		sut.accept(Range.of(5, 14));
+		sut.accept(Range.of(10, 12));
+		sut.accept(Range.of(20, 24));
+		sut.finish();
+		
+		assertEquals(5, regions.size());
+		assertArrayEquals(new long[]{0,4,1}, regions.get(0));
+		assertArrayEquals(new long[]{5,12,2}, regions.get(1));
+		assertArrayEquals(new long[]{13,14,1}, regions.get(2));
+		assertArrayEquals(new long[]{15,19,0}, regions.get(3));
+		assertArrayEquals(new long[]{20,24,1}, regions.get(4));
+		
+		assertEquals(25, sut.getLength());
+		assertEquals(new CoverageMapStats(0, 2, 28/25D), sut.getStats());
+	}
+	
+	@Test
+	public void elementsAreTrimmedToRange(){
+		List<long[]> regions = new ArrayList<>();
+		StreamingCoverageCalculator sut = new StreamingCoverageCalculator.Builder()
+												.range(Range.of(5, 29))
+												.regionConsumer((b,e,d)-> regions.add(new long[]{b,e,d}))
+												.build();
+		sut.add(0, 3);
+		sut.add(0, 9);
+		sut.add(20, 40);
+		sut.finish();
+		assertEquals(3, regions.size());
+		assertArrayEquals(new long[]{5,9,1}, regions.get(0));
+		assertArrayEquals(new long[]{10,19,0}, regions.get(1));
+		assertArrayEquals(new long[]{20,29,1}, regions.get(2));
+	}
+	
+	@Test(expected = IllegalStateException.class)
+	public void unsortedElementsShouldThrowIllegalStateException(){
+		StreamingCoverageCalculator sut = new StreamingCoverageCalculator.Builder().build();
+		sut.add(10, 20);
+		sut.add(5, 20);
+	}
+	
+	@Test(expected = IllegalStateException.class)
+	public void addAfterFinishShouldThrowIllegalStateException(){
+		StreamingCoverageCalculator sut = new StreamingCoverageCalculator.Builder().build();
+		sut.add(10, 20);
+		sut.finish();
+		sut.add(15, 20);
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void windowSizeLessThan1ShouldThrowIllegalArgumentException(){
+		new StreamingCoverageCalculator.Builder().windowConsumer(0, (b, d, l)->{});
+	}
+	
+	@Test
+	public void histogramCapsHighDepths(){
+		StreamingCoverageCalculator sut = new StreamingCoverageCalculator.Builder()
+												.maxHistogramDepth(2)
+												.build();
+		for(int i=0; i< 5; i++){
+			sut.add(0, 9 -i);
+		}
+		sut.finish();
+		//depths 5,5,5,5,5,5,4,3,2,1
+		assertArrayEquals(new long[]{0,1,9}, sut.getDepthHistogram());
+	}
+	
+	@Test
+	public void sameDepthsAsCoverageMap(){
+		for(int iteration=0; iteration < 20; iteration++){
+			List<Range> reads = new ArrayList<>();
+			for(int i=0; i< 500; i++){
+				int begin = random.nextInt(10_000);
+				reads.add(new Range.Builder(1 + random.nextInt(300)).shift(begin).build());
+			}
+			reads.sort(Comparator.comparingLong(Range::getBegin));
+			
+			CoverageMap<Range> coverageMap = new CoverageMapBuilder<>(reads).build();
+			long begin = coverageMap.getRegion(0).getBegin();
+			long end = coverageMap.getRegion(coverageMap.getNumberOfRegions()-1).getEnd();
+			int[] expected = new int[(int)(end - begin +1)];
+			for(CoverageRegion<Range> region : coverageMap){
+				Arrays.fill(expected, (int)(region.getBegin() - begin), (int)(region.getEnd() - begin +1), region.getCoverageDepth());
+			}
+			
+			int[] actualFromRegions = new int[expected.length];
+			int[] actualFromWindows = new int[expected.length];
+			long[] previousDepth = {-1};
+			StreamingCoverageCalculator sut = new StreamingCoverageCalculator.Builder()
+												.regionConsumer((b,e,d)->{
+													assertEquals("adjacent regions must have different depths",false, previousDepth[0] == d);
+													previousDepth[0] = d;
+													Arrays.fill(actualFromRegions, (int)(b - begin), (int)(e - begin +1), d);
+												})
+												.windowConsumer(37, (windowBegin, depths, length)-> 
+													System.arraycopy(depths, 0, actualFromWindows, (int)(windowBegin - begin), length))
+												.build();
+			reads.forEach(sut);
+			sut.finish();
+			
+			assertArrayEquals(expected, actualFromRegions);
+			assertArrayEquals(expected, actualFromWindows);
+			assertEquals(coverageMap.getStats(), sut.getStats());
+			assertEquals(expected.length, sut.getLength());
+		}
+	}
+}
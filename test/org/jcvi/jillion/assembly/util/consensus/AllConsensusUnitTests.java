@@ -38,7 +38,8 @@ import org.junit.runners.Suite.SuiteClasses;
         TestNoAmbiguityConsensusCaller.class,
         TestMostFrequentBasecallConsensusCaller.class,
         TestNextGenReferenceConsensusRecaller.class,
-        TestMajorityConsensusN.class
+        TestMajorityConsensusN.class,
+        TestParallelConsensusCaller.class
     }
     )
 public class AllConsensusUnitTests {
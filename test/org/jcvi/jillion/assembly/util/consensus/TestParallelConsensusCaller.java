@@ -0,0 +1,155 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.assembly.util.consensus;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.jcvi.jillion.assembly.AssembledRead;
+import org.jcvi.jillion.assembly.Contig;
+import org.jcvi.jillion.assembly.util.Slice;
+import org.jcvi.jillion.assembly.util.SliceMap;
+import org.jcvi.jillion.assembly.util.SliceMapBuilder;
+import org.jcvi.jillion.core.datastore.DataStore;
+import org.jcvi.jillion.core.qual.PhredQuality;
+import org.jcvi.jillion.core.qual.QualitySequenceBuilder;
+import org.jcvi.jillion.core.residue.nt.NucleotideSequenceBuilder;
+import org.jcvi.jillion.internal.assembly.DefaultContig;
+import org.junit.After;
+import org.junit.Test;
+
+public class TestParallelConsensusCaller {
+
+	private final PhredQuality defaultQuality = PhredQuality.valueOf(20);
+	private final ConsensusCaller caller = new ChurchillWatermanConsensusCaller(PhredQuality.valueOf(30));
+	private final Random random = new Random(12);
+	
+	private final ForkJoinPool pool = new ForkJoinPool(3);
+	
+	@After
+	public void shutdown(){
+		pool.shutdown();
+	}
+	
+	private Contig<AssembledRead> createRandomContig(String id, int length){
+		StringBuilder consensus = new StringBuilder();
+		for(int i=0; i< length; i++){
+			consensus.append("ACGT".charAt(random.nextInt(4)));
+		}
+		DefaultContig.Builder builder = new DefaultContig.Builder(id, consensus.toString());
+		for(int i=0; i< length/5; i++){
+			int start = random.nextInt(length -10);
+			int readLength = 1 + random.nextInt(Math.min(100, length - start));
+			char[] bases = consensus.substring(start, start + readLength).toCharArray();
+			for(int j=0; j< bases.length; j++){
+				if(random.nextInt(10)==0){
+					bases[j] = "ACGT-N".charAt(random.nextInt(6));
+				}
+			}
+			builder.addRead(id + "_read" + i, start, new String(bases));
+		}
+		return builder.build();
+	}
+	
+	private CalledConsensus callSequentially(SliceMap sliceMap){
+		NucleotideSequenceBuilder consensus = new NucleotideSequenceBuilder();
+		QualitySequenceBuilder qualities = new QualitySequenceBuilder();
+		for(Slice slice : sliceMap){
+			ConsensusResult result = caller.callConsensus(slice);
+			consensus.append(result.getConsensus());
+			qualities.append(Math.min(PhredQuality.MAX_VALUE, result.getConsensusQuality()));
+		}
+		return new CalledConsensus(consensus.build(), qualities.build());
+	}
+	
+	@Test(expected = NullPointerException.class)
+	public void nullCallerShouldThrowNPE(){
+		new ParallelConsensusCaller.Builder(null);
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void zeroSlicesPerTaskShouldThrowIllegalArgumentException(){
+		new ParallelConsensusCaller.Builder(caller).slicesPerTask(0);
+	}
+	
+	@Test
+	public void sameAsCallingEachSlice(){
+		SliceMap sliceMap = new SliceMapBuilder<>(createRandomContig("contig", 3000), defaultQuality).build();
+		CalledConsensus expected = callSequentially(sliceMap);
+		
+		for(int slicesPerTask : new int[]{1, 7, 1000, 100_000}){
+			ParallelConsensusCaller sut = new ParallelConsensusCaller.Builder(caller)
+														.pool(pool)
+														.slicesPerTask(slicesPerTask)
+														.build();
+			assertEquals(expected, sut.callConsensus(sliceMap));
+		}
+	}
+	
+	@Test
+	public void contigsInDataStore() throws Exception{
+		Map<String, Contig<AssembledRead>> contigs = new LinkedHashMap<>();
+		for(int i=0; i< 20; i++){
+			String id = "contig" + i;
+			contigs.put(id, createRandomContig(id, 50 + random.nextInt(500)));
+		}
+		ParallelConsensusCaller sut = new ParallelConsensusCaller.Builder(caller)
+													.pool(pool)
+													.slicesPerTask(64)
+													.build();
+		Map<String, CalledConsensus> actual = sut.callConsensus(DataStore.of(contigs), defaultQuality);
+		
+		assertEquals(new ArrayList<>(contigs.keySet()), new ArrayList<>(actual.keySet()));
+		for(Contig<AssembledRead> contig : contigs.values()){
+			assertEquals(callSequentially(new SliceMapBuilder<>(contig, defaultQuality).build()), 
+					actual.get(contig.getId()));
+		}
+	}
+	
+	@Test
+	public void emptyDataStore() throws Exception{
+		Map<String, CalledConsensus> actual = new ParallelConsensusCaller.Builder(caller).build()
+										.callConsensus(DataStore.of(new LinkedHashMap<String, Contig<AssembledRead>>()), defaultQuality);
+		assertEquals(0, actual.size());
+	}
+	
+	@Test
+	public void customSliceMapFactory() throws Exception{
+		Contig<AssembledRead> contig = createRandomContig("contig", 300);
+		List<String> seen = new ArrayList<>();
+		Map<String, CalledConsensus> actual = new ParallelConsensusCaller.Builder(caller).build()
+				.callConsensus(DataStore.of(Collections.singletonMap("contig", contig)), c->{
+					synchronized(seen){
+						seen.add(c.getId());
+					}
+					return new SliceMapBuilder<>(c, PhredQuality.valueOf(40)).build();
+				});
+		assertEquals(Collections.singletonList("contig"), seen);
+		assertEquals(callSequentially(new SliceMapBuilder<>(contig, PhredQuality.valueOf(40)).build()), actual.get("contig"));
+	}
+}
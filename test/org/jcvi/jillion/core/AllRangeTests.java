@@ -50,7 +50,9 @@ import org.junit.runners.Suite.SuiteClasses;
          TestRangeComparatorShortestToLongest.class,
          TestRangeComparatorLongestToShortest.class,
          TestBitSetAsRanges.class,
-         TestIntArrayAsRanges.class
+         TestIntArrayAsRanges.class,
+         TestRangeCache.class,
+         TestRangeIndex.class
         
          
     }
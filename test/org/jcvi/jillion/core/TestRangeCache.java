@@ -0,0 +1,167 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestRangeCache {
+
+	@Before
+	public void clearCache(){
+		Range.setCacheSize(1024);
+	}
+	@After
+	public void restoreDefaultCache(){
+		Range.setCacheSize(1<<16);
+	}
+	
+	@Test
+	public void sameCoordinatesReturnCachedInstance(){
+		Range expected = Range.of(10, 20);
+		assertSame(expected, Range.of(10, 20));
+		assertSame(expected, new Range.Builder(10, 20).build());
+		
+		Range.CacheStats stats = Range.getCacheStats();
+		assertEquals(1024, stats.getSize());
+		assertEquals(2, stats.getHitCount());
+		assertEquals(1, stats.getMissCount());
+		assertEquals(3, stats.getRequestCount());
+		assertEquals(2D/3, stats.getHitRate(), 0.0001D);
+	}
+	
+	@Test
+	public void emptyRangesAreCached(){
+		Range expected = new Range.Builder(0).shift(5).build();
+		assertTrue(expected.isEmpty());
+		assertSame(expected, new Range.Builder(0).shift(5).build());
+	}
+	
+	@Test
+	public void largeAndNegativeCoordinatesAreCached(){
+		Range large = Range.of(Long.MAX_VALUE -10, Long.MAX_VALUE -1);
+		assertSame(large, Range.of(Long.MAX_VALUE -10, Long.MAX_VALUE -1));
+		Range negative = Range.of(-100, -20);
+		assertSame(negative, Range.of(-100, -20));
+	}
+	
+	@Test
+	public void sizeIsRoundedUpToPowerOf2(){
+		Range.setCacheSize(1000);
+		assertEquals(1024, Range.getCacheStats().getSize());
+	}
+	
+	@Test
+	public void changingSizeClearsCacheAndStats(){
+		Range r = Range.of(1,2);
+		Range.setCacheSize(2048);
+		assertEquals(0, Range.getCacheStats().getRequestCount());
+		assertEquals(1D, Range.getCacheStats().getHitRate(), 0D);
+		assertNotSame(r, Range.of(1,2));
+	}
+	
+	@Test
+	public void disabledCacheAlwaysCreatesNewInstances(){
+		Range.setCacheSize(0);
+		Range r = Range.of(1,2);
+		Range r2 = Range.of(1,2);
+		assertNotSame(r, r2);
+		assertEquals(r, r2);
+		
+		Range.CacheStats stats = Range.getCacheStats();
+		assertEquals(0, stats.getSize());
+		assertEquals(0, stats.getHitCount());
+		assertEquals(2, stats.getMissCount());
+		assertNull(Range.removeFromCache(r));
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void negativeSizeShouldThrowIllegalArgumentException(){
+		Range.setCacheSize(-1);
+	}
+	
+	@Test
+	public void cacheNeverGrowsPastItsSize(){
+		Range.setCacheSize(16);
+		for(int i=0; i< 1000; i++){
+			Range.of(i, i+10);
+		}
+		Range.CacheStats stats = Range.getCacheStats();
+		assertEquals(1000, stats.getMissCount());
+		assertTrue(stats.getEvictionCount() >= 1000-16);
+	}
+	
+	@Test
+	public void removedRangeIsRebuilt(){
+		Range r = Range.of(100,200);
+		assertSame(r, Range.removeFromCache(r));
+		assertNull(Range.removeFromCache(r));
+		assertNotSame(r, Range.of(100,200));
+	}
+	
+	@Test
+	public void concurrentBuildsReturnEqualRanges() throws Exception{
+		Range.setCacheSize(1<<16);
+		int numberOfThreads = 8;
+		ExecutorService executor = Executors.newFixedThreadPool(numberOfThreads);
+		try{
+			List<Future<Long>> futures = new ArrayList<>();
+			for(int t=0; t< numberOfThreads; t++){
+				futures.add(executor.submit(new Callable<Long>() {
+
+					@Override
+					public Long call() throws Exception {
+						long sum=0;
+						for(int i=0; i< 100_000; i++){
+							int begin = i % 500;
+							Range r = Range.of(begin, begin + 99);
+							assertEquals(begin, r.getBegin());
+							sum += r.getLength();
+						}
+						return sum;
+					}
+				}));
+			}
+			for(Future<Long> f : futures){
+				assertEquals(100L * 100_000, f.get().longValue());
+			}
+		}finally{
+			executor.shutdownNow();
+		}
+		Range.CacheStats stats = Range.getCacheStats();
+		assertEquals(numberOfThreads * 100_000L, stats.getRequestCount());
+		assertTrue(stats.getHitRate() > 0.9D);
+	}
+}
@@ -0,0 +1,192 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+public class TestRangeIndex {
+
+	private final Random random = new Random(1234);
+	
+	@Test
+	public void emptyIndex(){
+		RangeIndex<Range> sut = RangeIndex.of(Collections.emptyList());
+		assertTrue(sut.isEmpty());
+		assertEquals(0, sut.size());
+		assertEquals(0, sut.countOverlapping(Range.of(0, 100)));
+		assertFalse(sut.intersects(Range.of(0, 100)));
+		assertEquals(0, sut.stabbing(5).count());
+	}
+	
+	@Test(expected = NullPointerException.class)
+	public void nullCollectionShouldThrowNPE(){
+		RangeIndex.of(null);
+	}
+	
+	@Test(expected = NullPointerException.class)
+	public void nullElementShouldThrowNPE(){
+		RangeIndex.of(Arrays.asList(Range.of(1,2), null));
+	}
+	
+	@Test(expected = NullPointerException.class)
+	public void nullQueryShouldThrowNPE(){
+		RangeIndex.of(Arrays.asList(Range.of(1,2))).overlapping(null);
+	}
+	
+	@Test
+	public void elementsSortedByBegin(){
+		Range a = Range.of(10, 20);
+		Range b = Range.of(5, 30);
+		Range c = Range.of(10, 12);
+		RangeIndex<Range> sut = RangeIndex.of(Arrays.asList(a,b,c));
+		assertEquals(3, sut.size());
+		assertSame(b, sut.get(0));
+		//ties are kept in original order
+		assertSame(a, sut.get(1));
+		assertSame(c, sut.get(2));
+		assertEquals(Arrays.asList(b,a,c), sut.stream().collect(Collectors.toList()));
+		
+		List<Range> iterated = new ArrayList<>();
+		for(Range r : sut){
+			iterated.add(r);
+		}
+		assertEquals(Arrays.asList(b,a,c), iterated);
+	}
+	
+	@Test
+	public void stabbing(){
+		RangeIndex<Range> sut = RangeIndex.of(Arrays.asList(Range.of(10, 20), Range.of(5, 30), Range.of(21,22)));
+		assertEquals(Arrays.asList(Range.of(5, 30), Range.of(10, 20)), sut.stabbing(20).collect(Collectors.toList()));
+		assertEquals(Arrays.asList(Range.of(5, 30), Range.of(21,22)), sut.stabbing(21).collect(Collectors.toList()));
+		assertEquals(0, sut.stabbing(4).count());
+		assertEquals(0, sut.stabbing(31).count());
+	}
+	
+	@Test
+	public void emptyRangesNeverIntersect(){
+		Range empty = new Range.Builder(0).shift(15).build();
+		RangeIndex<Range> sut = RangeIndex.of(Arrays.asList(empty, Range.of(10,20)));
+		assertEquals(2, sut.size());
+		assertEquals(Arrays.asList(Range.of(10,20)), sut.overlapping(Range.of(12,18)).collect(Collectors.toList()));
+		assertEquals(0, sut.countOverlapping(empty));
+		assertFalse(sut.intersects(empty));
+	}
+	
+	@Test
+	public void worksWithAnyRangeable(){
+		List<DirectedRange> list = Arrays.asList(DirectedRange.create(Range.of(1,10), Direction.REVERSE),
+				DirectedRange.create(Range.of(100,200), Direction.FORWARD));
+		RangeIndex<DirectedRange> sut = RangeIndex.of(list);
+		assertEquals(Direction.REVERSE, sut.stabbing(5).findFirst().get().getDirection());
+	}
+	
+	@Test
+	public void sameResultsAsCheckingEveryRange(){
+		for(int size : new int[]{1,2,3,7,8,9,15,16,17,100, 1023, 1024, 1025, 5000}){
+			List<Range> ranges = randomRanges(size, 10_000, 500);
+			assertSameAsBruteForce(ranges, RangeIndex.of(ranges), 10_000);
+			assertSameAsBruteForce(ranges, RangeIndex.parallelOf(ranges), 10_000);
+		}
+	}
+	
+	@Test
+	public void largeCoordinatesThatCanNotBePacked(){
+		List<Range> ranges = new ArrayList<>();
+		for(int i=0; i< 500; i++){
+			long begin = random.nextBoolean() ? Long.MIN_VALUE/2 + random.nextInt(1000) : Long.MAX_VALUE/2 + random.nextInt(1000);
+			ranges.add(Range.of(begin, begin + random.nextInt(100)));
+		}
+		RangeIndex<Range> sut = RangeIndex.parallelOf(ranges);
+		List<Range> sorted = new ArrayList<>(ranges);
+		sorted.sort(Comparator.comparingLong(Range::getBegin));
+		assertEquals(sorted, sut.stream().collect(Collectors.toList()));
+		
+		Range query = Range.of(Long.MAX_VALUE/2 + 500, Long.MAX_VALUE/2 + 600);
+		assertEquals(bruteForce(ranges, query), sut.overlapping(query).collect(Collectors.toList()));
+	}
+	
+	@Test
+	public void parallelIndexOfManyRanges(){
+		List<Range> ranges = randomRanges(200_000, 10_000_000, 1_000);
+		RangeIndex<Range> sut = RangeIndex.parallelOf(ranges);
+		for(int i=0; i< 200; i++){
+			Range query = randomRange(10_000_000, 10_000);
+			assertEquals(bruteForce(ranges, query), sut.overlapping(query).collect(Collectors.toList()));
+		}
+	}
+	
+	private void assertSameAsBruteForce(List<Range> ranges, RangeIndex<Range> sut, int maxCoordinate){
+		for(int i=0; i< 300; i++){
+			Range query = randomRange(maxCoordinate, 1000);
+			List<Range> expected = bruteForce(ranges, query);
+			assertEquals(expected, sut.overlapping(query).collect(Collectors.toList()));
+			assertEquals(expected.size(), sut.countOverlapping(query));
+			assertEquals(!expected.isEmpty(), sut.intersects(query));
+			
+			List<Range> consumed = new ArrayList<>();
+			sut.forEachOverlapping(query, consumed::add);
+			assertEquals(expected, consumed);
+			
+			long coordinate = query.getBegin();
+			assertEquals(bruteForce(ranges, Range.of(coordinate)), sut.stabbing(coordinate).collect(Collectors.toList()));
+		}
+	}
+	
+	private static List<Range> bruteForce(List<Range> ranges, Range query){
+		List<Range> list = new ArrayList<>();
+		for(Range r : ranges){
+			if(r.intersects(query)){
+				list.add(r);
+			}
+		}
+		//stable sort so ties stay in original order
+		list.sort(Comparator.comparingLong(Range::getBegin));
+		return list;
+	}
+	
+	private List<Range> randomRanges(int size, int maxCoordinate, int maxLength){
+		List<Range> list = new ArrayList<>(size);
+		for(int i=0; i< size; i++){
+			list.add(randomRange(maxCoordinate, maxLength));
+		}
+		return list;
+	}
+	
+	private Range randomRange(int maxCoordinate, int maxLength){
+		int begin = random.nextInt(maxCoordinate);
+		//include empty ranges
+		int length = random.nextInt(maxLength +1);
+		return new Range.Builder(length).shift(begin).build();
+	}
+}
@@ -0,0 +1,128 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.core.datastore;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import org.jcvi.jillion.core.util.iter.StreamingIterator;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+/**
+ * Tests that a file format's {@link DataStore} writes a persistent index
+ * the first time it is built, reuses it after that and rebuilds it
+ * if the indexed file changes.  Subclasses provide the fixture
+ * and how to build the format's {@link DataStore} with and without the index.
+ * 
+ * @author dkatzel
+ *
+ * @param <D> the type of {@link DataStore}.
+ */
+public abstract class AbstractTestPersistentIndexDataStore<D extends DataStore<?>> {
+
+	@Rule
+	public TemporaryFolder tmpDir = new TemporaryFolder();
+	
+	protected File dataFile;
+	protected File indexFile;
+	/**
+	 * Get the file to index; it is copied to a temp folder
+	 * before each test so it can be modified.
+	 */
+	protected abstract File getOriginalDataFile() throws IOException;
+	/**
+	 * Create a {@link DataStore} of the given file
+	 * that does not use a persistent index.
+	 */
+	protected abstract D createDataStore(File dataFile) throws IOException;
+	/**
+	 * Create a {@link DataStore} of the given file
+	 * that uses the given persistent index file.
+	 */
+	protected abstract D createIndexedDataStore(File dataFile, File indexFile) throws IOException;
+	
+	@Before
+	public void copyDataFile() throws IOException{
+		File original = getOriginalDataFile();
+		dataFile = tmpDir.newFile(original.getName());
+		Files.copy(original.toPath(), dataFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		indexFile = new File(tmpDir.getRoot(), original.getName() + ".idx");
+	}
+	
+	@Test
+	public void indexIsWrittenThenReused() throws Exception{
+		try(D expected = createDataStore(dataFile)){
+			assertFalse(indexFile.exists());
+			try(D actual = createIndexedDataStore()){
+				assertSameRecords(expected, actual);
+			}
+			assertTrue(indexFile.exists());
+			//if the index is rewritten the last modified time will change
+			assertTrue(indexFile.setLastModified(0));
+			
+			try(D actual = createIndexedDataStore()){
+				assertSameRecords(expected, actual);
+				assertFalse(actual.contains("notAnId"));
+			}
+			assertEquals(0, indexFile.lastModified());
+		}
+	}
+	
+	@Test
+	public void staleIndexIsRebuilt() throws Exception{
+		createIndexedDataStore().close();
+		assertTrue(indexFile.setLastModified(0));
+		//the index stores the last modified time of the file it indexed
+		assertTrue(dataFile.setLastModified(dataFile.lastModified() + 10_000));
+		
+		try(D expected = createDataStore(dataFile);
+			D actual = createIndexedDataStore()){
+			assertSameRecords(expected, actual);
+		}
+		assertNotEquals(0, indexFile.lastModified());
+	}
+	
+	protected D createIndexedDataStore() throws IOException{
+		return createIndexedDataStore(dataFile, indexFile);
+	}
+	
+	protected static void assertSameRecords(DataStore<?> expected, DataStore<?> actual) throws DataStoreException{
+		assertEquals(expected.getNumberOfRecords(), actual.getNumberOfRecords());
+		try(StreamingIterator<String> ids = expected.idIterator();
+			StreamingIterator<String> actualIds = actual.idIterator()){
+			while(ids.hasNext()){
+				String id = ids.next();
+				assertEquals(id, actualIds.next());
+				assertEquals(expected.get(id), actual.get(id));
+			}
+			assertFalse(actualIds.hasNext());
+		}
+	}
+}
@@ -39,8 +39,11 @@ import org.junit.runners.Suite.SuiteClasses;
         TestPatternDataStoreFilter.class,
         
         TestDataStoreIterator.class,
+        TestPersistentIdIndex.class,
+        TestCompactIdIndex.class,
     
      TestCachedDataStore.class,
+     TestCachedDataStoreBuilder.class,
      TestMapDataStoreAdapter.class,
      TestMapDataStoreAdapterProxy.class,
      TestChainedDataStore.class
@@ -0,0 +1,224 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.core.datastore;
+
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.jcvi.jillion.core.datastore.DataStoreUtil.CacheableDataStore;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestCachedDataStoreBuilder {
+
+	private DataStoreSubInterface delegate;
+	
+	@Before
+	public void setup(){
+		delegate = createMock(DataStoreSubInterface.class);
+	}
+	
+	@Test(expected = NullPointerException.class)
+	public void nullDelegateShouldThrowNPE(){
+		new CachedDataStoreBuilder<>(DataStoreSubInterface.class, null);
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void zeroMaxSizeShouldThrowIllegalArgumentException(){
+		new CachedDataStoreBuilder<>(DataStoreSubInterface.class, delegate).maxSize(0);
+	}
+	
+	@Test(expected = NullPointerException.class)
+	public void nullWeigherShouldThrowNPE(){
+		new CachedDataStoreBuilder<>(DataStoreSubInterface.class, delegate).maxWeight(10, null);
+	}
+	
+	@Test
+	public void statsCountHitsMissesAndEvictions() throws DataStoreException{
+		expect(delegate.get("a")).andReturn(1L).times(2);
+		expect(delegate.get("b")).andReturn(2L);
+		expect(delegate.get("c")).andReturn(3L);
+		expect(delegate.get("missing")).andReturn(null);
+		replay(delegate);
+		
+		DataStoreSubInterface sut = new CachedDataStoreBuilder<>(DataStoreSubInterface.class, delegate)
+															.maxSize(2)
+															.build();
+		assertEquals(Long.valueOf(1), sut.get("a"));
+		assertEquals(Long.valueOf(1), sut.get("a"));
+		assertEquals(Long.valueOf(2), sut.get("b"));
+		assertEquals(Long.valueOf(3), sut.get("c"));
+		assertEquals(Long.valueOf(1), sut.get("a"));
+		assertEquals(null, sut.get("missing"));
+		
+		assertEquals(new DataStoreCacheStats(1, 5, 5, 2), getStats(sut));
+		assertEquals(1/6D, getStats(sut).getHitRate(), 0.0001D);
+		verify(delegate);
+	}
+	
+	@Test
+	public void weightLimitEvictsLeastRecentlyUsed() throws DataStoreException{
+		expect(delegate.get("a")).andReturn(5L).times(2);
+		expect(delegate.get("b")).andReturn(4L);
+		expect(delegate.get("c")).andReturn(3L);
+		replay(delegate);
+		
+		DataStoreSubInterface sut = new CachedDataStoreBuilder<>(DataStoreSubInterface.class, delegate)
+															.maxWeight(10, Long::longValue)
+															.build();
+		sut.get("a");
+		sut.get("b");
+		//kicks out a
+		sut.get("c");
+		sut.get("b");
+		sut.get("c");
+		//kicks out b which is now the least recently used
+		sut.get("a");
+		sut.get("a");
+		sut.get("c");
+		
+		assertEquals(new DataStoreCacheStats(4, 4, 4, 2), getStats(sut));
+		verify(delegate);
+	}
+	
+	@Test
+	public void recordsHeavierThanMaxWeightAreNotCached() throws DataStoreException{
+		expect(delegate.get("a")).andReturn(50L).times(2);
+		replay(delegate);
+		
+		DataStoreSubInterface sut = new CachedDataStoreBuilder<>(DataStoreSubInterface.class, delegate)
+															.maxWeight(10, Long::longValue)
+															.build();
+		sut.get("a");
+		sut.get("a");
+		verify(delegate);
+	}
+	
+	@Test
+	public void concurrentMissesForSameIdOnlyLoadOnce() throws Exception{
+		CountDownLatch loading = new CountDownLatch(1);
+		CountDownLatch finishLoad = new CountDownLatch(1);
+		Long value = Long.valueOf(1234567);
+		expect(delegate.get("a")).andAnswer(()->{
+			loading.countDown();
+			finishLoad.await();
+			return value;
+		});
+		replay(delegate);
+		DataStoreSubInterface sut = new CachedDataStoreBuilder<>(DataStoreSubInterface.class, delegate)
+															.build();
+		
+		int numberOfThreads = 8;
+		ExecutorService executor = Executors.newFixedThreadPool(numberOfThreads);
+		try{
+			List<Future<Long>> futures = new ArrayList<>();
+			futures.add(executor.submit(()-> sut.get("a")));
+			assertTrue(loading.await(10, TimeUnit.SECONDS));
+			for(int i=1; i< numberOfThreads; i++){
+				futures.add(executor.submit(()-> sut.get("a")));
+			}
+			//let the other threads start waiting
+			while(getStats(sut).getMissCount() < numberOfThreads){
+				Thread.sleep(1);
+			}
+			finishLoad.countDown();
+			for(Future<Long> f : futures){
+				assertSame(value, f.get(10, TimeUnit.SECONDS));
+			}
+		}finally{
+			executor.shutdownNow();
+		}
+		assertEquals(1, getStats(sut).getLoadCount());
+		verify(delegate);
+	}
+	
+	@Test
+	public void exceptionsAreThrownToAllCoalescedCallers() throws Exception{
+		CountDownLatch loading = new CountDownLatch(1);
+		CountDownLatch finishLoad = new CountDownLatch(1);
+		DataStoreException expected = new DataStoreException("expected");
+		expect(delegate.get("a")).andAnswer(()->{
+			loading.countDown();
+			finishLoad.await();
+			throw expected;
+		});
+		replay(delegate);
+		DataStoreSubInterface sut = new CachedDataStoreBuilder<>(DataStoreSubInterface.class, delegate)
+															.build();
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try{
+			Future<Long> first = executor.submit(()-> sut.get("a"));
+			assertTrue(loading.await(10, TimeUnit.SECONDS));
+			Future<Long> second = executor.submit(()-> sut.get("a"));
+			while(getStats(sut).getMissCount() < 2){
+				Thread.sleep(1);
+			}
+			finishLoad.countDown();
+			for(Future<Long> f : new Future[]{first, second}){
+				try{
+					f.get(10, TimeUnit.SECONDS);
+					fail("should throw exception");
+				}catch(java.util.concurrent.ExecutionException e){
+					assertSame(expected, e.getCause());
+				}
+			}
+		}finally{
+			executor.shutdownNow();
+		}
+		verify(delegate);
+	}
+	
+	@Test
+	public void withoutCoalescingEachMissLoads() throws Exception{
+		expect(delegate.get("a")).andReturn(1L).times(2);
+		replay(delegate);
+		DataStoreSubInterface sut = new CachedDataStoreBuilder<>(DataStoreSubInterface.class, delegate)
+															.coalesceLoads(false)
+															.build();
+		sut.get("a");
+		DataStoreUtil.clearCacheFrom(sut);
+		sut.get("a");
+		assertEquals(new DataStoreCacheStats(0, 2, 2, 0), getStats(sut));
+		verify(delegate);
+	}
+	
+	private static DataStoreCacheStats getStats(DataStore<?> datastore){
+		return ((CacheableDataStore<?>) datastore).getCacheStats();
+	}
+	
+	interface DataStoreSubInterface extends DataStore<Long>{
+        
+    }
+}
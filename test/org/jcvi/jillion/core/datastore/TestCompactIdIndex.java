@@ -0,0 +1,187 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.core.datastore;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.jcvi.jillion.core.Range;
+import org.jcvi.jillion.internal.core.datastore.CompactIdIndex;
+import org.jcvi.jillion.internal.core.datastore.PersistentIdIndex;
+import org.junit.Test;
+
+public class TestCompactIdIndex {
+
+	private static final PersistentIdIndex.ValueCodec<Long> CODEC = new PersistentIdIndex.ValueCodec<Long>() {
+
+		@Override
+		public int getNumberOfValues() {
+			return 1;
+		}
+
+		@Override
+		public void encode(Long value, long[] out) {
+			out[0] = value;
+		}
+
+		@Override
+		public Long decode(long[] values) {
+			return values[0];
+		}
+	};
+	
+	private static final PersistentIdIndex.ValueCodec<Range> RANGE_CODEC = new PersistentIdIndex.ValueCodec<Range>() {
+
+		@Override
+		public int getNumberOfValues() {
+			return 2;
+		}
+
+		@Override
+		public void encode(Range value, long[] out) {
+			out[0] = value.getBegin();
+			out[1] = value.getEnd();
+		}
+
+		@Override
+		public Range decode(long[] values) {
+			return Range.of(values[0], values[1]);
+		}
+	};
+	
+	private final CompactIdIndex<Long> sut = new CompactIdIndex<>(CODEC);
+	
+	@Test
+	public void empty(){
+		assertTrue(sut.isEmpty());
+		assertNull(sut.get("id"));
+		assertFalse(sut.keySet().iterator().hasNext());
+	}
+	
+	@Test
+	public void putAndGet(){
+		assertNull(sut.put("id1", 1L));
+		assertNull(sut.put("id2", Long.MIN_VALUE));
+		
+		assertEquals(2, sut.size());
+		assertEquals(Long.valueOf(1), sut.get("id1"));
+		assertEquals(Long.valueOf(Long.MIN_VALUE), sut.get("id2"));
+		assertTrue(sut.containsKey("id1"));
+		assertFalse(sut.containsKey("id"));
+		assertFalse(sut.containsKey(1));
+	}
+	
+	@Test
+	public void putExistingIdReplacesValueButKeepsOrder(){
+		sut.put("a", 1L);
+		sut.put("b", 2L);
+		sut.put("c", 3L);
+		
+		assertEquals(Long.valueOf(2), sut.put("b", 20L));
+		assertEquals(3, sut.size());
+		assertEquals(Long.valueOf(20), sut.get("b"));
+		
+		Map<String, Long> expected = new LinkedHashMap<>();
+		expected.put("a", 1L);
+		expected.put("b", 20L);
+		expected.put("c", 3L);
+		assertSameEntries(expected, sut);
+	}
+	
+	@Test(expected = NullPointerException.class)
+	public void nullValueShouldThrowNPE(){
+		sut.put("id", null);
+	}
+	
+	@Test
+	public void manyIdsOnHeap(){
+		assertSameAsLinkedHashMap(sut);
+	}
+	
+	@Test
+	public void manyIdsOffHeap(){
+		assertSameAsLinkedHashMap(new CompactIdIndex<>(CODEC, true));
+	}
+	
+	@Test
+	public void multipleValueEntriesThatSpanPages(){
+		//24 byte entries don't evenly divide a page
+		CompactIdIndex<Range> actual = new CompactIdIndex<>(RANGE_CODEC);
+		Map<String, Range> expected = new LinkedHashMap<>();
+		Random random = new Random(7);
+		for(int i=0; i< 100_000; i++){
+			String id = "read_" + i;
+			long begin = random.nextInt(1_000_000);
+			Range value = Range.of(begin, begin + random.nextInt(1000));
+			expected.put(id, value);
+			assertNull(actual.put(id, value));
+		}
+		assertEquals(expected.size(), actual.size());
+		assertEquals(new ArrayList<>(expected.keySet()), new ArrayList<>(actual.keySet()));
+		for(Map.Entry<String, Range> entry : expected.entrySet()){
+			assertEquals(entry.getValue(), actual.get(entry.getKey()));
+		}
+	}
+	
+	@Test
+	public void clearRemovesEverything(){
+		sut.put("id1", 1L);
+		sut.clear();
+		assertTrue(sut.isEmpty());
+		assertFalse(sut.containsKey("id1"));
+		
+		sut.put("id2", 2L);
+		assertEquals(1, sut.size());
+		assertEquals(Long.valueOf(2), sut.get("id2"));
+	}
+	
+	private static void assertSameAsLinkedHashMap(CompactIdIndex<Long> actual){
+		Map<String, Long> expected = new LinkedHashMap<>();
+		Random random = new Random(5);
+		//enough ids and values to span several pages
+		for(int i=0; i< 200_000; i++){
+			String id = "réad_" + random.nextInt(150_000);
+			long value = random.nextLong();
+			assertEquals(expected.put(id, value), actual.put(id, value));
+		}
+		assertSameEntries(expected, actual);
+		for(int i=0; i< 1000; i++){
+			assertFalse(actual.containsKey("read_" + i));
+		}
+	}
+	
+	private static void assertSameEntries(Map<String, Long> expected, Map<String, Long> actual){
+		assertEquals(expected.size(), actual.size());
+		assertEquals(new ArrayList<>(expected.keySet()), new ArrayList<>(actual.keySet()));
+		assertEquals(new ArrayList<>(expected.entrySet()), new ArrayList<>(actual.entrySet()));
+		for(String id : expected.keySet()){
+			assertEquals(expected.get(id), actual.get(id));
+		}
+		assertEquals(expected, actual);
+	}
+}
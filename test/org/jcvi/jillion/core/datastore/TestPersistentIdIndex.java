@@ -0,0 +1,189 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.core.datastore;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import org.jcvi.jillion.internal.core.datastore.PersistentIdIndex;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TestPersistentIdIndex {
+
+	private static final String FORMAT = "test";
+	
+	private static final PersistentIdIndex.ValueCodec<long[]> CODEC = new PersistentIdIndex.ValueCodec<long[]>() {
+
+		@Override
+		public int getNumberOfValues() {
+			return 2;
+		}
+
+		@Override
+		public void encode(long[] value, long[] out) {
+			System.arraycopy(value, 0, out, 0, 2);
+		}
+
+		@Override
+		public long[] decode(long[] values) {
+			return values.clone();
+		}
+	};
+	
+	@Rule
+	public TemporaryFolder tmpDir = new TemporaryFolder();
+	
+	private File indexedFile;
+	private File indexFile;
+	private Map<String, long[]> entries;
+	
+	@Before
+	public void setup() throws IOException{
+		indexedFile = tmpDir.newFile("data.txt");
+		Files.write(indexedFile.toPath(), new byte[]{1,2,3,4});
+		indexFile = new File(tmpDir.getRoot(), "data.txt.idx");
+		
+		entries = new LinkedHashMap<>();
+		//non-ascii id to make sure ids are stored as UTF-8
+		entries.put("réad", new long[]{-1, Long.MAX_VALUE});
+		for(int i=0; i< 1000; i++){
+			entries.put("read_" + (999-i), new long[]{i, i*31L});
+		}
+	}
+	
+	@Test
+	public void missingIndexShouldBeEmpty() throws IOException{
+		assertFalse(PersistentIdIndex.read(indexFile, indexedFile, FORMAT, CODEC).isPresent());
+	}
+	
+	@Test
+	public void roundTrip() throws IOException{
+		Map<String, long[]> actual = writeAndRead();
+		
+		assertEquals(entries.size(), actual.size());
+		for(Map.Entry<String, long[]> entry : entries.entrySet()){
+			assertTrue(actual.containsKey(entry.getKey()));
+			assertArrayEquals(entry.getValue(), actual.get(entry.getKey()));
+		}
+	}
+	
+	@Test
+	public void iterationOrderIsPreserved() throws IOException{
+		Map<String, long[]> actual = writeAndRead();
+		
+		assertEquals(new ArrayList<>(entries.keySet()), new ArrayList<>(actual.keySet()));
+		int i=0;
+		for(Map.Entry<String, long[]> entry : actual.entrySet()){
+			if(i>0){
+				assertArrayEquals(new long[]{i-1, (i-1)*31L}, entry.getValue());
+			}
+			i++;
+		}
+		assertEquals(entries.size(), i);
+	}
+	
+	@Test
+	public void missingIdsShouldNotBeFound() throws IOException{
+		Map<String, long[]> actual = writeAndRead();
+		
+		assertNull(actual.get("read_1000"));
+		assertFalse(actual.containsKey("read"));
+		assertFalse(actual.containsKey(""));
+		assertFalse(actual.containsKey(Integer.valueOf(1)));
+	}
+	
+	@Test
+	public void emptyIndex() throws IOException{
+		entries.clear();
+		Map<String, long[]> actual = writeAndRead();
+		assertTrue(actual.isEmpty());
+		assertFalse(actual.containsKey("read_1"));
+	}
+	
+	@Test
+	public void changedLengthMakesIndexStale() throws IOException{
+		PersistentIdIndex.write(indexFile, indexedFile, FORMAT, CODEC, entries);
+		long lastModified = indexedFile.lastModified();
+		Files.write(indexedFile.toPath(), new byte[]{1,2,3,4,5});
+		indexedFile.setLastModified(lastModified);
+		
+		assertFalse(PersistentIdIndex.read(indexFile, indexedFile, FORMAT, CODEC).isPresent());
+	}
+	
+	@Test
+	public void changedLastModifiedMakesIndexStale() throws IOException{
+		PersistentIdIndex.write(indexFile, indexedFile, FORMAT, CODEC, entries);
+		indexedFile.setLastModified(indexedFile.lastModified() - 10_000);
+		
+		assertFalse(PersistentIdIndex.read(indexFile, indexedFile, FORMAT, CODEC).isPresent());
+	}
+	
+	@Test
+	public void differentFormatShouldNotBeRead() throws IOException{
+		PersistentIdIndex.write(indexFile, indexedFile, FORMAT, CODEC, entries);
+		
+		assertFalse(PersistentIdIndex.read(indexFile, indexedFile, "other", CODEC).isPresent());
+	}
+	
+	@Test
+	public void truncatedIndexShouldNotBeRead() throws IOException{
+		PersistentIdIndex.write(indexFile, indexedFile, FORMAT, CODEC, entries);
+		byte[] bytes = Files.readAllBytes(indexFile.toPath());
+		byte[] truncated = new byte[bytes.length -1];
+		System.arraycopy(bytes, 0, truncated, 0, truncated.length);
+		Files.write(indexFile.toPath(), truncated);
+		
+		assertFalse(PersistentIdIndex.read(indexFile, indexedFile, FORMAT, CODEC).isPresent());
+	}
+	
+	@Test
+	public void clearReleasesIndex() throws IOException{
+		Map<String, long[]> actual = writeAndRead();
+		actual.clear();
+		
+		assertTrue(actual.isEmpty());
+		assertFalse(actual.containsKey("read_1"));
+	}
+	
+	private Map<String, long[]> writeAndRead() throws IOException{
+		PersistentIdIndex.write(indexFile, indexedFile, FORMAT, CODEC, entries);
+		Optional<Map<String, long[]>> actual = PersistentIdIndex.read(indexFile, indexedFile, FORMAT, CODEC);
+		assertTrue(actual.isPresent());
+		return actual.get();
+	}
+	
+	private static void assertArrayEquals(long[] expected, long[] actual){
+		org.junit.Assert.assertArrayEquals(expected, actual);
+	}
+}
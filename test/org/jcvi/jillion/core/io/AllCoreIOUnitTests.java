@@ -57,6 +57,7 @@ import org.junit.runners.Suite.SuiteClasses;
         TestSubLengthInputStream.class,
         
         TestTextLineParser.class,
+        TestBufferedLineParser.class,
         TestBufferSize.class,
         
         TestPushBackBufferedReader.class
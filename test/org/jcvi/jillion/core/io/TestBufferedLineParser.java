@@ -0,0 +1,180 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.core.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Random;
+
+import org.jcvi.jillion.internal.core.io.BufferedLineParser;
+import org.jcvi.jillion.internal.core.io.LineParser;
+import org.jcvi.jillion.internal.core.io.TextLineParser;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TestBufferedLineParser {
+
+	@Rule
+	public TemporaryFolder tmpDir = new TemporaryFolder();
+	
+	private final Random random = new Random(11);
+	
+	@Test(expected = NullPointerException.class)
+	public void nullInputStreamShouldThrowNPE() throws IOException{
+		new BufferedLineParser((InputStream)null);
+	}
+	
+	@Test
+	public void emptyInput() throws IOException{
+		try(BufferedLineParser sut = new BufferedLineParser(toInputStream(""))){
+			assertFalse(sut.hasNextLine());
+			assertNull(sut.peekLine());
+			assertNull(sut.nextLine());
+			assertNull(sut.nextLineAsCharSequence());
+			assertEquals(0, sut.getPosition());
+		}
+	}
+	
+	@Test
+	public void peekDoesNotAdvance() throws IOException{
+		try(BufferedLineParser sut = new BufferedLineParser(toInputStream("first\r\nsecond"), 10)){
+			assertEquals("first\r\n", sut.peekLine());
+			assertEquals("first\r\n", sut.peekLine());
+			assertEquals(10, sut.getPosition());
+			assertEquals("first\r\n", sut.nextLine());
+			assertEquals(17, sut.getPosition());
+			assertEquals("second", sut.nextLineAsCharSequence().toString());
+			assertEquals(23, sut.getPosition());
+			assertFalse(sut.hasNextLine());
+		}
+	}
+	
+	@Test
+	public void charSequenceIsViewOfLine() throws IOException{
+		try(BufferedLineParser sut = new BufferedLineParser(toInputStream("@read1\nACGT\n"))){
+			BufferedLineParser.Line line = sut.nextLineAsCharSequence();
+			assertEquals(7, line.length());
+			assertEquals(6, line.getLengthWithoutEndOfLine());
+			assertEquals('@', line.charAt(0));
+			assertEquals("read", line.subSequence(1, 5).toString());
+			assertEquals('@', line.getBytes()[line.getOffset()]);
+			assertEquals("ACGT\n", sut.nextLineAsCharSequence().toString());
+		}
+	}
+	
+	@Test
+	public void sameLinesAndPositionsAsTextLineParser() throws IOException{
+		for(int i=0; i< 20; i++){
+			byte[] bytes = randomText(5000);
+			assertSameAsTextLineParser(bytes, new BufferedLineParser(new TrickleInputStream(bytes), 5), false);
+			assertSameAsTextLineParser(bytes, new BufferedLineParser(new TrickleInputStream(bytes), 5), true);
+		}
+	}
+	
+	@Test
+	public void linesLongerThanBuffer() throws IOException{
+		StringBuilder builder = new StringBuilder();
+		for(int i=0; i< 200_000; i++){
+			builder.append((char)('A' + (i % 26)));
+		}
+		builder.append("\r\nshort\r");
+		builder.append(builder.toString());
+		byte[] bytes = builder.toString().getBytes(IOUtil.UTF_8);
+		assertSameAsTextLineParser(bytes, new BufferedLineParser(new ByteArrayInputStream(bytes), 5), false);
+	}
+	
+	@Test
+	public void fileWithInitialPosition() throws IOException{
+		byte[] bytes = randomText(100_000);
+		File f = tmpDir.newFile();
+		Files.write(f.toPath(), bytes);
+		
+		try(LineParser expected = new TextLineParser(f, 1234);
+			LineParser actual = new BufferedLineParser(f, 1234)){
+			assertSameLines(expected, actual, false);
+		}
+	}
+	
+	private void assertSameAsTextLineParser(byte[] bytes, BufferedLineParser sut, boolean useCharSequence) throws IOException{
+		try(LineParser expected = new TextLineParser(new ByteArrayInputStream(bytes), 5)){
+			assertSameLines(expected, sut, useCharSequence);
+		}finally{
+			sut.close();
+		}
+	}
+	
+	private static void assertSameLines(LineParser expected, LineParser actual, boolean useCharSequence) throws IOException{
+		while(expected.hasNextLine()){
+			assertTrue(actual.hasNextLine());
+			assertEquals(expected.getPosition(), actual.getPosition());
+			assertEquals(expected.peekLine(), actual.peekLine());
+			String expectedLine = expected.nextLine();
+			if(useCharSequence){
+				assertEquals(expectedLine, actual.nextLineAsCharSequence().toString());
+			}else{
+				assertEquals(expectedLine, actual.nextLine());
+			}
+		}
+		assertFalse(actual.hasNextLine());
+		assertEquals(expected.getPosition(), actual.getPosition());
+	}
+	/**
+	 * Random text with every kind of end of line
+	 * including blank lines.
+	 */
+	private byte[] randomText(int length){
+		String alphabet = "ACGT@+ \n\n\r\r\n";
+		byte[] bytes = new byte[length];
+		for(int i=0; i< length; i++){
+			bytes[i] = (byte) alphabet.charAt(random.nextInt(alphabet.length()));
+		}
+		return bytes;
+	}
+	
+	private static InputStream toInputStream(String value){
+		return new ByteArrayInputStream(value.getBytes(IOUtil.UTF_8));
+	}
+	/**
+	 * Returns only a few bytes per read
+	 * to test lines spanning reads.
+	 */
+	private final class TrickleInputStream extends FilterInputStream{
+
+		TrickleInputStream(byte[] bytes) {
+			super(new ByteArrayInputStream(bytes));
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			return super.read(b, off, Math.min(len, 1 + random.nextInt(7)));
+		}
+	}
+}
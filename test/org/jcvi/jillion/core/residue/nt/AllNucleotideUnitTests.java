@@ -48,6 +48,11 @@ import org.junit.runners.Suite.SuiteClasses;
         TestNucleotideGlyph_GetGlyphsFor.class,
         
         TestNucleotideSequenceBuilder.class,
+        TestPackedNucleotideSequenceBuilder.class,
+        TestNucleotideSequenceBulkOperations.class,
+        TestRollingKmers.class,
+        TestKmerCounter.class,
+        TestAsciiNucleotideDecoder.class,
         TestNucleotideSequenceBuilderIsEqualToIgnoringGaps.class,
         
         TestNucleotideSequenceIsEqualToIgnoringGaps.class,
@@ -0,0 +1,141 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.core.residue.nt;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import org.jcvi.jillion.core.io.IOUtil;
+import org.junit.Test;
+import org.powermock.reflect.Whitebox;
+
+public class TestAsciiNucleotideDecoder {
+
+	private final Random random = new Random(14);
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void negativeExpectedLengthShouldThrowIllegalArgumentException(){
+		new AsciiNucleotideDecoder(-1);
+	}
+	
+	@Test
+	public void emptySequence(){
+		assertEquals(0, new AsciiNucleotideDecoder(0).build().getLength());
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void invalidCharacterShouldThrowIllegalArgumentException(){
+		decode("ACGTJACGT");
+	}
+	
+	@Test
+	public void whitespaceAndLineTerminatorsAreIgnored(){
+		assertSameAsBuilder("ACGT\nACGT\r\nAC GT\tAC\n");
+	}
+	
+	@Test
+	public void lowercaseSameAsUppercase(){
+		assertEquals(new NucleotideSequenceBuilder("ACGTNACGT").build(), decode("acgtnAcGt"));
+	}
+	
+	@Test
+	public void onlyNsUsesTwoBitCodec(){
+		assertSameAsBuilder("ACGTACGTNNACGTACGTTTTTGGGGCCCCAAAANACGT");
+	}
+	
+	@Test
+	public void onlyGapsUsesTwoBitCodec(){
+		assertSameAsBuilder("ACGTACGT--ACGTACGTTTTTGG*GGCCCCAAAA-ACGT");
+	}
+	
+	@Test
+	public void mostlyNsUsesSameCodecAsBuilder(){
+		assertSameAsBuilder("NNNNNNNNNNNNNNNNNNNNANNNNNNNNNNNNNNNNNN");
+	}
+	
+	@Test
+	public void gapsAndNsUsesSameCodecAsBuilder(){
+		assertSameAsBuilder("ACGTACGT--ACGTNNACGTTTTTGGGGCCCCAAAA-ACGT");
+	}
+	
+	@Test
+	public void otherAmbiguitiesUsesSameCodecAsBuilder(){
+		assertSameAsBuilder("ACGTACGTRYKMSWBDHVNACGTTTTTGGGGCCCCAAAA-ACGT");
+	}
+	
+	@Test
+	public void appendInPiecesFromDirectBuffer(){
+		String seq = randomSequence(10_000, "ACGTACGTACGTN\n");
+		byte[] bytes = seq.getBytes(IOUtil.UTF_8);
+		ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+		direct.put(bytes).flip();
+		
+		AsciiNucleotideDecoder sut = new AsciiNucleotideDecoder(10);
+		int offset=0;
+		while(offset < bytes.length){
+			int length = Math.min(bytes.length - offset, random.nextInt(100));
+			ByteBuffer piece = direct.duplicate();
+			piece.position(offset).limit(offset + length);
+			sut.append(piece);
+			assertEquals(offset + length, piece.position());
+			offset += length;
+		}
+		assertEncodedSame(new NucleotideSequenceBuilder(seq).build(), sut.build());
+	}
+	
+	@Test
+	public void randomSequencesSameAsBuilder(){
+		for(int i=0; i< 100; i++){
+			assertSameAsBuilder(randomSequence(random.nextInt(500), "ACGTACGTACGTACGTN-*acgtnRY \r\n"));
+			assertSameAsBuilder(randomSequence(random.nextInt(500), "ACGTACGTACGTACGTACGTN\n"));
+		}
+	}
+	
+	private String randomSequence(int length, String alphabet){
+		StringBuilder builder = new StringBuilder(length);
+		for(int i=0; i< length; i++){
+			builder.append(alphabet.charAt(random.nextInt(alphabet.length())));
+		}
+		return builder.toString();
+	}
+	
+	private static NucleotideSequence decode(String seq){
+		byte[] bytes = seq.getBytes(IOUtil.UTF_8);
+		return new AsciiNucleotideDecoder(bytes.length)
+						.append(bytes, 0, bytes.length)
+						.build();
+	}
+	
+	private static void assertSameAsBuilder(String seq){
+		assertEncodedSame(new NucleotideSequenceBuilder(seq).build(), decode(seq));
+	}
+	
+	private static void assertEncodedSame(NucleotideSequence expected, NucleotideSequence actual){
+		assertEquals(expected, actual);
+		assertSame((Object)Whitebox.getInternalState(expected, "codec"), Whitebox.getInternalState(actual, "codec"));
+		assertArrayEquals((byte[])Whitebox.getInternalState(expected, "data"),
+				(byte[])Whitebox.getInternalState(actual, "data"));
+	}
+}
@@ -0,0 +1,206 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.core.residue.nt;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Function;
+
+import org.jcvi.jillion.core.datastore.DataStoreException;
+import org.jcvi.jillion.core.datastore.DataStoreUtil;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TestKmerCounter {
+
+	@Rule
+	public TemporaryFolder tmpDir = new TemporaryFolder();
+	
+	private final Random random = new Random(7);
+	
+	private final List<NucleotideSequence> sequences = new ArrayList<>();
+	
+	public TestKmerCounter(){
+		for(int i=0; i< 200; i++){
+			StringBuilder builder = new StringBuilder();
+			int length = 50 + random.nextInt(100);
+			for(int j=0; j< length; j++){
+				//small alphabet so kmers repeat
+				builder.append("ACGTACGTACGTACGTN".charAt(random.nextInt(17)));
+			}
+			sequences.add(new NucleotideSequenceBuilder(builder.toString()).build());
+		}
+	}
+	
+	private Map<Long, Long> naiveCounts(int k, boolean canonical){
+		Map<Long, Long> map = new HashMap<>();
+		RollingKmers kmers = new RollingKmers.Builder(k).canonical(canonical).build();
+		for(NucleotideSequence seq : sequences){
+			kmers.forEach(seq, (offset, kmer) -> map.merge(kmer, 1L, Long::sum));
+		}
+		return map;
+	}
+	
+	private static Map<Long, Long> countsOf(KmerCounter counter) throws IOException{
+		Map<Long, Long> map = new HashMap<>();
+		counter.forEach((kmer, count) -> assertEquals(null, map.put(kmer, count)));
+		return map;
+	}
+	
+	@Test
+	public void countsSameAsHashMap() throws IOException{
+		for(boolean canonical : new boolean[]{false, true}){
+			Map<Long, Long> expected = naiveCounts(5, canonical);
+			try(KmerCounter sut = new KmerCounter.Builder(5).canonical(canonical).build()){
+				sut.addAll(sequences.stream());
+				assertFalse(sut.hasSpilled());
+				assertEquals(expected, countsOf(sut));
+				assertEquals(expected.size(), sut.getNumberOfDistinctKmers());
+				assertEquals(expected.values().stream().mapToLong(Long::longValue).sum(), sut.getTotalNumberOfKmers());
+				for(Map.Entry<Long, Long> entry : expected.entrySet()){
+					assertEquals(entry.getValue().longValue(), sut.getCount(entry.getKey()));
+				}
+			}
+		}
+	}
+	
+	@Test
+	public void parallelAddSameAsSequential() throws IOException{
+		try(KmerCounter sut = new KmerCounter.Builder(7).canonical(true)
+													.concurrencyLevel(8)
+													.build()){
+			sut.addAll(sequences.parallelStream());
+			assertEquals(naiveCounts(7, true), countsOf(sut));
+		}
+	}
+	
+	@Test
+	public void spillToDisk() throws IOException{
+		File spillDir = tmpDir.newFolder();
+		Map<Long, Long> expected = naiveCounts(9, true);
+		try(KmerCounter sut = new KmerCounter.Builder(9).canonical(true)
+													.maxKmersInMemory(500)
+													.numberOfSpillPartitions(7)
+													.spillDirectory(spillDir)
+													.build()){
+			sut.addAll(sequences.stream());
+			assertTrue(sut.hasSpilled());
+			assertTrue(spillDir.list().length > 0);
+			
+			assertEquals(expected, countsOf(sut));
+			for(Map.Entry<Long, Long> entry : expected.entrySet()){
+				assertEquals(entry.getValue().longValue(), sut.getCount(entry.getKey()));
+			}
+			//reading the counts shouldn't change them
+			assertEquals(expected, countsOf(sut));
+		}
+		assertEquals(0, spillDir.list().length);
+	}
+	
+	@Test
+	public void minCountFiltersLowCounts() throws IOException{
+		Map<Long, Long> expected = naiveCounts(6, false);
+		expected.values().removeIf(count -> count < 3);
+		try(KmerCounter sut = new KmerCounter.Builder(6).minCount(3).build()){
+			sut.addAll(sequences.stream());
+			assertEquals(expected, countsOf(sut));
+		}
+	}
+	
+	@Test
+	public void spectrum() throws IOException{
+		long[] expected = new long[11];
+		for(long count : naiveCounts(4, true).values()){
+			expected[(int) Math.min(count, 10)]++;
+		}
+		try(KmerCounter sut = new KmerCounter.Builder(4).canonical(true).minCount(5).build()){
+			sut.addAll(sequences.stream());
+			assertArrayEquals(expected, sut.getSpectrum(10));
+		}
+	}
+	
+	@Test
+	public void addAllFromDataStore() throws IOException, DataStoreException{
+		Map<String, NucleotideSequence> map = new LinkedHashMap<>();
+		for(int i=0; i< sequences.size(); i++){
+			map.put("read" + i, sequences.get(i));
+		}
+		try(KmerCounter sut = new KmerCounter.Builder(5).build()){
+			sut.addAll(DataStoreUtil.adapt(map), Function.identity());
+			assertEquals(naiveCounts(5, false), countsOf(sut));
+		}
+	}
+	
+	@Test
+	public void polyAKmerIsCounted() throws IOException{
+		try(KmerCounter sut = new KmerCounter.Builder(3).build()){
+			sut.add(NucleotideSequence.of("AAAAA"));
+			assertEquals(3, sut.getCount(0L));
+			sut.add(0L);
+			assertEquals(4, sut.getCount(0L));
+		}
+	}
+	
+	@Test
+	public void moreStripesDoNotMakeProbesLonger(){
+		double oneStripe = averageProbeLengthOfDistinctKmers(1);
+		double manyStripes = averageProbeLengthOfDistinctKmers(64);
+		//linear probing at load <= 0.5 averages about 1.5 probes
+		assertTrue(Double.toString(oneStripe), oneStripe < 2);
+		assertTrue(manyStripes + " vs " + oneStripe, manyStripes < oneStripe * 1.25);
+	}
+	
+	private double averageProbeLengthOfDistinctKmers(int concurrencyLevel){
+		try(KmerCounter sut = new KmerCounter.Builder(21).concurrencyLevel(concurrencyLevel).build()){
+			Random rand = new Random(11);
+			for(int i=0; i< 200_000; i++){
+				sut.add(rand.nextLong() & ((1L << 42) -1));
+			}
+			return sut.getAverageProbeLength();
+		}catch(IOException e){
+			throw new IllegalStateException(e);
+		}
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void kTooBigShouldThrowIllegalArgumentException(){
+		new KmerCounter.Builder(RollingKmers.MAX_PACKED_K +1);
+	}
+	
+	@Test(expected = IllegalStateException.class)
+	public void addAfterCloseShouldThrowIllegalStateException() throws IOException{
+		KmerCounter sut = new KmerCounter.Builder(3).build();
+		sut.close();
+		sut.add(NucleotideSequence.of("ACGT"));
+	}
+}
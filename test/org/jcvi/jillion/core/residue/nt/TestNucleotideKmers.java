@@ -24,6 +24,7 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.stream.Collectors;
 
+import org.jcvi.jillion.core.Range;
 import org.jcvi.jillion.core.residue.Kmer;
 import org.jcvi.jillion.testutils.NucleotideSequenceTestUtil;
 import org.junit.Test;
@@ -94,4 +95,30 @@ public class TestNucleotideKmers {
         
         assertEquals(expected, s.kmers(5).collect(Collectors.toList()));
     }
+    
+    @Test
+    public void parallelStreamSameAsSequential(){
+        StringBuilder bases = new StringBuilder();
+        for(int i=0; i< 1000; i++){
+            bases.append("ACGTTGCAN");
+        }
+        NucleotideSequence s = NucleotideSequenceTestUtil.create(bases.toString());
+        
+        assertEquals(s.kmers(7).collect(Collectors.toList()), s.kmers(7).parallel().collect(Collectors.toList()));
+    }
+    
+    @Test
+    public void subRangeOffsetsAreRelativeToFullSequence(){
+        NucleotideSequence s = NucleotideSequenceTestUtil.create("AGATCGAGTG");
+        
+        List<Kmer<NucleotideSequence>> expected = Arrays.asList(new Kmer<>(2,NucleotideSequenceTestUtil.create("ATC")),
+                                                                    new Kmer<>(3,NucleotideSequenceTestUtil.create("TCG")));
+        
+        assertEquals(expected, s.kmers(3, Range.of(2,5)).collect(Collectors.toList()));
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void kLessThan1ShouldThrowIllegalArgumentException(){
+        NucleotideSequenceTestUtil.create("ACGT").kmers(0);
+    }
 }
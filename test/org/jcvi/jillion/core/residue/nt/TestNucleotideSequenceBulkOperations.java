@@ -0,0 +1,178 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.core.residue.nt;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import org.jcvi.jillion.core.Range;
+import org.junit.Test;
+import org.powermock.reflect.Whitebox;
+
+public class TestNucleotideSequenceBulkOperations {
+
+	private static final int[] LENGTHS = {0, 1, 3, 4, 5, 31, 32, 33, 63, 64, 65, 100, 257};
+	
+	private final Random random = new Random(1234);
+	
+	private String randomBases(int length, String alphabet){
+		StringBuilder builder = new StringBuilder(length);
+		for(int i=0; i< length; i++){
+			builder.append(alphabet.charAt(random.nextInt(alphabet.length())));
+		}
+		return builder.toString();
+	}
+	
+	private static NucleotideSequence create(String bases, AbstractNucleotideCodec codec){
+		if(codec ==null){
+			return new NucleotideSequenceBuilder(bases).build();
+		}
+		//force the codec to use since the builder
+		//may pick a different one for short sequences
+		List<Nucleotide> list = new ArrayList<>();
+		for(Nucleotide n : new NucleotideSequenceBuilder(bases).build()){
+			list.add(n);
+		}
+		int[] sentinelOffsets = IntStream.range(0, list.size())
+											.filter(i -> list.get(i) == codec.getSentinelBase())
+											.toArray();
+		return new DefaultNucleotideSequence(codec, codec.encode(list.size(), sentinelOffsets, list.iterator()));
+	}
+	
+	private static long naiveGCCount(String bases){
+		return bases.chars().filter(c -> c=='G' || c=='C' || c=='S').count();
+	}
+	
+	private static long naiveHammingDistance(String a, String b){
+		long count=0;
+		for(int i=0; i< a.length(); i++){
+			if(a.charAt(i) != b.charAt(i)){
+				count++;
+			}
+		}
+		return count;
+	}
+	
+	private static String naiveReverseComplement(String bases){
+		return new NucleotideSequenceBuilder(bases).reverseComplement().toString();
+	}
+	
+	private static List<Range> naiveNRanges(String bases){
+		List<Range> list = new ArrayList<>();
+		int start=-1;
+		for(int i=0; i< bases.length(); i++){
+			if(bases.charAt(i)=='N'){
+				if(start <0){
+					start = i;
+				}
+			}else if(start >=0){
+				list.add(Range.of(start, i-1));
+				start=-1;
+			}
+		}
+		if(start >=0){
+			list.add(Range.of(start, bases.length()-1));
+		}
+		return list;
+	}
+	
+	private void assertBulkOperationsCorrect(String alphabet, AbstractNucleotideCodec codec){
+		for(int length : LENGTHS){
+			String bases = randomBases(length, alphabet);
+			NucleotideSequence seq = create(bases, codec);
+			
+			assertEquals(bases, naiveGCCount(bases), seq.getGCCount());
+			assertEquals(bases, naiveNRanges(bases), seq.getRangesOfNs());
+			
+			NucleotideSequence reverseComplement = seq.reverseComplement();
+			assertEquals(bases, naiveReverseComplement(bases), reverseComplement.toString());
+			assertEquals(new NucleotideSequenceBuilder(bases).reverseComplement().build(), reverseComplement);
+			
+			for(String otherAlphabet : new String[]{"ACGT", "ACGTN", "ACGT-", "ACGTNRYS-"}){
+				String otherBases = randomBases(length, otherAlphabet);
+				NucleotideSequence other = create(otherBases, null);
+				long expected = naiveHammingDistance(bases, otherBases);
+				assertEquals(bases + " vs " + otherBases, expected, seq.getHammingDistance(other));
+				assertEquals(bases + " vs " + otherBases, expected, other.getHammingDistance(seq));
+			}
+			assertEquals(0, seq.getHammingDistance(create(bases, null)));
+		}
+	}
+	
+	@Test
+	public void acgtn(){
+		assertBulkOperationsCorrect("ACGTACGTN", AcgtnNucloetideCodec.INSTANCE);
+	}
+	
+	@Test
+	public void acgtGap(){
+		assertBulkOperationsCorrect("ACGTACGT-", AcgtGapNucleotideCodec.INSTANCE);
+	}
+	
+	@Test
+	public void basic(){
+		assertBulkOperationsCorrect("ACGTN-RYSKMW", BasicNucleotideCodec.INSTANCE);
+	}
+	
+	@Test
+	public void longRunsOfNs(){
+		String bases = "NNNNNNNNNNACGTNNNNNNNNNNNNNNNNNNNNNNNNNNNNNNNNNNNNNACGTN";
+		assertEquals(naiveNRanges(bases), create(bases, AcgtnNucloetideCodec.INSTANCE).getRangesOfNs());
+		assertEquals(naiveNRanges(bases + "R"), create(bases+"R", BasicNucleotideCodec.INSTANCE).getRangesOfNs());
+	}
+	
+	@Test
+	public void sentinelsAtSameOffsetAreNotMismatches(){
+		NucleotideSequence seq = create("ACGTNNACGT", AcgtnNucloetideCodec.INSTANCE);
+		assertEquals(0, seq.getHammingDistance(create("ACGTNNACGT", AcgtnNucloetideCodec.INSTANCE)));
+		assertEquals(2, seq.getHammingDistance(create("ACGTAAACGT", null)));
+		assertEquals(2, seq.getHammingDistance(create("ACGT--ACGT", AcgtGapNucleotideCodec.INSTANCE)));
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void hammingDistanceOfDifferentLengthsShouldThrowIllegalArgumentException(){
+		create("ACGT", null).getHammingDistance(create("ACGTA", null));
+	}
+	
+	@Test(expected = NullPointerException.class)
+	public void hammingDistanceOfNullShouldThrowNPE(){
+		create("ACGT", null).getHammingDistance(null);
+	}
+	
+	@Test
+	public void reverseComplementHasSameEncodingAsBuilder(){
+		for(String bases : new String[]{"ACGTNNACGTTTTTTTTTTTTTTTTTTTTTTTTTTTTTTTTTG", "A-CGT--ACGGGGGGGGGGGGGGGGGGGGGGGGGGGGGGGGGGGGGGGGGT"}){
+			NucleotideSequence expected = new NucleotideSequenceBuilder(bases).reverseComplement().build();
+			NucleotideSequence actual = create(bases, null).reverseComplement();
+			assertEquals(expected, actual);
+			assertEquals(expected.hashCode(), actual.hashCode());
+			assertSame((Object)Whitebox.getInternalState(expected, "codec"), Whitebox.getInternalState(actual, "codec"));
+			assertArrayEquals((byte[])Whitebox.getInternalState(expected, "data"), 
+											(byte[])Whitebox.getInternalState(actual, "data"));
+		}
+	}
+}
@@ -0,0 +1,209 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.core.residue.nt;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.jcvi.jillion.core.Range;
+import org.junit.Test;
+import org.powermock.reflect.Whitebox;
+
+public class TestPackedNucleotideSequenceBuilder {
+
+	private final Random random = new Random(42);
+	
+	private String randomBases(int length, String alphabet){
+		StringBuilder builder = new StringBuilder(length);
+		for(int i=0; i< length; i++){
+			builder.append(alphabet.charAt(random.nextInt(alphabet.length())));
+		}
+		return builder.toString();
+	}
+	
+	private String randomBases(int length){
+		//mostly ACGT with the occasional gap, N or ambiguity
+		return randomBases(length, "ACGTACGTACGTACGTACGTACGTN-R");
+	}
+	
+	private static void assertSameAsUnpacked(NucleotideSequenceBuilder expected, NucleotideSequenceBuilder actual){
+		assertEquals(expected.toString(), actual.toString());
+		assertEquals(expected.getLength(), actual.getLength());
+		assertArrayEquals(expected.getGapOffsets(), actual.getGapOffsets());
+		assertEquals(expected, actual);
+		assertEquals(expected.build(), actual.build());
+	}
+	
+	@Test
+	public void defaultIsNotPacked(){
+		assertFalse(new NucleotideSequenceBuilder("ACGT").isUsingPackedStorage());
+	}
+	
+	@Test
+	public void switchingStorageKeepsBases(){
+		String seq = randomBases(100);
+		NucleotideSequenceBuilder sut = new NucleotideSequenceBuilder(seq)
+													.usePackedStorage(true);
+		assertTrue(sut.isUsingPackedStorage());
+		assertEquals(seq, sut.toString());
+		
+		sut.usePackedStorage(false);
+		assertFalse(sut.isUsingPackedStorage());
+		assertEquals(seq, sut.toString());
+	}
+	
+	@Test
+	public void copiesAndTrimsStayPacked(){
+		NucleotideSequenceBuilder sut = new NucleotideSequenceBuilder(randomBases(100))
+													.usePackedStorage(true);
+		assertTrue(sut.copy().isUsingPackedStorage());
+		assertTrue(sut.copy(Range.of(10, 50)).isUsingPackedStorage());
+		assertTrue(sut.trim(Range.of(5, 70)).isUsingPackedStorage());
+	}
+	
+	@Test
+	public void buildOnlyNsUsesTwoBitCodec(){
+		assertBuiltWithCodec(randomBases(1000, "ACGTACGTN"), AcgtnNucloetideCodec.INSTANCE);
+	}
+	
+	@Test
+	public void buildOnlyGapsUsesTwoBitCodec(){
+		assertBuiltWithCodec(randomBases(1000, "ACGTACGT-"), AcgtGapNucleotideCodec.INSTANCE);
+	}
+	
+	@Test
+	public void buildOnlyAcgtUsesTwoBitCodec(){
+		for(int length=0; length< 70; length++){
+			assertBuiltWithCodec(randomBases(length, "ACGT"), AcgtnNucloetideCodec.INSTANCE);
+		}
+	}
+	
+	@Test
+	public void buildWithAmbiguitiesUsesBasicCodec(){
+		assertBuiltWithCodec(randomBases(1000, "ACGTACGTR"), BasicNucleotideCodec.INSTANCE);
+	}
+	
+	private void assertBuiltWithCodec(String seq, NucleotideCodec expectedCodec){
+		NucleotideSequence expected = new NucleotideSequenceBuilder(seq).build();
+		NucleotideSequence actual = new NucleotideSequenceBuilder(seq)
+											.usePackedStorage(true)
+											.build();
+		assertEquals(expected, actual);
+		assertEquals(seq, actual.toString());
+		assertSame(expectedCodec, Whitebox.getInternalState(actual, "codec"));
+		assertArrayEquals((byte[])Whitebox.getInternalState(expected, "data"), 
+						(byte[])Whitebox.getInternalState(actual, "data"));
+	}
+	
+	@Test
+	public void reverseComplementAcrossWords(){
+		for(int length=0; length< 100; length+=7){
+			String seq = randomBases(length);
+			NucleotideSequenceBuilder expected = new NucleotideSequenceBuilder(seq).reverseComplement();
+			NucleotideSequenceBuilder actual = new NucleotideSequenceBuilder(seq)
+														.usePackedStorage(true)
+														.reverseComplement();
+			assertSameAsUnpacked(expected, actual);
+		}
+	}
+	
+	@Test
+	public void ungap(){
+		String seq = randomBases(300);
+		assertSameAsUnpacked(new NucleotideSequenceBuilder(seq).ungap(),
+				new NucleotideSequenceBuilder(seq).usePackedStorage(true).ungap());
+	}
+	
+	@Test
+	public void randomEditsSameAsUnpacked(){
+		NucleotideSequenceBuilder expected = new NucleotideSequenceBuilder();
+		NucleotideSequenceBuilder actual = new NucleotideSequenceBuilder().usePackedStorage(true);
+		
+		for(int i=0; i< 500; i++){
+			int length = (int) expected.getLength();
+			switch(random.nextInt(9)){
+				case 0:
+				case 1: {
+					String bases = randomBases(random.nextInt(70));
+					expected.append(bases);
+					actual.append(bases);
+					break;
+				}
+				case 2: {
+					String bases = randomBases(random.nextInt(70));
+					int offset = random.nextInt(length+1);
+					expected.insert(offset, bases);
+					actual.insert(offset, bases);
+					break;
+				}
+				case 3: {
+					if(length >0){
+						int begin = random.nextInt(length);
+						Range range = Range.of(begin, begin + random.nextInt(Math.min(40, length - begin)));
+						expected.delete(range);
+						actual.delete(range);
+					}
+					break;
+				}
+				case 4: {
+					if(length >0){
+						int offset = random.nextInt(length);
+						Nucleotide replacement = Nucleotide.parse(randomBases(1).charAt(0));
+						expected.replace(offset, replacement);
+						actual.replace(offset, replacement);
+					}
+					break;
+				}
+				case 5: 
+					expected.reverseComplement();
+					actual.reverseComplement();
+					break;
+				case 6: 
+					expected.complement();
+					actual.complement();
+					break;
+				case 7: 
+					expected.reverse();
+					actual.reverse();
+					break;
+				case 8: {
+					NucleotideSequenceBuilder other = new NucleotideSequenceBuilder(randomBases(random.nextInt(50)));
+					expected.append(other);
+					actual.append(other.copy().usePackedStorage(true));
+					break;
+				}
+				default:
+					break;
+			}
+			assertSameAsUnpacked(expected, actual);
+			if(expected.getLength() > 2000){
+				expected.ungap().trim(Range.of(100, 1000));
+				actual.ungap().trim(Range.of(100, 1000));
+				assertSameAsUnpacked(expected, actual);
+			}
+		}
+	}
+}
@@ -0,0 +1,191 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.core.residue.nt;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import org.jcvi.jillion.core.Range;
+import org.junit.Test;
+
+public class TestRollingKmers {
+
+	private final Random random = new Random(5);
+	
+	private String randomBases(int length, String alphabet){
+		StringBuilder builder = new StringBuilder(length);
+		for(int i=0; i< length; i++){
+			builder.append(alphabet.charAt(random.nextInt(alphabet.length())));
+		}
+		return builder.toString();
+	}
+	
+	private static String reverseComplement(String kmer){
+		return new NucleotideSequenceBuilder(kmer).reverseComplement().toString();
+	}
+	/**
+	 * The offset and String of every k-mer made of only ACGT.
+	 */
+	private static List<String> naiveKmers(String bases, int k, boolean canonical){
+		List<String> list = new ArrayList<>();
+		for(int i=0; i<= bases.length() - k; i++){
+			String kmer = bases.substring(i, i+k);
+			if(!kmer.matches("[ACGT]+")){
+				continue;
+			}
+			if(canonical){
+				String rc = reverseComplement(kmer);
+				if(rc.compareTo(kmer) < 0){
+					kmer = rc;
+				}
+			}
+			list.add(i + " " + kmer);
+		}
+		return list;
+	}
+	
+	private static List<String> packedKmers(RollingKmers sut, NucleotideSequence seq){
+		List<String> list = new ArrayList<>();
+		sut.forEach(seq, (offset, kmer) -> list.add(offset + " " + RollingKmers.toString(kmer, sut.getK())));
+		return list;
+	}
+	
+	private static List<String> wordKmers(RollingKmers sut, NucleotideSequence seq){
+		List<String> list = new ArrayList<>();
+		sut.forEachWords(seq, (offset, kmer) -> list.add(offset + " " + RollingKmers.toString(kmer, sut.getK())));
+		return list;
+	}
+	
+	private static List<String> withoutOffsets(List<String> list){
+		return list.stream().map(s -> s.substring(s.indexOf(' ')+1)).collect(Collectors.toList());
+	}
+	
+	@Test
+	public void packedKmersSameAsNaive(){
+		String bases = randomBases(500, "ACGTACGTACGTACGTN-");
+		NucleotideSequence seq = new NucleotideSequenceBuilder(bases).build();
+		for(int k : new int[]{1, 2, 5, 16, 31, 32}){
+			for(boolean canonical : new boolean[]{false, true}){
+				RollingKmers sut = new RollingKmers.Builder(k).canonical(canonical).build();
+				List<String> expected = naiveKmers(bases, k, canonical);
+				assertEquals(expected, packedKmers(sut, seq));
+				assertEquals(expected, wordKmers(sut, seq));
+				assertEquals(withoutOffsets(expected), 
+						sut.stream(seq).mapToObj(kmer -> RollingKmers.toString(kmer, k)).collect(Collectors.toList()));
+			}
+		}
+	}
+	
+	@Test
+	public void referenceEncodedSequenceSameAsNaive(){
+		String reference = randomBases(300, "ACGT");
+		StringBuilder read = new StringBuilder(reference.substring(50, 250));
+		read.setCharAt(20, 'N');
+		read.setCharAt(100, 'A');
+		NucleotideSequence seq = new NucleotideSequenceBuilder(read.toString())
+											.setReferenceHint(NucleotideSequence.of(reference), 50)
+											.buildReferenceEncodedNucleotideSequence();
+		RollingKmers sut = new RollingKmers.Builder(11).canonical(true).build();
+		assertEquals(naiveKmers(read.toString(), 11, true), packedKmers(sut, seq));
+	}
+	
+	@Test
+	public void largeKmersSameAsNaive(){
+		String bases = randomBases(1000, "ACGTACGTACGTACGTACGTACGTACGTACGTACGTN");
+		NucleotideSequence seq = new NucleotideSequenceBuilder(bases).build();
+		for(int k : new int[]{33, 63, 64, 65, 100}){
+			for(boolean canonical : new boolean[]{false, true}){
+				RollingKmers sut = new RollingKmers.Builder(k).canonical(canonical).build();
+				assertEquals(naiveKmers(bases, k, canonical), wordKmers(sut, seq));
+			}
+		}
+	}
+	
+	@Test
+	public void subRange(){
+		String bases = randomBases(200, "ACGTN");
+		NucleotideSequence seq = new NucleotideSequenceBuilder(bases).build();
+		Range range = Range.of(37, 150);
+		RollingKmers sut = new RollingKmers.Builder(7).build();
+		
+		List<String> expected = naiveKmers(bases.substring(37, 151), 7, false).stream()
+											.map(s -> {
+												int space = s.indexOf(' ');
+												return (Integer.parseInt(s.substring(0, space)) + 37) + s.substring(space);
+											})
+											.collect(Collectors.toList());
+		List<String> actual = new ArrayList<>();
+		sut.forEach(seq, range, (offset, kmer) -> actual.add(offset + " " + RollingKmers.toString(kmer, 7)));
+		assertEquals(expected, actual);
+		assertEquals(withoutOffsets(expected), 
+				sut.stream(seq, range).mapToObj(kmer -> RollingKmers.toString(kmer, 7)).collect(Collectors.toList()));
+	}
+	
+	@Test
+	public void sequenceShorterThanKHasNoKmers(){
+		RollingKmers sut = new RollingKmers.Builder(5).build();
+		NucleotideSequence seq = NucleotideSequence.of("ACGT");
+		assertEquals(0, sut.stream(seq).count());
+		assertEquals(0, sut.stream(NucleotideSequence.of("")).count());
+		assertEquals(0, packedKmers(sut, seq).size());
+	}
+	
+	@Test
+	public void parallelStreamSameAsSequential(){
+		NucleotideSequence seq = new NucleotideSequenceBuilder(randomBases(200_000, "ACGTACGTACGTACGTACGTN")).build();
+		RollingKmers sut = new RollingKmers.Builder(21).canonical(true).build();
+		
+		long[] expected = sut.stream(seq).toArray();
+		assertArrayEquals(expected, sut.stream(seq).parallel().toArray());
+		assertArrayEquals(expected, seq.packedKmers(21, true).parallel().toArray());
+	}
+	
+	@Test
+	public void packedValuesSortLikeStrings(){
+		RollingKmers sut = new RollingKmers.Builder(3).build();
+		long[] kmers = sut.stream(NucleotideSequence.of("AAACCCGGGTTT")).toArray();
+		for(int i=1; i< kmers.length; i++){
+			String previous = RollingKmers.toString(kmers[i-1], 3);
+			String current = RollingKmers.toString(kmers[i], 3);
+			assertEquals(Integer.signum(previous.compareTo(current)), Long.signum(Long.compare(kmers[i-1], kmers[i])));
+		}
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void kLessThan1ShouldThrowIllegalArgumentException(){
+		new RollingKmers.Builder(0);
+	}
+	
+	@Test(expected = IllegalStateException.class)
+	public void streamOfLargeKShouldThrowIllegalStateException(){
+		new RollingKmers.Builder(33).build().stream(NucleotideSequence.of("ACGT"));
+	}
+	
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void rangeBeyondSequenceShouldThrowIndexOutOfBoundsException(){
+		new RollingKmers.Builder(3).build().stream(NucleotideSequence.of("ACGT"), Range.of(2, 10));
+	}
+}
@@ -23,24 +23,39 @@ package org.jcvi.jillion.fasta.nt;
 import static org.junit.Assert.assertEquals;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
 
 import org.jcvi.jillion.core.Range;
 import org.jcvi.jillion.core.datastore.DataStoreException;
+import org.jcvi.jillion.core.residue.nt.NucleotideSequence;
 import org.jcvi.jillion.internal.ResourceHelper;
+import org.jcvi.jillion.internal.fasta.DefaultFastaIndex;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 public class TestFaiNucleotideFastaFileDataStore {
 
+	@Rule
+	public TemporaryFolder tmpDir = new TemporaryFolder();
+	
 	NucleotideFastaDataStore sut;
 	NucleotideFastaDataStore delegate;
+	File fasta, fai;
 	@Before
 	public void setup() throws IOException{
 		ResourceHelper helper = new ResourceHelper(getClass());
 		
-		File fasta = helper.getFile("files/no_extra_on_defline.XXXXX.combo2.i.contigs");
-		File fai = helper.getFile("files/no_extra_on_defline.XXXXX.combo2.i.contigs.fai");
+		fasta = helper.getFile("files/no_extra_on_defline.XXXXX.combo2.i.contigs");
+		fai = helper.getFile("files/no_extra_on_defline.XXXXX.combo2.i.contigs.fai");
 		delegate = DefaultNucleotideFastaFileDataStore.create(fasta);
 		sut = FaiNucleotideFastaFileDataStore.create(fasta, fai, delegate);
 		
@@ -74,4 +89,67 @@ public class TestFaiNucleotideFastaFileDataStore {
 		Range range = Range.of(123, 456);
 		assertEquals(delegate.getSubSequence(id, range), sut.getSubSequence(id, range));
 	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void rangeBeyondSequenceShouldThrowIllegalArgumentException() throws DataStoreException{
+		sut.getSubSequence("MAINb", Range.of(7000, 8000));
+	}
+	
+	@Test
+	public void emptyRange() throws DataStoreException{
+		assertEquals(0, sut.getSubSequence("MAINb", new Range.Builder(0).shift(10).build()).getLength());
+	}
+	
+	@Test
+	public void rangesThatSpanMappedSegments() throws IOException{
+		//tiny segments so most ranges span several of them
+		try(NucleotideFastaDataStore smallSegments = new FaiNucleotideFastaFileDataStore(fasta, 
+													DefaultFastaIndex.parse(fai), delegate, 17)){
+			for(Range range : randomRanges(500)){
+				assertEquals(delegate.getSubSequence("MAINa", range), smallSegments.getSubSequence("MAINa", range));
+				assertEquals(delegate.getSubSequence("MAINb", range), smallSegments.getSubSequence("MAINb", range));
+			}
+			assertEquals(delegate.getSequence("MAINa"), smallSegments.getSequence("MAINa"));
+		}
+	}
+	
+	@Test
+	public void concurrentCallers() throws DataStoreException{
+		List<Range> ranges = randomRanges(2000);
+		List<NucleotideSequence> expected = new ArrayList<>(ranges.size());
+		for(Range range : ranges){
+			expected.add(delegate.getSubSequence("MAINb", range));
+		}
+		
+		ranges.parallelStream().forEach(range ->{
+			try {
+				assertEquals(expected.get(ranges.indexOf(range)), sut.getSubSequence("MAINb", range));
+			} catch (DataStoreException e) {
+				throw new IllegalStateException(e);
+			}
+		});
+	}
+	
+	@Test
+	public void compressedFastaIsStillParsed() throws IOException{
+		File gzipped = tmpDir.newFile("seqs.fasta.gz");
+		try(OutputStream out = new GZIPOutputStream(new FileOutputStream(gzipped))){
+			Files.copy(fasta.toPath(), out);
+		}
+		try(NucleotideFastaDataStore compressed = FaiNucleotideFastaFileDataStore.create(gzipped, fai, delegate)){
+			Range range = Range.of(123, 456);
+			assertEquals(delegate.getSubSequence("MAINb", range), compressed.getSubSequence("MAINb", range));
+			assertEquals(delegate.getSequence("MAINa"), compressed.getSequence("MAINa"));
+		}
+	}
+	
+	private static List<Range> randomRanges(int numberOfRanges){
+		Random random = new Random(numberOfRanges);
+		List<Range> ranges = new ArrayList<>(numberOfRanges);
+		for(int i=0; i< numberOfRanges; i++){
+			int begin = random.nextInt(7300);
+			ranges.add(Range.of(begin, begin + random.nextInt(100)));
+		}
+		return ranges;
+	}
 }
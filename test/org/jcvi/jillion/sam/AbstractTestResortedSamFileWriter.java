@@ -54,6 +54,30 @@ public abstract class AbstractTestResortedSamFileWriter extends AbstractTestSamW
 		
 	}
 
+	@Test
+	public void coordinateSortSpillsToTempFiles() throws IOException{
+		writeShuffledRecordsAndAssertWrittenInSortedOrder(SortOrder.COORDINATE, 3, 64);
+	}
+	@Test
+	public void queryNameSortSpillsToTempFiles() throws IOException{
+		writeShuffledRecordsAndAssertWrittenInSortedOrder(SortOrder.QUERY_NAME, 3, 64);
+	}
+	
+	@Test
+	public void coordinateSortMultiLevelMerge() throws IOException{
+		writeShuffledRecordsAndAssertWrittenInSortedOrder(SortOrder.COORDINATE, 1, 2);
+	}
+	@Test
+	public void queryNameSortMultiLevelMerge() throws IOException{
+		writeShuffledRecordsAndAssertWrittenInSortedOrder(SortOrder.QUERY_NAME, 1, 3);
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void maxOpenTempFilesLessThan2ShouldThrowIllegalArgumentException() throws IOException{
+		new SamFileWriterBuilder(createOutputSamOrBamFile(), getHeader())
+					.maxOpenTempFiles(1);
+	}
+	
 	private void writeShuffledRecordsAndAssertWrittenInSortedOrder(
 			SortOrder sortOrder) throws IOException {
 		File f = createOutputSamOrBamFile();
@@ -61,6 +85,22 @@ public abstract class AbstractTestResortedSamFileWriter extends AbstractTestSamW
 									.setTempRootDir(tempDir.getRoot())
 									.reSortBy(sortOrder)
 									.build();
+		writeShuffledRecordsAndAssertWrittenInSortedOrder(writer, f, sortOrder);
+	}
+	
+	private void writeShuffledRecordsAndAssertWrittenInSortedOrder(
+			SortOrder sortOrder, int maxRecordsInMemory, int maxOpenTempFiles) throws IOException {
+		File f = createOutputSamOrBamFile();
+		SamWriter writer = new SamFileWriterBuilder(f, getHeader())
+									.setTempRootDir(tempDir.getRoot())
+									.reSortBy(sortOrder, maxRecordsInMemory)
+									.maxOpenTempFiles(maxOpenTempFiles)
+									.build();
+		writeShuffledRecordsAndAssertWrittenInSortedOrder(writer, f, sortOrder);
+	}
+	
+	private void writeShuffledRecordsAndAssertWrittenInSortedOrder(SamWriter writer, File f,
+			SortOrder sortOrder) throws IOException {
 		List<SamRecord> unsortedRecords = getShuffledRecords();
 		
 		List<SamRecord> expectedRecords = createSortedList(unsortedRecords, sortOrder, getHeader());
@@ -37,6 +37,10 @@ import org.junit.runners.Suite.SuiteClasses;
     	AllAttributeTests.class,
     	
     	TestVirtualFileOffset.class,
+    	TestParallelBgzfInputStream.class,
+    	TestParallelBgzfOutputStream.class,
+    	TestBamRegionQuery.class,
+    	TestLazyBamRecord.class,
     	TestSamRecordFlags.class,
     	TestBinComputation.class,
     	TestSortOrder.class,
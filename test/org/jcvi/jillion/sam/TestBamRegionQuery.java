@@ -0,0 +1,178 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.sam;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.jcvi.jillion.core.Range;
+import org.jcvi.jillion.internal.ResourceHelper;
+import org.jcvi.jillion.sam.index.BamIndex;
+import org.jcvi.jillion.sam.index.Chunk;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class TestBamRegionQuery {
+
+	private static File BAM_FILE, BAI_FILE;
+	
+	@BeforeClass
+	public static void getFiles() throws IOException{
+		ResourceHelper resources = new ResourceHelper(TestBamRegionQuery.class);
+		BAM_FILE = resources.getFile("index/index_test.bam");
+		BAI_FILE = resources.getFile("index/index_test.bam.bai");
+	}
+	
+	@Test
+	public void multipleRegionsSameAsFilteringWholeFile() throws IOException{
+		List<Range> ranges = createRandomRanges("chr1", 50, 5_000_000);
+		
+		List<String> expected = parseAllAndFilter("chr1", ranges);
+		//make sure we are actually testing something
+		assertFalse(expected.isEmpty());
+		
+		assertEquals(expected, parseRegions(SamParserFactory.createUsingIndex(BAM_FILE, BAI_FILE), "chr1", ranges));
+	}
+	
+	@Test
+	public void notIndexedSameAsIndexed() throws IOException{
+		List<Range> ranges = createRandomRanges("chr2", 20, 10_000_000);
+		
+		assertEquals(parseRegions(SamParserFactory.create(BAM_FILE), "chr2", ranges),
+				parseRegions(SamParserFactory.createUsingIndex(BAM_FILE, BAI_FILE), "chr2", ranges));
+	}
+	
+	@Test
+	public void overlappingRegionsOnlyVisitRecordsOnce() throws IOException{
+		List<Range> ranges = Arrays.asList(Range.of(1_000_000, 50_000_000),
+										Range.of(20_000_000, 80_000_000),
+										Range.of(1_000_000, 5_000_000));
+		
+		List<String> expected = parseAllAndFilter("chr3", ranges);
+		
+		assertEquals(expected, parseRegions(SamParserFactory.createUsingIndex(BAM_FILE, BAI_FILE), "chr3", ranges));
+	}
+	
+	@Test
+	public void regionWithNoRecords() throws IOException{
+		List<Range> ranges = Collections.singletonList(Range.of(1, 100));
+		
+		assertTrue(parseRegions(SamParserFactory.createUsingIndex(BAM_FILE, BAI_FILE), "chr13", ranges).isEmpty());
+	}
+	
+	@Test
+	public void samFile() throws IOException{
+		SamParser samParser = SamParserFactory.create(new ResourceHelper(TestBamRegionQuery.class).getFile("example.sam"));
+		String refName = samParser.getHeader().getReferenceSequences().iterator().next().getName();
+		
+		List<Range> ranges = Arrays.asList(Range.of(0, 10), Range.of(30, 40));
+		
+		assertEquals(parseAllAndFilter(samParser, refName, ranges),
+				parseRegions(samParser, refName, ranges));
+	}
+	
+	@Test
+	public void chunksAreSortedAndDoNotOverlap() throws IOException{
+		BamIndex index = BamIndex.createFromFiles(BAM_FILE, BAI_FILE);
+		List<Chunk> chunks = index.getOverlappingChunks("chr1", createRandomRanges("chr1", 100, 1_000_000));
+		
+		assertFalse(chunks.isEmpty());
+		for(int i=1; i< chunks.size(); i++){
+			Chunk prev = chunks.get(i-1);
+			Chunk current = chunks.get(i);
+			assertTrue(prev.getEnd().compareTo(current.getBegin()) < 0);
+			//coalesced chunks never start in the same block the previous one ended in
+			assertTrue(prev.getEnd().getCompressedBamBlockOffset() != current.getBegin().getCompressedBamBlockOffset());
+		}
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void unknownReferenceShouldThrowIllegalArgumentException() throws IOException{
+		parseRegions(SamParserFactory.createUsingIndex(BAM_FILE, BAI_FILE), "fake", Collections.singletonList(Range.of(1, 100)));
+	}
+	
+	private static List<Range> createRandomRanges(String refName, int numberOfRanges, int maxLength) throws IOException{
+		long refLength = SamParserFactory.create(BAM_FILE).getHeader().getReferenceSequence(refName).getLength();
+		Random random = new Random(refName.hashCode());
+		List<Range> ranges = new ArrayList<>(numberOfRanges);
+		for(int i=0; i< numberOfRanges; i++){
+			long begin = (long)(random.nextDouble() * refLength);
+			long length = 1 + random.nextInt(maxLength);
+			ranges.add(new Range.Builder(Math.min(length, refLength - begin)).shift(begin).build());
+		}
+		return ranges;
+	}
+	
+	private static List<String> parseAllAndFilter(String refName, List<Range> ranges) throws IOException{
+		return parseAllAndFilter(SamParserFactory.create(BAM_FILE), refName, ranges);
+	}
+	
+	private static List<String> parseAllAndFilter(SamParser parser, String refName, List<Range> ranges) throws IOException{
+		List<String> list = new ArrayList<>();
+		parser.parse(new AbstractSamVisitor() {
+
+			@Override
+			public void visitRecord(SamVisitorCallback callback,
+					SamRecord record, VirtualFileOffset start,
+					VirtualFileOffset end) {
+				if(record.mapped() && refName.equals(record.getReferenceName())){
+					Range alignmentRange = record.getAlignmentRange();
+					for(Range r : ranges){
+						if(r.intersects(alignmentRange)){
+							list.add(asString(record, start));
+							break;
+						}
+					}
+				}
+			}
+			
+		});
+		return list;
+	}
+	
+	private static List<String> parseRegions(SamParser parser, String refName, List<Range> ranges) throws IOException{
+		List<String> list = new ArrayList<>();
+		parser.parse(refName, ranges, new AbstractSamVisitor() {
+
+			@Override
+			public void visitRecord(SamVisitorCallback callback,
+					SamRecord record, VirtualFileOffset start,
+					VirtualFileOffset end) {
+				list.add(asString(record, start));
+			}
+			
+		});
+		return list;
+	}
+	
+	private static String asString(SamRecord record, VirtualFileOffset start){
+		return record.getQueryName() + " " + record.getAlignmentRange() + " " + start;
+	}
+}
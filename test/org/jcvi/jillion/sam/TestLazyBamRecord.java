@@ -0,0 +1,152 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.sam;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jcvi.jillion.internal.ResourceHelper;
+import org.jcvi.jillion.sam.SamParser.SamParserOptions;
+import org.junit.Test;
+
+public class TestLazyBamRecord {
+
+	private final ResourceHelper resources = new ResourceHelper(TestLazyBamRecord.class);
+	
+	@Test
+	public void copiedRecordsSameAsFullyDecoded() throws IOException{
+		assertCopiedRecordsSameAsFullyDecoded(resources.getFile("index/index_test.bam"));
+	}
+	
+	@Test
+	public void copiedRecordsWithAttributesSameAsFullyDecoded() throws IOException{
+		assertCopiedRecordsSameAsFullyDecoded(resources.getFile("example.bam"));
+	}
+	
+	@Test
+	public void lazyFieldsSameAsFullyDecodedDuringVisit() throws IOException{
+		File bam = resources.getFile("index/index_test.bam");
+		List<SamRecord> expected = parse(bam, new SamParserOptions());
+		int[] counter = new int[1];
+		
+		SamParserFactory.create(bam).parse(new SamParserOptions().decodeLazily(true), new AbstractSamVisitor() {
+
+			@Override
+			public void visitRecord(SamVisitorCallback callback,
+					SamRecord record, VirtualFileOffset start,
+					VirtualFileOffset end) {
+				SamRecord expectedRecord = expected.get(counter[0]++);
+				assertEquals(expectedRecord.getQueryName(), record.getQueryName());
+				assertEquals(expectedRecord.getFlags(), record.getFlags());
+				assertEquals(expectedRecord.getReferenceName(), record.getReferenceName());
+				assertEquals(expectedRecord.getNextName(), record.getNextName());
+				assertEquals(expectedRecord.getStartPosition(), record.getStartPosition());
+				assertEquals(expectedRecord.getMappingQuality(), record.getMappingQuality());
+				assertEquals(expectedRecord.getAlignmentRange(), record.getAlignmentRange());
+				assertEquals(expectedRecord.mapped(), record.mapped());
+				assertEquals(expectedRecord.getDirection(), record.getDirection());
+				assertEquals(expectedRecord.getCigar(), record.getCigar());
+				assertEquals(expectedRecord.getSequence(), record.getSequence());
+				assertEquals(expectedRecord.getQualities(), record.getQualities());
+				assertEquals(expectedRecord, record.copy());
+				assertEquals(record.copy(), expectedRecord);
+			}
+			
+		});
+		assertEquals(expected.size(), counter[0]);
+	}
+	
+	@Test
+	public void viewNotValidAfterVisit() throws IOException{
+		File bam = resources.getFile("example.bam");
+		List<SamRecord> views = new ArrayList<>();
+		SamParserFactory.create(bam).parse(new SamParserOptions().decodeLazily(true), new AbstractSamVisitor() {
+
+			@Override
+			public void visitRecord(SamVisitorCallback callback,
+					SamRecord record, VirtualFileOffset start,
+					VirtualFileOffset end) {
+				views.add(record);
+			}
+			
+		});
+		assertTrue(views.size() > 1);
+		SamRecord first = views.get(0);
+		//fixed length fields are still available
+		assertTrue(first.getStartPosition() >0);
+		try{
+			first.getSequence();
+			fail("should throw IllegalStateException");
+		}catch(IllegalStateException expected){
+			//expected
+		}
+	}
+	
+	@Test
+	public void equalsHashCodeAndToStringSafeAfterVisit() throws IOException{
+		File bam = resources.getFile("example.bam");
+		List<SamRecord> views = new ArrayList<>();
+		SamParserFactory.create(bam).parse(new SamParserOptions().decodeLazily(true), new AbstractSamVisitor() {
+
+			@Override
+			public void visitRecord(SamVisitorCallback callback,
+					SamRecord record, VirtualFileOffset start,
+					VirtualFileOffset end) {
+				views.add(record);
+			}
+			
+		});
+		SamRecord first = views.get(0);
+		SamRecord second = views.get(1);
+		//identity based
+		assertEquals(first, first);
+		assertNotEquals(first, second);
+		assertEquals(first.hashCode(), first.hashCode());
+		assertTrue(first.toString().contains("startPosition=" + first.getStartPosition()));
+	}
+	
+	private void assertCopiedRecordsSameAsFullyDecoded(File bam) throws IOException{
+		assertEquals(parse(bam, new SamParserOptions()),
+				parse(bam, new SamParserOptions().decodeLazily(true)));
+	}
+	
+	private static List<SamRecord> parse(File bam, SamParserOptions options) throws IOException{
+		List<SamRecord> list = new ArrayList<>();
+		SamParserFactory.create(bam).parse(options, new AbstractSamVisitor() {
+
+			@Override
+			public void visitRecord(SamVisitorCallback callback,
+					SamRecord record, VirtualFileOffset start,
+					VirtualFileOffset end) {
+				list.add(record.copy());
+			}
+			
+		});
+		return list;
+	}
+}
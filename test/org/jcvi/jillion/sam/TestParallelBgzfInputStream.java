@@ -0,0 +1,131 @@
+/*******************************************************************************
+ * Jillion development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ *
+ *          http://www.gnu.org/copyleft/lesser.html
+ *
+ *
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ *
+ * Information about Jillion can be found on its homepage
+ *
+ *         http://jillion.sourceforge.net
+ *
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.sam;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jcvi.jillion.core.io.IOUtil;
+import org.jcvi.jillion.internal.ResourceHelper;
+import org.jcvi.jillion.sam.attribute.ReservedAttributeValidator;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class TestParallelBgzfInputStream {
+
+	private static File BAM_FILE;
+
+	@BeforeClass
+	public static void getBamFile() throws IOException{
+		BAM_FILE = new ResourceHelper(TestParallelBgzfInputStream.class).getFile("index/index_test.bam");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void zeroThreadsShouldThrowIllegalArgumentException() throws IOException{
+		SamParserFactory.create(BAM_FILE, ReservedAttributeValidator.INSTANCE, 0);
+	}
+
+	@Test
+	public void decompressedBytesSameAsSingleThreaded() throws IOException{
+		byte[] expected;
+		try(BgzfInputStream in = new BgzfInputStream(BAM_FILE)){
+			expected = IOUtil.toByteArray(in);
+		}
+		byte[] actual;
+		try(BgzfInputStream in = BgzfInputStream.create(BAM_FILE, 4)){
+			actual = IOUtil.toByteArray(in);
+		}
+		assertArrayEquals(expected, actual);
+	}
+
+	@Test
+	public void virtualFileOffsetsSameAsSingleThreaded() throws IOException{
+		assertEquals(readOffsets(BgzfInputStream.create(BAM_FILE, 1)),
+					readOffsets(BgzfInputStream.create(BAM_FILE, 3)));
+	}
+
+	@Test
+	public void seekToVirtualFileOffset() throws IOException{
+		List<VirtualFileOffset> offsets = readOffsets(BgzfInputStream.create(BAM_FILE, 1));
+		VirtualFileOffset middle = offsets.get(offsets.size()/2);
+
+		byte[] expected;
+		try(BgzfInputStream in = BgzfInputStream.create(BAM_FILE, middle, 1)){
+			assertEquals(middle, in.getCurrentVirutalFileOffset());
+			expected = IOUtil.toByteArray(in);
+		}
+		byte[] actual;
+		try(BgzfInputStream in = BgzfInputStream.create(BAM_FILE, middle, 2)){
+			assertEquals(middle, in.getCurrentVirutalFileOffset());
+			actual = IOUtil.toByteArray(in);
+		}
+		assertArrayEquals(expected, actual);
+	}
+
+	@Test
+	public void parsedRecordsSameAsSingleThreaded() throws IOException{
+		SamParser expectedParser = SamParserFactory.create(BAM_FILE, ReservedAttributeValidator.INSTANCE, 1);
+		SamParser actualParser = SamParserFactory.create(BAM_FILE, ReservedAttributeValidator.INSTANCE, 4);
+
+		assertEquals(parseRecords(expectedParser), parseRecords(actualParser));
+	}
+
+	private static List<String> parseRecords(SamParser parser) throws IOException{
+		List<String> list = new ArrayList<>();
+		parser.parse(new AbstractSamVisitor() {
+
+			@Override
+			public void visitRecord(SamVisitorCallback callback,
+					SamRecord record, VirtualFileOffset start,
+					VirtualFileOffset end) {
+				list.add(record.getQueryName() + " " + start + " " + end);
+			}
+
+		});
+		return list;
+	}
+
+	private static List<VirtualFileOffset> readOffsets(BgzfInputStream in) throws IOException{
+		long length;
+		try(BgzfInputStream lengthStream = new BgzfInputStream(BAM_FILE)){
+			length = IOUtil.toByteArray(lengthStream).length;
+		}
+		List<VirtualFileOffset> offsets = new ArrayList<>();
+		//read odd sized chunks so we hit block boundaries
+		//in different places
+		byte[] buf = new byte[1237];
+		try{
+			offsets.add(in.getCurrentVirutalFileOffset());
+			for(long i=buf.length; i<= length; i+=buf.length){
+				IOUtil.blockingRead(in, buf);
+				offsets.add(in.getCurrentVirutalFileOffset());
+			}
+		}finally{
+			in.close();
+		}
+		return offsets;
+	}
+}
@@ -0,0 +1,114 @@
+/*******************************************************************************
+ * Jillion development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ *
+ *          http://www.gnu.org/copyleft/lesser.html
+ *
+ *
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ *
+ * Information about Jillion can be found on its homepage
+ *
+ *         http://jillion.sourceforge.net
+ *
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.sam;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import org.jcvi.jillion.core.testUtil.TestUtil;
+import org.jcvi.jillion.internal.ResourceHelper;
+import org.jcvi.jillion.sam.header.SamHeader;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TestParallelBgzfOutputStream {
+
+	private static File BAM_FILE;
+
+	@Rule
+	public TemporaryFolder tmpDir = new TemporaryFolder();
+
+	@BeforeClass
+	public static void getBamFile() throws IOException{
+		BAM_FILE = new ResourceHelper(TestParallelBgzfOutputStream.class).getFile("index/index_test.bam");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void zeroThreadsShouldThrowIllegalArgumentException() throws IOException{
+		new SamFileWriterBuilder(tmpDir.newFile("out.bam"), SamParserFactory.create(BAM_FILE).getHeader())
+				.compressionThreads(0);
+	}
+
+	@Test
+	public void bamAndIndexSameAsSingleThreaded() throws IOException{
+		File expected = copy(new File(tmpDir.newFolder(), "expected.bam"), 1);
+		File actual = copy(new File(tmpDir.newFolder(), "actual.bam"), 4);
+
+		TestUtil.assertContentsAreEqual(expected, actual);
+		TestUtil.assertContentsAreEqual(new File(expected.getParentFile(), "expected.bam.bai"),
+										new File(actual.getParentFile(), "actual.bam.bai"));
+	}
+
+	@Test
+	public void reSortedBamSameAsSingleThreaded() throws IOException{
+		File expected = copySorted(new File(tmpDir.newFolder(), "expected.bam"), 1);
+		File actual = copySorted(new File(tmpDir.newFolder(), "actual.bam"), 3);
+
+		TestUtil.assertContentsAreEqual(expected, actual);
+	}
+
+	private File copy(File out, int numberOfThreads) throws IOException{
+		SamParser parser = SamParserFactory.create(BAM_FILE);
+		try(SamWriter writer = new SamFileWriterBuilder(out, parser.getHeader())
+									.createBamIndex(true)
+									.compressionThreads(numberOfThreads)
+									.build()){
+			writeAllRecords(parser, writer);
+		}
+		return out;
+	}
+
+	private File copySorted(File out, int numberOfThreads) throws IOException{
+		SamParser parser = SamParserFactory.create(BAM_FILE);
+		try(SamWriter writer = new SamFileWriterBuilder(out, parser.getHeader())
+									.reSortBy(SortOrder.QUERY_NAME, 1000)
+									.compressionThreads(numberOfThreads)
+									.build()){
+			writeAllRecords(parser, writer);
+		}
+		return out;
+	}
+
+	private static void writeAllRecords(SamParser parser, SamWriter writer) throws IOException{
+		parser.parse(new AbstractSamVisitor() {
+
+			@Override
+			public void visitHeader(SamVisitorCallback callback, SamHeader header) {
+				//no-op
+			}
+
+			@Override
+			public void visitRecord(SamVisitorCallback callback,
+					SamRecord record, VirtualFileOffset start,
+					VirtualFileOffset end) {
+				try {
+					writer.writeRecord(record);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}
+
+		});
+	}
+}
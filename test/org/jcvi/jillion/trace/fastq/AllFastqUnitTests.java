@@ -56,6 +56,10 @@ import org.junit.runners.Suite.SuiteClasses;
         TestFastqFileWithEmptyRead.class,
         
         TestIndexedFastQFileDataStore.class,
+        TestFastqFileDataStorePersistentIndex.class,
+        TestParallelFastqFileReader.class,
+        TestFastqFileScanner.class,
+        TestFastqStatistics.class,
         TestDefaultFastqFileDataStoreMultilineGuessCodec.class,
         TestIndexedFastqFileDataStoreGuessCodec.class,
         TestIndexedMultilineFastqDataStore.class,
@@ -0,0 +1,119 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.trace.fastq;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import org.jcvi.jillion.core.datastore.AbstractTestPersistentIndexDataStore;
+import org.jcvi.jillion.core.datastore.DataStoreException;
+import org.jcvi.jillion.core.datastore.DataStoreProviderHint;
+import org.jcvi.jillion.core.io.IOUtil;
+import org.jcvi.jillion.internal.ResourceHelper;
+import org.junit.Test;
+
+public class TestFastqFileDataStorePersistentIndex extends AbstractTestPersistentIndexDataStore<FastqFileDataStore>{
+
+	@Override
+	protected File getOriginalDataFile() throws IOException {
+		return new ResourceHelper(TestFastqFileDataStorePersistentIndex.class).getFile("files/giv_XX_15050.fastq");
+	}
+
+	@Override
+	protected FastqFileDataStore createDataStore(File dataFile) throws IOException {
+		return new FastqFileDataStoreBuilder(dataFile)
+							.hasComments(true)
+							.build();
+	}
+
+	@Override
+	protected FastqFileDataStore createIndexedDataStore(File dataFile, File indexFile) throws IOException {
+		return new FastqFileDataStoreBuilder(dataFile)
+							.hasComments(true)
+							.hint(DataStoreProviderHint.RANDOM_ACCESS_OPTIMIZE_MEMORY)
+							.persistentIndex(indexFile)
+							.build();
+	}
+	
+	@Test
+	public void truncatedFileIndexIsRebuilt() throws IOException, DataStoreException{
+		createIndexedDataStore().close();
+		long originalLength = indexFile.length();
+		
+		//remove the last record
+		List<String> lines = Files.readAllLines(dataFile.toPath(), IOUtil.UTF_8);
+		Files.write(dataFile.toPath(), lines.subList(0, lines.size() -4), IOUtil.UTF_8);
+		try(FastqFileDataStore expected = createDataStore(dataFile);
+			FastqFileDataStore actual = createIndexedDataStore()){
+			assertSameRecords(expected, actual);
+		}
+		assertTrue(indexFile.length() < originalLength);
+	}
+	
+	@Test
+	public void qualityCodecIsStoredInIndex() throws IOException, DataStoreException{
+		//these qualities look like illumina so guessing would never pick sanger
+		File illuminaLooking = tmpDir.newFile("illumina.fastq");
+		Files.write(illuminaLooking.toPath(), Arrays.asList(
+						"@read1", "ACGTACGT", "+", "@ABCDEFh",
+						"@read2", "TTTTGGGG", "+", "hgfedcba"), IOUtil.UTF_8);
+		assertEquals(FastqQualityCodec.ILLUMINA, FastqUtil.guessQualityCodecUsed(illuminaLooking));
+		
+		new FastqFileDataStoreBuilder(illuminaLooking)
+					.qualityCodec(FastqQualityCodec.SANGER)
+					.hint(DataStoreProviderHint.RANDOM_ACCESS_OPTIMIZE_MEMORY)
+					.persistentIndex(indexFile)
+					.build().close();
+		assertTrue(indexFile.setLastModified(0));
+		
+		try(FastqFileDataStore expected = new FastqFileDataStoreBuilder(illuminaLooking)
+													.qualityCodec(FastqQualityCodec.SANGER)
+													.build();
+			FastqFileDataStore actual = new FastqFileDataStoreBuilder(illuminaLooking)
+													.hint(DataStoreProviderHint.RANDOM_ACCESS_OPTIMIZE_MEMORY)
+													.persistentIndex(indexFile)
+													.build()){
+			assertSameRecords(expected, actual);
+		}
+		assertEquals(0, indexFile.lastModified());
+	}
+	
+	@Test(expected = IllegalStateException.class)
+	public void persistentIndexWithFilterShouldThrowIllegalStateException() throws IOException{
+		new FastqFileDataStoreBuilder(dataFile)
+					.hasComments(true)
+					.hint(DataStoreProviderHint.RANDOM_ACCESS_OPTIMIZE_MEMORY)
+					.persistentIndex(indexFile)
+					.filter(id -> id.endsWith("F"))
+					.build();
+	}
+	
+	@Test(expected = NullPointerException.class)
+	public void nullIndexFileShouldThrowNPE() throws IOException{
+		new FastqFileDataStoreBuilder(dataFile).persistentIndex(null);
+	}
+}
@@ -0,0 +1,194 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.trace.fastq;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+import org.jcvi.jillion.core.io.IOUtil;
+import org.jcvi.jillion.core.io.InputStreamSupplier;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TestFastqFileScanner {
+
+	@Rule
+	public TemporaryFolder tmpDir = new TemporaryFolder();
+	
+	private final Random random = new Random(5678);
+	
+	private String randomFastq(int numberOfRecords, boolean withComments){
+		StringBuilder builder = new StringBuilder();
+		for(int i=0; i< numberOfRecords; i++){
+			//a few reads longer than the scanner's buffer
+			int length = random.nextInt(10)==0 ? 0 : 
+						random.nextInt(500)==0 ? 100_000 : 1+ random.nextInt(150);
+			StringBuilder quals = new StringBuilder(length);
+			builder.append("@read_").append(i);
+			if(withComments){
+				builder.append(random.nextBoolean() ? " comment " + i : " 1:N:0:ACGT");
+			}
+			builder.append(random.nextBoolean()? "\n" : "\r\n");
+			for(int j=0; j< length; j++){
+				builder.append("ACGTN".charAt(random.nextInt(5)));
+				quals.append((char)('@' + random.nextInt(40)));
+			}
+			builder.append('\n');
+			builder.append(random.nextBoolean()? "+\n" : "+read_" + i + "\n");
+			builder.append(quals).append('\n');
+		}
+		return builder.toString();
+	}
+	
+	private File write(String fastq) throws IOException{
+		File f = tmpDir.newFile();
+		Files.write(f.toPath(), fastq.getBytes(IOUtil.UTF_8));
+		return f;
+	}
+	
+	private static List<FastqRecord> readSequentially(File f, boolean hasComments, FastqQualityCodec codec) throws IOException{
+		List<FastqRecord> list = new ArrayList<>();
+		FastqParser parser = new FastqFileParserBuilder(f).hasComments(hasComments).build();
+		FastqFileReader.forEach(parser, codec, (id, record) -> list.add(record));
+		return list;
+	}
+	
+	private static List<FastqRecord> scan(File f, boolean hasComments, FastqQualityCodec codec) throws IOException{
+		List<FastqRecord> list = new ArrayList<>();
+		FastqFileScanner.create(f, hasComments).scan(slice -> list.add(slice.toFastqRecord(codec)));
+		return list;
+	}
+	
+	@Test(expected = NullPointerException.class)
+	public void nullSupplierShouldThrowNPE(){
+		FastqFileScanner.create((InputStreamSupplier) null, false);
+	}
+	
+	@Test
+	public void sameRecordsAsFastqFileReader() throws IOException{
+		File f = write(randomFastq(2000, false));
+		assertEquals(readSequentially(f, false, FastqQualityCodec.ILLUMINA), scan(f, false, FastqQualityCodec.ILLUMINA));
+		assertEquals(readSequentially(f, false, FastqQualityCodec.SANGER), scan(f, false, FastqQualityCodec.SANGER));
+	}
+	
+	@Test
+	public void solexaQualitiesSameAsCodec() throws IOException{
+		File f = write("@read1\nACGTACGT\n+\n;@ABIhT^\n");
+		FastqFileScanner.create(f).scan(slice ->{
+			assertEquals(FastqQualityCodec.SOLEXA.decode(";@ABIhT^"), slice.decodeQualities(FastqQualityCodec.SOLEXA));
+			return true;
+		});
+	}
+	
+	@Test
+	public void commentsAndCasavaIdsSameAsFastqFileReader() throws IOException{
+		File f = write(randomFastq(500, true));
+		List<FastqRecord> expected = readSequentially(f, true, FastqQualityCodec.ILLUMINA);
+		assertEquals(expected, scan(f, true, FastqQualityCodec.ILLUMINA));
+		
+		List<String> comments = new ArrayList<>();
+		FastqFileScanner.create(f, true).scan(slice -> comments.add(slice.getComment()));
+		for(int i=0; i< expected.size(); i++){
+			assertEquals(expected.get(i).getComment(), comments.get(i));
+		}
+	}
+	
+	@Test
+	public void gzippedFile() throws IOException{
+		String fastq = randomFastq(300, false);
+		File gz = tmpDir.newFile("reads.fastq.gz");
+		try(OutputStream out = new GZIPOutputStream(Files.newOutputStream(gz.toPath()))){
+			out.write(fastq.getBytes(IOUtil.UTF_8));
+		}
+		assertEquals(readSequentially(write(fastq), false, FastqQualityCodec.SANGER), 
+				scan(gz, false, FastqQualityCodec.SANGER));
+	}
+	
+	@Test
+	public void sliceIsViewOfRawBytes() throws IOException{
+		File f = write("\n@read1 my comment\nACGT\n+\nABCD\n@read2\n\n+\n");
+		List<String> lines = new ArrayList<>();
+		FastqFileScanner.create(f, true).scan(slice ->{
+			byte[] buf = slice.getBuffer();
+			lines.add(new String(buf, slice.getIdOffset(), slice.getIdLength(), IOUtil.UTF_8)
+					+ "|" + new String(buf, slice.getBasesOffset(), slice.getNumberOfBases(), IOUtil.UTF_8)
+					+ "|" + new String(buf, slice.getQualitiesOffset(), slice.getNumberOfBases(), IOUtil.UTF_8)
+					+ "|" + slice.hasComment());
+			return true;
+		});
+		assertEquals(2, lines.size());
+		assertEquals("read1|ACGT|ABCD|true", lines.get(0));
+		assertEquals("read2|||false", lines.get(1));
+	}
+	
+	@Test
+	public void idEquals() throws IOException{
+		File f = write("@read1 comment\nACGT\n+\nABCD\n");
+		FastqFileScanner.create(f, true).scan(slice ->{
+			assertTrue(slice.idEquals("read1"));
+			assertFalse(slice.idEquals("read"));
+			assertFalse(slice.idEquals("read2"));
+			assertEquals("comment", slice.getComment());
+			return true;
+		});
+		FastqFileScanner.create(f).scan(slice ->{
+			assertTrue(slice.idEquals("read1 comment"));
+			assertNull(slice.getComment());
+			return true;
+		});
+	}
+	
+	@Test
+	public void stopsWhenVisitorReturnsFalse() throws IOException{
+		File f = write(randomFastq(100, false));
+		int[] count = new int[1];
+		FastqFileScanner.create(f).scan(slice -> ++count[0] < 10);
+		assertEquals(10, count[0]);
+	}
+	
+	@Test(expected = IOException.class)
+	public void wrongNumberOfQualitiesShouldThrowIOException() throws IOException{
+		FastqFileScanner.create(write("@read1\nACGT\n+\nABC\n")).scan(slice -> true);
+	}
+	
+	@Test(expected = IOException.class)
+	public void missingQualityDeflineShouldThrowIOException() throws IOException{
+		FastqFileScanner.create(write("@read1\nACGT\n")).scan(slice -> true);
+	}
+	
+	@Test(expected = IOException.class)
+	public void invalidDeflineShouldThrowIOException() throws IOException{
+		FastqFileScanner.create(write("read1\nACGT\n+\nABCD\n")).scan(slice -> true);
+	}
+}
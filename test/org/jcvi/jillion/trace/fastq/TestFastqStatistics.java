@@ -0,0 +1,192 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.trace.fastq;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.jcvi.jillion.core.io.IOUtil;
+import org.jcvi.jillion.core.qual.QualitySequenceBuilder;
+import org.jcvi.jillion.core.residue.nt.Nucleotide;
+import org.jcvi.jillion.core.residue.nt.NucleotideSequenceBuilder;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TestFastqStatistics {
+
+	@Rule
+	public TemporaryFolder tmpDir = new TemporaryFolder();
+	
+	private final Random random = new Random(42);
+	
+	private static FastqRecord record(String id, String bases, byte... quals){
+		return FastqRecordBuilder.create(id, new NucleotideSequenceBuilder(bases).build(), 
+				new QualitySequenceBuilder(quals).build())
+				.build();
+	}
+	
+	private FastqRecord randomRecord(int i){
+		int length = random.nextInt(20)==0 ? 0 : 1 + random.nextInt(100);
+		StringBuilder bases = new StringBuilder(length);
+		byte[] quals = new byte[length];
+		for(int j=0; j< length; j++){
+			bases.append("ACGTN".charAt(random.nextInt(5)));
+			quals[j] = (byte) random.nextInt(42);
+		}
+		return record("read" +i, bases.toString(), quals);
+	}
+	
+	@Test
+	public void emptyStats(){
+		FastqStatistics sut = new FastqStatistics();
+		assertEquals(0, sut.getNumberOfRecords());
+		assertEquals(0, sut.getMinLength());
+		assertEquals(0, sut.getMaxLength());
+		assertArrayEquals(new long[1], sut.getLengthHistogram());
+		assertEquals(0D, sut.getEstimatedDuplicateFraction(), 0D);
+	}
+	
+	@Test
+	public void singlePass(){
+		FastqStatistics sut = new FastqStatistics();
+		sut.accept(record("r1", "ACGT", (byte)10, (byte)20, (byte)30, (byte)40));
+		sut.accept(record("r2", "ACGT", (byte)10, (byte)20, (byte)30, (byte)40));
+		sut.accept(record("r3", "GGN", (byte)20, (byte)20, (byte)2));
+		
+		assertEquals(3, sut.getNumberOfRecords());
+		assertEquals(11, sut.getNumberOfBases());
+		assertEquals(3, sut.getMinLength());
+		assertEquals(4, sut.getMaxLength());
+		assertArrayEquals(new long[]{0,0,0,1,2}, sut.getLengthHistogram());
+		
+		long[] expectedQualities = new long[FastqStatistics.MAX_QUALITY +1];
+		expectedQualities[10] = 2;
+		expectedQualities[20] = 1;
+		assertArrayEquals(expectedQualities, sut.getQualityHistogram(0));
+		assertEquals(40/3D, sut.getMeanQuality(0), 0.0001D);
+		assertEquals(40D, sut.getMeanQuality(3), 0.0001D);
+		
+		assertEquals(2, sut.getBaseCount(0, Nucleotide.Adenine));
+		assertEquals(1, sut.getBaseCount(0, Nucleotide.Guanine));
+		assertEquals(1, sut.getBaseCount(2, Nucleotide.Unknown));
+		assertEquals(0, sut.getBaseCount(2, Nucleotide.Thymine));
+		
+		long[] expectedGc = new long[101];
+		expectedGc[50] = 2;
+		expectedGc[100] = 1;
+		assertArrayEquals(expectedGc, sut.getGcHistogram());
+		
+		assertEquals(3, sut.getNumberOfSampledRecords());
+		assertEquals(1/3D, sut.getEstimatedDuplicateFraction(), 0.0001D);
+	}
+	
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void positionBeyondLongestReadShouldThrowException(){
+		FastqStatistics sut = new FastqStatistics();
+		sut.accept(record("r1", "ACGT", (byte)10, (byte)20, (byte)30, (byte)40));
+		sut.getQualityHistogram(4);
+	}
+	
+	@Test
+	public void slicesSameAsRecords() throws IOException{
+		List<FastqRecord> records = new ArrayList<>();
+		for(int i=0; i< 1000; i++){
+			records.add(randomRecord(i));
+		}
+		File f = tmpDir.newFile();
+		StringBuilder builder = new StringBuilder();
+		for(FastqRecord record : records){
+			builder.append('@').append(record.getId()).append('\n')
+					.append(record.getNucleotideSequence()).append("\n+\n")
+					.append(FastqQualityCodec.ILLUMINA.encode(record.getQualitySequence())).append('\n');
+		}
+		Files.write(f.toPath(), builder.toString().getBytes(IOUtil.UTF_8));
+		
+		FastqStatistics fromSlices = new FastqStatistics();
+		FastqFileScanner.create(f).scan(slice -> { fromSlices.accept(slice, FastqQualityCodec.ILLUMINA); return true;});
+		
+		assertSameStats(records.stream().collect(FastqStatistics.collector()), fromSlices);
+	}
+	
+	@Test
+	public void parallelSameAsSequential(){
+		List<FastqRecord> records = new ArrayList<>();
+		for(int i=0; i< 5000; i++){
+			records.add(randomRecord(i));
+		}
+		FastqStatistics expected = records.stream().collect(FastqStatistics.collector());
+		assertSameStats(expected, records.parallelStream().collect(FastqStatistics.collector()));
+		
+		FastqStatistics first = new FastqStatistics();
+		records.subList(0, 100).forEach(first::accept);
+		FastqStatistics second = new FastqStatistics();
+		records.subList(100, records.size()).forEach(second::accept);
+		assertSameStats(expected, second.combine(first).combine(new FastqStatistics()));
+	}
+	
+	@Test
+	public void estimateDuplicatesFromSample(){
+		List<FastqRecord> records = new ArrayList<>();
+		for(int i=0; i< 100_000; i++){
+			FastqRecord record = randomRecord(i);
+			while(record.getLength() < 30){
+				record = randomRecord(i);
+			}
+			records.add(record);
+			if(i % 2 ==0){
+				records.add(record);
+			}
+		}
+		Collections.shuffle(records, random);
+		FastqStatistics sut = records.parallelStream().collect(FastqStatistics.collector());
+		assertEquals(150_000, sut.getNumberOfRecords());
+		//too many distinct reads to track them all
+		assertTrue(sut.getNumberOfSampledRecords() < 150_000);
+		assertEquals(1/3D, sut.getEstimatedDuplicateFraction(), 0.02D);
+	}
+	
+	private static void assertSameStats(FastqStatistics expected, FastqStatistics actual){
+		assertEquals(expected.getNumberOfRecords(), actual.getNumberOfRecords());
+		assertEquals(expected.getNumberOfBases(), actual.getNumberOfBases());
+		assertEquals(expected.getMinLength(), actual.getMinLength());
+		assertEquals(expected.getMaxLength(), actual.getMaxLength());
+		assertArrayEquals(expected.getLengthHistogram(), actual.getLengthHistogram());
+		assertArrayEquals(expected.getGcHistogram(), actual.getGcHistogram());
+		for(int i=0; i< expected.getMaxLength(); i++){
+			assertArrayEquals(expected.getQualityHistogram(i), actual.getQualityHistogram(i));
+			for(Nucleotide n : new Nucleotide[]{Nucleotide.Adenine, Nucleotide.Cytosine, Nucleotide.Guanine, Nucleotide.Thymine, Nucleotide.Unknown}){
+				assertEquals(expected.getBaseCount(i, n), actual.getBaseCount(i, n));
+			}
+		}
+		assertEquals(expected.getNumberOfSampledRecords(), actual.getNumberOfSampledRecords());
+		assertEquals(expected.getEstimatedDuplicateFraction(), actual.getEstimatedDuplicateFraction(), 0D);
+	}
+}
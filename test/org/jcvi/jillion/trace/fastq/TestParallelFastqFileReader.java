@@ -0,0 +1,185 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.trace.fastq;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPOutputStream;
+
+import org.jcvi.jillion.core.io.IOUtil;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TestParallelFastqFileReader {
+
+	@Rule
+	public TemporaryFolder tmpDir = new TemporaryFolder();
+	
+	private final Random random = new Random(1234);
+	
+	private File fastq;
+	private List<FastqRecord> expected;
+	
+	@Before
+	public void setup() throws IOException{
+		fastq = tmpDir.newFile("reads.fastq");
+		writeRandomFastq(fastq, false);
+		expected = readSequentially(fastq, false);
+	}
+	/**
+	 * Lots of quality lines start with '@' and '+'
+	 * so finding the start of a record is tricky.
+	 */
+	private void writeRandomFastq(File out, boolean withComments) throws IOException{
+		try(PrintWriter writer = new PrintWriter(Files.newBufferedWriter(out.toPath(), IOUtil.UTF_8))){
+			for(int i=0; i< 500; i++){
+				int length = random.nextInt(10)==0 ? 0 : 1+ random.nextInt(150);
+				StringBuilder bases = new StringBuilder(length);
+				StringBuilder quals = new StringBuilder(length);
+				for(int j=0; j< length; j++){
+					bases.append("ACGTN".charAt(random.nextInt(5)));
+					quals.append(j==0 && random.nextBoolean() ? (random.nextBoolean()? '@' : '+') 
+							: (char)('!' + random.nextInt(40)));
+				}
+				writer.print("@read_" + i);
+				if(withComments){
+					writer.print(" comment " + i);
+				}
+				writer.print(random.nextBoolean()? "\n" : "\r\n");
+				writer.print(bases +"\n");
+				writer.print(random.nextBoolean()? "+\n" : "+read_" + i + "\n");
+				writer.print(quals +"\n");
+			}
+		}
+	}
+	
+	private static List<FastqRecord> readSequentially(File f, boolean hasComments) throws IOException{
+		List<FastqRecord> list = new ArrayList<>();
+		FastqParser parser = new FastqFileParserBuilder(f).hasComments(hasComments).build();
+		FastqFileReader.forEach(parser, FastqQualityCodec.SANGER, (id, record) -> list.add(record));
+		return list;
+	}
+	
+	@Test(expected = NullPointerException.class)
+	public void nullCodecShouldThrowNPE(){
+		new ParallelFastqFileReader.Builder(fastq, null);
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void zeroThreadsShouldThrowIllegalArgumentException(){
+		new ParallelFastqFileReader.Builder(fastq, FastqQualityCodec.SANGER).numberOfThreads(0);
+	}
+	
+	@Test
+	public void preserveOrderSameAsSequential() throws IOException{
+		for(long chunkSize : new long[]{1, 7, 100, 1000, 1_000_000}){
+			for(int threads : new int[]{1, 3}){
+				assertEquals("chunk size " + chunkSize, expected, readInOrder(fastq, chunkSize, threads, false));
+			}
+		}
+	}
+	
+	@Test
+	public void unorderedHasSameRecords() throws IOException{
+		for(long chunkSize : new long[]{1, 333, 4096}){
+			Map<String, FastqRecord> actual = new ConcurrentHashMap<>();
+			new ParallelFastqFileReader.Builder(fastq, FastqQualityCodec.SANGER)
+						.chunkSize(chunkSize)
+						.numberOfThreads(4)
+						.build()
+						.forEach((id, record) -> assertEquals(null, actual.put(id, record)));
+			
+			assertEquals(expected.size(), actual.size());
+			for(FastqRecord record : expected){
+				assertEquals(record, actual.get(record.getId()));
+			}
+		}
+	}
+	
+	@Test
+	public void deflinesWithComments() throws IOException{
+		File commented = tmpDir.newFile("commented.fastq");
+		writeRandomFastq(commented, true);
+		List<FastqRecord> expectedCommented = readSequentially(commented, true);
+		assertEquals(expectedCommented, readInOrder(commented, 512, 3, true));
+	}
+	
+	@Test
+	public void gzippedFileParsedInBlocks() throws IOException{
+		File gz = tmpDir.newFile("reads.fastq.gz");
+		try(OutputStream out = new GZIPOutputStream(Files.newOutputStream(gz.toPath()))){
+			Files.copy(fastq.toPath(), out);
+		}
+		for(long chunkSize : new long[]{1, 1000}){
+			assertEquals(expected, readInOrder(gz, chunkSize, 3, false));
+		}
+	}
+	
+	@Test
+	public void emptyFile() throws IOException{
+		assertEquals(0, readInOrder(tmpDir.newFile("empty.fastq"), 10, 2, false).size());
+	}
+	
+	@Test
+	public void consumerExceptionIsRethrown() throws IOException{
+		Exception expectedException = new Exception("expected");
+		try{
+			new ParallelFastqFileReader.Builder(fastq, FastqQualityCodec.SANGER)
+						.chunkSize(100)
+						.numberOfThreads(3)
+						.build()
+						.forEach((id, record) -> {
+							if("read_250".equals(id)){
+								throw expectedException;
+							}
+						});
+			fail("should throw exception");
+		}catch(Exception e){
+			assertSame(expectedException, e);
+		}
+	}
+	
+	private static List<FastqRecord> readInOrder(File f, long chunkSize, int threads, boolean hasComments) throws IOException{
+		List<FastqRecord> actual = new ArrayList<>();
+		new ParallelFastqFileReader.Builder(f, FastqQualityCodec.SANGER)
+					.chunkSize(chunkSize)
+					.numberOfThreads(threads)
+					.hasComments(hasComments)
+					.preserveOrder(true)
+					.build()
+					.forEach((id, record) -> actual.add(record));
+		return actual;
+	}
+}
@@ -50,6 +50,7 @@ import org.junit.runners.Suite.SuiteClasses;
         TestNoXMLManifestIndexedSffFileDataStore.class,
         TestIndexedSffFileDataStore.class,
         TestNoManifestIndexedSffFileDataStore.class,
+        TestSffFileDataStorePersistentIndex.class,
         
         TestSffWriterNoManifest.class,
         TestSffWriterWithIndex.class,